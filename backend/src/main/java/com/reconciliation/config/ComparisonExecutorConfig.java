@@ -0,0 +1,42 @@
+package com.reconciliation.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Worker pools shared by runs: one for parallel comparison, one for extracting the target side of a run
+ * while its source is extracted.
+ */
+@Configuration
+public class ComparisonExecutorConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    public ForkJoinPool comparisonPool(ReconciliationProperties properties) {
+        int parallelism = properties.getParallel().getParallelism() > 0 ?
+                properties.getParallel().getParallelism() : Runtime.getRuntime().availableProcessors();
+        return new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Extraction waits on the database, so its threads are not bounded by cores but by the configured pool
+     * size. Tasks beyond it queue; the callers of extraction tasks do not depend on queued tasks to progress.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor extractionExecutor(ReconciliationProperties properties) {
+        int size = Math.max(properties.getThreadPoolSize(), 1);
+        AtomicInteger threads = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), task -> {
+            Thread thread = new Thread(task, "extraction-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
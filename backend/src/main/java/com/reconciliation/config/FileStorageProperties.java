@@ -0,0 +1,21 @@
+package com.reconciliation.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Local storage locations bound from {@code app.file-storage}.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.file-storage")
+@Getter
+@Setter
+public class FileStorageProperties {
+
+    private String uploadDir;
+    private String reportDir;
+    private String spillDir;
+    private String snapshotDir;
+}
@@ -0,0 +1,74 @@
+package com.reconciliation.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Engine tuning properties bound from {@code app.reconciliation}.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.reconciliation")
+@Getter
+@Setter
+public class ReconciliationProperties {
+
+    private int batchSize = 1000;
+    /** Threads extracting target sides and extraction slices, shared by all runs. */
+    private int threadPoolSize = 10;
+    private int reportRetentionDays = 90;
+    private int maxDiscrepanciesPerRun = 50000;
+    /** Rows fetched per database round trip during extraction. */
+    private int fetchSize = 5000;
+    private Spill spill = new Spill();
+    private Parallel parallel = new Parallel();
+    private HashRange hashRange = new HashRange();
+    private ConnectionPool connectionPool = new ConnectionPool();
+
+    @Getter
+    @Setter
+    public static class Spill {
+        /** Target records held in heap before the grace hash join starts spilling partitions to disk. */
+        private long memoryBudgetRecords = 2_000_000;
+        private int partitionCount = 64;
+    }
+
+    @Getter
+    @Setter
+    public static class Parallel {
+        /** Worker threads for parallel comparison; 0 uses one per available processor. */
+        private int parallelism = 0;
+        private int partitionCount = 64;
+    }
+
+    @Getter
+    @Setter
+    public static class HashRange {
+        /** Sub-ranges each differing key hash range is split into per level. */
+        private int fanout = 16;
+        /** Differing ranges with at most this many rows on either side are extracted instead of split further. */
+        private long leafRows = 1000;
+        private int maxDepth = 6;
+    }
+
+    /**
+     * Defaults of the connection pool of every database source system, overridden per system by the
+     * {@code pool} object of its additional configuration.
+     */
+    @Getter
+    @Setter
+    public static class ConnectionPool {
+        private int maximumPoolSize = 4;
+        /** Connections kept open between runs, so that scheduled runs reuse them. */
+        private int minimumIdle = 1;
+        private long connectionTimeoutMs = 30_000;
+        private long idleTimeoutMs = 600_000;
+        private long maxLifetimeMs = 1_800_000;
+        /**
+         * Time a pool replaced after a settings change stays open once nothing is borrowed from it, so that
+         * templates handed out just before the change can still borrow.
+         */
+        private long retiredPoolGraceMs = 60_000;
+    }
+}
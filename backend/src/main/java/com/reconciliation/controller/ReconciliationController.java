@@ -215,8 +215,15 @@ public class ReconciliationController {
                 .missingInSourceCount(entity.getMissingInSourceCount())
                 .missingInTargetCount(entity.getMissingInTargetCount())
                 .attributeMismatchCount(entity.getAttributeMismatchCount())
+                .duplicateKeyCount(entity.getDuplicateKeyCount())
                 .errorMessage(entity.getErrorMessage())
                 .executionTimeMs(entity.getExecutionTimeMs())
+                .samplePercentage(entity.getSamplePercentage())
+                .estimatedMismatchRate(entity.getEstimatedMismatchRate())
+                .mismatchRateLowerBound(entity.getMismatchRateLowerBound())
+                .mismatchRateUpperBound(entity.getMismatchRateUpperBound())
+                .sourceHighWaterMark(entity.getSourceHighWaterMark())
+                .targetHighWaterMark(entity.getTargetHighWaterMark())
                 .matchPercentage(entity.getMatchPercentage())
                 .build();
     }
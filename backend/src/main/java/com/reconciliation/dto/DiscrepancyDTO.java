@@ -4,6 +4,8 @@ import com.reconciliation.enums.DiscrepancySeverity;
 import com.reconciliation.enums.DiscrepancyType;
 import lombok.*;
 
+import java.math.BigDecimal;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -21,10 +23,8 @@ public class DiscrepancyDTO {
     private String targetValue;
     private String expectedValue;
     private String actualValue;
-    private Double differenceAmount;
-    private Double differencePercentage;
-    private String sourceRecordJson;
-    private String targetRecordJson;
+    private BigDecimal differenceAmount;
+    private BigDecimal differencePercentage;
     private String description;
     private String businessImpact;
     private Boolean isAcknowledged;
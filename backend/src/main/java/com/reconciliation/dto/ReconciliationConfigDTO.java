@@ -1,5 +1,7 @@
 package com.reconciliation.dto;
 
+import com.reconciliation.enums.ComparisonStrategy;
+import com.reconciliation.enums.ExtractionSliceMethod;
 import com.reconciliation.enums.ScheduleFrequency;
 import lombok.*;
 
@@ -51,6 +53,15 @@ public class ReconciliationConfigDTO {
     private Boolean nullEqualsEmpty;
     private Integer maxDiscrepancies;
     private Integer batchSize;
+    private ComparisonStrategy comparisonStrategy;
+    private Boolean incrementalMode;
+    private Boolean summaryMode;
+    private String summaryGroupAttributes;
+    private Double samplePercentage;
+    private Integer extractionSlices;
+    private ExtractionSliceMethod extractionSliceMethod;
+    private String sourceWatermarkColumn;
+    private String targetWatermarkColumn;
     
     private String notificationEmails;
     private Boolean autoCreateIncidents;
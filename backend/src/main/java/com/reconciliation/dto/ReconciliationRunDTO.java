@@ -29,6 +29,7 @@ public class ReconciliationRunDTO {
     private Long missingInSourceCount;
     private Long missingInTargetCount;
     private Long attributeMismatchCount;
+    private Long duplicateKeyCount;
     
     private String errorMessage;
     private Long executionTimeMs;
@@ -36,6 +37,13 @@ public class ReconciliationRunDTO {
     private Long targetExtractionTimeMs;
     private Long comparisonTimeMs;
     
+    private Double samplePercentage;
+    private Double estimatedMismatchRate;
+    private Double mismatchRateLowerBound;
+    private Double mismatchRateUpperBound;
+    private String sourceHighWaterMark;
+    private String targetHighWaterMark;
+    
     private String reportPath;
     private Double matchPercentage;
     
@@ -0,0 +1,457 @@
+package com.reconciliation.engine;
+
+import com.reconciliation.entity.AttributeMapping;
+import com.reconciliation.entity.ReconciliationConfig;
+import com.reconciliation.enums.ComparisonType;
+import com.reconciliation.enums.DiscrepancySeverity;
+import com.reconciliation.exception.ReconciliationException;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Pre-resolved comparison of one mapped attribute. Values are read and normalized with
+ * {@link #sourceValue}/{@link #targetValue} and then checked with {@link #matches}; none of these allocate
+ * for values that are already normalized, except where the comparison type inherently needs it.
+ */
+public final class ColumnComparator {
+
+    private final int slot;
+    private final String sourceAttribute;
+    private final String targetAttribute;
+    private final String attributeName;
+    private final DiscrepancySeverity severity;
+    private final UnaryOperator<Object> sourceTransform;
+    private final UnaryOperator<Object> targetTransform;
+    private final boolean trimWhitespace;
+    private final boolean nullEqualsEmpty;
+    private final ValueMatcher matcher;
+    private final ValueFingerprint fingerprint;
+    private final boolean emptyMatchesItself;
+    private final boolean rawEqualityMatches;
+    private final TransformationPipeline sourceTransformation;
+    private final TransformationPipeline targetTransformation;
+    private final boolean sourceExpression;
+    private final SqlMatch sqlMatch;
+    private final EpochParser epochParser;
+    private final long toleranceMillis;
+    private final DecimalTolerance tolerance;
+
+    private ColumnComparator(int slot, AttributeMapping mapping, ReconciliationConfig config) {
+        this.slot = slot;
+        this.sourceAttribute = mapping.getSourceAttribute();
+        this.targetAttribute = mapping.getTargetAttribute();
+        this.attributeName = mapping.getDisplayName() != null ? mapping.getDisplayName() : mapping.getSourceAttribute();
+        this.severity = mapping.getMismatchSeverity();
+        this.sourceTransformation = TransformationPipeline.compile(mapping.getSourceAttribute(), mapping.getSourceTransformation());
+        this.targetTransformation = TransformationPipeline.compile(mapping.getTargetAttribute(), mapping.getTargetTransformation());
+        this.sourceTransform = withExpression(sourceTransformation, mapping);
+        this.sourceExpression = mapping.getTransformationExpression() != null;
+        this.targetTransform = targetTransformation::apply;
+        this.trimWhitespace = Boolean.TRUE.equals(config.getTrimWhitespace());
+        this.nullEqualsEmpty = Boolean.TRUE.equals(config.getNullEqualsEmpty());
+        if (mapping.getComparisonType() == ComparisonType.CUSTOM_EXPRESSION && mapping.getCustomValidationRule() != null) {
+            MappingExpression rule = MappingExpression.parse(mapping.getSourceAttribute(), mapping.getCustomValidationRule());
+            this.epochParser = null;
+            this.toleranceMillis = 0;
+            this.tolerance = null;
+            this.matcher = rule::test;
+            // Nothing is known about which values a rule accepts
+            this.fingerprint = value -> RowFingerprinter.UNCERTIFIED;
+        } else if (mapping.getComparisonType() == ComparisonType.DATE_TOLERANCE) {
+            this.epochParser = EpochParser.forPattern(mapping.getSourceAttribute(), mapping.getFormatPattern());
+            this.toleranceMillis = dateToleranceMillis(mapping, config);
+            this.tolerance = null;
+            this.matcher = this::temporalMatches;
+            this.fingerprint = this::temporalFingerprint;
+        } else if (mapping.getComparisonType() == ComparisonType.NUMERIC_TOLERANCE) {
+            this.epochParser = null;
+            this.toleranceMillis = 0;
+            this.tolerance = DecimalTolerance.of(mapping);
+            this.matcher = this::numericMatches;
+            this.fingerprint = this::numericFingerprint;
+        } else {
+            this.epochParser = null;
+            this.toleranceMillis = 0;
+            this.tolerance = null;
+            this.matcher = resolveMatcher(mapping);
+            this.fingerprint = resolveFingerprint(mapping);
+        }
+        this.emptyMatchesItself = matcher.matches("", "");
+        boolean expressionFree = mapping.getTransformationExpression() == null;
+        this.rawEqualityMatches = expressionFree && sourceTransformation.key().equals(targetTransformation.key())
+                && equalValuesMatch(mapping, config);
+        this.sqlMatch = expressionFree ? resolveSqlMatch(mapping, config) : null;
+    }
+
+    static ColumnComparator compile(int slot, AttributeMapping mapping, ReconciliationConfig config) {
+        return new ColumnComparator(slot, mapping, config);
+    }
+
+    /** Index of the mapping in the configured mapping list; stable across runs of the same configuration. */
+    public int slot() {
+        return slot;
+    }
+
+    public String attributeName() {
+        return attributeName;
+    }
+
+    public DiscrepancySeverity severity() {
+        return severity;
+    }
+
+    public String sourceAttribute() {
+        return sourceAttribute;
+    }
+
+    public String targetAttribute() {
+        return targetAttribute;
+    }
+
+    public Object sourceValue(Map<String, Object> record) {
+        return normalizeSource(record.get(sourceAttribute));
+    }
+
+    public Object targetValue(Map<String, Object> record) {
+        return normalizeTarget(record.get(targetAttribute));
+    }
+
+    /** Applies the source transformation and whitespace handling to a raw source value. */
+    public Object normalizeSource(Object rawValue) {
+        return normalize(sourceTransform.apply(rawValue));
+    }
+
+    /** Applies the target transformation and whitespace handling to a raw target value. */
+    public Object normalizeTarget(Object rawValue) {
+        return normalize(targetTransform.apply(rawValue));
+    }
+
+    /**
+     * Whether non-string values of one side are compared as they were extracted, without a transformation or
+     * an expression applied to them.
+     */
+    boolean untransformed(boolean source) {
+        return source ? sourceTransformation.isIdentity() && !sourceExpression : targetTransformation.isIdentity();
+    }
+
+    public boolean matches(Object sourceValue, Object targetValue) {
+        if (sourceValue == null && targetValue == null) {
+            return true;
+        }
+        if (sourceValue == null || targetValue == null) {
+            if (nullEqualsEmpty) {
+                Object present = sourceValue != null ? sourceValue : targetValue;
+                return String.valueOf(present).isEmpty();
+            }
+            return false;
+        }
+        return matcher.matches(sourceValue, targetValue);
+    }
+
+    /**
+     * Whether the attribute is compared as a point in time, see {@link ParsedColumns}.
+     */
+    public boolean temporal() {
+        return epochParser != null;
+    }
+
+    /**
+     * Epoch milliseconds of a normalized value of a temporal attribute, or {@link EpochParser#NO_EPOCH}.
+     */
+    long epoch(Object value) {
+        return value == null ? EpochParser.NO_EPOCH : epochParser.toEpochMillis(value);
+    }
+
+    /**
+     * Match of two epochs of a temporal attribute; the same outcome {@link #matches} has for their values.
+     */
+    public boolean epochsMatch(long sourceEpoch, long targetEpoch) {
+        return Math.abs(sourceEpoch - targetEpoch) <= toleranceMillis;
+    }
+
+    /**
+     * Whether the attribute is compared as an exact decimal within a tolerance, see {@link ParsedColumns}.
+     */
+    public boolean numeric() {
+        return tolerance != null;
+    }
+
+    /**
+     * Match of two decimals of a numeric attribute, each given as unscaled value and scale; the same outcome
+     * {@link #matches} has for their values.
+     */
+    public boolean decimalsMatch(long sourceUnscaled, int sourceScale, long targetUnscaled, int targetScale) {
+        return tolerance.matches(sourceUnscaled, sourceScale, targetUnscaled, targetScale);
+    }
+
+    /**
+     * Whether equal raw source and target values always match, i.e. both sides are transformed alike and the
+     * comparison accepts a value paired with itself.
+     */
+    public boolean rawEqualityMatches() {
+        return rawEqualityMatches;
+    }
+
+    /**
+     * SQL condition over raw source and target column expressions that only holds for pairs {@link #matches}
+     * accepts, or null if the comparison has no SQL equivalent. Pairs it rejects may still match and are
+     * compared again by the engine.
+     */
+    String sqlMatchCondition(PushdownDialect dialect, String sourceColumn, String targetColumn) {
+        if (sqlMatch == null) {
+            return null;
+        }
+        String source = sourceTransformation.sql(dialect, sourceColumn);
+        String target = targetTransformation.sql(dialect, targetColumn);
+        return "(" + sourceColumn + " IS NULL AND " + targetColumn + " IS NULL) OR ("
+                + sqlMatch.condition(dialect, source, target) + ")";
+    }
+
+    /**
+     * Hash of a normalized value such that equal hashes on both sides imply {@link #matches}, or
+     * {@link RowFingerprinter#UNCERTIFIED} for values whose match cannot be decided from a hash.
+     */
+    long fingerprint(Object value) {
+        if (value == null) {
+            return ValueHashing.NULL_HASH;
+        }
+        if (nullEqualsEmpty && String.valueOf(value).isEmpty()) {
+            // Null and empty match each other; empty values only form one class with null if they also match themselves
+            return value instanceof String && emptyMatchesItself ? ValueHashing.NULL_HASH : RowFingerprinter.UNCERTIFIED;
+        }
+        return fingerprint.hash(value);
+    }
+
+    /**
+     * {@link #fingerprint} of a value of a temporal attribute whose epoch is already known.
+     */
+    long epochFingerprint(long epoch) {
+        return toleranceMillis < 0 ? RowFingerprinter.UNCERTIFIED : ValueHashing.hashEpoch(epoch);
+    }
+
+    /**
+     * {@link #fingerprint} of a value of a numeric attribute whose decimal is already known.
+     */
+    long decimalFingerprint(long unscaled, int scale) {
+        return tolerance.acceptsEqual() ? ScaledDecimal.hash(unscaled, scale) : RowFingerprinter.UNCERTIFIED;
+    }
+
+    private long numericFingerprint(Object value) {
+        if (!tolerance.acceptsEqual()) {
+            return RowFingerprinter.UNCERTIFIED;
+        }
+        BigDecimal decimal = ScaledDecimal.toBigDecimal(value);
+        if (decimal != null) {
+            return ScaledDecimal.hash(decimal);
+        }
+        // NaN and infinities are never within a tolerance, not even of themselves
+        return ScaledDecimal.isNonFinite(value) ? RowFingerprinter.UNCERTIFIED : ValueHashing.hashEquality(value);
+    }
+
+    /**
+     * Values that are not numbers fall back to equality.
+     */
+    private boolean numericMatches(Object sourceValue, Object targetValue) {
+        BigDecimal source = ScaledDecimal.toBigDecimal(sourceValue);
+        BigDecimal target = ScaledDecimal.toBigDecimal(targetValue);
+        if (source != null && target != null) {
+            return tolerance.matches(source, target);
+        }
+        if ((source != null || ScaledDecimal.isNonFinite(sourceValue)) && (target != null || ScaledDecimal.isNonFinite(targetValue))) {
+            return false;
+        }
+        return sourceValue.equals(targetValue);
+    }
+
+    private long temporalFingerprint(Object value) {
+        long epoch = epochParser.toEpochMillis(value);
+        return epoch != EpochParser.NO_EPOCH ? epochFingerprint(epoch) : ValueHashing.hashEquality(value);
+    }
+
+    /**
+     * Values that are not points in time fall back to equality.
+     */
+    private boolean temporalMatches(Object sourceValue, Object targetValue) {
+        long sourceEpoch = epochParser.toEpochMillis(sourceValue);
+        long targetEpoch = epochParser.toEpochMillis(targetValue);
+        if (sourceEpoch == EpochParser.NO_EPOCH || targetEpoch == EpochParser.NO_EPOCH) {
+            return sourceValue.equals(targetValue);
+        }
+        return epochsMatch(sourceEpoch, targetEpoch);
+    }
+
+    /**
+     * The mapping's tolerance value in minutes, or else the configuration's date tolerance.
+     */
+    private static long dateToleranceMillis(AttributeMapping mapping, ReconciliationConfig config) {
+        if (mapping.getToleranceValue() != null) {
+            return Math.round(mapping.getToleranceValue() * 60_000);
+        }
+        return config.getDateToleranceMinutes() != null ? config.getDateToleranceMinutes() * 60_000L : 0L;
+    }
+
+    private Object normalize(Object value) {
+        if (trimWhitespace && value instanceof String) {
+            return ((String) value).trim();
+        }
+        return value;
+    }
+
+    /**
+     * Applies the mapping's transformation expression, if any, to the source value after the source
+     * transformation.
+     */
+    private static UnaryOperator<Object> withExpression(TransformationPipeline transformation, AttributeMapping mapping) {
+        if (mapping.getTransformationExpression() == null) {
+            return transformation::apply;
+        }
+        MappingExpression expression = MappingExpression.parse(mapping.getSourceAttribute(), mapping.getTransformationExpression());
+        return value -> expression.apply(transformation.apply(value));
+    }
+
+    private static boolean equalValuesMatch(AttributeMapping mapping, ReconciliationConfig config) {
+        ComparisonType type = mapping.getComparisonType() != null ? mapping.getComparisonType() : ComparisonType.EXACT_MATCH;
+        switch (type) {
+            case NUMERIC_TOLERANCE:
+                return mapping.getToleranceValue() == null || mapping.getToleranceValue() >= 0;
+            case DATE_TOLERANCE:
+                return dateToleranceMillis(mapping, config) >= 0;
+            case REGEX_MATCH:
+                // Values the pattern rejects never match, not even themselves
+                return mapping.getFormatPattern() == null;
+            case CUSTOM_EXPRESSION:
+                return mapping.getCustomValidationRule() == null;
+            default:
+                return true;
+        }
+    }
+
+    private static ValueMatcher resolveMatcher(AttributeMapping mapping) {
+        ComparisonType type = mapping.getComparisonType() != null ? mapping.getComparisonType() : ComparisonType.EXACT_MATCH;
+        switch (type) {
+            case CASE_INSENSITIVE:
+                return (s, t) -> String.valueOf(s).equalsIgnoreCase(String.valueOf(t));
+
+            case CONTAINS:
+                return (s, t) -> {
+                    String source = String.valueOf(s);
+                    String target = String.valueOf(t);
+                    return source.contains(target) || target.contains(source);
+                };
+
+            case REGEX_MATCH: {
+                if (mapping.getFormatPattern() == null) {
+                    return Object::equals;
+                }
+                Pattern pattern = compilePattern(mapping);
+                return (s, t) -> pattern.matcher(String.valueOf(s)).matches()
+                        && pattern.matcher(String.valueOf(t)).matches();
+            }
+
+            case EXACT_MATCH:
+            default:
+                return Object::equals;
+        }
+    }
+
+    /**
+     * Canonical hash per comparison type: equal hashes must only be possible for values the matcher accepts.
+     */
+    private static ValueFingerprint resolveFingerprint(AttributeMapping mapping) {
+        ComparisonType type = mapping.getComparisonType() != null ? mapping.getComparisonType() : ComparisonType.EXACT_MATCH;
+        switch (type) {
+            case CASE_INSENSITIVE:
+                return value -> ValueHashing.hashIgnoreCase(String.valueOf(value));
+
+            case CONTAINS:
+                return value -> ValueHashing.hashText(String.valueOf(value));
+
+            case REGEX_MATCH: {
+                if (mapping.getFormatPattern() == null) {
+                    return ValueHashing::hashEquality;
+                }
+                Pattern pattern = compilePattern(mapping);
+                return value -> pattern.matcher(String.valueOf(value)).matches() ?
+                        ValueHashing.PATTERN_MATCH_HASH : RowFingerprinter.UNCERTIFIED;
+            }
+
+            case EXACT_MATCH:
+            default:
+                return ValueHashing::hashEquality;
+        }
+    }
+
+    /**
+     * SQL counterpart per comparison type. Tolerance checks are strict so that pairs on the boundary, where
+     * decimal and floating point arithmetic may disagree, are left to the engine. Dates only settle equal
+     * values in SQL, since their column types and text formats differ between systems.
+     */
+    private static SqlMatch resolveSqlMatch(AttributeMapping mapping, ReconciliationConfig config) {
+        ComparisonType type = mapping.getComparisonType() != null ? mapping.getComparisonType() : ComparisonType.EXACT_MATCH;
+        switch (type) {
+            case CASE_INSENSITIVE:
+                return (dialect, s, t) -> "UPPER(" + dialect.text(s) + ") = UPPER(" + dialect.text(t) + ")";
+
+            case NUMERIC_TOLERANCE: {
+                double tolerance = mapping.getToleranceValue() != null ? mapping.getToleranceValue() : 0.0;
+                if (tolerance < 0) {
+                    return (dialect, s, t) -> "1 = 0";
+                }
+                if (tolerance == 0) {
+                    return (dialect, s, t) -> s + " = " + t;
+                }
+                if ("PERCENTAGE".equalsIgnoreCase(mapping.getToleranceType())) {
+                    String fraction = BigDecimal.valueOf(tolerance).movePointLeft(2).toPlainString();
+                    return (dialect, s, t) -> "ABS(" + s + " - " + t + ") < ABS(" + s + " * " + fraction + ")";
+                }
+                String limit = BigDecimal.valueOf(tolerance).toPlainString();
+                return (dialect, s, t) -> "ABS(" + s + " - " + t + ") < " + limit;
+            }
+
+            case CONTAINS:
+                return (dialect, s, t) -> "INSTR(" + dialect.text(s) + ", " + dialect.text(t) + ") > 0 OR INSTR("
+                        + dialect.text(t) + ", " + dialect.text(s) + ") > 0";
+
+            case REGEX_MATCH:
+                // Database regular expressions differ from java.util.regex, so patterns stay in the engine
+                return mapping.getFormatPattern() == null ? (dialect, s, t) -> s + " = " + t : null;
+
+            case DATE_TOLERANCE:
+                return dateToleranceMillis(mapping, config) < 0 ? (dialect, s, t) -> "1 = 0" : (dialect, s, t) -> s + " = " + t;
+
+            case EXACT_MATCH:
+                return (dialect, s, t) -> s + " = " + t;
+
+            default:
+                return null;
+        }
+    }
+
+    private static Pattern compilePattern(AttributeMapping mapping) {
+        try {
+            return Pattern.compile(mapping.getFormatPattern());
+        } catch (PatternSyntaxException e) {
+            throw new ReconciliationException("INVALID_MAPPING", "Invalid format pattern for attribute "
+                    + mapping.getSourceAttribute() + ": " + e.getDescription());
+        }
+    }
+
+    @FunctionalInterface
+    private interface SqlMatch {
+        String condition(PushdownDialect dialect, String sourceExpression, String targetExpression);
+    }
+
+    @FunctionalInterface
+    private interface ValueMatcher {
+        boolean matches(Object sourceValue, Object targetValue);
+    }
+
+    @FunctionalInterface
+    private interface ValueFingerprint {
+        long hash(Object value);
+    }
+}
@@ -0,0 +1,146 @@
+package com.reconciliation.engine;
+
+import java.math.BigDecimal;
+
+/**
+ * A single typed column of a {@link RecordBatch}. Values are stored unboxed where the column type allows it
+ * and boxed only when read through {@link #get}.
+ */
+public abstract class ColumnVector {
+
+    protected final int size;
+    private final long[] nulls;
+
+    protected ColumnVector(int size, long[] nulls) {
+        this.size = size;
+        this.nulls = nulls;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isNull(int row) {
+        return nulls != null && (nulls[row >>> 6] & (1L << row)) != 0;
+    }
+
+    public abstract Object get(int row);
+
+    /**
+     * Whole-number column. {@code boxAsInteger} preserves the original value class so that values read back
+     * compare equal to what the extraction produced.
+     */
+    public static final class LongVector extends ColumnVector {
+        private final long[] values;
+        private final boolean boxAsInteger;
+
+        LongVector(int size, long[] nulls, long[] values, boolean boxAsInteger) {
+            super(size, nulls);
+            this.values = values;
+            this.boxAsInteger = boxAsInteger;
+        }
+
+        public long getLong(int row) {
+            return values[row];
+        }
+
+        @Override
+        public Object get(int row) {
+            if (isNull(row)) {
+                return null;
+            }
+            return boxAsInteger ? Integer.valueOf((int) values[row]) : Long.valueOf(values[row]);
+        }
+    }
+
+    public static final class DoubleVector extends ColumnVector {
+        private final double[] values;
+
+        DoubleVector(int size, long[] nulls, double[] values) {
+            super(size, nulls);
+            this.values = values;
+        }
+
+        public double getDouble(int row) {
+            return values[row];
+        }
+
+        @Override
+        public Object get(int row) {
+            return isNull(row) ? null : Double.valueOf(values[row]);
+        }
+    }
+
+    /**
+     * Exact decimals held as an unscaled long and a scale per row, read back as the {@link BigDecimal} they were
+     * extracted as. Decimals whose unscaled value or scale does not fit are held in an {@link ObjectVector}.
+     */
+    public static final class DecimalVector extends ColumnVector {
+        private final long[] unscaled;
+        private final byte[] scales;
+
+        DecimalVector(int size, long[] nulls, long[] unscaled, byte[] scales) {
+            super(size, nulls);
+            this.unscaled = unscaled;
+            this.scales = scales;
+        }
+
+        public long getUnscaled(int row) {
+            return unscaled[row];
+        }
+
+        public int getScale(int row) {
+            return scales[row];
+        }
+
+        @Override
+        public Object get(int row) {
+            return isNull(row) ? null : BigDecimal.valueOf(unscaled[row], scales[row]);
+        }
+    }
+
+    /**
+     * Dictionary-encoded strings: every distinct value is stored once and rows hold its code.
+     */
+    public static final class DictionaryVector extends ColumnVector {
+        private final int[] codes;
+        private final String[] dictionary;
+
+        DictionaryVector(int size, long[] nulls, int[] codes, String[] dictionary) {
+            super(size, nulls);
+            this.codes = codes;
+            this.dictionary = dictionary;
+        }
+
+        public int getCode(int row) {
+            return codes[row];
+        }
+
+        public int dictionarySize() {
+            return dictionary.length;
+        }
+
+        @Override
+        public Object get(int row) {
+            return isNull(row) ? null : dictionary[codes[row]];
+        }
+    }
+
+    /**
+     * Fallback for value types without a specialized representation (temporals, oversized decimals, mixed
+     * types), and for strings with too many distinct values to be worth a dictionary.
+     */
+    public static final class ObjectVector extends ColumnVector {
+        private final Object[] values;
+
+        ObjectVector(int size, Object[] values) {
+            super(size, null);
+            this.values = values;
+        }
+
+        @Override
+        public Object get(int row) {
+            return values[row];
+        }
+    }
+}
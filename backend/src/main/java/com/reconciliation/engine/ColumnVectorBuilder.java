@@ -0,0 +1,261 @@
+package com.reconciliation.engine;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Growable builder for one {@link ColumnVector}. The representation is chosen from the first non-null value
+ * and widened to {@link ColumnVector.ObjectVector} if a later value does not fit it. Strings fall back from
+ * dictionary encoding to plain values once most of them turn out to be distinct, as in key or free-text
+ * columns, where a dictionary only adds a hash lookup per value.
+ */
+class ColumnVectorBuilder {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /** Rows read before the cardinality of a string column is judged. */
+    static final int DICTIONARY_SAMPLE_ROWS = 1024;
+
+    private enum Kind { EMPTY, LONG, INTEGER, DOUBLE, DECIMAL, STRING, OBJECT }
+
+    private Kind kind = Kind.EMPTY;
+    private int size;
+    private long[] nulls = new long[INITIAL_CAPACITY >>> 6];
+    private boolean hasNulls;
+
+    private long[] longs;
+    private double[] doubles;
+    private byte[] scales;
+    private int[] codes;
+    private Map<String, Integer> dictionaryIndex;
+    private String[] dictionary;
+    private Object[] objects;
+
+    void add(Object value) {
+        if (kind == Kind.EMPTY && value != null) {
+            initialize(kindOf(value));
+        }
+        if (kind != Kind.OBJECT && value != null && kindOf(value) != kind) {
+            widenToObjects();
+        }
+        ensureCapacity(size + 1);
+        if (value == null) {
+            markNull(size);
+        }
+        switch (kind) {
+            case LONG:
+            case INTEGER:
+                longs[size] = value == null ? 0L : ((Number) value).longValue();
+                break;
+            case DOUBLE:
+                doubles[size] = value == null ? 0.0 : (Double) value;
+                break;
+            case DECIMAL:
+                if (value != null && !compact((BigDecimal) value)) {
+                    widenToObjects();
+                    objects[size] = value;
+                }
+                break;
+            case STRING:
+                if (value != null) {
+                    encode((String) value);
+                }
+                break;
+            case OBJECT:
+                objects[size] = value;
+                break;
+            default:
+                break;
+        }
+        size++;
+    }
+
+    /**
+     * Adds the decimal {@code unscaled / 10^scale} without boxing it, unless the column is not a decimal one.
+     */
+    void addDecimal(long unscaled, int scale) {
+        if (kind == Kind.EMPTY) {
+            initialize(Kind.DECIMAL);
+        }
+        if (kind != Kind.DECIMAL || scale < ScaledDecimal.MIN_SCALE || scale > ScaledDecimal.MAX_SCALE) {
+            add(BigDecimal.valueOf(unscaled, scale));
+            return;
+        }
+        ensureCapacity(size + 1);
+        longs[size] = unscaled;
+        scales[size] = (byte) scale;
+        size++;
+    }
+
+    ColumnVector build() {
+        long[] nullBits = hasNulls ? Arrays.copyOf(nulls, (size + 63) >>> 6) : null;
+        switch (kind) {
+            case LONG:
+            case INTEGER:
+                return new ColumnVector.LongVector(size, nullBits, Arrays.copyOf(longs, size), kind == Kind.INTEGER);
+            case DOUBLE:
+                return new ColumnVector.DoubleVector(size, nullBits, Arrays.copyOf(doubles, size));
+            case DECIMAL:
+                return new ColumnVector.DecimalVector(size, nullBits, Arrays.copyOf(longs, size),
+                        Arrays.copyOf(scales, size));
+            case STRING:
+                return new ColumnVector.DictionaryVector(size, nullBits, Arrays.copyOf(codes, size),
+                        Arrays.copyOf(dictionary, dictionaryIndex.size()));
+            case OBJECT:
+                return new ColumnVector.ObjectVector(size, Arrays.copyOf(objects, size));
+            default:
+                // Column without a single non-null value
+                return new ColumnVector.ObjectVector(size, new Object[size]);
+        }
+    }
+
+    private static Kind kindOf(Object value) {
+        if (value instanceof Long) {
+            return Kind.LONG;
+        }
+        if (value instanceof Integer) {
+            return Kind.INTEGER;
+        }
+        if (value instanceof Double) {
+            return Kind.DOUBLE;
+        }
+        if (value instanceof BigDecimal) {
+            return Kind.DECIMAL;
+        }
+        if (value instanceof String) {
+            return Kind.STRING;
+        }
+        return Kind.OBJECT;
+    }
+
+    private void initialize(Kind newKind) {
+        kind = newKind;
+        int capacity = Math.max(INITIAL_CAPACITY, nulls.length << 6);
+        switch (kind) {
+            case LONG:
+            case INTEGER:
+                longs = new long[capacity];
+                break;
+            case DOUBLE:
+                doubles = new double[capacity];
+                break;
+            case DECIMAL:
+                longs = new long[capacity];
+                scales = new byte[capacity];
+                break;
+            case STRING:
+                codes = new int[capacity];
+                dictionaryIndex = new HashMap<>();
+                dictionary = new String[64];
+                break;
+            default:
+                objects = new Object[capacity];
+                break;
+        }
+    }
+
+    /**
+     * Stores the decimal at the current row as a scaled long, if its unscaled value and scale fit.
+     */
+    private boolean compact(BigDecimal value) {
+        int scale = value.scale();
+        if (scale < ScaledDecimal.MIN_SCALE || scale > ScaledDecimal.MAX_SCALE) {
+            return false;
+        }
+        BigInteger unscaled = value.unscaledValue();
+        if (unscaled.bitLength() >= 64) {
+            return false;
+        }
+        longs[size] = unscaled.longValue();
+        scales[size] = (byte) scale;
+        return true;
+    }
+
+    /**
+     * Stores the string at the current row as its dictionary code, or as a plain value once the column has
+     * more distinct values than half its rows.
+     */
+    private void encode(String value) {
+        Integer code = dictionaryIndex.get(value);
+        if (code == null) {
+            code = dictionaryIndex.size();
+            if (size >= DICTIONARY_SAMPLE_ROWS && code >= size / 2) {
+                widenToObjects();
+                objects[size] = value;
+                return;
+            }
+            if (code == dictionary.length) {
+                dictionary = Arrays.copyOf(dictionary, dictionary.length * 2);
+            }
+            dictionary[code] = value;
+            dictionaryIndex.put(value, code);
+        }
+        codes[size] = code;
+    }
+
+    private void widenToObjects() {
+        Object[] widened = new Object[Math.max(INITIAL_CAPACITY, nulls.length << 6)];
+        for (int row = 0; row < size; row++) {
+            widened[row] = valueAt(row);
+        }
+        kind = Kind.OBJECT;
+        objects = widened;
+        longs = null;
+        doubles = null;
+        scales = null;
+        codes = null;
+        dictionaryIndex = null;
+        dictionary = null;
+    }
+
+    private Object valueAt(int row) {
+        if ((nulls[row >>> 6] & (1L << row)) != 0) {
+            return null;
+        }
+        switch (kind) {
+            case LONG:
+                return longs[row];
+            case INTEGER:
+                return (int) longs[row];
+            case DOUBLE:
+                return doubles[row];
+            case DECIMAL:
+                return BigDecimal.valueOf(longs[row], scales[row]);
+            case STRING:
+                return dictionary[codes[row]];
+            default:
+                return null;
+        }
+    }
+
+    private void markNull(int row) {
+        nulls[row >>> 6] |= 1L << row;
+        hasNulls = true;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required > nulls.length << 6) {
+            int capacity = Math.max(required, (nulls.length << 6) * 2);
+            nulls = Arrays.copyOf(nulls, (capacity + 63) >>> 6);
+        }
+        int capacity = nulls.length << 6;
+        if (longs != null && longs.length < capacity) {
+            longs = Arrays.copyOf(longs, capacity);
+        }
+        if (doubles != null && doubles.length < capacity) {
+            doubles = Arrays.copyOf(doubles, capacity);
+        }
+        if (scales != null && scales.length < capacity) {
+            scales = Arrays.copyOf(scales, capacity);
+        }
+        if (codes != null && codes.length < capacity) {
+            codes = Arrays.copyOf(codes, capacity);
+        }
+        if (objects != null && objects.length < capacity) {
+            objects = Arrays.copyOf(objects, capacity);
+        }
+    }
+}
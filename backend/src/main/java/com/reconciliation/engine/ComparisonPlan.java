@@ -0,0 +1,208 @@
+package com.reconciliation.engine;
+
+import com.reconciliation.entity.AttributeMapping;
+import com.reconciliation.entity.ReconciliationConfig;
+import com.reconciliation.enums.ComparisonType;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Attribute comparisons of a run, compiled once from the enabled attribute mappings. Disabled and
+ * {@link ComparisonType#IGNORE} mappings are dropped up front, and every remaining mapping is turned into a
+ * {@link ColumnComparator} with its transformations, tolerances and patterns already resolved. The
+ * transformations of enabled key mappings, compared or not, also normalize the key attribute values.
+ * <p>
+ * Attribute values of records read from a {@link RecordBatch} are read by column position, resolved once per
+ * batch and side, instead of looking each attribute up by name in every record. Plans are thread-safe.
+ */
+public final class ComparisonPlan {
+
+    private final ColumnComparator[] columns;
+    private final Map<String, TransformationPipeline[]> keyTransformations;
+    private final long definitionHash;
+    private final SideColumns sourceColumns;
+    private final SideColumns targetColumns;
+
+    private ComparisonPlan(ColumnComparator[] columns, Map<String, TransformationPipeline[]> keyTransformations,
+                           long definitionHash) {
+        this.columns = columns;
+        this.keyTransformations = keyTransformations;
+        this.definitionHash = definitionHash;
+        String[] sourceAttributes = new String[columns.length];
+        String[] targetAttributes = new String[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            sourceAttributes[i] = columns[i].sourceAttribute();
+            targetAttributes[i] = columns[i].targetAttribute();
+        }
+        this.sourceColumns = new SideColumns(sourceAttributes);
+        this.targetColumns = new SideColumns(targetAttributes);
+    }
+
+    public static ComparisonPlan compile(List<AttributeMapping> mappings, ReconciliationConfig config) {
+        List<ColumnComparator> columns = new ArrayList<>(mappings.size());
+        StringBuilder definition = new StringBuilder()
+                .append(config.getTrimWhitespace()).append('\0')
+                .append(config.getNullEqualsEmpty()).append('\0')
+                .append(config.getDateToleranceMinutes()).append('\0');
+        Map<String, TransformationPipeline[]> keyTransformations = new LinkedHashMap<>();
+        for (int slot = 0; slot < mappings.size(); slot++) {
+            AttributeMapping mapping = mappings.get(slot);
+            if (!Boolean.TRUE.equals(mapping.getIsEnabled())) {
+                continue;
+            }
+            if (Boolean.TRUE.equals(mapping.getIsKeyAttribute())) {
+                addKeyTransformation(keyTransformations, definition, mapping);
+            }
+            if (mapping.getComparisonType() == ComparisonType.IGNORE) {
+                continue;
+            }
+            columns.add(ColumnComparator.compile(slot, mapping, config));
+            appendDefinition(definition, slot, mapping);
+        }
+        return new ComparisonPlan(columns.toArray(new ColumnComparator[0]), keyTransformations,
+                ValueHashing.hashText(definition.toString()));
+    }
+
+    public ColumnComparator[] columns() {
+        return columns;
+    }
+
+    /**
+     * Normalized source value of the compared attribute at {@code column} of a record.
+     */
+    public Object sourceValue(int column, Map<String, Object> record) {
+        return columns[column].normalizeSource(sourceColumns.raw(column, record));
+    }
+
+    /**
+     * Normalized target value of the compared attribute at {@code column} of a record.
+     */
+    public Object targetValue(int column, Map<String, Object> record) {
+        return columns[column].normalizeTarget(targetColumns.raw(column, record));
+    }
+
+    /**
+     * Positions in a batch of the compared attributes of one side, -1 for attributes it does not have.
+     */
+    int[] columnIndexes(RecordBatch batch, boolean source) {
+        return (source ? sourceColumns : targetColumns).indexes(batch);
+    }
+
+    /**
+     * Hash of everything that decides comparison outcomes; changes whenever a compared mapping is edited,
+     * added or removed.
+     */
+    public long definitionHash() {
+        return definitionHash;
+    }
+
+    /**
+     * Encoder of the key attributes of one side, normalizing each value with the side's transformation of
+     * the key mapping of that attribute, if any.
+     */
+    public KeyEncoder keyEncoder(List<String> keyAttributes, boolean source) {
+        List<TransformationPipeline> transformations = new ArrayList<>(keyAttributes.size());
+        for (String attribute : keyAttributes) {
+            TransformationPipeline[] sides = keyTransformations.get(attribute);
+            transformations.add(sides == null ? TransformationPipeline.IDENTITY : sides[source ? 0 : 1]);
+        }
+        return new KeyEncoder(keyAttributes, transformations);
+    }
+
+    /**
+     * Whether key values are transformed before they are joined, so that keys can only be matched in the
+     * engine and not by the databases.
+     */
+    public boolean normalizesKeys() {
+        return !keyTransformations.isEmpty();
+    }
+
+    /**
+     * Whether records with equal raw key and compared attribute values are guaranteed to match.
+     */
+    public boolean rawEqualityMatches() {
+        for (ColumnComparator column : columns) {
+            if (!column.rawEqualityMatches()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compared attributes of one side, with their positions in the batch whose records were read last. Each
+     * thread may resolve positions of its own; a resolution is never modified once published.
+     */
+    private static final class SideColumns {
+        private final String[] attributes;
+        private volatile ResolvedColumns resolved;
+
+        SideColumns(String[] attributes) {
+            this.attributes = attributes;
+        }
+
+        Object raw(int column, Map<String, Object> record) {
+            if (record instanceof RecordBatch.RowView) {
+                RecordBatch.RowView row = (RecordBatch.RowView) record;
+                int index = indexes(row.batch())[column];
+                return index >= 0 ? row.batch().get(row.rowIndex(), index) : null;
+            }
+            return record.get(attributes[column]);
+        }
+
+        int[] indexes(RecordBatch batch) {
+            ResolvedColumns current = resolved;
+            if (current == null || current.batch != batch) {
+                int[] indexes = new int[attributes.length];
+                for (int i = 0; i < attributes.length; i++) {
+                    indexes[i] = batch.columnIndex(attributes[i]);
+                }
+                current = new ResolvedColumns(batch, indexes);
+                resolved = current;
+            }
+            return current.indexes;
+        }
+    }
+
+    private static final class ResolvedColumns {
+        final RecordBatch batch;
+        final int[] indexes;
+
+        ResolvedColumns(RecordBatch batch, int[] indexes) {
+            this.batch = batch;
+            this.indexes = indexes;
+        }
+    }
+
+    /**
+     * Key values are encoded under the source attribute name on both sides, so a key mapping normalizes the
+     * source values of that attribute with its source transformation and the target values with its target
+     * transformation. The first key mapping of an attribute wins.
+     */
+    private static void addKeyTransformation(Map<String, TransformationPipeline[]> keyTransformations,
+                                             StringBuilder definition, AttributeMapping mapping) {
+        TransformationPipeline source = TransformationPipeline.compile(mapping.getSourceAttribute(), mapping.getSourceTransformation());
+        TransformationPipeline target = TransformationPipeline.compile(mapping.getTargetAttribute(), mapping.getTargetTransformation());
+        if ((source.isIdentity() && target.isIdentity()) || keyTransformations.containsKey(mapping.getSourceAttribute())) {
+            return;
+        }
+        keyTransformations.put(mapping.getSourceAttribute(), new TransformationPipeline[]{source, target});
+        definition.append("key\0").append(mapping.getSourceAttribute()).append('\0')
+                .append(source.key()).append('\0').append(target.key()).append('\0');
+    }
+
+    private static void appendDefinition(StringBuilder definition, int slot, AttributeMapping mapping) {
+        Object[] fields = {
+                slot, mapping.getSourceAttribute(), mapping.getTargetAttribute(), mapping.getComparisonType(),
+                mapping.getToleranceValue(), mapping.getToleranceType(), mapping.getSourceTransformation(),
+                mapping.getTargetTransformation(), mapping.getTransformationExpression(),
+                mapping.getCustomValidationRule(), mapping.getFormatPattern()
+        };
+        for (Object field : fields) {
+            definition.append(field).append('\0');
+        }
+    }
+}
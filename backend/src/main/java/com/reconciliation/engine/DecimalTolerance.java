@@ -0,0 +1,97 @@
+package com.reconciliation.engine;
+
+import com.reconciliation.entity.AttributeMapping;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Tolerance of a {@code NUMERIC_TOLERANCE} attribute, checked exactly: in integer arithmetic on scaled
+ * longs, and with {@link BigDecimal} only where an intermediate result does not fit a long. An absolute
+ * tolerance bounds the distance of the two values, a percentage bounds it relative to the source value.
+ */
+final class DecimalTolerance {
+
+    private static final long NO_FIT = Long.MIN_VALUE;
+
+    private final boolean percentage;
+    // The absolute limit, or the fraction of the source value
+    private final BigDecimal tolerance;
+    // Absolute limit in units of 10^-scale, per scale that fits a long
+    private final long[] limits;
+    private final long fractionUnscaled;
+    private final int fractionScale;
+
+    private DecimalTolerance(boolean percentage, BigDecimal tolerance) {
+        this.percentage = percentage;
+        this.tolerance = tolerance;
+        this.limits = new long[ScaledDecimal.POWERS_OF_TEN.length];
+        if (!percentage) {
+            BigDecimal max = BigDecimal.valueOf(Long.MAX_VALUE);
+            for (int scale = 0; scale < limits.length; scale++) {
+                BigDecimal limit = tolerance.movePointRight(scale).setScale(0, RoundingMode.FLOOR);
+                limits[scale] = limit.compareTo(max) > 0 ? Long.MAX_VALUE : limit.longValue();
+            }
+        }
+        boolean compact = percentage && tolerance.unscaledValue().bitLength() < 64
+                && tolerance.scale() >= 0 && tolerance.scale() < ScaledDecimal.POWERS_OF_TEN.length;
+        this.fractionUnscaled = compact ? tolerance.unscaledValue().longValue() : NO_FIT;
+        this.fractionScale = compact ? tolerance.scale() : 0;
+    }
+
+    static DecimalTolerance of(AttributeMapping mapping) {
+        BigDecimal value = mapping.getToleranceValue() != null ?
+                BigDecimal.valueOf(mapping.getToleranceValue()) : BigDecimal.ZERO;
+        if ("PERCENTAGE".equalsIgnoreCase(mapping.getToleranceType())) {
+            return new DecimalTolerance(true, value.movePointLeft(2).abs());
+        }
+        return new DecimalTolerance(false, value);
+    }
+
+    /**
+     * Whether every value is within the tolerance of itself.
+     */
+    boolean acceptsEqual() {
+        return percentage || tolerance.signum() >= 0;
+    }
+
+    boolean matches(long sourceUnscaled, int sourceScale, long targetUnscaled, int targetScale) {
+        int scale = Math.max(sourceScale, targetScale);
+        long source = ScaledDecimal.rescale(sourceUnscaled, sourceScale, scale);
+        long target = ScaledDecimal.rescale(targetUnscaled, targetScale, scale);
+        long difference = source - target;
+        // The difference overflowed if the operands have different signs and the result the sign of the target
+        boolean fits = source != NO_FIT && target != NO_FIT
+                && ((source ^ target) & (source ^ difference)) >= 0 && difference != NO_FIT;
+        if (fits) {
+            long distance = Math.abs(difference);
+            if (!percentage) {
+                if (scale >= 0 && scale < limits.length) {
+                    return distance <= limits[scale];
+                }
+            } else if (fractionUnscaled != NO_FIT && source != NO_FIT) {
+                // |s - t| <= |s| * f / 10^fs, both sides multiplied by 10^fs
+                long left = multiply(distance, ScaledDecimal.POWERS_OF_TEN[fractionScale]);
+                long right = multiply(Math.abs(source), fractionUnscaled);
+                if (left != NO_FIT && right != NO_FIT) {
+                    return left <= right;
+                }
+            }
+        }
+        return matches(ScaledDecimal.toBigDecimal(sourceUnscaled, sourceScale),
+                ScaledDecimal.toBigDecimal(targetUnscaled, targetScale));
+    }
+
+    boolean matches(BigDecimal source, BigDecimal target) {
+        BigDecimal distance = source.subtract(target).abs();
+        return distance.compareTo(percentage ? source.multiply(tolerance).abs() : tolerance) <= 0;
+    }
+
+    /**
+     * Product of two non-negative longs, or {@link #NO_FIT}.
+     */
+    private static long multiply(long left, long right) {
+        long product = left * right;
+        return Math.multiplyHigh(left, right) == 0 && product >= 0 ? product : NO_FIT;
+    }
+}
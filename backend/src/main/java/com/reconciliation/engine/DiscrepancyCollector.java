@@ -0,0 +1,99 @@
+package com.reconciliation.engine;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the first {@code capacity} discrepancies of a run in a canonical order, independent of the order in
+ * which a join produces them. The order is defined by a sequence number built from the phase (source-driven
+ * outcomes first, then records missing in source), the record ordinal and the attribute slot, which is exactly
+ * the order the single-threaded in-memory comparison discovers them in.
+ * <p>
+ * A discrepancy is held as whatever the caller offers for it, typically a lightweight description from which
+ * the discrepancy is built once it is known to be retained: partitions of a run each keep up to
+ * {@code capacity} candidates, of which only {@code capacity} survive their merge.
+ *
+ * @param <T> what is held for each retained discrepancy
+ */
+public class DiscrepancyCollector<T> {
+
+    public static final int PHASE_SOURCE = 0;
+    public static final int PHASE_TARGET = 1;
+
+    private static final int SLOT_BITS = 10;
+    /**
+     * Slot of duplicate key outcomes, which are sequenced at the first record carrying the key, after
+     * that record's other outcomes.
+     */
+    public static final int SLOT_DUPLICATE = (1 << SLOT_BITS) - 1;
+    private static final long MAX_ORDINAL = (1L << (62 - SLOT_BITS)) - 1;
+
+    private final int capacity;
+    private final PriorityQueue<Candidate<T>> retained;
+
+    public DiscrepancyCollector(int capacity) {
+        this.capacity = Math.max(capacity, 0);
+        this.retained = new PriorityQueue<>(Math.max(1, Math.min(this.capacity, 1024)),
+                Comparator.comparingLong((Candidate<T> c) -> c.sequence).reversed());
+    }
+
+    /**
+     * Sequence number of an outcome; slot is the attribute mapping index for attribute mismatches, 0 otherwise.
+     */
+    public static long sequence(int phase, long ordinal, int slot) {
+        if (ordinal > MAX_ORDINAL || slot >= (1 << SLOT_BITS)) {
+            throw new IllegalArgumentException("Ordinal or attribute slot out of range: " + ordinal + "/" + slot);
+        }
+        return ((long) phase << 62) | (ordinal << SLOT_BITS) | slot;
+    }
+
+    /**
+     * Whether a discrepancy with this sequence would be retained; callers use it to avoid building
+     * discrepancies that would be discarded anyway.
+     */
+    public boolean accepts(long sequence) {
+        return retained.size() < capacity || (capacity > 0 && sequence < retained.peek().sequence);
+    }
+
+    public void offer(long sequence, T discrepancy) {
+        if (!accepts(sequence)) {
+            return;
+        }
+        if (retained.size() == capacity) {
+            retained.poll();
+        }
+        retained.add(new Candidate<>(sequence, discrepancy));
+    }
+
+    public void mergeFrom(DiscrepancyCollector<T> other) {
+        for (Candidate<T> candidate : other.retained) {
+            offer(candidate.sequence, candidate.discrepancy);
+        }
+    }
+
+    /**
+     * Retained discrepancies in canonical order. The collector is empty afterwards.
+     */
+    public List<T> drainInOrder() {
+        List<Candidate<T>> candidates = new ArrayList<>(retained);
+        retained.clear();
+        candidates.sort(Comparator.comparingLong(c -> c.sequence));
+        List<T> discrepancies = new ArrayList<>(candidates.size());
+        for (Candidate<T> candidate : candidates) {
+            discrepancies.add(candidate.discrepancy);
+        }
+        return discrepancies;
+    }
+
+    private static final class Candidate<T> {
+        final long sequence;
+        final T discrepancy;
+
+        Candidate(long sequence, T discrepancy) {
+            this.sequence = sequence;
+            this.discrepancy = discrepancy;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.reconciliation.engine;
+
+import com.reconciliation.exception.ReconciliationException;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.temporal.TemporalAccessor;
+import java.util.Date;
+
+/**
+ * Converts date and timestamp values to epoch milliseconds. Text is parsed with the mapping's format
+ * pattern, or as an ISO date with optional time and offset when there is none; the formatter is built once
+ * per mapping. Values without an offset are read in the JVM time zone, the zone JDBC drivers use for
+ * {@link java.sql.Timestamp}, so text and database timestamps of the same instant agree.
+ */
+final class EpochParser {
+
+    /** Marker for values without an epoch time: nulls, values that are not dates and unparseable text. */
+    static final long NO_EPOCH = Long.MIN_VALUE;
+
+    private static final DateTimeFormatter DEFAULT_FORMAT = new DateTimeFormatterBuilder()
+            .append(DateTimeFormatter.ISO_LOCAL_DATE)
+            .optionalStart()
+            .optionalStart().appendLiteral('T').optionalEnd()
+            .optionalStart().appendLiteral(' ').optionalEnd()
+            .append(DateTimeFormatter.ISO_LOCAL_TIME)
+            .optionalStart().appendOffsetId().optionalEnd()
+            .optionalEnd()
+            .toFormatter();
+
+    private final DateTimeFormatter formatter;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    private EpochParser(DateTimeFormatter formatter) {
+        this.formatter = formatter;
+    }
+
+    static EpochParser forPattern(String attribute, String pattern) {
+        if (pattern == null || pattern.isEmpty()) {
+            return new EpochParser(DEFAULT_FORMAT);
+        }
+        try {
+            return new EpochParser(DateTimeFormatter.ofPattern(pattern));
+        } catch (IllegalArgumentException e) {
+            throw new ReconciliationException("INVALID_MAPPING", "Invalid date format pattern for attribute "
+                    + attribute + ": " + e.getMessage());
+        }
+    }
+
+    long toEpochMillis(Object value) {
+        if (value instanceof Date) {
+            return ((Date) value).getTime();
+        }
+        if (value instanceof String) {
+            return parse((String) value);
+        }
+        if (value instanceof LocalDateTime) {
+            return ((LocalDateTime) value).atZone(zone).toInstant().toEpochMilli();
+        }
+        if (value instanceof LocalDate) {
+            return ((LocalDate) value).atStartOfDay(zone).toInstant().toEpochMilli();
+        }
+        if (value instanceof OffsetDateTime) {
+            return ((OffsetDateTime) value).toInstant().toEpochMilli();
+        }
+        if (value instanceof ZonedDateTime) {
+            return ((ZonedDateTime) value).toInstant().toEpochMilli();
+        }
+        if (value instanceof Instant) {
+            return ((Instant) value).toEpochMilli();
+        }
+        return NO_EPOCH;
+    }
+
+    private long parse(String text) {
+        try {
+            TemporalAccessor parsed = formatter.parseBest(text, ZonedDateTime::from, LocalDateTime::from, LocalDate::from);
+            if (parsed instanceof ZonedDateTime) {
+                return ((ZonedDateTime) parsed).toInstant().toEpochMilli();
+            }
+            if (parsed instanceof LocalDateTime) {
+                return ((LocalDateTime) parsed).atZone(zone).toInstant().toEpochMilli();
+            }
+            return ((LocalDate) parsed).atStartOfDay(zone).toInstant().toEpochMilli();
+        } catch (DateTimeException | ArithmeticException e) {
+            return NO_EPOCH;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.reconciliation.engine;
+
+/**
+ * Root object of mapping expressions. {@code src} and {@code tgt} are the values as numbers, NaN when a value
+ * is missing or not a number, and {@code srcText}/{@code tgtText} their text form. Getters return primitives
+ * where they can so that compiled expressions do arithmetic without boxing.
+ */
+public final class ExpressionOperands {
+
+    private final Object source;
+    private final Object target;
+    private double sourceNumber;
+    private double targetNumber;
+    private boolean sourceParsed;
+    private boolean targetParsed;
+
+    ExpressionOperands(Object source, Object target) {
+        this.source = source;
+        this.target = target;
+    }
+
+    public double getSrc() {
+        if (!sourceParsed) {
+            sourceNumber = toNumber(source);
+            sourceParsed = true;
+        }
+        return sourceNumber;
+    }
+
+    public double getTgt() {
+        if (!targetParsed) {
+            targetNumber = toNumber(target);
+            targetParsed = true;
+        }
+        return targetNumber;
+    }
+
+    public String getSrcText() {
+        return source == null ? null : source.toString();
+    }
+
+    public String getTgtText() {
+        return target == null ? null : target.toString();
+    }
+
+    public double abs(double value) {
+        return Math.abs(value);
+    }
+
+    private static double toNumber(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        if (value == null) {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(value.toString());
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.reconciliation.engine;
+
+import com.reconciliation.enums.ExtractionSliceMethod;
+import com.reconciliation.exception.ReconciliationException;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Split of a database query into slices that are extracted concurrently, each on its own connection. Hash
+ * slices select the rows whose {@code ORA_HASH} of the key attributes falls in their bucket. Key range slices
+ * select equal-width ranges of the first key attribute between its minimum and maximum; the first slice also
+ * takes null keys and keys below the range, the last keys above it. Either way each row of the query is in
+ * exactly one slice.
+ */
+public final class ExtractionSlicing {
+
+    public static final int MAX_SLICES = 64;
+
+    private final int count;
+    private final ExtractionSliceMethod method;
+
+    private ExtractionSlicing(int count, ExtractionSliceMethod method) {
+        this.count = count;
+        this.method = method;
+    }
+
+    /**
+     * Slicing for a configured number of slices, or null if the query is read on a single cursor (no count, or
+     * one slice).
+     */
+    public static ExtractionSlicing of(Integer slices, ExtractionSliceMethod method) {
+        if (slices == null || slices == 1) {
+            return null;
+        }
+        if (slices < 1 || slices > MAX_SLICES) {
+            throw new ReconciliationException("INVALID_CONFIG",
+                    "Extraction slices must be between 1 and " + MAX_SLICES + ": " + slices);
+        }
+        return new ExtractionSlicing(slices, method != null ? method : ExtractionSliceMethod.HASH);
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public ExtractionSliceMethod method() {
+        return method;
+    }
+
+    /**
+     * One slice per hash bucket of the key attributes, hashed in the database.
+     */
+    public List<Slice> hashSlices(String query, PushdownDialect dialect, List<String> keyAttributes) {
+        PushdownDialect.requireIdentifiers("INVALID_CONFIG", keyAttributes);
+        String hash = dialect.hash(keyAttributes);
+        List<Slice> slices = new ArrayList<>(count);
+        for (int bucket = 0; bucket < count; bucket++) {
+            slices.add(new Slice("SELECT q.* FROM (" + query + ") q WHERE MOD(" + hash + ", " + count + ") = " + bucket));
+        }
+        return slices;
+    }
+
+    /**
+     * Query for the minimum and maximum of the key attribute, the input of {@link #rangeSlices}.
+     */
+    public String boundsQuery(String query, String keyAttribute) {
+        PushdownDialect.requireIdentifiers("INVALID_CONFIG", Collections.singletonList(keyAttribute));
+        return "SELECT MIN(q." + keyAttribute + "), MAX(q." + keyAttribute + ") FROM (" + query + ") q";
+    }
+
+    /**
+     * Slices of equal-width key ranges between the bounds read with {@link #boundsQuery}. Ranges narrower
+     * than one unit of the bounds' scale are merged, so a small key range yields fewer slices.
+     */
+    public List<Slice> rangeSlices(String query, String keyAttribute, Object min, Object max) {
+        PushdownDialect.requireIdentifiers("INVALID_CONFIG", Collections.singletonList(keyAttribute));
+        if (min == null || max == null) {
+            // No keys, or only null keys
+            return Collections.singletonList(new Slice(query));
+        }
+        if (!(min instanceof Number) || !(max instanceof Number)) {
+            throw new ReconciliationException("INVALID_CONFIG",
+                    "Key range slicing needs a numeric key attribute: " + keyAttribute);
+        }
+        BigDecimal low = ScaledDecimal.toBigDecimal(min);
+        BigDecimal high = ScaledDecimal.toBigDecimal(max);
+        if (low == null || high == null) {
+            throw new ReconciliationException("INVALID_CONFIG",
+                    "Key range slicing needs finite bounds of " + keyAttribute + ": " + min + ", " + max);
+        }
+        int scale = Math.max(0, Math.max(low.scale(), high.scale()));
+        BigDecimal width = high.subtract(low);
+        List<BigDecimal> boundaries = new ArrayList<>(count - 1);
+        for (int i = 1; i < count; i++) {
+            BigDecimal boundary = low.add(width.multiply(BigDecimal.valueOf(i))
+                    .divide(BigDecimal.valueOf(count), scale, RoundingMode.FLOOR));
+            BigDecimal previous = boundaries.isEmpty() ? low : boundaries.get(boundaries.size() - 1);
+            if (boundary.compareTo(previous) > 0) {
+                boundaries.add(boundary);
+            }
+        }
+        if (boundaries.isEmpty()) {
+            return Collections.singletonList(new Slice(query));
+        }
+
+        String key = "q." + keyAttribute;
+        String select = "SELECT q.* FROM (" + query + ") q WHERE ";
+        List<Slice> slices = new ArrayList<>(boundaries.size() + 1);
+        slices.add(new Slice(select + "(" + key + " < ? OR " + key + " IS NULL)", boundaries.get(0)));
+        for (int i = 1; i < boundaries.size(); i++) {
+            slices.add(new Slice(select + key + " >= ? AND " + key + " < ?", boundaries.get(i - 1), boundaries.get(i)));
+        }
+        slices.add(new Slice(select + key + " >= ?", boundaries.get(boundaries.size() - 1)));
+        return slices;
+    }
+
+    /**
+     * A query with its bind arguments.
+     */
+    public static final class Slice {
+        private final String sql;
+        private final Object[] args;
+
+        Slice(String sql, Object... args) {
+            this.sql = sql;
+            this.args = args;
+        }
+
+        public String sql() {
+            return sql;
+        }
+
+        public Object[] args() {
+            return args;
+        }
+    }
+}
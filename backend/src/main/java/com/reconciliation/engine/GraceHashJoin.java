@@ -0,0 +1,282 @@
+package com.reconciliation.engine;
+
+import com.reconciliation.exception.ReconciliationException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Hash join with a bounded build side. Target records are indexed in heap until the memory budget is
+ * exceeded; from then on both sides are hash-partitioned by key into spill files and joined partition
+ * by partition. Partitions that still exceed the budget are re-partitioned with a different hash seed.
+ * Both sides are consumed in a single pass, the target first, so records read from cursors as the join asks
+ * for them are only held while they are in the hash table; records spilled to a partition are written as
+ * copies and read back one partition at a time.
+ */
+@Slf4j
+public class GraceHashJoin implements RecordJoin {
+
+    private static final int MAX_RECURSION_DEPTH = 3;
+    private static final int RESET_INTERVAL = 1000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path spillDirectory;
+    private final long memoryBudgetRecords;
+    private final int partitionCount;
+
+    public GraceHashJoin(Path spillDirectory, long memoryBudgetRecords, int partitionCount) {
+        if (memoryBudgetRecords <= 0 || partitionCount < 2) {
+            throw new IllegalArgumentException("Memory budget must be positive and partition count at least 2");
+        }
+        this.spillDirectory = spillDirectory;
+        this.memoryBudgetRecords = memoryBudgetRecords;
+        this.partitionCount = partitionCount;
+    }
+
+    @Override
+    public void join(Iterator<Map<String, Object>> sourceRecords,
+                     Iterator<Map<String, Object>> targetRecords,
+                     KeyEncoder sourceKey,
+                     KeyEncoder targetKey,
+                     RecordPairVisitor visitor) {
+        join(new IteratorCursor(sourceRecords), new IteratorCursor(targetRecords),
+                sourceKey, targetKey, visitor, 0);
+    }
+
+    private void join(RowCursor source, RowCursor target,
+                      KeyEncoder sourceKey,
+                      KeyEncoder targetKey,
+                      RecordPairVisitor visitor, int depth) {
+        HashJoinTable table = new HashJoinTable();
+        RecordKey key = new RecordKey();
+        boolean unbounded = depth >= MAX_RECURSION_DEPTH;
+
+        while (target.next()) {
+            targetKey.encode(target.record(), key);
+            table.add(key, target.ordinal(), target.record());
+            if (!unbounded && table.size() > memoryBudgetRecords) {
+                spillAndJoin(table, key, source, target, sourceKey, targetKey, visitor, depth);
+                return;
+            }
+        }
+        if (unbounded && table.size() > memoryBudgetRecords) {
+            log.warn("Hash partition of {} records exceeds memory budget after {} re-partitioning passes, joining in memory",
+                    table.size(), depth);
+        }
+
+        while (source.next()) {
+            sourceKey.encode(source.record(), key);
+            table.probe(key, source.ordinal(), source.record(), visitor);
+        }
+        table.sweepUnmatched(visitor);
+        table.reportDuplicates(visitor);
+    }
+
+    private void spillAndJoin(HashJoinTable table, RecordKey key, RowCursor source, RowCursor target,
+                              KeyEncoder sourceKey,
+                              KeyEncoder targetKey,
+                              RecordPairVisitor visitor, int depth) {
+        log.info("Target side exceeded memory budget of {} records, spilling to {} partitions (depth {})",
+                memoryBudgetRecords, partitionCount, depth);
+
+        SpillFile[] targetPartitions = new SpillFile[partitionCount];
+        SpillFile[] sourcePartitions = new SpillFile[partitionCount];
+        try {
+            for (int p = 0; p < partitionCount; p++) {
+                targetPartitions[p] = new SpillFile(spillDirectory, "target");
+            }
+            // Replaced records go first so that the last record of a key still wins in the partition
+            for (int repeat = 0; repeat < table.repeatedTargetCount(); repeat++) {
+                targetPartitions[partitionOf(table.hash(table.repeatedTargetEntry(repeat)), depth)]
+                        .write(table.repeatedTargetOrdinal(repeat), table.repeatedTargetRecord(repeat));
+            }
+            for (int entry = 0; entry < table.size(); entry++) {
+                targetPartitions[partitionOf(table.hash(entry), depth)]
+                        .write(table.ordinal(entry), table.record(entry));
+            }
+            table.clear();
+            while (target.next()) {
+                targetKey.encode(target.record(), key);
+                targetPartitions[partitionOf(key.hash(), depth)].write(target.ordinal(), target.record());
+            }
+            closeAll(targetPartitions);
+
+            for (int p = 0; p < partitionCount; p++) {
+                sourcePartitions[p] = new SpillFile(spillDirectory, "source");
+            }
+            while (source.next()) {
+                sourceKey.encode(source.record(), key);
+                sourcePartitions[partitionOf(key.hash(), depth)].write(source.ordinal(), source.record());
+            }
+            closeAll(sourcePartitions);
+
+            for (int p = 0; p < partitionCount; p++) {
+                try (SpillFile.Reader targetReader = targetPartitions[p].open();
+                     SpillFile.Reader sourceReader = sourcePartitions[p].open()) {
+                    join(sourceReader, targetReader, sourceKey, targetKey, visitor, depth + 1);
+                }
+                targetPartitions[p].delete();
+                sourcePartitions[p].delete();
+            }
+        } catch (IOException e) {
+            throw new ReconciliationException("Failed to spill comparison partitions: " + e.getMessage(), e);
+        } finally {
+            deleteAll(targetPartitions);
+            deleteAll(sourcePartitions);
+        }
+    }
+
+    private int partitionOf(long keyHash, int depth) {
+        return KeyPartitioner.partitionOf(keyHash, depth, partitionCount);
+    }
+
+    private static void closeAll(SpillFile[] files) throws IOException {
+        for (SpillFile file : files) {
+            if (file != null) {
+                file.closeWriter();
+            }
+        }
+    }
+
+    private static void deleteAll(SpillFile[] files) {
+        for (SpillFile file : files) {
+            if (file != null) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Forward-only view over records together with their original ordinal.
+     */
+    private interface RowCursor {
+        boolean next();
+
+        long ordinal();
+
+        Map<String, Object> record();
+    }
+
+    private static final class IteratorCursor implements RowCursor {
+        private final Iterator<Map<String, Object>> iterator;
+        private long ordinal = -1;
+        private Map<String, Object> record;
+
+        IteratorCursor(Iterator<Map<String, Object>> iterator) {
+            this.iterator = iterator;
+        }
+
+        @Override
+        public boolean next() {
+            if (!iterator.hasNext()) {
+                record = null;
+                return false;
+            }
+            record = iterator.next();
+            ordinal++;
+            return true;
+        }
+
+        @Override
+        public long ordinal() {
+            return ordinal;
+        }
+
+        @Override
+        public Map<String, Object> record() {
+            return record;
+        }
+    }
+
+    /**
+     * Append-only file of (ordinal, record) pairs written with Java serialization.
+     */
+    private static final class SpillFile {
+        private final Path path;
+        private ObjectOutputStream out;
+        private long count;
+
+        SpillFile(Path directory, String side) throws IOException {
+            Files.createDirectories(directory);
+            this.path = Files.createTempFile(directory, "recon-" + side + "-", ".spill");
+            this.out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(path), BUFFER_SIZE));
+        }
+
+        void write(long ordinal, Map<String, Object> record) throws IOException {
+            out.writeLong(ordinal);
+            out.writeObject(record);
+            // Drop the stream's back-reference table so written records can be garbage collected
+            if (++count % RESET_INTERVAL == 0) {
+                out.reset();
+            }
+        }
+
+        void closeWriter() throws IOException {
+            if (out != null) {
+                out.close();
+                out = null;
+            }
+        }
+
+        Reader open() throws IOException {
+            return new Reader(new ObjectInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE)), count);
+        }
+
+        void delete() {
+            try {
+                closeWriter();
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.warn("Failed to delete spill file {}", path, e);
+            }
+        }
+
+        private static final class Reader implements RowCursor, Closeable {
+            private final ObjectInputStream in;
+            private long remaining;
+            private long ordinal;
+            private Map<String, Object> record;
+
+            Reader(ObjectInputStream in, long count) {
+                this.in = in;
+                this.remaining = count;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public boolean next() {
+                if (remaining == 0) {
+                    record = null;
+                    return false;
+                }
+                try {
+                    ordinal = in.readLong();
+                    record = (Map<String, Object>) in.readObject();
+                    remaining--;
+                    return true;
+                } catch (IOException | ClassNotFoundException e) {
+                    throw new ReconciliationException("Failed to read spilled records: " + e.getMessage(), e);
+                }
+            }
+
+            @Override
+            public long ordinal() {
+                return ordinal;
+            }
+
+            @Override
+            public Map<String, Object> record() {
+                return record;
+            }
+
+            @Override
+            public void close() throws IOException {
+                in.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.reconciliation.engine;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * In-heap build side of a hash join: target records indexed by encoded key, probed by source records.
+ * The record of a repeated target key replaces the earlier one. Probed entries are tracked in a bitmap with
+ * one bit per entry, so the target records missing in the source are found by sweeping the bitmap rather
+ * than by keeping a set of the probed keys.
+ * <p>
+ * Duplicate detection costs one int per entry: the low 32 bits of the first source ordinal that probed it,
+ * read back only once the key repeats. Source keys without a target record are kept in an index of their
+ * own, so that they neither grow the target index nor show up in its sweep. Only the second and later
+ * occurrences of a key are kept aside.
+ */
+class HashJoinTable {
+
+    private final KeyIndex index = new KeyIndex();
+    private final KeyIndex sourceOnlyIndex = new KeyIndex();
+    private final RecordKey sweepKey = new RecordKey();
+    private long[] ordinals = new long[1024];
+    private Object[] records = new Object[1024];
+    private long[] matched = new long[1024 >>> 6];
+    private int[] firstSources = new int[1024];
+    private int[] sourceOnlyFirsts = new int[64];
+    private final Repeats targetRepeats = new Repeats(index);
+    private final Repeats sourceRepeats = new Repeats(index);
+    private final Repeats sourceOnlyRepeats = new Repeats(sourceOnlyIndex);
+
+    void add(RecordKey key, long ordinal, Map<String, Object> record) {
+        int entry = index.add(key);
+        if (entry < 0) {
+            entry = -(entry + 1);
+            targetRepeats.add(entry, ordinals[entry], record(entry));
+        } else if (entry == ordinals.length) {
+            ordinals = Arrays.copyOf(ordinals, entry * 2);
+            records = Arrays.copyOf(records, entry * 2);
+            matched = Arrays.copyOf(matched, (entry * 2) >>> 6);
+            firstSources = Arrays.copyOf(firstSources, entry * 2);
+        }
+        ordinals[entry] = ordinal;
+        records[entry] = record;
+    }
+
+    int size() {
+        return index.size();
+    }
+
+    long hash(int entry) {
+        return index.hash(entry);
+    }
+
+    long ordinal(int entry) {
+        return ordinals[entry];
+    }
+
+    @SuppressWarnings("unchecked")
+    Map<String, Object> record(int entry) {
+        return (Map<String, Object>) records[entry];
+    }
+
+    /**
+     * Target records replaced by a later record with the same key, in the order they were added. Spilling
+     * writes them ahead of the entries so that a rebuilt table pairs the same records.
+     */
+    int repeatedTargetCount() {
+        return targetRepeats.size;
+    }
+
+    int repeatedTargetEntry(int repeat) {
+        return targetRepeats.entries[repeat];
+    }
+
+    long repeatedTargetOrdinal(int repeat) {
+        return targetRepeats.ordinals[repeat];
+    }
+
+    @SuppressWarnings("unchecked")
+    Map<String, Object> repeatedTargetRecord(int repeat) {
+        return (Map<String, Object>) targetRepeats.records[repeat];
+    }
+
+    void probe(RecordKey key, long ordinal, Map<String, Object> sourceRecord, RecordPairVisitor visitor) {
+        int entry = index.find(key);
+        if (entry < 0) {
+            addSourceOnly(key, ordinal);
+            visitor.onMissingInTarget(key, ordinal, sourceRecord);
+            return;
+        }
+        long bit = 1L << entry;
+        if ((matched[entry >>> 6] & bit) == 0) {
+            matched[entry >>> 6] |= bit;
+            firstSources[entry] = (int) ordinal;
+        } else {
+            sourceRepeats.add(entry, ordinal, null);
+        }
+        visitor.onMatched(key, ordinal, ordinals[entry], sourceRecord, record(entry));
+    }
+
+    void sweepUnmatched(RecordPairVisitor visitor) {
+        int size = index.size();
+        for (int word = 0; word << 6 < size; word++) {
+            long unmatched = ~matched[word];
+            while (unmatched != 0) {
+                int entry = (word << 6) + Long.numberOfTrailingZeros(unmatched);
+                if (entry >= size) {
+                    break;
+                }
+                index.loadKey(entry, sweepKey);
+                visitor.onMissingInSource(sweepKey, ordinals[entry], record(entry));
+                unmatched &= unmatched - 1;
+            }
+        }
+    }
+
+    /**
+     * Reports every key seen more than once on either side, with the ordinals of all its records.
+     */
+    void reportDuplicates(RecordPairVisitor visitor) {
+        targetRepeats.report(false, visitor, (entry, later) -> ordinals[entry]);
+        sourceRepeats.report(true, visitor, (entry, later) -> firstOrdinal(firstSources[entry], later));
+        sourceOnlyRepeats.report(true, visitor, (entry, later) -> firstOrdinal(sourceOnlyFirsts[entry], later));
+    }
+
+    void clear() {
+        Arrays.fill(records, 0, index.size(), null);
+        Arrays.fill(matched, 0, (index.size() + 63) >>> 6, 0L);
+        targetRepeats.clear();
+        sourceRepeats.clear();
+        sourceOnlyRepeats.clear();
+        index.clear();
+        sourceOnlyIndex.clear();
+    }
+
+    private void addSourceOnly(RecordKey key, long ordinal) {
+        int entry = sourceOnlyIndex.add(key);
+        if (entry < 0) {
+            sourceOnlyRepeats.add(-(entry + 1), ordinal, null);
+            return;
+        }
+        if (entry == sourceOnlyFirsts.length) {
+            sourceOnlyFirsts = Arrays.copyOf(sourceOnlyFirsts, entry * 2);
+        }
+        sourceOnlyFirsts[entry] = (int) ordinal;
+    }
+
+    /**
+     * Full ordinal of a first occurrence from its low 32 bits and the ordinal of a later occurrence, which
+     * is exact as long as fewer than 2^32 records lie between the two.
+     */
+    private static long firstOrdinal(int lowBits, long laterOrdinal) {
+        return laterOrdinal - (((int) laterOrdinal - lowBits) & 0xFFFFFFFFL);
+    }
+
+    @FunctionalInterface
+    private interface FirstOrdinal {
+        long of(int entry, long laterOrdinal);
+    }
+
+    /**
+     * Second and later occurrences of keys on one side, as parallel arrays in the order they were seen.
+     */
+    private static final class Repeats {
+        private final KeyIndex keys;
+        private final RecordKey key = new RecordKey();
+        private int[] entries = new int[16];
+        private long[] ordinals = new long[16];
+        private Object[] records = new Object[16];
+        private int size;
+
+        Repeats(KeyIndex keys) {
+            this.keys = keys;
+        }
+
+        void add(int entry, long ordinal, Object record) {
+            if (size == entries.length) {
+                entries = Arrays.copyOf(entries, size * 2);
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+                records = Arrays.copyOf(records, size * 2);
+            }
+            entries[size] = entry;
+            ordinals[size] = ordinal;
+            records[size] = record;
+            size++;
+        }
+
+        /**
+         * Reports the repeats of every key together with its remaining occurrence: the first source record,
+         * or the target record that replaced all the repeats.
+         */
+        void report(boolean source, RecordPairVisitor visitor, FirstOrdinal first) {
+            if (size == 0) {
+                return;
+            }
+            // Entry in the high bits and position in the low bits groups the repeats by key in the order seen
+            long[] byEntry = new long[size];
+            for (int i = 0; i < size; i++) {
+                byEntry[i] = ((long) entries[i] << 32) | i;
+            }
+            Arrays.sort(byEntry);
+            int start = 0;
+            while (start < size) {
+                int entry = (int) (byEntry[start] >>> 32);
+                int end = start + 1;
+                while (end < size && (int) (byEntry[end] >>> 32) == entry) {
+                    end++;
+                }
+                long[] keyOrdinals = new long[end - start + 1];
+                for (int i = start; i < end; i++) {
+                    keyOrdinals[i - start] = ordinals[(int) byEntry[i]];
+                }
+                keyOrdinals[end - start] = first.of(entry, keyOrdinals[0]);
+                Arrays.sort(keyOrdinals);
+                keys.loadKey(entry, key);
+                visitor.onDuplicateKey(key, source, keyOrdinals);
+                start = end;
+            }
+        }
+
+        void clear() {
+            Arrays.fill(records, 0, size, null);
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.reconciliation.engine;
+
+import com.reconciliation.exception.ReconciliationException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Merkle-style reconciliation over ranges of the key hash space. Both databases hash every row of their query
+ * and return, per sub-range of a key hash range, the row count and the sum of the row hashes. Ranges whose
+ * aggregates agree hold the same rows on both sides and are counted as matched without leaving the database;
+ * ranges that differ are split further until they are small enough, and only their rows are extracted for
+ * the regular record comparison.
+ *
+ * <p>Rows are compared by the text the database renders for the key and compared attributes, so this is
+ * only applicable when equal raw values are guaranteed to match, see {@link ComparisonPlan#rawEqualityMatches()}.
+ */
+@Slf4j
+public final class HashRangeReconciler {
+
+    /** Leaf ranges OR-ed into one extraction query. */
+    private static final int RANGES_PER_EXTRACT = 64;
+
+    private final int fanout;
+    private final long leafRows;
+    private final int maxDepth;
+    private final String keyHash;
+    private final String sourceRowHash;
+    private final String targetRowHash;
+
+    public HashRangeReconciler(PushdownDialect dialect, List<String> keyAttributes, ComparisonPlan plan,
+                               int fanout, long leafRows, int maxDepth) {
+        if (fanout < 2 || maxDepth < 1) {
+            throw new ReconciliationException("HASH_RANGE_UNSUPPORTED", "Fanout must be at least 2 and depth at least 1");
+        }
+        if (!plan.rawEqualityMatches()) {
+            throw new ReconciliationException("HASH_RANGE_UNSUPPORTED",
+                    "Attribute mappings use transformations or comparisons that equal raw values may fail");
+        }
+        List<String> sourceColumns = new ArrayList<>(keyAttributes);
+        List<String> targetColumns = new ArrayList<>(keyAttributes);
+        for (ColumnComparator column : plan.columns()) {
+            sourceColumns.add(column.sourceAttribute());
+            targetColumns.add(column.targetAttribute());
+        }
+        PushdownDialect.requireIdentifiers("HASH_RANGE_UNSUPPORTED", sourceColumns);
+        PushdownDialect.requireIdentifiers("HASH_RANGE_UNSUPPORTED", targetColumns);
+
+        this.fanout = fanout;
+        this.leafRows = leafRows;
+        this.maxDepth = maxDepth;
+        this.keyHash = dialect.hash(keyAttributes);
+        this.sourceRowHash = dialect.hash(sourceColumns);
+        this.targetRowHash = dialect.hash(targetColumns);
+    }
+
+    /**
+     * Compares both queries range by range and extracts the rows of the ranges that differ.
+     */
+    public PushdownResult reconcile(String sourceQuery, SqlSource source, String targetQuery, SqlSource target) {
+        List<long[]> ranges = new ArrayList<>();
+        ranges.add(new long[]{0, PushdownDialect.HASH_SPACE});
+        List<long[]> leaves = new ArrayList<>();
+        long sourceRows = 0;
+        long targetRows = 0;
+        long matchedRows = 0;
+        int queries = 0;
+
+        for (int depth = 1; !ranges.isEmpty(); depth++) {
+            List<long[]> next = new ArrayList<>();
+            for (long[] range : ranges) {
+                long[][] sourceBuckets = aggregate(source, sourceQuery, sourceRowHash, range);
+                long[][] targetBuckets = aggregate(target, targetQuery, targetRowHash, range);
+                queries += 2;
+                for (int bucket = 0; bucket < fanout; bucket++) {
+                    long sourceCount = sourceBuckets[bucket][0];
+                    long targetCount = targetBuckets[bucket][0];
+                    if (depth == 1) {
+                        sourceRows += sourceCount;
+                        targetRows += targetCount;
+                    }
+                    if (sourceCount == targetCount && sourceBuckets[bucket][1] == targetBuckets[bucket][1]) {
+                        matchedRows += sourceCount;
+                        continue;
+                    }
+                    long[] subRange = subRange(range, bucket);
+                    if (depth >= maxDepth || Math.max(sourceCount, targetCount) <= leafRows
+                            || subRange[1] - subRange[0] <= fanout) {
+                        leaves.add(subRange);
+                    } else {
+                        next.add(subRange);
+                    }
+                }
+            }
+            ranges = next;
+        }
+
+        RecordBatch sourceBatch = extract(source, sourceQuery, leaves);
+        RecordBatch targetBatch = extract(target, targetQuery, leaves);
+        queries += 2 * ((leaves.size() + RANGES_PER_EXTRACT - 1) / RANGES_PER_EXTRACT);
+        log.debug("Hash range reconciliation: {} differing ranges, {} queries", leaves.size(), queries);
+        return new PushdownResult(sourceBatch, targetBatch, sourceRows, targetRows, matchedRows);
+    }
+
+    /**
+     * Splits a range into {@code fanout} buckets the same way the generated SQL assigns them.
+     */
+    long[] subRange(long[] range, int bucket) {
+        long width = range[1] - range[0];
+        return new long[]{
+                range[0] + ceilDiv(bucket * width, fanout),
+                range[0] + ceilDiv((bucket + 1) * width, fanout)
+        };
+    }
+
+    /**
+     * Count and hash sum per bucket of a range; buckets without rows stay zero on both sides.
+     */
+    private long[][] aggregate(SqlSource side, String query, String rowHash, long[] range) {
+        long low = range[0];
+        long width = range[1] - range[0];
+        String bucket = "FLOOR((h.kh - " + low + ") * " + fanout + " / " + width + ")";
+        String sql = "SELECT " + bucket + " AS bucket, COUNT(*) AS row_count, SUM(h.rh) AS row_hash"
+                + " FROM (SELECT " + keyHash + " AS kh, " + rowHash + " AS rh FROM (" + query + ") q) h"
+                + " WHERE h.kh >= " + low + " AND h.kh < " + range[1]
+                + " GROUP BY " + bucket;
+        long[][] buckets = new long[fanout][2];
+        side.query(sql, rs -> {
+            int index = rs.getInt(1);
+            buckets[index][0] = rs.getLong(2);
+            buckets[index][1] = rs.getBigDecimal(3).longValue();
+        });
+        return buckets;
+    }
+
+    private RecordBatch extract(SqlSource side, String query, List<long[]> leaves) {
+        RecordBatch.Builder rows = RecordBatch.builder(Collections.emptyList(), true);
+        for (int from = 0; from < leaves.size(); from += RANGES_PER_EXTRACT) {
+            StringBuilder sql = new StringBuilder("SELECT q.* FROM (").append(query).append(") q WHERE ");
+            List<long[]> chunk = leaves.subList(from, Math.min(leaves.size(), from + RANGES_PER_EXTRACT));
+            for (int i = 0; i < chunk.size(); i++) {
+                if (i > 0) {
+                    sql.append(" OR ");
+                }
+                sql.append('(').append(keyHash).append(" >= ").append(chunk.get(i)[0])
+                        .append(" AND ").append(keyHash).append(" < ").append(chunk.get(i)[1]).append(')');
+            }
+            side.extract(sql.toString(), rows);
+        }
+        return rows.build();
+    }
+
+    private static long ceilDiv(long dividend, long divisor) {
+        return -Math.floorDiv(-dividend, divisor);
+    }
+}
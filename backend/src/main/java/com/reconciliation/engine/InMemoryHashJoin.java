@@ -0,0 +1,36 @@
+package com.reconciliation.engine;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Classic hash join: the whole target side is indexed in heap and probed with the source side.
+ */
+public class InMemoryHashJoin implements RecordJoin {
+
+    @Override
+    public void join(Iterator<Map<String, Object>> sourceRecords,
+                     Iterator<Map<String, Object>> targetRecords,
+                     KeyEncoder sourceKey,
+                     KeyEncoder targetKey,
+                     RecordPairVisitor visitor) {
+        HashJoinTable table = new HashJoinTable();
+        RecordKey key = new RecordKey();
+        long ordinal = 0;
+        while (targetRecords.hasNext()) {
+            Map<String, Object> record = targetRecords.next();
+            targetKey.encode(record, key);
+            table.add(key, ordinal++, record);
+        }
+
+        ordinal = 0;
+        while (sourceRecords.hasNext()) {
+            Map<String, Object> record = sourceRecords.next();
+            sourceKey.encode(record, key);
+            table.probe(key, ordinal++, record, visitor);
+        }
+
+        table.sweepUnmatched(visitor);
+        table.reportDuplicates(visitor);
+    }
+}
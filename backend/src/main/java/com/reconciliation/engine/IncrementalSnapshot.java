@@ -0,0 +1,227 @@
+package com.reconciliation.engine;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Per-configuration state of an incremental reconciliation: for every record key hash, the digest of the
+ * source and target row and whether the pair matched. A snapshot of the current run is built from the
+ * extracted rows, pairs whose digests are unchanged since a previous matching outcome are carried forward
+ * without being compared, and the snapshot is persisted for the next run.
+ *
+ * <p>Keys that occur more than once on a side are never carried forward. Snapshots are bound to the
+ * comparison definition they were produced with and are ignored once it changes.
+ */
+@Slf4j
+public final class IncrementalSnapshot {
+
+    private static final int MAGIC = 0x52434E53;
+    private static final int FORMAT_VERSION = 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final byte SOURCE_PRESENT = 1;
+    private static final byte TARGET_PRESENT = 1 << 1;
+    private static final byte SOURCE_DUPLICATE = 1 << 2;
+    private static final byte TARGET_DUPLICATE = 1 << 3;
+    private static final byte MATCHED = 1 << 4;
+
+    private final long definitionVersion;
+    private final LongHashIndex index;
+    private long[] sourceDigests;
+    private long[] targetDigests;
+    private byte[] flags;
+
+    private IncrementalSnapshot(long definitionVersion, int expectedSize) {
+        this.definitionVersion = definitionVersion;
+        this.index = new LongHashIndex(expectedSize);
+        this.sourceDigests = new long[Math.max(16, expectedSize)];
+        this.targetDigests = new long[sourceDigests.length];
+        this.flags = new byte[sourceDigests.length];
+    }
+
+    /**
+     * Version of the comparison definition a snapshot is valid for.
+     */
+    public static long definitionVersion(ComparisonPlan plan, KeyEncoder keyEncoder) {
+        return ValueHashing.mix(plan.definitionHash(), ValueHashing.hashText(String.join("\0", keyEncoder.attributes())));
+    }
+
+    /**
+     * Key hash of every row of a batch.
+     */
+    public static long[] keyHashes(RecordBatch batch, KeyEncoder encoder) {
+        long[] hashes = new long[batch.size()];
+        RecordKey key = new RecordKey();
+        Iterator<Map<String, Object>> rows = batch.rows();
+        for (int row = 0; rows.hasNext(); row++) {
+            encoder.encode(rows.next(), key);
+            hashes[row] = key.hash();
+        }
+        return hashes;
+    }
+
+    /**
+     * Digest of the raw compared attribute values of every row of a batch.
+     */
+    public static long[] rowDigests(RecordBatch batch, ComparisonPlan plan, boolean source) {
+        long[] digests = new long[batch.size()];
+        for (ColumnComparator column : plan.columns()) {
+            int index = batch.columnIndex(source ? column.sourceAttribute() : column.targetAttribute());
+            for (int row = 0; row < digests.length; row++) {
+                Object value = index >= 0 ? batch.get(row, index) : null;
+                long hash = value == null ? ValueHashing.NULL_HASH : ValueHashing.hashEquality(value);
+                digests[row] = ValueHashing.mix(digests[row], hash);
+            }
+        }
+        return digests;
+    }
+
+    /**
+     * Snapshot of the current run, before any outcome is known.
+     */
+    public static IncrementalSnapshot of(long definitionVersion,
+                                         long[] sourceKeyHashes, long[] sourceDigests,
+                                         long[] targetKeyHashes, long[] targetDigests) {
+        IncrementalSnapshot snapshot = new IncrementalSnapshot(definitionVersion,
+                Math.max(sourceKeyHashes.length, targetKeyHashes.length));
+        for (int row = 0; row < sourceKeyHashes.length; row++) {
+            int entry = snapshot.entryFor(sourceKeyHashes[row]);
+            snapshot.flags[entry] |= (snapshot.flags[entry] & SOURCE_PRESENT) != 0 ? SOURCE_DUPLICATE : SOURCE_PRESENT;
+            snapshot.sourceDigests[entry] = sourceDigests[row];
+        }
+        for (int row = 0; row < targetKeyHashes.length; row++) {
+            int entry = snapshot.entryFor(targetKeyHashes[row]);
+            snapshot.flags[entry] |= (snapshot.flags[entry] & TARGET_PRESENT) != 0 ? TARGET_DUPLICATE : TARGET_PRESENT;
+            snapshot.targetDigests[entry] = targetDigests[row];
+        }
+        return snapshot;
+    }
+
+    /**
+     * Marks every key whose source and target rows are unchanged since they last matched as matched, and
+     * returns the number of such pairs.
+     */
+    public long carryForward(IncrementalSnapshot previous) {
+        if (previous == null || previous.definitionVersion != definitionVersion) {
+            return 0;
+        }
+        long carried = 0;
+        for (int entry = 0; entry < index.size(); entry++) {
+            if (flags[entry] != (SOURCE_PRESENT | TARGET_PRESENT)) {
+                continue;
+            }
+            int old = previous.index.find(index.key(entry));
+            if (old >= 0 && previous.flags[old] == (SOURCE_PRESENT | TARGET_PRESENT | MATCHED)
+                    && previous.sourceDigests[old] == sourceDigests[entry]
+                    && previous.targetDigests[old] == targetDigests[entry]) {
+                flags[entry] |= MATCHED;
+                carried++;
+            }
+        }
+        return carried;
+    }
+
+    /**
+     * Rows that still have to be compared, i.e. whose key was not carried forward.
+     */
+    public int[] rowsToCompare(long[] keyHashes) {
+        int[] rows = new int[keyHashes.length];
+        int count = 0;
+        for (int row = 0; row < keyHashes.length; row++) {
+            if ((flags[index.find(keyHashes[row])] & MATCHED) == 0) {
+                rows[count++] = row;
+            }
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    /**
+     * Records that a compared pair matched; ignored for keys that are duplicated on either side.
+     */
+    public void markMatched(long keyHash) {
+        int entry = index.find(keyHash);
+        if (entry >= 0 && flags[entry] == (SOURCE_PRESENT | TARGET_PRESENT)) {
+            flags[entry] |= MATCHED;
+        }
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Reads a snapshot; returns null if there is none, or if it was written for another definition version.
+     */
+    public static IncrementalSnapshot read(Path file, long definitionVersion) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                log.warn("Ignoring incremental snapshot {} with unknown format", file);
+                return null;
+            }
+            if (in.readLong() != definitionVersion) {
+                log.info("Ignoring incremental snapshot {}: attribute mappings or key attributes changed", file);
+                return null;
+            }
+            int size = in.readInt();
+            IncrementalSnapshot snapshot = new IncrementalSnapshot(definitionVersion, size);
+            for (int i = 0; i < size; i++) {
+                int entry = snapshot.entryFor(in.readLong());
+                snapshot.sourceDigests[entry] = in.readLong();
+                snapshot.targetDigests[entry] = in.readLong();
+                snapshot.flags[entry] = in.readByte();
+            }
+            return snapshot;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable incremental snapshot {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes the snapshot, replacing the previous one atomically.
+     */
+    public void write(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), BUFFER_SIZE))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(definitionVersion);
+                out.writeInt(index.size());
+                for (int entry = 0; entry < index.size(); entry++) {
+                    out.writeLong(index.key(entry));
+                    out.writeLong(sourceDigests[entry]);
+                    out.writeLong(targetDigests[entry]);
+                    out.writeByte(flags[entry]);
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private int entryFor(long keyHash) {
+        int entry = index.add(keyHash);
+        if (entry < 0) {
+            return -(entry + 1);
+        }
+        if (entry == flags.length) {
+            sourceDigests = Arrays.copyOf(sourceDigests, entry * 2);
+            targetDigests = Arrays.copyOf(targetDigests, entry * 2);
+            flags = Arrays.copyOf(flags, entry * 2);
+        }
+        return entry;
+    }
+}
@@ -0,0 +1,111 @@
+package com.reconciliation.engine;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes the key attributes of a record into a {@link RecordKey}. Attribute names are resolved once per
+ * run, and once per batch to column positions for records read from a {@link RecordBatch}, whose whole-number
+ * and dictionary-encoded columns are encoded without boxing or building strings, unless the attribute is
+ * normalized by a {@link TransformationPipeline}. Encoders are thread-safe; every thread encodes into its own
+ * {@link RecordKey}.
+ */
+public final class KeyEncoder {
+
+    private final String[] attributes;
+    private final TransformationPipeline[] transformations;
+    private volatile ResolvedColumns resolved;
+
+    public KeyEncoder(List<String> keyAttributes) {
+        this(keyAttributes, Collections.nCopies(keyAttributes.size(), TransformationPipeline.IDENTITY));
+    }
+
+    /**
+     * @param transformations transformation applied to the value of each key attribute before encoding
+     */
+    public KeyEncoder(List<String> keyAttributes, List<TransformationPipeline> transformations) {
+        if (keyAttributes.isEmpty()) {
+            throw new IllegalArgumentException("At least one key attribute is required");
+        }
+        if (transformations.size() != keyAttributes.size()) {
+            throw new IllegalArgumentException("One transformation per key attribute is required");
+        }
+        this.attributes = keyAttributes.toArray(new String[0]);
+        this.transformations = transformations.toArray(new TransformationPipeline[0]);
+    }
+
+    public List<String> attributes() {
+        return Collections.unmodifiableList(Arrays.asList(attributes));
+    }
+
+    public void encode(Map<String, Object> record, RecordKey key) {
+        key.reset();
+        if (record instanceof RecordBatch.RowView) {
+            RecordBatch.RowView row = (RecordBatch.RowView) record;
+            encodeRow(row.batch(), row.rowIndex(), key);
+        } else {
+            for (int i = 0; i < attributes.length; i++) {
+                append(transformations[i].apply(record.get(attributes[i])), key);
+            }
+        }
+        key.finish();
+    }
+
+    private void encodeRow(RecordBatch batch, int row, RecordKey key) {
+        int[] columns = columnsOf(batch);
+        for (int i = 0; i < columns.length; i++) {
+            int column = columns[i];
+            if (column < 0) {
+                key.appendNull();
+                continue;
+            }
+            ColumnVector vector = batch.column(column);
+            if (vector.isNull(row)) {
+                key.appendNull();
+            } else if (!transformations[i].isIdentity()) {
+                append(transformations[i].apply(vector.get(row)), key);
+            } else if (vector instanceof ColumnVector.LongVector) {
+                key.appendLong(((ColumnVector.LongVector) vector).getLong(row));
+            } else {
+                append(vector.get(row), key);
+            }
+        }
+    }
+
+    private int[] columnsOf(RecordBatch batch) {
+        ResolvedColumns current = resolved;
+        if (current == null || current.batch != batch) {
+            int[] columns = new int[attributes.length];
+            for (int i = 0; i < attributes.length; i++) {
+                columns[i] = batch.columnIndex(attributes[i]);
+            }
+            current = new ResolvedColumns(batch, columns);
+            resolved = current;
+        }
+        return current.columns;
+    }
+
+    private static void append(Object value, RecordKey key) {
+        if (value == null) {
+            key.appendNull();
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            key.appendLong(((Number) value).longValue());
+        } else if (value instanceof CharSequence) {
+            key.appendText((CharSequence) value);
+        } else {
+            key.appendText(value.toString());
+        }
+    }
+
+    private static final class ResolvedColumns {
+        final RecordBatch batch;
+        final int[] columns;
+
+        ResolvedColumns(RecordBatch batch, int[] columns) {
+            this.batch = batch;
+            this.columns = columns;
+        }
+    }
+}
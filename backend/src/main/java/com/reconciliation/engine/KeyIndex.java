@@ -0,0 +1,122 @@
+package com.reconciliation.engine;
+
+import com.reconciliation.exception.ReconciliationException;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash index from encoded record keys to dense entry ids, assigned in insertion order.
+ * Key bytes are appended to a single arena and slots hold only entry ids, so an indexed key costs its
+ * encoded length plus a few primitive array cells instead of a String and a map node.
+ */
+final class KeyIndex {
+
+    private static final int EMPTY = -1;
+    private static final int INITIAL_SLOTS = 1024;
+    private static final int MAX_ARENA_SIZE = Integer.MAX_VALUE - 8;
+
+    private int[] slots;
+    private int mask;
+    private int size;
+
+    private byte[] arena = new byte[16 * 1024];
+    private int[] keyOffsets = new int[INITIAL_SLOTS + 1];
+    private long[] keyHashes = new long[INITIAL_SLOTS];
+
+    KeyIndex() {
+        allocateSlots(INITIAL_SLOTS);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Entry id of the key, or -1 if it is not indexed.
+     */
+    int find(RecordKey key) {
+        long hash = key.hash();
+        for (int slot = (int) hash & mask; ; slot = (slot + 1) & mask) {
+            int entry = slots[slot];
+            if (entry == EMPTY) {
+                return -1;
+            }
+            if (keyHashes[entry] == hash && key.contentEquals(arena, keyOffsets[entry], keyLength(entry))) {
+                return entry;
+            }
+        }
+    }
+
+    /**
+     * Indexes the key. Returns the id of the new entry, or {@code -(id + 1)} if the key was already indexed.
+     */
+    int add(RecordKey key) {
+        long hash = key.hash();
+        int slot = (int) hash & mask;
+        for (; slots[slot] != EMPTY; slot = (slot + 1) & mask) {
+            int entry = slots[slot];
+            if (keyHashes[entry] == hash && key.contentEquals(arena, keyOffsets[entry], keyLength(entry))) {
+                return -(entry + 1);
+            }
+        }
+
+        int entry = size;
+        appendKey(entry, key);
+        slots[slot] = entry;
+        size++;
+        if (size * 3L > slots.length * 2L) {
+            allocateSlots(slots.length * 2);
+        }
+        return entry;
+    }
+
+    long hash(int entry) {
+        return keyHashes[entry];
+    }
+
+    void loadKey(int entry, RecordKey into) {
+        into.load(arena, keyOffsets[entry], keyLength(entry), keyHashes[entry]);
+    }
+
+    void clear() {
+        Arrays.fill(slots, EMPTY);
+        size = 0;
+        keyOffsets[0] = 0;
+    }
+
+    private int keyLength(int entry) {
+        return keyOffsets[entry + 1] - keyOffsets[entry];
+    }
+
+    private void appendKey(int entry, RecordKey key) {
+        if (entry == keyHashes.length) {
+            keyHashes = Arrays.copyOf(keyHashes, entry * 2);
+            keyOffsets = Arrays.copyOf(keyOffsets, entry * 2 + 1);
+        }
+        int offset = keyOffsets[entry];
+        long required = (long) offset + key.length();
+        if (required > MAX_ARENA_SIZE) {
+            throw new ReconciliationException("KEY_INDEX_FULL",
+                    "Encoded keys exceed the maximum key index size; use a spilling comparison strategy");
+        }
+        if (required > arena.length) {
+            arena = Arrays.copyOf(arena, (int) Math.min(MAX_ARENA_SIZE, Math.max(required, arena.length * 2L)));
+        }
+        System.arraycopy(key.bytes(), 0, arena, offset, key.length());
+        keyOffsets[entry + 1] = (int) required;
+        keyHashes[entry] = key.hash();
+    }
+
+    private void allocateSlots(int capacity) {
+        slots = new int[capacity];
+        Arrays.fill(slots, EMPTY);
+        mask = capacity - 1;
+        for (int entry = 0; entry < size; entry++) {
+            int slot = (int) keyHashes[entry] & mask;
+            while (slots[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = entry;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.reconciliation.engine;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Reads the records of given keys from a database query, for the counterparts of records that changed on
+ * the other side only. Keys are compared by the text of their raw values, and records with a null key value
+ * are not looked up.
+ */
+public final class KeyLookup {
+
+    /** Keys per IN list; Oracle allows at most 1000 list elements. */
+    private static final int KEYS_PER_QUERY = 1000;
+
+    private final List<String> keyAttributes;
+
+    public KeyLookup(List<String> keyAttributes) {
+        PushdownDialect.requireIdentifiers("INVALID_CONFIG", keyAttributes);
+        this.keyAttributes = keyAttributes;
+    }
+
+    /**
+     * Key values of the rows of {@code changed} whose key has no row in {@code present}.
+     */
+    public List<Object[]> missingKeys(RecordBatch changed, RecordBatch present) {
+        Set<List<String>> presentKeys = keyTexts(present);
+        Set<List<String>> seen = new HashSet<>();
+        int[] columns = columns(changed);
+        List<Object[]> missing = new ArrayList<>();
+        for (int row = 0; row < changed.size(); row++) {
+            Object[] values = new Object[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                values[i] = columns[i] >= 0 ? changed.get(row, columns[i]) : null;
+            }
+            List<String> text = text(values);
+            if (text != null && !presentKeys.contains(text) && seen.add(text)) {
+                missing.add(values);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Queries reading the records of the keys, one per chunk of keys.
+     */
+    public List<ExtractionSlicing.Slice> queries(String query, List<Object[]> keys) {
+        StringBuilder columns = new StringBuilder();
+        StringBuilder tuple = new StringBuilder();
+        for (int i = 0; i < keyAttributes.size(); i++) {
+            columns.append(i > 0 ? ", " : "").append("q.").append(keyAttributes.get(i));
+            tuple.append(i > 0 ? ", " : "").append('?');
+        }
+        String column = keyAttributes.size() > 1 ? "(" + columns + ")" : columns.toString();
+        String element = keyAttributes.size() > 1 ? "(" + tuple + ")" : tuple.toString();
+
+        List<ExtractionSlicing.Slice> queries = new ArrayList<>();
+        for (int start = 0; start < keys.size(); start += KEYS_PER_QUERY) {
+            List<Object[]> chunk = keys.subList(start, Math.min(keys.size(), start + KEYS_PER_QUERY));
+            StringBuilder sql = new StringBuilder("SELECT q.* FROM (").append(query).append(") q WHERE ")
+                    .append(column).append(" IN (");
+            List<Object> args = new ArrayList<>(chunk.size() * keyAttributes.size());
+            for (int i = 0; i < chunk.size(); i++) {
+                sql.append(i > 0 ? ", " : "").append(element);
+                args.addAll(Arrays.asList(chunk.get(i)));
+            }
+            queries.add(new ExtractionSlicing.Slice(sql.append(')').toString(), args.toArray()));
+        }
+        return queries;
+    }
+
+    /**
+     * Row filter dropping the records whose key has a row in {@code present}, so that looked-up records never
+     * duplicate records already extracted.
+     */
+    public Predicate<Map<String, Object>> excluding(RecordBatch present) {
+        Set<List<String>> presentKeys = keyTexts(present);
+        return record -> {
+            Object[] values = new Object[keyAttributes.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = record.get(keyAttributes.get(i));
+            }
+            List<String> text = text(values);
+            return text == null || !presentKeys.contains(text);
+        };
+    }
+
+    private Set<List<String>> keyTexts(RecordBatch batch) {
+        int[] columns = columns(batch);
+        Set<List<String>> keys = new HashSet<>();
+        for (int row = 0; row < batch.size(); row++) {
+            Object[] values = new Object[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                values[i] = columns[i] >= 0 ? batch.get(row, columns[i]) : null;
+            }
+            List<String> text = text(values);
+            if (text != null) {
+                keys.add(text);
+            }
+        }
+        return keys;
+    }
+
+    private int[] columns(RecordBatch batch) {
+        int[] columns = new int[keyAttributes.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = batch.columnIndex(keyAttributes.get(i));
+        }
+        return columns;
+    }
+
+    private static List<String> text(Object[] values) {
+        List<String> text = new ArrayList<>(values.length);
+        for (Object value : values) {
+            if (value == null) {
+                return null;
+            }
+            text.add(value instanceof BigDecimal ?
+                    ((BigDecimal) value).stripTrailingZeros().toPlainString() : value.toString());
+        }
+        return text;
+    }
+}
@@ -0,0 +1,22 @@
+package com.reconciliation.engine;
+
+/**
+ * Maps record keys to hash partitions. The key hash is re-mixed with a seed so that keys which collided
+ * under one seed are spread under another, and so that the bits used for partitioning are independent
+ * of those the key index uses for slot selection within a partition.
+ */
+final class KeyPartitioner {
+
+    private KeyPartitioner() {
+    }
+
+    static int partitionOf(long keyHash, int seed, int partitionCount) {
+        long h = keyHash ^ (0x9E3779B97F4A7C15L * (seed + 1));
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return (int) Math.floorMod(h, (long) partitionCount);
+    }
+}
@@ -0,0 +1,87 @@
+package com.reconciliation.engine;
+
+import com.reconciliation.exception.ReconciliationException;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Deterministic sample of record keys. A record is sampled when its key hash falls below a threshold, so
+ * source and target select the same keys and repeated runs select the same keys again. The hash is either
+ * the engine's {@link RecordKey} hash, applied while records are read, or {@code ORA_HASH} when the
+ * predicate is pushed into both queries; a run uses the same one on both sides.
+ */
+public final class KeySample {
+
+    private static final int BASIS = 10_000;
+
+    /** Normal quantile of the two-sided 95% confidence interval. */
+    private static final double Z_95 = 1.959964;
+
+    private final double percentage;
+    private final int threshold;
+
+    private KeySample(double percentage) {
+        this.percentage = percentage;
+        this.threshold = (int) Math.round(percentage * BASIS / 100);
+    }
+
+    /**
+     * Sample for a configured percentage of keys, or null if sampling is off (no percentage, or 100% or more).
+     */
+    public static KeySample of(Double percentage) {
+        if (percentage == null || percentage >= 100) {
+            return null;
+        }
+        if (!(percentage * BASIS / 100 >= 1)) {
+            throw new ReconciliationException("INVALID_CONFIG",
+                    "Sample percentage must be at least " + (100.0 / BASIS) + ": " + percentage);
+        }
+        return new KeySample(percentage);
+    }
+
+    public double percentage() {
+        return percentage;
+    }
+
+    public boolean includes(long keyHash) {
+        return Long.remainderUnsigned(keyHash, BASIS) < threshold;
+    }
+
+    /**
+     * Row filter keeping the records whose key is sampled; not thread-safe.
+     */
+    public Predicate<Map<String, Object>> filter(KeyEncoder encoder) {
+        RecordKey key = new RecordKey();
+        return record -> {
+            encoder.encode(record, key);
+            return includes(key.hash());
+        };
+    }
+
+    /**
+     * The query restricted to sampled keys, hashed in the database.
+     */
+    public String restrict(String query, PushdownDialect dialect, List<String> keyAttributes) {
+        PushdownDialect.requireIdentifiers("INVALID_CONFIG", keyAttributes);
+        return "SELECT q.* FROM (" + query + ") q WHERE MOD(" + dialect.hash(keyAttributes) + ", " + BASIS + ") < "
+                + threshold;
+    }
+
+    /**
+     * Wilson score interval at 95% confidence for a proportion observed in a sample; {0, 1} without
+     * observations.
+     */
+    public static double[] confidenceInterval(long observed, long sampleSize) {
+        if (sampleSize == 0) {
+            return new double[]{0, 1};
+        }
+        double n = sampleSize;
+        double p = observed / n;
+        double z2 = Z_95 * Z_95;
+        double center = (p + z2 / (2 * n)) / (1 + z2 / n);
+        double margin = Z_95 / (1 + z2 / n) * Math.sqrt(p * (1 - p) / n + z2 / (4 * n * n));
+        return new double[]{Math.max(0, center - margin), Math.min(1, center + margin)};
+    }
+}
@@ -0,0 +1,86 @@
+package com.reconciliation.engine;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing index from 64-bit hashes to dense entry ids, assigned in insertion order.
+ */
+final class LongHashIndex {
+
+    private static final int EMPTY = -1;
+
+    private int[] slots;
+    private int mask;
+    private long[] keys;
+    private int size;
+
+    LongHashIndex(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize) * 2 - 1) << 1;
+        slots = new int[capacity];
+        Arrays.fill(slots, EMPTY);
+        mask = capacity - 1;
+        keys = new long[Math.max(16, expectedSize)];
+    }
+
+    int size() {
+        return size;
+    }
+
+    long key(int entry) {
+        return keys[entry];
+    }
+
+    /**
+     * Entry id of the key, or -1 if it is not indexed.
+     */
+    int find(long key) {
+        for (int slot = slotOf(key); ; slot = (slot + 1) & mask) {
+            int entry = slots[slot];
+            if (entry == EMPTY) {
+                return -1;
+            }
+            if (keys[entry] == key) {
+                return entry;
+            }
+        }
+    }
+
+    /**
+     * Indexes the key. Returns the id of the new entry, or {@code -(id + 1)} if the key was already indexed.
+     */
+    int add(long key) {
+        int slot = slotOf(key);
+        for (; slots[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (keys[slots[slot]] == key) {
+                return -(slots[slot] + 1);
+            }
+        }
+        int entry = size++;
+        if (entry == keys.length) {
+            keys = Arrays.copyOf(keys, entry * 2);
+        }
+        keys[entry] = key;
+        slots[slot] = entry;
+        if (size * 3L > slots.length * 2L) {
+            rehash(slots.length * 2);
+        }
+        return entry;
+    }
+
+    private int slotOf(long key) {
+        return (int) (key ^ (key >>> 32)) & mask;
+    }
+
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        Arrays.fill(slots, EMPTY);
+        mask = capacity - 1;
+        for (int entry = 0; entry < size; entry++) {
+            int slot = slotOf(keys[entry]);
+            while (slots[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = entry;
+        }
+    }
+}
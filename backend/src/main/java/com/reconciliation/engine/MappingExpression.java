@@ -0,0 +1,66 @@
+package com.reconciliation.engine;
+
+import com.reconciliation.exception.ReconciliationException;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.ParseException;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.SimpleEvaluationContext;
+
+/**
+ * SpEL expression of an attribute mapping over {@link ExpressionOperands}, parsed once when the comparison
+ * plan is compiled. The parser runs in mixed compiler mode: after a number of interpreted evaluations the
+ * expression is compiled to bytecode, and only falls back to interpretation if operand types change.
+ * Expressions are evaluated in a read-only data binding context, so they can read operands and call
+ * methods on them but cannot reference types, constructors or beans.
+ */
+final class MappingExpression {
+
+    private static final SpelExpressionParser PARSER = new SpelExpressionParser(
+            new SpelParserConfiguration(SpelCompilerMode.MIXED, MappingExpression.class.getClassLoader()));
+
+    private final Expression expression;
+    private final EvaluationContext context = SimpleEvaluationContext.forReadOnlyDataBinding()
+            .withInstanceMethods()
+            .build();
+
+    private MappingExpression(Expression expression) {
+        this.expression = expression;
+    }
+
+    static MappingExpression parse(String attribute, String expression) {
+        try {
+            return new MappingExpression(PARSER.parseExpression(expression));
+        } catch (ParseException e) {
+            throw new ReconciliationException("INVALID_MAPPING", "Invalid expression for attribute "
+                    + attribute + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Whether the rule holds for a pair; a rule that fails to evaluate or yields no boolean does not. Methods
+     * called on operands may throw their own exceptions, which SpEL passes through unwrapped.
+     */
+    boolean test(Object sourceValue, Object targetValue) {
+        try {
+            return Boolean.TRUE.equals(expression.getValue(context,
+                    new ExpressionOperands(sourceValue, targetValue), Boolean.class));
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Value the expression derives from a source value, with the target operand absent.
+     */
+    Object apply(Object sourceValue) {
+        try {
+            return expression.getValue(context, new ExpressionOperands(sourceValue, null));
+        } catch (RuntimeException e) {
+            throw new ReconciliationException("TRANSFORMATION_FAILED", "Transformation expression '"
+                    + expression.getExpressionString() + "' failed for value " + sourceValue + ": " + e.getMessage());
+        }
+    }
+}
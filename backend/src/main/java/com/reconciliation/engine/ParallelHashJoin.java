@@ -0,0 +1,160 @@
+package com.reconciliation.engine;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Hash join split into key-hash partitions that are built and probed concurrently. Key hashes are computed
+ * in parallel, records are bucketed by partition preserving their original ordinals, and every partition is
+ * joined by its own visitor, which are merged into the caller's visitor at the end. Rows of batches are read
+ * in place by ordinal; records from iterators are first collected into a list.
+ */
+@Slf4j
+public class ParallelHashJoin implements RecordJoin {
+
+    private static final int PARTITION_SEED = 0;
+    private static final int HASH_CHUNK_SIZE = 4096;
+
+    private final ForkJoinPool pool;
+    private final int partitionCount;
+
+    public ParallelHashJoin(ForkJoinPool pool, int partitionCount) {
+        if (partitionCount < 1) {
+            throw new IllegalArgumentException("Partition count must be positive");
+        }
+        this.pool = pool;
+        this.partitionCount = partitionCount;
+    }
+
+    @Override
+    public void join(Iterator<Map<String, Object>> sourceRecords,
+                     Iterator<Map<String, Object>> targetRecords,
+                     KeyEncoder sourceKey,
+                     KeyEncoder targetKey,
+                     RecordPairVisitor visitor) {
+        List<Map<String, Object>> source = drain(sourceRecords);
+        List<Map<String, Object>> target = drain(targetRecords);
+        join(new Side(source::get, source.size()), new Side(target::get, target.size()), sourceKey, targetKey, visitor);
+    }
+
+    @Override
+    public void join(RecordBatch source, int[] sourceRows,
+                     RecordBatch target, int[] targetRows,
+                     KeyEncoder sourceKey,
+                     KeyEncoder targetKey,
+                     RecordPairVisitor visitor) {
+        join(Side.of(source, sourceRows), Side.of(target, targetRows), sourceKey, targetKey, visitor);
+    }
+
+    private void join(Side source, Side target, KeyEncoder sourceKey, KeyEncoder targetKey, RecordPairVisitor visitor) {
+        if (!(visitor instanceof PartitionableVisitor)) {
+            throw new IllegalArgumentException("Parallel join requires a partitionable visitor");
+        }
+        PartitionableVisitor root = (PartitionableVisitor) visitor;
+
+        pool.submit(() -> {
+            source.computePartitions(sourceKey, partitionCount);
+            target.computePartitions(targetKey, partitionCount);
+        }).join();
+
+        int[][] sourceBuckets = source.bucketOrdinals(partitionCount);
+        int[][] targetBuckets = target.bucketOrdinals(partitionCount);
+
+        PartitionableVisitor[] partitions = new PartitionableVisitor[partitionCount];
+        for (int p = 0; p < partitionCount; p++) {
+            partitions[p] = root.createPartition();
+        }
+        pool.submit(() -> IntStream.range(0, partitionCount).parallel().forEach(p -> {
+            HashJoinTable table = new HashJoinTable();
+            RecordKey key = new RecordKey();
+            for (int ordinal : targetBuckets[p]) {
+                Map<String, Object> record = target.records.apply(ordinal);
+                targetKey.encode(record, key);
+                table.add(key, ordinal, record);
+            }
+            for (int ordinal : sourceBuckets[p]) {
+                Map<String, Object> record = source.records.apply(ordinal);
+                sourceKey.encode(record, key);
+                table.probe(key, ordinal, record, partitions[p]);
+            }
+            table.sweepUnmatched(partitions[p]);
+            table.reportDuplicates(partitions[p]);
+        })).join();
+
+        for (PartitionableVisitor partition : partitions) {
+            root.merge(partition);
+        }
+        log.debug("Joined {} source and {} target records across {} partitions with parallelism {}",
+                source.size, target.size, partitionCount, pool.getParallelism());
+    }
+
+    private static List<Map<String, Object>> drain(Iterator<Map<String, Object>> records) {
+        List<Map<String, Object>> list = new ArrayList<>();
+        while (records.hasNext()) {
+            list.add(records.next());
+        }
+        return list;
+    }
+
+    /**
+     * Records of one side by ordinal, with the partition of each.
+     */
+    private static final class Side {
+        private final IntFunction<Map<String, Object>> records;
+        private final int size;
+        private final int[] partitionOf;
+
+        Side(IntFunction<Map<String, Object>> records, int size) {
+            this.records = records;
+            this.size = size;
+            this.partitionOf = new int[size];
+        }
+
+        static Side of(RecordBatch batch, int[] rows) {
+            return rows != null ? new Side(ordinal -> batch.row(rows[ordinal]), rows.length) : new Side(batch::row, batch.size());
+        }
+
+        /**
+         * Assigns every record to a partition by key hash. Keys are encoded again when the partition is
+         * joined, which is cheaper than keeping an encoded copy of every key between the two passes.
+         */
+        void computePartitions(KeyEncoder encoder, int partitionCount) {
+            int chunks = (size + HASH_CHUNK_SIZE - 1) / HASH_CHUNK_SIZE;
+            IntStream.range(0, chunks).parallel().forEach(chunk -> {
+                RecordKey key = new RecordKey();
+                int end = Math.min(size, (chunk + 1) * HASH_CHUNK_SIZE);
+                for (int i = chunk * HASH_CHUNK_SIZE; i < end; i++) {
+                    encoder.encode(records.apply(i), key);
+                    partitionOf[i] = KeyPartitioner.partitionOf(key.hash(), PARTITION_SEED, partitionCount);
+                }
+            });
+        }
+
+        /**
+         * Record ordinals grouped by partition, ascending within each partition.
+         */
+        int[][] bucketOrdinals(int partitionCount) {
+            int[] sizes = new int[partitionCount];
+            for (int p : partitionOf) {
+                sizes[p]++;
+            }
+            int[][] buckets = new int[partitionCount][];
+            for (int p = 0; p < partitionCount; p++) {
+                buckets[p] = new int[sizes[p]];
+                sizes[p] = 0;
+            }
+            for (int i = 0; i < partitionOf.length; i++) {
+                int p = partitionOf[i];
+                buckets[p][sizes[p]++] = i;
+            }
+            return buckets;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.reconciliation.engine;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Typed values of the compared attributes of one side of a batch, parsed once per value right after
+ * extraction: epoch milliseconds of {@code DATE_TOLERANCE} attributes and exact decimals, as unscaled
+ * long and scale, of {@code NUMERIC_TOLERANCE} attributes. Fingerprinting and comparison of those attributes
+ * work on these. Values without an epoch time are {@link #NO_EPOCH}, and values that are not numbers or do
+ * not fit a long have no {@link #hasDecimal decimal}; both are compared by value instead.
+ * <p>
+ * Untransformed numeric attributes whose batch column already holds scaled longs, as decimal columns read
+ * from a database do, are read from the column itself rather than parsed into arrays of their own.
+ * <p>
+ * Records that are not held in a batch are parsed one at a time into a single row, row 0, that every
+ * {@link #parse} overwrites.
+ */
+public final class ParsedColumns {
+
+    public static final long NO_EPOCH = EpochParser.NO_EPOCH;
+
+    private static final ParsedColumns NONE =
+            new ParsedColumns(null, true, new long[0][], new long[0][], new byte[0][], new ColumnVector.DecimalVector[0]);
+
+    private final ComparisonPlan plan;
+    private final boolean source;
+    // Indexed like the plan's columns; null for columns that are not temporal or not numeric
+    private final long[][] epochs;
+    private final long[][] unscaled;
+    private final byte[][] scales;
+    // Batch columns read in place of unscaled and scales
+    private final ColumnVector.DecimalVector[] decimals;
+
+    private ParsedColumns(ComparisonPlan plan, boolean source, long[][] epochs, long[][] unscaled, byte[][] scales,
+                          ColumnVector.DecimalVector[] decimals) {
+        this.plan = plan;
+        this.source = source;
+        this.epochs = epochs;
+        this.unscaled = unscaled;
+        this.scales = scales;
+        this.decimals = decimals;
+    }
+
+    public static ParsedColumns source(ComparisonPlan plan, RecordBatch batch) {
+        return of(plan, batch, true);
+    }
+
+    public static ParsedColumns target(ComparisonPlan plan, RecordBatch batch) {
+        return of(plan, batch, false);
+    }
+
+    /**
+     * Single row for parsing source records one at a time.
+     */
+    public static ParsedColumns sourceRecord(ComparisonPlan plan) {
+        return ofRecord(plan, true);
+    }
+
+    /**
+     * Single row for parsing target records one at a time.
+     */
+    public static ParsedColumns targetRecord(ComparisonPlan plan) {
+        return ofRecord(plan, false);
+    }
+
+    /**
+     * Parses a record into row 0, replacing the values of the record parsed before.
+     */
+    public void parse(Map<String, Object> record) {
+        ColumnComparator[] columns = plan.columns();
+        for (int i = 0; i < epochs.length; i++) {
+            if (epochs[i] != null) {
+                epochs[i][0] = columns[i].epoch(source ? plan.sourceValue(i, record) : plan.targetValue(i, record));
+            } else if (scales[i] != null) {
+                Object value = source ? plan.sourceValue(i, record) : plan.targetValue(i, record);
+                scales[i][0] = value == null ? ScaledDecimal.NOT_NUMBER : ScaledDecimal.parse(value, unscaled[i], 0);
+            }
+        }
+    }
+
+    /**
+     * Epoch of a row for the plan column at {@code column}, or {@link #NO_EPOCH}.
+     */
+    public long epoch(int column, int row) {
+        return column < epochs.length && epochs[column] != null ? epochs[column][row] : NO_EPOCH;
+    }
+
+    /**
+     * Whether a row has a decimal held as scaled long for the plan column at {@code column}.
+     */
+    public boolean hasDecimal(int column, int row) {
+        if (column >= scales.length) {
+            return false;
+        }
+        if (decimals[column] != null) {
+            return !decimals[column].isNull(row);
+        }
+        return scales[column] != null && scales[column][row] >= ScaledDecimal.MIN_SCALE;
+    }
+
+    public long unscaled(int column, int row) {
+        return decimals[column] != null ? decimals[column].getUnscaled(row) : unscaled[column][row];
+    }
+
+    public int scale(int column, int row) {
+        return decimals[column] != null ? decimals[column].getScale(row) : scales[column][row];
+    }
+
+    /**
+     * Exact value of a row for the plan column at {@code column}, given its normalized value: the parsed
+     * decimal of a numeric attribute, the value read as a number for other attributes, or null if it is not
+     * a finite number.
+     */
+    public BigDecimal decimal(int column, int row, Object value) {
+        if (column < decimals.length && decimals[column] != null) {
+            return hasDecimal(column, row) ? ScaledDecimal.toBigDecimal(unscaled(column, row), scale(column, row)) : null;
+        }
+        if (column >= scales.length || scales[column] == null) {
+            return ScaledDecimal.toBigDecimal(value);
+        }
+        byte scale = scales[column][row];
+        if (scale >= ScaledDecimal.MIN_SCALE) {
+            return ScaledDecimal.toBigDecimal(unscaled[column][row], scale);
+        }
+        return scale == ScaledDecimal.OVERFLOW ? ScaledDecimal.toBigDecimal(value) : null;
+    }
+
+    private static ParsedColumns of(ComparisonPlan plan, RecordBatch batch, boolean source) {
+        ColumnComparator[] columns = plan.columns();
+        long[][] epochs = null;
+        long[][] unscaled = null;
+        byte[][] scales = null;
+        ColumnVector.DecimalVector[] decimals = null;
+        int[] indexes = plan.columnIndexes(batch, source);
+        for (int i = 0; i < columns.length; i++) {
+            ColumnComparator column = columns[i];
+            if (!column.temporal() && !column.numeric()) {
+                continue;
+            }
+            if (epochs == null) {
+                epochs = new long[columns.length][];
+                unscaled = new long[columns.length][];
+                scales = new byte[columns.length][];
+                decimals = new ColumnVector.DecimalVector[columns.length];
+            }
+            int index = indexes[i];
+            if (column.temporal()) {
+                long[] values = new long[batch.size()];
+                if (index < 0) {
+                    Arrays.fill(values, NO_EPOCH);
+                } else {
+                    for (int row = 0; row < values.length; row++) {
+                        values[row] = column.epoch(normalized(column, batch, row, index, source));
+                    }
+                }
+                epochs[i] = values;
+            } else if (index >= 0 && batch.column(index) instanceof ColumnVector.DecimalVector
+                    && column.untransformed(source)) {
+                decimals[i] = (ColumnVector.DecimalVector) batch.column(index);
+            } else {
+                long[] values = new long[batch.size()];
+                byte[] valueScales = new byte[batch.size()];
+                if (index < 0) {
+                    Arrays.fill(valueScales, ScaledDecimal.NOT_NUMBER);
+                } else {
+                    for (int row = 0; row < values.length; row++) {
+                        Object value = normalized(column, batch, row, index, source);
+                        valueScales[row] = value == null ? ScaledDecimal.NOT_NUMBER : ScaledDecimal.parse(value, values, row);
+                    }
+                }
+                unscaled[i] = values;
+                scales[i] = valueScales;
+            }
+        }
+        return epochs != null ? new ParsedColumns(plan, source, epochs, unscaled, scales, decimals) : NONE;
+    }
+
+    private static ParsedColumns ofRecord(ComparisonPlan plan, boolean source) {
+        ColumnComparator[] columns = plan.columns();
+        long[][] epochs = new long[columns.length][];
+        long[][] unscaled = new long[columns.length][];
+        byte[][] scales = new byte[columns.length][];
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].temporal()) {
+                epochs[i] = new long[1];
+            } else if (columns[i].numeric()) {
+                unscaled[i] = new long[1];
+                scales[i] = new byte[1];
+            }
+        }
+        return new ParsedColumns(plan, source, epochs, unscaled, scales,
+                new ColumnVector.DecimalVector[columns.length]);
+    }
+
+    private static Object normalized(ColumnComparator column, RecordBatch batch, int row, int index, boolean source) {
+        Object raw = batch.get(row, index);
+        return source ? column.normalizeSource(raw) : column.normalizeTarget(raw);
+    }
+}
@@ -0,0 +1,12 @@
+package com.reconciliation.engine;
+
+/**
+ * Visitor whose work can be split across independent partitions and combined afterwards. Each partition
+ * visitor is used by a single thread; {@link #merge} is called once per partition after all of them finish.
+ */
+public interface PartitionableVisitor extends RecordPairVisitor {
+
+    PartitionableVisitor createPartition();
+
+    void merge(PartitionableVisitor partition);
+}
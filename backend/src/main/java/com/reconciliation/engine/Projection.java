@@ -0,0 +1,72 @@
+package com.reconciliation.engine;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Columns of one side that a comparison reads: its key attributes, the attributes of its enabled mappings, its
+ * watermark column and its summary group attributes. Extraction selects only these columns in database queries
+ * and skips the others while reading files, so unreferenced columns of wide sources are neither transferred nor
+ * held.
+ */
+public final class Projection {
+
+    /** Every column, for extractions without a comparison plan. */
+    public static final Projection ALL = new Projection(null);
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_$#]*");
+
+    // Null when every column is included
+    private final Set<String> columns;
+    private final Set<String> lowerCaseColumns;
+
+    private Projection(Set<String> columns) {
+        this.columns = columns;
+        this.lowerCaseColumns = new LinkedHashSet<>();
+        if (columns != null) {
+            columns.forEach(column -> lowerCaseColumns.add(column.toLowerCase(Locale.ROOT)));
+        }
+    }
+
+    public static Projection of(Collection<String> columns) {
+        return new Projection(new LinkedHashSet<>(columns));
+    }
+
+    public boolean isAll() {
+        return columns == null;
+    }
+
+    /**
+     * Whether a column is read; database columns match case-insensitively, like the records they are read into.
+     */
+    public boolean includes(String column, boolean caseInsensitive) {
+        if (columns == null) {
+            return true;
+        }
+        return caseInsensitive ? lowerCaseColumns.contains(column.toLowerCase(Locale.ROOT)) : columns.contains(column);
+    }
+
+    /**
+     * The query wrapped in a subselect of the projected columns, or the query itself when every column is
+     * read or some column is not a plain identifier that can be referenced in SQL.
+     */
+    public String select(String query) {
+        if (columns == null || columns.isEmpty()) {
+            return query;
+        }
+        Set<String> selected = new LinkedHashSet<>();
+        StringBuilder sql = new StringBuilder("SELECT ");
+        for (String column : columns) {
+            if (!IDENTIFIER.matcher(column).matches()) {
+                return query;
+            }
+            if (selected.add(column.toLowerCase(Locale.ROOT))) {
+                sql.append(selected.size() > 1 ? ", " : "").append("q.").append(column);
+            }
+        }
+        return sql.append(" FROM (").append(query).append(") q").toString();
+    }
+}
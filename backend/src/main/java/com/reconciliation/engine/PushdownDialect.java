@@ -0,0 +1,114 @@
+package com.reconciliation.engine;
+
+import com.reconciliation.exception.ReconciliationException;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * SQL building blocks for comparisons pushed down into the source databases. Both dialects hash with
+ * {@code ORA_HASH}, which H2 provides for Oracle compatibility, so the generated queries only differ in how
+ * column values are rendered as text and in whether a full outer join is available.
+ */
+public enum PushdownDialect {
+
+    ORACLE("CHR(0)", "CHR(31)", true) {
+        @Override
+        String text(String expression) {
+            return "TO_CHAR(" + expression + ")";
+        }
+    },
+
+    H2("CHAR(0)", "CHAR(31)", false) {
+        @Override
+        String text(String expression) {
+            return "CAST(" + expression + " AS VARCHAR)";
+        }
+
+        @Override
+        String pad(String function, String expression, int length, String pad) {
+            if (pad.length() == 1) {
+                return super.pad(function, expression, length, pad);
+            }
+            // H2 pads with the first character only, so longer pad texts are repeated and cut to size
+            String padding = "SUBSTR(REPEAT(" + quote(pad) + ", " + length + "), 1, " + length
+                    + " - LENGTH(" + expression + "))";
+            return function.equals("LPAD") ? padding + " || " + expression : expression + " || " + padding;
+        }
+    };
+
+    /** Upper bound (exclusive) of the values returned by {@code ORA_HASH} without a bucket argument. */
+    public static final long HASH_SPACE = 1L << 32;
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_$#]*");
+
+    private final String nullMarker;
+    private final String separator;
+    private final boolean fullOuterJoin;
+
+    PushdownDialect(String nullMarker, String separator, boolean fullOuterJoin) {
+        this.nullMarker = nullMarker;
+        this.separator = separator;
+        this.fullOuterJoin = fullOuterJoin;
+    }
+
+    /**
+     * Dialect for a JDBC URL, or null if row hashing cannot be pushed down to that database.
+     */
+    public static PushdownDialect forJdbcUrl(String jdbcUrl) {
+        if (jdbcUrl == null) {
+            return null;
+        }
+        if (jdbcUrl.startsWith("jdbc:oracle:")) {
+            return ORACLE;
+        }
+        if (jdbcUrl.startsWith("jdbc:h2:")) {
+            return H2;
+        }
+        return null;
+    }
+
+    /**
+     * Fails with the given error code unless every column is a plain identifier that can be spliced into SQL.
+     */
+    static void requireIdentifiers(String errorCode, List<String> columns) {
+        for (String column : columns) {
+            if (column == null || !IDENTIFIER.matcher(column).matches()) {
+                throw new ReconciliationException(errorCode, "Attribute " + column + " cannot be referenced in generated SQL");
+            }
+        }
+    }
+
+    abstract String text(String expression);
+
+    /**
+     * {@code LPAD} or {@code RPAD} of a text shorter than the length, cycling through the pad text from its
+     * first character.
+     */
+    String pad(String function, String expression, int length, String pad) {
+        return function + "(" + expression + ", " + length + ", " + quote(pad) + ")";
+    }
+
+    private static String quote(String text) {
+        return "'" + text.replace("'", "''") + "'";
+    }
+
+    boolean supportsFullOuterJoin() {
+        return fullOuterJoin;
+    }
+
+    /**
+     * Hash of the text of the given columns of alias {@code q}; nulls are rendered as a control character so
+     * that they differ from every stored text.
+     */
+    String hash(List<String> columns) {
+        StringBuilder expression = new StringBuilder("ORA_HASH(");
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                expression.append(" || ").append(separator).append(" || ");
+            }
+            expression.append("COALESCE(").append(text("q." + columns.get(i))).append(", ").append(nullMarker).append(')');
+        }
+        return expression.append(')').toString();
+    }
+}
@@ -0,0 +1,47 @@
+package com.reconciliation.engine;
+
+/**
+ * Outcome of a comparison pushed down into the databases: the records the databases could not settle, still
+ * to be compared by the engine, plus the totals of the whole comparison.
+ */
+public final class PushdownResult {
+
+    private final RecordBatch sourceRows;
+    private final RecordBatch targetRows;
+    private final long sourceRecordCount;
+    private final long targetRecordCount;
+    private final long matchedRecordCount;
+
+    PushdownResult(RecordBatch sourceRows, RecordBatch targetRows, long sourceRecordCount, long targetRecordCount,
+                   long matchedRecordCount) {
+        this.sourceRows = sourceRows;
+        this.targetRows = targetRows;
+        this.sourceRecordCount = sourceRecordCount;
+        this.targetRecordCount = targetRecordCount;
+        this.matchedRecordCount = matchedRecordCount;
+    }
+
+    /** Source records left for comparison. */
+    public RecordBatch sourceRows() {
+        return sourceRows;
+    }
+
+    /** Target records left for comparison. */
+    public RecordBatch targetRows() {
+        return targetRows;
+    }
+
+    /** Records of the whole source query, including those settled in the database. */
+    public long sourceRecordCount() {
+        return sourceRecordCount;
+    }
+
+    public long targetRecordCount() {
+        return targetRecordCount;
+    }
+
+    /** Record pairs the databases found to match; not part of the rows left for comparison. */
+    public long matchedRecordCount() {
+        return matchedRecordCount;
+    }
+}
@@ -0,0 +1,437 @@
+package com.reconciliation.engine;
+
+import org.springframework.util.LinkedCaseInsensitiveMap;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Columnar set of extracted records. Each column is held in a typed {@link ColumnVector}; rows are exposed
+ * as lightweight {@link Map} views so that code written against {@code Map<String, Object>} records keeps
+ * working without materializing a map per row.
+ */
+public final class RecordBatch {
+
+    private static final RecordBatch EMPTY = new RecordBatch(new String[0], new ColumnVector[0], 0, false);
+
+    private final String[] columnNames;
+    private final ColumnVector[] columns;
+    private final int size;
+    private final boolean caseInsensitive;
+    private final Map<String, Integer> columnIndex;
+
+    private RecordBatch(String[] columnNames, ColumnVector[] columns, int size, boolean caseInsensitive) {
+        this.columnNames = columnNames;
+        this.columns = columns;
+        this.size = size;
+        this.caseInsensitive = caseInsensitive;
+        this.columnIndex = new HashMap<>();
+        for (int i = 0; i < columnNames.length; i++) {
+            columnIndex.putIfAbsent(indexKey(columnNames[i]), i);
+        }
+    }
+
+    public static RecordBatch empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Builder for a batch with a fixed column layout. Column lookup on the result is case-insensitive when
+     * requested, matching the behaviour of JDBC result maps.
+     */
+    public static Builder builder(List<String> columnNames, boolean caseInsensitive) {
+        return new Builder(columnNames, caseInsensitive);
+    }
+
+    /**
+     * Converts map-based records; the column layout is the union of keys in first-seen order.
+     */
+    public static RecordBatch fromRecords(List<Map<String, Object>> records) {
+        if (records.isEmpty()) {
+            return EMPTY;
+        }
+        Builder builder = builder(Collections.emptyList(), records.get(0) instanceof LinkedCaseInsensitiveMap);
+        for (Map<String, Object> record : records) {
+            for (Map.Entry<String, Object> entry : record.entrySet()) {
+                builder.set(builder.addColumn(entry.getKey()), entry.getValue());
+            }
+            builder.endRow();
+        }
+        return builder.build();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public List<String> columnNames() {
+        return Collections.unmodifiableList(Arrays.asList(columnNames));
+    }
+
+    /**
+     * Position of a column, or -1 if the batch has no such column.
+     */
+    public int columnIndex(String name) {
+        Integer index = columnIndex.get(indexKey(name));
+        return index != null ? index : -1;
+    }
+
+    public ColumnVector column(int index) {
+        return columns[index];
+    }
+
+    public Object get(int row, int column) {
+        return columns[column].get(row);
+    }
+
+    public Map<String, Object> row(int row) {
+        return new RowView(row);
+    }
+
+    public Iterator<Map<String, Object>> rows() {
+        return new Iterator<Map<String, Object>>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Map<String, Object> next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                return new RowView(next++);
+            }
+        };
+    }
+
+    /**
+     * Iterates only the given rows, in the given order.
+     */
+    public Iterator<Map<String, Object>> rows(int[] selectedRows) {
+        return new Iterator<Map<String, Object>>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < selectedRows.length;
+            }
+
+            @Override
+            public Map<String, Object> next() {
+                if (next >= selectedRows.length) {
+                    throw new NoSuchElementException();
+                }
+                return new RowView(selectedRows[next++]);
+            }
+        };
+    }
+
+    /**
+     * Copy of the given rows, in the given order.
+     */
+    public RecordBatch select(int[] selectedRows) {
+        Builder builder = new Builder(Arrays.asList(columnNames), caseInsensitive);
+        for (int row : selectedRows) {
+            for (int column = 0; column < columns.length; column++) {
+                builder.copy(columns[column], row, column);
+            }
+            builder.endRow();
+        }
+        return builder.build();
+    }
+
+    /**
+     * Rows of this batch followed by the rows of another, whose columns are matched by name.
+     */
+    public RecordBatch concat(RecordBatch other) {
+        if (other.size == 0) {
+            return this;
+        }
+        if (size == 0) {
+            return other;
+        }
+        return new Builder(Arrays.asList(columnNames), caseInsensitive).append(this).append(other).build();
+    }
+
+    /**
+     * Read-only list adapter for map-based code paths.
+     */
+    public List<Map<String, Object>> asRecords() {
+        return new AbstractList<Map<String, Object>>() {
+            @Override
+            public Map<String, Object> get(int index) {
+                if (index < 0 || index >= size) {
+                    throw new IndexOutOfBoundsException("Row " + index + " of " + size);
+                }
+                return new RowView(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private String indexKey(String name) {
+        return caseInsensitive ? name.toLowerCase(Locale.ROOT) : name;
+    }
+
+    /**
+     * Map view of a single row. Serialization replaces the view with a detached copy so that spilling a row
+     * does not drag the whole batch along.
+     */
+    final class RowView extends AbstractMap<String, Object> implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final int row;
+
+        RowView(int row) {
+            this.row = row;
+        }
+
+        RecordBatch batch() {
+            return RecordBatch.this;
+        }
+
+        int rowIndex() {
+            return row;
+        }
+
+        @Override
+        public Object get(Object key) {
+            if (!(key instanceof String)) {
+                return null;
+            }
+            int column = columnIndex((String) key);
+            return column >= 0 ? columns[column].get(row) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof String && columnIndex((String) key) >= 0;
+        }
+
+        @Override
+        public int size() {
+            return columnNames.length;
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<Entry<String, Object>>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    return new Iterator<Entry<String, Object>>() {
+                        private int column = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return column < columnNames.length;
+                        }
+
+                        @Override
+                        public Entry<String, Object> next() {
+                            if (column >= columnNames.length) {
+                                throw new NoSuchElementException();
+                            }
+                            int current = column++;
+                            return new SimpleImmutableEntry<>(columnNames[current], columns[current].get(row));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return columnNames.length;
+                }
+            };
+        }
+
+        private Object writeReplace() {
+            Map<String, Object> copy = caseInsensitive ?
+                    new LinkedCaseInsensitiveMap<>(columnNames.length) : new LinkedHashMap<>(columnNames.length * 2);
+            copy.putAll(this);
+            return copy;
+        }
+    }
+
+    public static final class Builder {
+        // Marks a pending value held unboxed in pendingUnscaled and pendingScales
+        private static final Object PENDING_DECIMAL = new Object();
+
+        private final boolean caseInsensitive;
+        private final List<String> columnNames = new ArrayList<>();
+        private final Map<String, Integer> columnIndex = new HashMap<>();
+        private final Map<String, Integer> lookupIndex = new HashMap<>();
+        private final List<ColumnVectorBuilder> columns = new ArrayList<>();
+        private Object[] currentRow = new Object[0];
+        private boolean[] assigned = new boolean[0];
+        private long[] pendingUnscaled = new long[0];
+        private int[] pendingScales = new int[0];
+        private int size;
+        private Predicate<Map<String, Object>> rowFilter;
+
+        private Builder(List<String> columnNames, boolean caseInsensitive) {
+            this.caseInsensitive = caseInsensitive;
+            for (String name : columnNames) {
+                addColumn(name);
+            }
+        }
+
+        public int columnIndex(String name) {
+            Integer index = columnIndex.get(name);
+            return index != null ? index : -1;
+        }
+
+        /**
+         * Index of the named column, adding it if needed. Rows appended before the column existed read as null.
+         */
+        public int addColumn(String name) {
+            Integer existing = columnIndex.get(name);
+            if (existing != null) {
+                return existing;
+            }
+            ColumnVectorBuilder column = new ColumnVectorBuilder();
+            for (int row = 0; row < size; row++) {
+                column.add(null);
+            }
+            int index = columns.size();
+            columns.add(column);
+            columnNames.add(name);
+            columnIndex.put(name, index);
+            lookupIndex.putIfAbsent(caseInsensitive ? name.toLowerCase(Locale.ROOT) : name, index);
+            currentRow = Arrays.copyOf(currentRow, index + 1);
+            assigned = Arrays.copyOf(assigned, index + 1);
+            pendingUnscaled = Arrays.copyOf(pendingUnscaled, index + 1);
+            pendingScales = Arrays.copyOf(pendingScales, index + 1);
+            return index;
+        }
+
+        public Builder set(int column, Object value) {
+            currentRow[column] = value;
+            assigned[column] = true;
+            return this;
+        }
+
+        /**
+         * Sets the decimal {@code unscaled / 10^scale}, which reads back as a {@link BigDecimal} but is only
+         * boxed if the row filter or a column of another type asks for it.
+         */
+        public Builder setDecimal(int column, long unscaled, int scale) {
+            currentRow[column] = PENDING_DECIMAL;
+            pendingUnscaled[column] = unscaled;
+            pendingScales[column] = scale;
+            assigned[column] = true;
+            return this;
+        }
+
+        /**
+         * Drops completed rows the filter rejects. The filter sees the pending row as a map, with the same
+         * column lookup as the built batch, and must not keep it.
+         */
+        public Builder rowFilter(Predicate<Map<String, Object>> filter) {
+            this.rowFilter = filter;
+            return this;
+        }
+
+        /**
+         * Appends the rows of a batch, matching its columns by name and adding those that are missing. Rows
+         * pass the row filter like rows built one by one.
+         */
+        public Builder append(RecordBatch batch) {
+            int[] target = new int[batch.columns.length];
+            for (int column = 0; column < target.length; column++) {
+                target[column] = addColumn(batch.columnNames[column]);
+            }
+            for (int row = 0; row < batch.size; row++) {
+                for (int column = 0; column < target.length; column++) {
+                    copy(batch.columns[column], row, target[column]);
+                }
+                endRow();
+            }
+            return this;
+        }
+
+        private void copy(ColumnVector vector, int row, int column) {
+            if (vector instanceof ColumnVector.DecimalVector && !vector.isNull(row)) {
+                ColumnVector.DecimalVector decimals = (ColumnVector.DecimalVector) vector;
+                setDecimal(column, decimals.getUnscaled(row), decimals.getScale(row));
+            } else {
+                set(column, vector.get(row));
+            }
+        }
+
+        /**
+         * Completes the current row; columns not set since the previous row are null.
+         */
+        public Builder endRow() {
+            if (rowFilter != null && !rowFilter.test(new PendingRow())) {
+                Arrays.fill(currentRow, null);
+                Arrays.fill(assigned, false);
+                return this;
+            }
+            for (int i = 0; i < currentRow.length; i++) {
+                if (currentRow[i] == PENDING_DECIMAL) {
+                    columns.get(i).addDecimal(pendingUnscaled[i], pendingScales[i]);
+                } else {
+                    columns.get(i).add(assigned[i] ? currentRow[i] : null);
+                }
+                currentRow[i] = null;
+                assigned[i] = false;
+            }
+            size++;
+            return this;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public RecordBatch build() {
+            ColumnVector[] vectors = new ColumnVector[columns.size()];
+            for (int i = 0; i < vectors.length; i++) {
+                vectors[i] = columns.get(i).build();
+            }
+            return new RecordBatch(columnNames.toArray(new String[0]), vectors, size, caseInsensitive);
+        }
+
+        /**
+         * Map view of the row being built.
+         */
+        private final class PendingRow extends AbstractMap<String, Object> {
+            @Override
+            public Object get(Object key) {
+                if (!(key instanceof String)) {
+                    return null;
+                }
+                String name = (String) key;
+                Integer column = lookupIndex.get(caseInsensitive ? name.toLowerCase(Locale.ROOT) : name);
+                return column != null ? value(column) : null;
+            }
+
+            @Override
+            public Set<Entry<String, Object>> entrySet() {
+                Set<Entry<String, Object>> entries = new LinkedHashSet<>();
+                for (int i = 0; i < currentRow.length; i++) {
+                    entries.add(new SimpleImmutableEntry<>(columnNames.get(i), value(i)));
+                }
+                return entries;
+            }
+
+            private Object value(int column) {
+                if (!assigned[column]) {
+                    return null;
+                }
+                Object value = currentRow[column];
+                return value == PENDING_DECIMAL ?
+                        BigDecimal.valueOf(pendingUnscaled[column], pendingScales[column]) : value;
+            }
+        }
+    }
+}
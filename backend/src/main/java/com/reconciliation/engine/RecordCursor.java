@@ -0,0 +1,121 @@
+package com.reconciliation.engine;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * Forward-only stream of extracted records, read chunk by chunk as it is consumed. Records are row views of
+ * their chunk, so a consumer that only keeps a few records at a time holds a few chunks at most, whatever
+ * the size of the extraction. Reading stops and resources are released once the last chunk is read or the
+ * cursor is closed.
+ */
+public abstract class RecordCursor implements Iterator<Map<String, Object>>, AutoCloseable {
+
+    private RecordBatch chunk = RecordBatch.empty();
+    private int position;
+    private boolean exhausted;
+    private long count;
+    private long readNanos;
+    private Consumer<RecordBatch> observer;
+
+    /**
+     * Cursor over the records of a batch that is already extracted.
+     */
+    public static RecordCursor of(RecordBatch batch) {
+        return new RecordCursor() {
+            private boolean read;
+
+            @Override
+            protected RecordBatch readChunk() {
+                if (read) {
+                    return null;
+                }
+                read = true;
+                return batch;
+            }
+
+            @Override
+            protected void release() {
+            }
+        };
+    }
+
+    /**
+     * Next chunk of records, or null once there are no more.
+     */
+    protected abstract RecordBatch readChunk();
+
+    /**
+     * Releases the resources held for reading; called once, after the last chunk or on close.
+     */
+    protected abstract void release();
+
+    /**
+     * Hands every chunk read from now on to the observer before its records are consumed.
+     */
+    public RecordCursor observeChunks(Consumer<RecordBatch> observer) {
+        this.observer = observer;
+        return this;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (position == chunk.size()) {
+            if (exhausted) {
+                return false;
+            }
+            long start = System.nanoTime();
+            RecordBatch next;
+            try {
+                next = readChunk();
+            } finally {
+                readNanos += System.nanoTime() - start;
+            }
+            if (next == null) {
+                close();
+                return false;
+            }
+            chunk = next;
+            position = 0;
+            count += next.size();
+            if (observer != null) {
+                observer.accept(next);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Map<String, Object> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return chunk.row(position++);
+    }
+
+    /**
+     * Records read so far.
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Time spent reading chunks so far, in milliseconds.
+     */
+    public long readTimeMs() {
+        return readNanos / 1_000_000;
+    }
+
+    @Override
+    public void close() {
+        if (!exhausted) {
+            exhausted = true;
+            chunk = RecordBatch.empty();
+            position = 0;
+            release();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.reconciliation.engine;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Strategy for pairing source and target records by their reconciliation key.
+ */
+public interface RecordJoin {
+
+    void join(Iterator<Map<String, Object>> sourceRecords,
+              Iterator<Map<String, Object>> targetRecords,
+              KeyEncoder sourceKey,
+              KeyEncoder targetKey,
+              RecordPairVisitor visitor);
+
+    /**
+     * Joins rows of two batches. A row array lists the joined rows of its batch, in ordinal order; null
+     * joins every row of the batch.
+     */
+    default void join(RecordBatch source, int[] sourceRows,
+                      RecordBatch target, int[] targetRows,
+                      KeyEncoder sourceKey,
+                      KeyEncoder targetKey,
+                      RecordPairVisitor visitor) {
+        join(sourceRows != null ? source.rows(sourceRows) : source.rows(),
+                targetRows != null ? target.rows(targetRows) : target.rows(),
+                sourceKey, targetKey, visitor);
+    }
+}
@@ -0,0 +1,243 @@
+package com.reconciliation.engine;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reusable buffer holding one composite record key in binary form. Each key attribute is encoded as its
+ * text form in UTF-8 behind a length prefix, so keys compare equal exactly when all attribute texts are
+ * equal, and a 64-bit hash is kept alongside the bytes. Instances are overwritten by every encode; callers
+ * that need to keep a key beyond a callback use {@link #toString()}.
+ */
+public final class RecordKey {
+
+    static final int NULL_FIELD = 0x80;
+    static final int LONG_FIELD = 0x81;
+    static final int MAX_SHORT_LENGTH = 0x7F;
+
+    private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+    private static final byte[] MIN_LONG_DIGITS = Long.toString(Long.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+
+    private byte[] bytes = new byte[64];
+    private int length;
+    private long hash;
+
+    public int length() {
+        return length;
+    }
+
+    public long hash() {
+        return hash;
+    }
+
+    byte[] bytes() {
+        return bytes;
+    }
+
+    void reset() {
+        length = 0;
+        hash = 0;
+    }
+
+    void appendNull() {
+        ensureCapacity(length + 1);
+        bytes[length++] = (byte) NULL_FIELD;
+    }
+
+    void appendLong(long value) {
+        // Digits are written straight into the buffer; Long.MIN_VALUE has 20 characters including the sign
+        int start = beginField(20);
+        if (value == Long.MIN_VALUE) {
+            System.arraycopy(MIN_LONG_DIGITS, 0, bytes, length, MIN_LONG_DIGITS.length);
+            length += MIN_LONG_DIGITS.length;
+        } else {
+            if (value < 0) {
+                bytes[length++] = '-';
+                value = -value;
+            }
+            int end = length + digitCount(value);
+            for (int i = end - 1; i >= length; i--) {
+                bytes[i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            length = end;
+        }
+        endField(start);
+    }
+
+    void appendText(CharSequence text) {
+        int chars = text.length();
+        int start = beginField(chars * 3);
+        for (int i = 0; i < chars; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes[length++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[length++] = (byte) (0xC0 | (c >> 6));
+                bytes[length++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < chars && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, text.charAt(++i));
+                bytes[length++] = (byte) (0xF0 | (cp >> 18));
+                bytes[length++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                bytes[length++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                bytes[length++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogate, replaced the same way String.getBytes does
+                bytes[length++] = '?';
+            } else {
+                bytes[length++] = (byte) (0xE0 | (c >> 12));
+                bytes[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[length++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        endField(start);
+    }
+
+    /**
+     * Completes the key by computing its hash.
+     */
+    void finish() {
+        long h = FNV_OFFSET;
+        for (int i = 0; i < length; i++) {
+            h = (h ^ (bytes[i] & 0xFF)) * FNV_PRIME;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        hash = h;
+    }
+
+    /**
+     * Copies an encoded key, e.g. out of a key index arena.
+     */
+    void load(byte[] source, int offset, int keyLength, long keyHash) {
+        ensureCapacity(keyLength);
+        System.arraycopy(source, offset, bytes, 0, keyLength);
+        length = keyLength;
+        hash = keyHash;
+    }
+
+    boolean contentEquals(byte[] other, int offset, int otherLength) {
+        if (otherLength != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (bytes[i] != other[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Orders keys field by field by the UTF-8 bytes of their text, which is code point order, with null fields
+     * last. Keys compare as zero exactly when they are equal.
+     */
+    int compareTo(RecordKey other) {
+        int position = 0;
+        int otherPosition = 0;
+        while (position < length && otherPosition < other.length) {
+            int marker = bytes[position++] & 0xFF;
+            int otherMarker = other.bytes[otherPosition++] & 0xFF;
+            if (marker == NULL_FIELD || otherMarker == NULL_FIELD) {
+                if (marker != otherMarker) {
+                    return marker == NULL_FIELD ? 1 : -1;
+                }
+                continue;
+            }
+            int fieldLength = fieldLength(bytes, position, marker);
+            int otherFieldLength = fieldLength(other.bytes, otherPosition, otherMarker);
+            position += marker == LONG_FIELD ? 4 : 0;
+            otherPosition += otherMarker == LONG_FIELD ? 4 : 0;
+            int result = Arrays.compareUnsigned(bytes, position, position + fieldLength,
+                    other.bytes, otherPosition, otherPosition + otherFieldLength);
+            if (result != 0) {
+                return result;
+            }
+            position += fieldLength;
+            otherPosition += otherFieldLength;
+        }
+        return Integer.compare(length - position, other.length - otherPosition);
+    }
+
+    /**
+     * Display form used in discrepancies: attribute values joined by "|", null values shown as NULL.
+     */
+    @Override
+    public String toString() {
+        StringBuilder display = new StringBuilder();
+        int position = 0;
+        while (position < length) {
+            if (position > 0) {
+                display.append('|');
+            }
+            int marker = bytes[position++] & 0xFF;
+            if (marker == NULL_FIELD) {
+                display.append("NULL");
+                continue;
+            }
+            int fieldLength = fieldLength(bytes, position, marker);
+            if (marker == LONG_FIELD) {
+                position += 4;
+            }
+            display.append(new String(bytes, position, fieldLength, StandardCharsets.UTF_8));
+            position += fieldLength;
+        }
+        return display.toString();
+    }
+
+    /**
+     * Reserves a one-byte length marker and room for the field; returns the marker position.
+     */
+    private int beginField(int maxLength) {
+        ensureCapacity(length + 5 + maxLength);
+        int start = length;
+        length++;
+        return start;
+    }
+
+    private void endField(int start) {
+        int fieldLength = length - start - 1;
+        if (fieldLength <= MAX_SHORT_LENGTH) {
+            bytes[start] = (byte) fieldLength;
+            return;
+        }
+        // Long field: widen the marker to a marker byte plus a four-byte length
+        System.arraycopy(bytes, start + 1, bytes, start + 5, fieldLength);
+        bytes[start] = (byte) LONG_FIELD;
+        bytes[start + 1] = (byte) (fieldLength >>> 24);
+        bytes[start + 2] = (byte) (fieldLength >>> 16);
+        bytes[start + 3] = (byte) (fieldLength >>> 8);
+        bytes[start + 4] = (byte) fieldLength;
+        length += 4;
+    }
+
+    /**
+     * Length of the field behind a marker; a long field's four-byte length starts at {@code position}.
+     */
+    private static int fieldLength(byte[] bytes, int position, int marker) {
+        if (marker != LONG_FIELD) {
+            return marker;
+        }
+        return ((bytes[position] & 0xFF) << 24) | ((bytes[position + 1] & 0xFF) << 16)
+                | ((bytes[position + 2] & 0xFF) << 8) | (bytes[position + 3] & 0xFF);
+    }
+
+    private void ensureCapacity(int required) {
+        if (required > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(required, bytes.length * 2));
+        }
+    }
+
+    private static int digitCount(long value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+}
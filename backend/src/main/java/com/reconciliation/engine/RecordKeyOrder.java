@@ -0,0 +1,85 @@
+package com.reconciliation.engine;
+
+import java.math.BigDecimal;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Orders records by their key attribute values the way an {@code ORDER BY} on those columns with a binary
+ * collation would: numbers numerically, text by code point (Oracle's {@code NLS_SORT=BINARY} on a Unicode
+ * database), other comparable values by their natural order, and nulls last. Linguistic or case-insensitive
+ * collations order text differently.
+ */
+public class RecordKeyOrder implements Comparator<Map<String, Object>> {
+
+    private final String[] keyAttributes;
+
+    public RecordKeyOrder(List<String> keyAttributes) {
+        this.keyAttributes = keyAttributes.toArray(new String[0]);
+    }
+
+    @Override
+    public int compare(Map<String, Object> left, Map<String, Object> right) {
+        for (String attribute : keyAttributes) {
+            int result = compareValues(left.get(attribute), right.get(attribute));
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static int compareValues(Object left, Object right) {
+        if (left == null || right == null) {
+            return left == null ? (right == null ? 0 : 1) : -1;
+        }
+        if (left instanceof Number && right instanceof Number) {
+            if (isIntegral(left) && isIntegral(right)) {
+                return Long.compare(((Number) left).longValue(), ((Number) right).longValue());
+            }
+            return toBigDecimal((Number) left).compareTo(toBigDecimal((Number) right));
+        }
+        if (left instanceof String && right instanceof String) {
+            return compareCodePoints((String) left, (String) right);
+        }
+        if (left instanceof Comparable && left.getClass() == right.getClass()) {
+            return ((Comparable) left).compareTo(right);
+        }
+        return compareCodePoints(left.toString(), right.toString());
+    }
+
+    /**
+     * Compares by code point rather than by UTF-16 unit, which differ for characters beyond the Basic
+     * Multilingual Plane.
+     */
+    private static int compareCodePoints(String left, String right) {
+        int i = 0;
+        int j = 0;
+        while (i < left.length() && j < right.length()) {
+            int leftCodePoint = left.codePointAt(i);
+            int rightCodePoint = right.codePointAt(j);
+            if (leftCodePoint != rightCodePoint) {
+                return Integer.compare(leftCodePoint, rightCodePoint);
+            }
+            i += Character.charCount(leftCodePoint);
+            j += Character.charCount(rightCodePoint);
+        }
+        return Integer.compare(left.length() - i, right.length() - j);
+    }
+
+    private static boolean isIntegral(Object value) {
+        return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+    }
+
+    private static BigDecimal toBigDecimal(Number value) {
+        if (value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        }
+        if (isIntegral(value)) {
+            return BigDecimal.valueOf(value.longValue());
+        }
+        return new BigDecimal(value.toString());
+    }
+}
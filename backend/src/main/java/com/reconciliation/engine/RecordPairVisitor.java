@@ -0,0 +1,25 @@
+package com.reconciliation.engine;
+
+import java.util.Map;
+
+/**
+ * Callback invoked by a {@link RecordJoin} for every outcome of joining source and target records by key.
+ * Ordinals are the zero-based positions of the records in their original extraction order, so that
+ * implementations can produce the same ordering regardless of the order in which the join visits them.
+ * The key is only valid for the duration of the callback.
+ */
+public interface RecordPairVisitor {
+
+    void onMatched(RecordKey key, long sourceOrdinal, long targetOrdinal,
+                   Map<String, Object> sourceRecord, Map<String, Object> targetRecord);
+
+    void onMissingInTarget(RecordKey key, long sourceOrdinal, Map<String, Object> sourceRecord);
+
+    void onMissingInSource(RecordKey key, long targetOrdinal, Map<String, Object> targetRecord);
+
+    /**
+     * Called once for every key carried by more than one record of a side, in addition to the outcomes
+     * reported for those records, with the ordinals of all of them in ascending order.
+     */
+    void onDuplicateKey(RecordKey key, boolean source, long[] ordinals);
+}
@@ -0,0 +1,87 @@
+package com.reconciliation.engine;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Computes one content fingerprint per extracted row over the normalized values of all compared attributes.
+ * Equal source and target fingerprints mean that every attribute comparison of the pair would succeed, so
+ * the attribute-level comparison can be skipped; rows containing a value whose match cannot be decided from
+ * a hash get {@link #NO_FINGERPRINT} and are always compared attribute by attribute. A false match requires
+ * a 64-bit hash collision.
+ */
+public final class RowFingerprinter {
+
+    public static final long NO_FINGERPRINT = 0L;
+
+    /** Per-value marker for values that cannot be certified by hash. */
+    static final long UNCERTIFIED = 0x510E527FADE682D1L;
+
+    private static final long ROW_SEED = 0x1F83D9ABFB41BD6BL;
+
+    private final ColumnComparator[] columns;
+
+    public RowFingerprinter(ComparisonPlan plan) {
+        this.columns = plan.columns();
+    }
+
+    public long[] sourceFingerprints(RecordBatch batch, ParsedColumns parsed) {
+        return fingerprints(batch, parsed, true);
+    }
+
+    public long[] targetFingerprints(RecordBatch batch, ParsedColumns parsed) {
+        return fingerprints(batch, parsed, false);
+    }
+
+    /**
+     * Column by column over the batch, so that every column vector is scanned sequentially. Temporal
+     * and numeric attributes are hashed from their already parsed epochs and decimals.
+     */
+    private long[] fingerprints(RecordBatch batch, ParsedColumns parsed, boolean source) {
+        int rows = batch.size();
+        long[] fingerprints = new long[rows];
+        BitSet uncertified = new BitSet();
+        Arrays.fill(fingerprints, ROW_SEED);
+
+        for (int i = 0; i < columns.length; i++) {
+            ColumnComparator column = columns[i];
+            int index = batch.columnIndex(source ? column.sourceAttribute() : column.targetAttribute());
+            for (int row = 0; row < rows; row++) {
+                if (uncertified.get(row)) {
+                    continue;
+                }
+                long epoch = parsed.epoch(i, row);
+                long hash;
+                if (epoch != EpochParser.NO_EPOCH) {
+                    hash = column.epochFingerprint(epoch);
+                } else if (parsed.hasDecimal(i, row)) {
+                    hash = column.decimalFingerprint(parsed.unscaled(i, row), parsed.scale(i, row));
+                } else {
+                    Object raw = index >= 0 ? batch.get(row, index) : null;
+                    hash = column.fingerprint(source ? column.normalizeSource(raw) : column.normalizeTarget(raw));
+                }
+                if (hash == UNCERTIFIED) {
+                    uncertified.set(row);
+                } else {
+                    fingerprints[row] = ValueHashing.mix(fingerprints[row], hash);
+                }
+            }
+        }
+
+        for (int row = 0; row < rows; row++) {
+            if (uncertified.get(row)) {
+                fingerprints[row] = NO_FINGERPRINT;
+            } else if (fingerprints[row] == NO_FINGERPRINT) {
+                fingerprints[row] = 1L;
+            }
+        }
+        return fingerprints;
+    }
+
+    /**
+     * Whether a source and target row are known to match on every compared attribute.
+     */
+    public static boolean certainMatch(long sourceFingerprint, long targetFingerprint) {
+        return sourceFingerprint != NO_FINGERPRINT && sourceFingerprint == targetFingerprint;
+    }
+}
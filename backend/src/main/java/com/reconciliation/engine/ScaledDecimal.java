@@ -0,0 +1,216 @@
+package com.reconciliation.engine;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Exact decimals as an unscaled {@code long} and a scale, the value being {@code unscaled / 10^scale}.
+ * Whole numbers and plain numeric text are read without allocating; values whose unscaled value or scale
+ * does not fit are only available as {@link BigDecimal}. Scales are kept in a byte, whose lowest values are
+ * markers for values that are not held as scaled longs.
+ */
+final class ScaledDecimal {
+
+    /** Not a number; compared by value instead. */
+    static final byte NOT_NUMBER = Byte.MIN_VALUE;
+    /** NaN or an infinity, never within a tolerance of anything. */
+    static final byte NON_FINITE = Byte.MIN_VALUE + 1;
+    /** A finite number that is only held as a {@link BigDecimal}. */
+    static final byte OVERFLOW = Byte.MIN_VALUE + 2;
+
+    static final int MIN_SCALE = Byte.MIN_VALUE + 3;
+    static final int MAX_SCALE = Byte.MAX_VALUE;
+
+    /** Powers of ten that fit a long. */
+    static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private ScaledDecimal() {
+    }
+
+    /**
+     * Reads a number or numeric text, storing its unscaled value at {@code unscaled[row]}.
+     *
+     * @return the scale, or one of the markers {@link #NOT_NUMBER}, {@link #NON_FINITE} and {@link #OVERFLOW}
+     */
+    static byte parse(Object value, long[] unscaled, int row) {
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            unscaled[row] = ((Number) value).longValue();
+            return 0;
+        }
+        if (value instanceof CharSequence) {
+            byte scale = parsePlain((CharSequence) value, unscaled, row);
+            if (scale != NOT_NUMBER) {
+                return scale;
+            }
+        }
+        BigDecimal decimal = toBigDecimal(value);
+        if (decimal == null) {
+            return isNonFinite(value) ? NON_FINITE : NOT_NUMBER;
+        }
+        return compact(decimal, unscaled, row);
+    }
+
+    /**
+     * Exact value of a finite number or numeric text, or null. Text is accepted in any form
+     * {@link Double#parseDouble} accepts; forms {@link BigDecimal} does not read are taken at double precision.
+     */
+    static BigDecimal toBigDecimal(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        }
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return BigDecimal.valueOf(((Number) value).longValue());
+        }
+        if (value instanceof Double || value instanceof Float) {
+            double number = ((Number) value).doubleValue();
+            // Float text is the shortest decimal that reads back as the same float
+            return !Double.isFinite(number) ? null :
+                    value instanceof Float ? new BigDecimal(value.toString()) : BigDecimal.valueOf(number);
+        }
+        String text = value.toString().trim();
+        try {
+            return new BigDecimal(text);
+        } catch (NumberFormatException e) {
+            try {
+                double number = Double.parseDouble(text);
+                return Double.isFinite(number) ? BigDecimal.valueOf(number) : null;
+            } catch (NumberFormatException notNumeric) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Whether the value is NaN or an infinity, as a number or as text.
+     */
+    static boolean isNonFinite(Object value) {
+        if (value instanceof Double || value instanceof Float) {
+            return !Double.isFinite(((Number) value).doubleValue());
+        }
+        if (value instanceof BigDecimal || value instanceof Long || value instanceof Integer || value == null) {
+            return false;
+        }
+        try {
+            return !Double.isFinite(Double.parseDouble(value.toString()));
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    static BigDecimal toBigDecimal(long unscaled, int scale) {
+        return BigDecimal.valueOf(unscaled, scale);
+    }
+
+    /**
+     * The unscaled value at a larger scale, or {@link Long#MIN_VALUE} if it does not fit.
+     */
+    static long rescale(long unscaled, int fromScale, int toScale) {
+        int shift = toScale - fromScale;
+        if (shift == 0) {
+            return unscaled;
+        }
+        if (shift >= POWERS_OF_TEN.length) {
+            return unscaled == 0 ? 0 : Long.MIN_VALUE;
+        }
+        long power = POWERS_OF_TEN[shift];
+        long high = Math.multiplyHigh(unscaled, power);
+        long low = unscaled * power;
+        // The product fits if the high word is only the sign extension of the low word
+        return high == (low >> 63) && low != Long.MIN_VALUE ? low : Long.MIN_VALUE;
+    }
+
+    /**
+     * Hash of the numeric value, independent of the scale it is written in.
+     */
+    static long hash(long unscaled, int scale) {
+        if (unscaled == 0) {
+            return ValueHashing.hashDecimal(0, 0);
+        }
+        while (unscaled % 10 == 0 && scale > MIN_SCALE) {
+            unscaled /= 10;
+            scale--;
+        }
+        return ValueHashing.hashDecimal(unscaled, scale);
+    }
+
+    /**
+     * {@link #hash(long, int)} for decimals of any size; the same hash for values that also fit a long.
+     */
+    static long hash(BigDecimal decimal) {
+        if (decimal.signum() == 0) {
+            return ValueHashing.hashDecimal(0, 0);
+        }
+        BigDecimal stripped = decimal.stripTrailingZeros();
+        BigInteger unscaled = stripped.unscaledValue();
+        if (unscaled.bitLength() < 64 && stripped.scale() >= MIN_SCALE && stripped.scale() <= MAX_SCALE) {
+            return ValueHashing.hashDecimal(unscaled.longValue(), stripped.scale());
+        }
+        return ValueHashing.hashDecimal(stripped.hashCode(), Integer.MIN_VALUE);
+    }
+
+    private static byte compact(BigDecimal decimal, long[] unscaled, int row) {
+        int scale = decimal.scale();
+        if (scale < MIN_SCALE || scale > MAX_SCALE) {
+            return OVERFLOW;
+        }
+        BigInteger value = decimal.unscaledValue();
+        if (value.bitLength() >= 64) {
+            return OVERFLOW;
+        }
+        unscaled[row] = value.longValue();
+        return (byte) scale;
+    }
+
+    /**
+     * Plain decimal text: optional surrounding whitespace, an optional sign, digits and at most one decimal
+     * point. Anything else, including more digits than fit a long, is left to {@link #toBigDecimal}.
+     */
+    private static byte parsePlain(CharSequence text, long[] unscaled, int row) {
+        int start = 0;
+        int end = text.length();
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        boolean negative = false;
+        if (start < end && (text.charAt(start) == '-' || text.charAt(start) == '+')) {
+            negative = text.charAt(start) == '-';
+            start++;
+        }
+        long value = 0;
+        int digits = 0;
+        int scale = -1;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '.' && scale < 0) {
+                scale = 0;
+                continue;
+            }
+            if (c < '0' || c > '9' || digits == 18) {
+                return NOT_NUMBER;
+            }
+            value = value * 10 + (c - '0');
+            digits++;
+            if (scale >= 0) {
+                scale++;
+            }
+        }
+        if (digits == 0 || scale > MAX_SCALE) {
+            return NOT_NUMBER;
+        }
+        unscaled[row] = negative ? -value : value;
+        return (byte) Math.max(scale, 0);
+    }
+}
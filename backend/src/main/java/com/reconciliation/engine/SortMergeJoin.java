@@ -0,0 +1,162 @@
+package com.reconciliation.engine;
+
+import com.reconciliation.exception.ReconciliationException;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Single forward pass over two inputs that are already ordered by key, holding one record per side.
+ * Records with equal keys are paired the same way as the hash joins: the last target record of a key
+ * wins and every source record with that key is compared against it. Since equal keys are adjacent, the
+ * records of a duplicated key are a run of consecutive ordinals, reported when the input moves past it.
+ * Inputs that are not ordered are rejected as soon as the first out-of-order record is read.
+ * <p>
+ * Keys are equal when their encoded text is, as in the hash joins. Inputs must ascend in {@link RecordKeyOrder};
+ * values that order as equal but differ in text, such as the numbers 1.0 and 1.00, are different keys and
+ * must follow each other in {@link RecordKey} order of their text.
+ */
+public class SortMergeJoin implements RecordJoin {
+
+    private final RecordKeyOrder order;
+
+    public SortMergeJoin(RecordKeyOrder order) {
+        this.order = order;
+    }
+
+    @Override
+    public void join(Iterator<Map<String, Object>> sourceRecords,
+                     Iterator<Map<String, Object>> targetRecords,
+                     KeyEncoder sourceKey,
+                     KeyEncoder targetKey,
+                     RecordPairVisitor visitor) {
+        OrderedInput source = new OrderedInput("Source", sourceRecords, sourceKey, visitor);
+        OrderedInput target = new OrderedInput("Target", targetRecords, targetKey, visitor);
+        source.advance();
+        target.advance();
+        collapseDuplicates(target);
+
+        while (source.record != null && target.record != null) {
+            int cmp = compare(source.record, source.key, target.record, target.key);
+            if (cmp < 0) {
+                visitor.onMissingInTarget(source.key, source.ordinal, source.record);
+                source.advance();
+            } else if (cmp > 0) {
+                visitor.onMissingInSource(target.key, target.ordinal, target.record);
+                target.advance();
+                collapseDuplicates(target);
+            } else {
+                // Several source records may share the key; keep the target until the source moves past it
+                visitor.onMatched(source.key, source.ordinal, target.ordinal, source.record, target.record);
+                source.advance();
+                if (source.record == null || compare(source.record, source.key, target.record, target.key) != 0) {
+                    target.advance();
+                    collapseDuplicates(target);
+                }
+            }
+        }
+
+        while (source.record != null) {
+            visitor.onMissingInTarget(source.key, source.ordinal, source.record);
+            source.advance();
+        }
+        while (target.record != null) {
+            visitor.onMissingInSource(target.key, target.ordinal, target.record);
+            target.advance();
+            collapseDuplicates(target);
+        }
+    }
+
+    /**
+     * Skips to the last of a run of target records with the same key, mirroring the overwrite semantics
+     * of the hash join index.
+     */
+    private void collapseDuplicates(OrderedInput target) {
+        while (target.record != null && target.peekEqual()) {
+            target.advance();
+        }
+    }
+
+    private int compare(Map<String, Object> left, RecordKey leftKey, Map<String, Object> right, RecordKey rightKey) {
+        int cmp = order.compare(left, right);
+        return cmp != 0 ? cmp : leftKey.compareTo(rightKey);
+    }
+
+    private final class OrderedInput {
+        private final String side;
+        private final boolean source;
+        private final Iterator<Map<String, Object>> iterator;
+        private final KeyEncoder encoder;
+        private final RecordPairVisitor visitor;
+        private Map<String, Object> record;
+        private Map<String, Object> lookahead;
+        // Keys of the current and look-ahead record, and a spare buffer; rotated rather than re-encoded
+        private RecordKey key = new RecordKey();
+        private RecordKey lookaheadKey = new RecordKey();
+        private RecordKey spareKey = new RecordKey();
+        private long ordinal = -1;
+        private long runStart;
+
+        OrderedInput(String side, Iterator<Map<String, Object>> iterator, KeyEncoder encoder,
+                     RecordPairVisitor visitor) {
+            this.side = side;
+            this.source = "Source".equals(side);
+            this.iterator = iterator;
+            this.encoder = encoder;
+            this.visitor = visitor;
+        }
+
+        void advance() {
+            Map<String, Object> previous = record;
+            RecordKey previousKey = key;
+            if (lookahead != null) {
+                record = lookahead;
+                key = lookaheadKey;
+                lookahead = null;
+                lookaheadKey = spareKey;
+            } else if (iterator.hasNext()) {
+                record = iterator.next();
+                key = spareKey;
+                encoder.encode(record, key);
+            } else {
+                record = null;
+                if (previous != null) {
+                    endRun(previousKey, ordinal);
+                }
+                return;
+            }
+            spareKey = previousKey;
+            ordinal++;
+            int cmp = previous != null ? compare(previous, previousKey, record, key) : -1;
+            if (cmp < 0) {
+                if (previous != null) {
+                    endRun(previousKey, ordinal - 1);
+                }
+                runStart = ordinal;
+            } else if (cmp > 0) {
+                throw new ReconciliationException("INPUT_NOT_SORTED", String.format(
+                        "%s input is not ordered by the primary key attributes: record %d with key [%s] follows key [%s]",
+                        side, ordinal + 1, key, previousKey));
+            }
+        }
+
+        private void endRun(RecordKey lastKey, long lastOrdinal) {
+            if (lastOrdinal == runStart) {
+                return;
+            }
+            long[] ordinals = new long[(int) (lastOrdinal - runStart + 1)];
+            for (int i = 0; i < ordinals.length; i++) {
+                ordinals[i] = runStart + i;
+            }
+            visitor.onDuplicateKey(lastKey, source, ordinals);
+        }
+
+        boolean peekEqual() {
+            if (lookahead == null && iterator.hasNext()) {
+                lookahead = iterator.next();
+                encoder.encode(lookahead, lookaheadKey);
+            }
+            return lookahead != null && compare(record, key, lookahead, lookaheadKey) == 0;
+        }
+    }
+}
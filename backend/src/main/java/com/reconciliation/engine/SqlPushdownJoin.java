@@ -0,0 +1,140 @@
+package com.reconciliation.engine;
+
+import com.reconciliation.exception.ReconciliationException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Comparison of a source and target query that live in the same database, run as one full outer join. The
+ * join keeps only key pairs that are missing on a side or that fail one of the per-attribute match
+ * conditions, so matching records never leave the database; the rows it returns are compared again by the
+ * engine, which decides the final outcome and builds the discrepancies.
+ *
+ * <p>Every compared attribute needs a SQL counterpart, see {@link ColumnComparator#sqlMatchCondition}.
+ */
+@Slf4j
+public final class SqlPushdownJoin {
+
+    private static final String PRESENT = "RECON_PRESENT";
+
+    private final PushdownDialect dialect;
+    private final List<String> keyAttributes;
+    private final List<String> sourceColumns;
+    private final List<String> targetColumns;
+    private final String mismatchCondition;
+
+    public SqlPushdownJoin(PushdownDialect dialect, List<String> keyAttributes, ComparisonPlan plan) {
+        this.dialect = dialect;
+        this.keyAttributes = keyAttributes;
+        this.sourceColumns = new ArrayList<>(keyAttributes);
+        this.targetColumns = new ArrayList<>(keyAttributes);
+        List<String> conditions = new ArrayList<>();
+        for (ColumnComparator column : plan.columns()) {
+            String condition = column.sqlMatchCondition(dialect,
+                    "s." + column.sourceAttribute(), "t." + column.targetAttribute());
+            if (condition == null) {
+                throw new ReconciliationException("PUSHDOWN_UNSUPPORTED",
+                        "Comparison of attribute " + column.attributeName() + " has no SQL equivalent");
+            }
+            conditions.add("(" + condition + ")");
+            addIfAbsent(sourceColumns, column.sourceAttribute());
+            addIfAbsent(targetColumns, column.targetAttribute());
+        }
+        PushdownDialect.requireIdentifiers("PUSHDOWN_UNSUPPORTED", sourceColumns);
+        PushdownDialect.requireIdentifiers("PUSHDOWN_UNSUPPORTED", targetColumns);
+        // A match condition that evaluates to unknown counts as a mismatch
+        this.mismatchCondition = conditions.isEmpty() ? null
+                : "CASE WHEN " + String.join(" AND ", conditions) + " THEN 0 ELSE 1 END = 1";
+    }
+
+    /**
+     * Runs the join and returns the records it could not settle together with the overall counts.
+     */
+    public PushdownResult reconcile(String sourceQuery, String targetQuery, SqlSource database) {
+        String source = "(SELECT q.*, 1 AS " + PRESENT + " FROM (" + sourceQuery + ") q) s";
+        String target = "(SELECT q.*, 1 AS " + PRESENT + " FROM (" + targetQuery + ") q) t";
+
+        long[] counts = new long[3];
+        database.query("SELECT (SELECT COUNT(*) FROM (" + sourceQuery + ") q)"
+                + ", (SELECT COUNT(*) FROM (" + targetQuery + ") q)"
+                + ", (SELECT COUNT(*) FROM " + source + " INNER JOIN " + target + " ON " + joinCondition() + ")"
+                + " FROM DUAL", rs -> {
+            counts[0] = rs.getLong(1);
+            counts[1] = rs.getLong(2);
+            counts[2] = rs.getLong(3);
+        });
+
+        RecordBatch.Builder unsettled = RecordBatch.builder(Collections.emptyList(), true);
+        database.extract(unsettledQuery(source, target), unsettled);
+        RecordBatch rows = unsettled.build();
+
+        RecordBatch.Builder sourceRows = RecordBatch.builder(sourceColumns, true);
+        RecordBatch.Builder targetRows = RecordBatch.builder(targetColumns, true);
+        long unsettledPairs = 0;
+        int firstTargetColumn = 2 + sourceColumns.size();
+        for (int row = 0; row < rows.size(); row++) {
+            boolean sourcePresent = rows.get(row, 0) != null;
+            boolean targetPresent = rows.get(row, 1) != null;
+            if (sourcePresent) {
+                for (int i = 0; i < sourceColumns.size(); i++) {
+                    sourceRows.set(i, rows.get(row, 2 + i));
+                }
+                sourceRows.endRow();
+            }
+            if (targetPresent) {
+                for (int i = 0; i < targetColumns.size(); i++) {
+                    targetRows.set(i, rows.get(row, firstTargetColumn + i));
+                }
+                targetRows.endRow();
+            }
+            if (sourcePresent && targetPresent) {
+                unsettledPairs++;
+            }
+        }
+        log.debug("SQL pushdown returned {} of {} source and {} target records", sourceRows.size(), counts[0], counts[1]);
+        return new PushdownResult(sourceRows.build(), targetRows.build(), counts[0], counts[1], counts[2] - unsettledPairs);
+    }
+
+    /**
+     * Key pairs missing on a side or failing a match condition. Without a full outer join, the target-only
+     * keys are added by a second, anti-joined branch.
+     */
+    String unsettledQuery(String source, String target) {
+        StringBuilder select = new StringBuilder("SELECT s.").append(PRESENT).append(" AS S_PRESENT, t.")
+                .append(PRESENT).append(" AS T_PRESENT");
+        for (int i = 0; i < sourceColumns.size(); i++) {
+            select.append(", s.").append(sourceColumns.get(i)).append(" AS S").append(i);
+        }
+        for (int i = 0; i < targetColumns.size(); i++) {
+            select.append(", t.").append(targetColumns.get(i)).append(" AS T").append(i);
+        }
+        String unsettled = "s." + PRESENT + " IS NULL OR t." + PRESENT + " IS NULL"
+                + (mismatchCondition != null ? " OR " + mismatchCondition : "");
+        if (dialect.supportsFullOuterJoin()) {
+            return select + " FROM " + source + " FULL OUTER JOIN " + target + " ON " + joinCondition()
+                    + " WHERE " + unsettled;
+        }
+        return select + " FROM " + source + " LEFT JOIN " + target + " ON " + joinCondition()
+                + " WHERE " + unsettled
+                + " UNION ALL "
+                + select + " FROM " + target + " LEFT JOIN " + source + " ON " + joinCondition()
+                + " WHERE s." + PRESENT + " IS NULL";
+    }
+
+    private String joinCondition() {
+        List<String> conditions = new ArrayList<>(keyAttributes.size());
+        for (String key : keyAttributes) {
+            conditions.add("s." + key + " = t." + key);
+        }
+        return String.join(" AND ", conditions);
+    }
+
+    private static void addIfAbsent(List<String> columns, String column) {
+        if (!columns.contains(column)) {
+            columns.add(column);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.reconciliation.engine;
+
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+/**
+ * Database a pushed-down comparison runs its generated SQL against.
+ */
+public interface SqlSource {
+
+    /**
+     * Runs a query, handing each result row to the callback.
+     */
+    void query(String sql, RowCallbackHandler rows);
+
+    /**
+     * Runs a row query with positional parameters and appends its rows to the builder.
+     */
+    void extract(String sql, RecordBatch.Builder rows, Object... args);
+}
@@ -0,0 +1,334 @@
+package com.reconciliation.engine;
+
+import com.reconciliation.entity.AttributeMapping;
+import com.reconciliation.enums.ComparisonType;
+import com.reconciliation.exception.ReconciliationException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Control-total reconciliation. Records are grouped by the summary group attributes and, per group, the
+ * record count and the sum of every {@link ComparisonType#NUMERIC_TOLERANCE} attribute are compared between
+ * source and target. Groups whose totals agree count as matched; only the records of groups that disagree
+ * are compared row by row. Totals are either accumulated in one pass over extracted batches or computed by
+ * the databases with {@code GROUP BY}, in which case only the records of disagreeing groups are extracted.
+ * Sums are exact decimals on both paths, so totals agree only within the configured tolerance.
+ */
+@Slf4j
+public final class SummaryReconciler {
+
+    private static final int SOURCE = 0;
+    private static final int TARGET = 1;
+
+    /** Groups OR-ed into one extraction query. */
+    private static final int GROUPS_PER_EXTRACT = 64;
+
+    private final List<List<String>> groupColumns;
+    private final List<Measure> measures = new ArrayList<>();
+
+    public SummaryReconciler(List<String> groupAttributes, List<AttributeMapping> mappings) {
+        if (groupAttributes.isEmpty()) {
+            throw new ReconciliationException("INVALID_CONFIG", "Summary mode requires summary group attributes");
+        }
+        this.groupColumns = Arrays.asList(groupAttributes, targetGroupAttributes(groupAttributes, mappings));
+        for (AttributeMapping mapping : mappings) {
+            if (Boolean.TRUE.equals(mapping.getIsEnabled()) && mapping.getComparisonType() == ComparisonType.NUMERIC_TOLERANCE) {
+                measures.add(new Measure(mapping));
+            }
+        }
+    }
+
+    /**
+     * Target names of the group attributes. Group attributes are named as in the source; a mapping of the same
+     * attribute gives the target name.
+     */
+    public static List<String> targetGroupAttributes(List<String> groupAttributes, List<AttributeMapping> mappings) {
+        List<String> targetGroup = new ArrayList<>(groupAttributes.size());
+        for (String attribute : groupAttributes) {
+            String targetAttribute = attribute;
+            for (AttributeMapping mapping : mappings) {
+                if (attribute.equalsIgnoreCase(mapping.getSourceAttribute())) {
+                    targetAttribute = mapping.getTargetAttribute();
+                    break;
+                }
+            }
+            targetGroup.add(targetAttribute);
+        }
+        return targetGroup;
+    }
+
+    /**
+     * Compares group totals accumulated from extracted batches and keeps the records of disagreeing groups.
+     */
+    public PushdownResult reconcile(RecordBatch source, RecordBatch target) {
+        GroupTotals totals = new GroupTotals();
+        int[] sourceGroups = totals.accumulateRecords(SOURCE, source);
+        int[] targetGroups = totals.accumulateRecords(TARGET, target);
+        boolean[] agreeing = totals.agreeing();
+        return new PushdownResult(
+                source.select(disagreeingRows(sourceGroups, agreeing)),
+                target.select(disagreeingRows(targetGroups, agreeing)),
+                source.size(), target.size(), totals.matchedRecords(agreeing));
+    }
+
+    /**
+     * Compares group totals computed by the databases and extracts only the records of disagreeing groups.
+     */
+    public PushdownResult reconcile(String sourceQuery, SqlSource source, String targetQuery, SqlSource target) {
+        List<String> measureColumns = new ArrayList<>();
+        for (Measure measure : measures) {
+            measureColumns.add(measure.sourceAttribute);
+            measureColumns.add(measure.targetAttribute);
+        }
+        PushdownDialect.requireIdentifiers("SUMMARY_UNSUPPORTED", groupColumns.get(SOURCE));
+        PushdownDialect.requireIdentifiers("SUMMARY_UNSUPPORTED", groupColumns.get(TARGET));
+        PushdownDialect.requireIdentifiers("SUMMARY_UNSUPPORTED", measureColumns);
+
+        RecordBatch sourceTotals = aggregate(SOURCE, sourceQuery, source);
+        RecordBatch targetTotals = aggregate(TARGET, targetQuery, target);
+        GroupTotals totals = new GroupTotals();
+        int[] sourceGroups = totals.accumulateTotals(SOURCE, sourceTotals);
+        int[] targetGroups = totals.accumulateTotals(TARGET, targetTotals);
+        boolean[] agreeing = totals.agreeing();
+        log.debug("Summary totals: {} source and {} target groups", sourceTotals.size(), targetTotals.size());
+
+        return new PushdownResult(
+                extract(SOURCE, sourceQuery, source, sourceTotals, sourceGroups, agreeing),
+                extract(TARGET, targetQuery, target, targetTotals, targetGroups, agreeing),
+                totals.recordCount(SOURCE), totals.recordCount(TARGET), totals.matchedRecords(agreeing));
+    }
+
+    /**
+     * Group totals of one side, as columns G0..Gn (group values), ROW_COUNT and M0..Mm (measure sums read
+     * as {@link BigDecimal}).
+     */
+    private RecordBatch aggregate(int side, String query, SqlSource database) {
+        List<String> group = groupColumns.get(side);
+        StringBuilder select = new StringBuilder("SELECT ");
+        StringBuilder groupBy = new StringBuilder();
+        for (int i = 0; i < group.size(); i++) {
+            select.append("q.").append(group.get(i)).append(" AS G").append(i).append(", ");
+            groupBy.append(i > 0 ? ", " : "").append("q.").append(group.get(i));
+        }
+        select.append("COUNT(*) AS ROW_COUNT");
+        for (int i = 0; i < measures.size(); i++) {
+            select.append(", SUM(q.").append(measures.get(i).attribute(side)).append(") AS M").append(i);
+        }
+        String sql = select + " FROM (" + query + ") q GROUP BY " + groupBy;
+        RecordBatch.Builder totals = RecordBatch.builder(Collections.emptyList(), true);
+        database.query(sql, rs -> {
+            for (int i = 0; i < group.size(); i++) {
+                totals.set(totals.addColumn("G" + i), rs.getObject(i + 1));
+            }
+            totals.set(totals.addColumn("ROW_COUNT"), rs.getLong(group.size() + 1));
+            for (int i = 0; i < measures.size(); i++) {
+                totals.set(totals.addColumn("M" + i), rs.getBigDecimal(group.size() + 2 + i));
+            }
+            totals.endRow();
+        });
+        return totals.build();
+    }
+
+    private RecordBatch extract(int side, String query, SqlSource database, RecordBatch totals,
+                                int[] groups, boolean[] agreeing) {
+        List<String> group = groupColumns.get(side);
+        RecordBatch.Builder rows = RecordBatch.builder(Collections.emptyList(), true);
+        StringBuilder condition = new StringBuilder();
+        List<Object> args = new ArrayList<>();
+        int pending = 0;
+        for (int row = 0; row < totals.size(); row++) {
+            if (agreeing[groups[row]]) {
+                continue;
+            }
+            condition.append(pending > 0 ? " OR (" : "(");
+            for (int i = 0; i < group.size(); i++) {
+                Object value = totals.get(row, i);
+                condition.append(i > 0 ? " AND q." : "q.").append(group.get(i));
+                if (value == null) {
+                    condition.append(" IS NULL");
+                } else {
+                    condition.append(" = ?");
+                    args.add(value);
+                }
+            }
+            condition.append(')');
+            if (++pending == GROUPS_PER_EXTRACT) {
+                database.extract("SELECT q.* FROM (" + query + ") q WHERE " + condition, rows, args.toArray());
+                condition.setLength(0);
+                args.clear();
+                pending = 0;
+            }
+        }
+        if (pending > 0) {
+            database.extract("SELECT q.* FROM (" + query + ") q WHERE " + condition, rows, args.toArray());
+        }
+        return rows.build();
+    }
+
+    private static int[] disagreeingRows(int[] groups, boolean[] agreeing) {
+        int[] rows = new int[groups.length];
+        int count = 0;
+        for (int row = 0; row < groups.length; row++) {
+            if (!agreeing[groups[row]]) {
+                rows[count++] = row;
+            }
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    /**
+     * Summed attribute; sums of a group agree when their difference is within the attribute's tolerance
+     * applied once per record, or within the percentage of the source sum.
+     */
+    private static final class Measure {
+        private final String sourceAttribute;
+        private final String targetAttribute;
+        // The absolute limit per record, or the fraction of the source sum
+        private final BigDecimal tolerance;
+        private final boolean percentage;
+
+        Measure(AttributeMapping mapping) {
+            this.sourceAttribute = mapping.getSourceAttribute();
+            this.targetAttribute = mapping.getTargetAttribute();
+            BigDecimal value = mapping.getToleranceValue() != null ?
+                    BigDecimal.valueOf(mapping.getToleranceValue()) : BigDecimal.ZERO;
+            this.percentage = "PERCENTAGE".equalsIgnoreCase(mapping.getToleranceType());
+            this.tolerance = percentage ? value.movePointLeft(2).abs() : value;
+        }
+
+        String attribute(int side) {
+            return side == SOURCE ? sourceAttribute : targetAttribute;
+        }
+
+        /**
+         * Whether the sums agree; a null sum is a group without values.
+         */
+        boolean agrees(BigDecimal source, BigDecimal target, long records) {
+            BigDecimal sourceSum = source != null ? source : BigDecimal.ZERO;
+            BigDecimal targetSum = target != null ? target : BigDecimal.ZERO;
+            BigDecimal allowed = percentage ? sourceSum.multiply(tolerance).abs() :
+                    tolerance.multiply(BigDecimal.valueOf(records));
+            return sourceSum.subtract(targetSum).abs().compareTo(allowed) <= 0;
+        }
+    }
+
+    /**
+     * Record counts and measure sums per group and side, indexed by the encoded group values.
+     */
+    private final class GroupTotals {
+        private final KeyIndex index = new KeyIndex();
+        private final RecordKey key = new RecordKey();
+        private final int measureCount = measures.size();
+        private long[][] counts = new long[2][1024];
+        private BigDecimal[][] sums = new BigDecimal[2][1024 * measureCount];
+        private boolean[] unsummable = new boolean[1024];
+
+        int[] accumulateRecords(int side, RecordBatch batch) {
+            KeyEncoder encoder = new KeyEncoder(groupColumns.get(side));
+            int[] measureColumns = new int[measureCount];
+            for (int i = 0; i < measureCount; i++) {
+                measureColumns[i] = batch.columnIndex(measures.get(i).attribute(side));
+            }
+            int[] groups = new int[batch.size()];
+            for (int row = 0; row < groups.length; row++) {
+                int group = groupOf(encoder, batch, row);
+                counts[side][group]++;
+                for (int i = 0; i < measureCount; i++) {
+                    Object value = measureColumns[i] >= 0 ? batch.get(row, measureColumns[i]) : null;
+                    if (value == null) {
+                        continue;
+                    }
+                    BigDecimal decimal = ScaledDecimal.toBigDecimal(value);
+                    if (decimal != null) {
+                        add(side, group * measureCount + i, decimal);
+                    } else {
+                        // Totals of this group cannot be compared, so its records are compared one by one
+                        unsummable[group] = true;
+                    }
+                }
+                groups[row] = group;
+            }
+            return groups;
+        }
+
+        int[] accumulateTotals(int side, RecordBatch totals) {
+            List<String> groupNames = new ArrayList<>();
+            for (int i = 0; i < groupColumns.get(side).size(); i++) {
+                groupNames.add("G" + i);
+            }
+            KeyEncoder encoder = new KeyEncoder(groupNames);
+            int countColumn = totals.columnIndex("ROW_COUNT");
+            int[] groups = new int[totals.size()];
+            for (int row = 0; row < groups.length; row++) {
+                int group = groupOf(encoder, totals, row);
+                counts[side][group] += ((Number) totals.get(row, countColumn)).longValue();
+                for (int i = 0; i < measureCount; i++) {
+                    BigDecimal sum = (BigDecimal) totals.get(row, totals.columnIndex("M" + i));
+                    if (sum != null) {
+                        add(side, group * measureCount + i, sum);
+                    }
+                }
+                groups[row] = group;
+            }
+            return groups;
+        }
+
+        boolean[] agreeing() {
+            boolean[] agreeing = new boolean[index.size()];
+            for (int group = 0; group < agreeing.length; group++) {
+                long records = counts[SOURCE][group];
+                boolean agrees = !unsummable[group] && records == counts[TARGET][group];
+                for (int i = 0; agrees && i < measureCount; i++) {
+                    int cell = group * measureCount + i;
+                    agrees = measures.get(i).agrees(sums[SOURCE][cell], sums[TARGET][cell], records);
+                }
+                agreeing[group] = agrees;
+            }
+            return agreeing;
+        }
+
+        long matchedRecords(boolean[] agreeing) {
+            long matched = 0;
+            for (int group = 0; group < agreeing.length; group++) {
+                if (agreeing[group]) {
+                    matched += counts[SOURCE][group];
+                }
+            }
+            return matched;
+        }
+
+        long recordCount(int side) {
+            long records = 0;
+            for (int group = 0; group < index.size(); group++) {
+                records += counts[side][group];
+            }
+            return records;
+        }
+
+        private void add(int side, int cell, BigDecimal value) {
+            BigDecimal sum = sums[side][cell];
+            sums[side][cell] = sum != null ? sum.add(value) : value;
+        }
+
+        private int groupOf(KeyEncoder encoder, RecordBatch batch, int row) {
+            encoder.encode(batch.row(row), key);
+            int group = index.add(key);
+            if (group < 0) {
+                return -(group + 1);
+            }
+            if (group == unsummable.length) {
+                counts[SOURCE] = Arrays.copyOf(counts[SOURCE], group * 2);
+                counts[TARGET] = Arrays.copyOf(counts[TARGET], group * 2);
+                sums[SOURCE] = Arrays.copyOf(sums[SOURCE], group * 2 * measureCount);
+                sums[TARGET] = Arrays.copyOf(sums[TARGET], group * 2 * measureCount);
+                unsummable = Arrays.copyOf(unsummable, group * 2);
+            }
+            return group;
+        }
+    }
+}
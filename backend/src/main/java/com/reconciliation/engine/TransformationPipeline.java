@@ -0,0 +1,301 @@
+package com.reconciliation.engine;
+
+import com.reconciliation.exception.ReconciliationException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Chain of text transformations compiled once from a specification such as
+ * {@code TRIM|UPPER|LPAD(10,'0')|SUBSTR(0,8)}. Step names are case-insensitive; {@code UPPERCASE} and
+ * {@code LOWERCASE} are accepted for {@code UPPER} and {@code LOWER}. Non-null values are transformed as text,
+ * every step returning its input unchanged when there is nothing to do, so values already in normalized form
+ * pass through without allocating.
+ * <ul>
+ *     <li>{@code TRIM}, {@code LTRIM}, {@code RTRIM} - remove leading and/or trailing whitespace</li>
+ *     <li>{@code UPPER}, {@code LOWER} - change case, independent of the default locale</li>
+ *     <li>{@code LPAD(length[,'pad'])}, {@code RPAD(length[,'pad'])} - pad shorter values to the length,
+ *     with spaces by default; longer values are kept whole</li>
+ *     <li>{@code SUBSTR(start[,length])} - the part starting at the zero-based position</li>
+ * </ul>
+ */
+public final class TransformationPipeline {
+
+    public static final TransformationPipeline IDENTITY = new TransformationPipeline(new Step[0], "");
+
+    private final Step[] steps;
+    private final String key;
+
+    private TransformationPipeline(Step[] steps, String key) {
+        this.steps = steps;
+        this.key = key;
+    }
+
+    /**
+     * Compiles a specification; null or blank yields {@link #IDENTITY}.
+     *
+     * @param attribute attribute the specification belongs to, for error messages
+     */
+    public static TransformationPipeline compile(String attribute, String specification) {
+        if (specification == null || specification.trim().isEmpty()) {
+            return IDENTITY;
+        }
+        List<Step> steps = new ArrayList<>();
+        for (String part : split(attribute, specification, '|')) {
+            steps.add(parseStep(attribute, specification, part.trim()));
+        }
+        StringBuilder key = new StringBuilder();
+        for (Step step : steps) {
+            if (key.length() > 0) {
+                key.append('|');
+            }
+            key.append(step.canonical);
+        }
+        return new TransformationPipeline(steps.toArray(new Step[0]), key.toString());
+    }
+
+    public boolean isIdentity() {
+        return steps.length == 0;
+    }
+
+    /**
+     * Canonical form of the specification; pipelines with equal keys transform every value alike.
+     */
+    public String key() {
+        return key;
+    }
+
+    public Object apply(Object value) {
+        if (value == null || steps.length == 0) {
+            return value;
+        }
+        String text = value instanceof String ? (String) value : String.valueOf(value);
+        for (Step step : steps) {
+            text = step.apply(text);
+        }
+        return text;
+    }
+
+    /**
+     * SQL expression applying the pipeline to a column. Database and engine may disagree on what counts as
+     * whitespace or on how values are rendered as text, but never so that the database transforms two values
+     * alike where the engine does not.
+     */
+    String sql(PushdownDialect dialect, String column) {
+        if (steps.length == 0) {
+            return column;
+        }
+        String expression = dialect.text(column);
+        for (Step step : steps) {
+            expression = step.sql(dialect, expression);
+        }
+        return expression;
+    }
+
+    private static Step parseStep(String attribute, String specification, String part) {
+        int open = part.indexOf('(');
+        String name = (open < 0 ? part : part.substring(0, open)).trim().toUpperCase(Locale.ROOT);
+        List<String> arguments = new ArrayList<>();
+        if (open >= 0) {
+            if (!part.endsWith(")")) {
+                throw invalid(attribute, specification, "unbalanced parentheses in '" + part + "'");
+            }
+            String inner = part.substring(open + 1, part.length() - 1);
+            if (!inner.trim().isEmpty()) {
+                for (String argument : split(attribute, specification, inner, ',')) {
+                    arguments.add(argument.trim());
+                }
+            }
+        }
+        switch (name) {
+            case "TRIM":
+                requireArguments(attribute, specification, name, arguments, 0, 0);
+                return new Step(name, Kind.TRIM, 0, null);
+            case "LTRIM":
+                requireArguments(attribute, specification, name, arguments, 0, 0);
+                return new Step(name, Kind.LTRIM, 0, null);
+            case "RTRIM":
+                requireArguments(attribute, specification, name, arguments, 0, 0);
+                return new Step(name, Kind.RTRIM, 0, null);
+            case "UPPER":
+            case "UPPERCASE":
+                requireArguments(attribute, specification, name, arguments, 0, 0);
+                return new Step("UPPER", Kind.UPPER, 0, null);
+            case "LOWER":
+            case "LOWERCASE":
+                requireArguments(attribute, specification, name, arguments, 0, 0);
+                return new Step("LOWER", Kind.LOWER, 0, null);
+            case "LPAD":
+            case "RPAD": {
+                requireArguments(attribute, specification, name, arguments, 1, 2);
+                int length = integer(attribute, specification, arguments.get(0), 1);
+                String pad = arguments.size() > 1 ? literal(attribute, specification, arguments.get(1)) : " ";
+                if (pad.isEmpty()) {
+                    throw invalid(attribute, specification, name + " needs a non-empty pad");
+                }
+                return new Step(name + "(" + length + "," + quote(pad) + ")",
+                        name.equals("LPAD") ? Kind.LPAD : Kind.RPAD, length, pad);
+            }
+            case "SUBSTR": {
+                requireArguments(attribute, specification, name, arguments, 1, 2);
+                int start = integer(attribute, specification, arguments.get(0), 0);
+                int length = arguments.size() > 1 ? integer(attribute, specification, arguments.get(1), 0) : -1;
+                return new Step(length < 0 ? "SUBSTR(" + start + ")" : "SUBSTR(" + start + "," + length + ")",
+                        Kind.SUBSTR, start, length < 0 ? null : length);
+            }
+            default:
+                throw invalid(attribute, specification, "unknown step '" + part + "'");
+        }
+    }
+
+    /**
+     * Splits at separators outside quoted literals.
+     */
+    private static List<String> split(String attribute, String specification, char separator) {
+        return split(attribute, specification, specification, separator);
+    }
+
+    private static List<String> split(String attribute, String specification, String text, char separator) {
+        List<String> parts = new ArrayList<>();
+        boolean quoted = false;
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (c == separator && !quoted) {
+                parts.add(text.substring(start, i));
+                start = i + 1;
+            }
+        }
+        if (quoted) {
+            throw invalid(attribute, specification, "unterminated quote");
+        }
+        parts.add(text.substring(start));
+        return parts;
+    }
+
+    private static void requireArguments(String attribute, String specification, String name,
+                                         List<String> arguments, int min, int max) {
+        if (arguments.size() < min || arguments.size() > max) {
+            throw invalid(attribute, specification, name + " takes " + (min == max ? String.valueOf(min) : min + " to " + max)
+                    + " arguments");
+        }
+    }
+
+    private static int integer(String attribute, String specification, String argument, int min) {
+        try {
+            int value = Integer.parseInt(argument);
+            if (value >= min) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw invalid(attribute, specification, "'" + argument + "' is not a whole number of at least " + min);
+    }
+
+    private static String literal(String attribute, String specification, String argument) {
+        if (argument.length() < 2 || argument.charAt(0) != '\'' || argument.charAt(argument.length() - 1) != '\'') {
+            throw invalid(attribute, specification, "'" + argument + "' is not a quoted text");
+        }
+        return argument.substring(1, argument.length() - 1).replace("''", "'");
+    }
+
+    private static String quote(String text) {
+        return "'" + text.replace("'", "''") + "'";
+    }
+
+    private static ReconciliationException invalid(String attribute, String specification, String reason) {
+        return new ReconciliationException("INVALID_MAPPING", "Invalid transformation for attribute "
+                + attribute + ": '" + specification + "' - " + reason);
+    }
+
+    private enum Kind { TRIM, LTRIM, RTRIM, UPPER, LOWER, LPAD, RPAD, SUBSTR }
+
+    private static final class Step {
+        final String canonical;
+        final Kind kind;
+        final int number;
+        final Object argument;
+
+        Step(String canonical, Kind kind, int number, Object argument) {
+            this.canonical = canonical;
+            this.kind = kind;
+            this.number = number;
+            this.argument = argument;
+        }
+
+        String apply(String text) {
+            switch (kind) {
+                case TRIM:
+                    return text.trim();
+                case LTRIM: {
+                    int start = 0;
+                    while (start < text.length() && text.charAt(start) <= ' ') {
+                        start++;
+                    }
+                    return text.substring(start);
+                }
+                case RTRIM: {
+                    int end = text.length();
+                    while (end > 0 && text.charAt(end - 1) <= ' ') {
+                        end--;
+                    }
+                    return text.substring(0, end);
+                }
+                case UPPER:
+                    return text.toUpperCase(Locale.ROOT);
+                case LOWER:
+                    return text.toLowerCase(Locale.ROOT);
+                case LPAD:
+                case RPAD:
+                    return text.length() >= number ? text : pad(text);
+                case SUBSTR: {
+                    int start = Math.min(number, text.length());
+                    int end = argument == null ? text.length() : (int) Math.min((long) start + (Integer) argument, text.length());
+                    return text.substring(start, end);
+                }
+                default:
+                    throw new IllegalStateException("Unknown transformation step " + kind);
+            }
+        }
+
+        private String pad(String text) {
+            String padding = (String) argument;
+            StringBuilder padded = new StringBuilder(number);
+            if (kind == Kind.RPAD) {
+                padded.append(text);
+            }
+            for (int i = 0, missing = number - text.length(); i < missing; i++) {
+                padded.append(padding.charAt(i % padding.length()));
+            }
+            if (kind == Kind.LPAD) {
+                padded.append(text);
+            }
+            return padded.toString();
+        }
+
+        String sql(PushdownDialect dialect, String expression) {
+            switch (kind) {
+                case UPPER:
+                case LOWER:
+                case TRIM:
+                case LTRIM:
+                case RTRIM:
+                    return kind.name() + "(" + expression + ")";
+                case LPAD:
+                case RPAD:
+                    // SQL padding also truncates longer values
+                    return "CASE WHEN LENGTH(" + expression + ") >= " + number + " THEN " + expression + " ELSE "
+                            + dialect.pad(kind.name(), expression, number, (String) argument) + " END";
+                case SUBSTR:
+                    return "SUBSTR(" + expression + ", " + (number + 1)
+                            + (argument == null ? "" : ", " + argument) + ")";
+                default:
+                    throw new IllegalStateException("Unknown transformation step " + kind);
+            }
+        }
+    }
+}
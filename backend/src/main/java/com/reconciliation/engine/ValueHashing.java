@@ -0,0 +1,79 @@
+package com.reconciliation.engine;
+
+/**
+ * 64-bit hashes of attribute values used for row fingerprints. Hashes are only compared within one run,
+ * so type tags may rely on identity hash codes.
+ */
+final class ValueHashing {
+
+    static final long NULL_HASH = 0x6A09E667F3BCC908L;
+    static final long PATTERN_MATCH_HASH = 0xBB67AE8584CAA73BL;
+
+    private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+    private static final long TEXT_TAG = 0x3C6EF372FE94F82BL;
+    private static final long NUMBER_TAG = 0xA54FF53A5F1D36F1L;
+    private static final long EPOCH_TAG = 0x9B05688C2B3E6C1FL;
+
+    private ValueHashing() {
+    }
+
+    /**
+     * Hash consistent with {@link Object#equals}: values of different classes never share a hash by design.
+     */
+    static long hashEquality(Object value) {
+        if (value instanceof String) {
+            return mix(String.class.hashCode(), hashChars((String) value, false));
+        }
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return mix(value.getClass().hashCode(), ((Number) value).longValue());
+        }
+        if (value instanceof Double) {
+            return mix(Double.class.hashCode(), Double.doubleToLongBits((Double) value));
+        }
+        // Other value types: class, text form and hashCode must all agree
+        return mix(mix(value.getClass().hashCode(), hashChars(value.toString(), false)), value.hashCode());
+    }
+
+    static long hashText(String value) {
+        return mix(TEXT_TAG, hashChars(value, false));
+    }
+
+    static long hashIgnoreCase(String value) {
+        return mix(TEXT_TAG, hashChars(value, true));
+    }
+
+    /**
+     * Hash of a decimal in its canonical form, without trailing zeros, see {@link ScaledDecimal#hash}.
+     */
+    static long hashDecimal(long unscaled, int scale) {
+        return mix(mix(NUMBER_TAG, unscaled), scale);
+    }
+
+    static long hashEpoch(long epochMillis) {
+        return mix(EPOCH_TAG, epochMillis);
+    }
+
+    static long mix(long seed, long value) {
+        long h = seed ^ (value * 0x9E3779B97F4A7C15L);
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static long hashChars(String value, boolean ignoreCase) {
+        long h = FNV_OFFSET;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (ignoreCase) {
+                // Same folding String.equalsIgnoreCase applies per character
+                c = Character.toLowerCase(Character.toUpperCase(c));
+            }
+            h = (h ^ c) * FNV_PRIME;
+        }
+        return h ^ value.length();
+    }
+}
@@ -0,0 +1,110 @@
+package com.reconciliation.engine;
+
+import com.reconciliation.exception.ReconciliationException;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Date;
+
+/**
+ * High-water mark of a watermark column: the largest value of the column a run has extracted, either a
+ * number or a timestamp. A run stores the marks of both sides as text, and the next run extracts only the
+ * rows at or above them. Rows at the mark itself are extracted again, so rows written with the same value
+ * after the previous extraction are not missed.
+ */
+public final class Watermark {
+
+    private final String column;
+    // BigDecimal or Timestamp
+    private final Comparable<?> value;
+
+    private Watermark(String column, Comparable<?> value) {
+        this.column = column;
+        this.value = value;
+    }
+
+    /**
+     * Mark of a column read back from its stored text, or null if there is none.
+     */
+    public static Watermark parse(String column, String stored) {
+        if (stored == null || stored.isEmpty()) {
+            return null;
+        }
+        try {
+            return new Watermark(column, new BigDecimal(stored));
+        } catch (NumberFormatException notNumeric) {
+            try {
+                return new Watermark(column, Timestamp.valueOf(stored));
+            } catch (IllegalArgumentException e) {
+                throw new ReconciliationException("INVALID_CONFIG", "Unreadable high-water mark of " + column + ": " + stored);
+            }
+        }
+    }
+
+    /**
+     * The largest of the previous mark and the column values of a batch, or null if there is neither.
+     */
+    public static Watermark highest(Watermark previous, String column, RecordBatch batch) {
+        Comparable<?> highest = previous != null ? previous.value : null;
+        int index = batch.columnIndex(column);
+        for (int row = 0; index >= 0 && row < batch.size(); row++) {
+            Comparable<?> value = comparable(column, batch.get(row, index));
+            if (value != null && (highest == null || compare(value, highest) > 0)) {
+                highest = value;
+            }
+        }
+        return highest != null ? new Watermark(column, highest) : null;
+    }
+
+    /**
+     * The query restricted to rows at or above the mark. The mark is rendered as a numeric or timestamp
+     * literal, which Oracle and H2 both read.
+     */
+    public String restrict(String query) {
+        PushdownDialect.requireIdentifiers("INVALID_CONFIG", Collections.singletonList(column));
+        String literal = value instanceof BigDecimal ?
+                ((BigDecimal) value).toPlainString() : "TIMESTAMP '" + value + "'";
+        return "SELECT q.* FROM (" + query + ") q WHERE q." + column + " >= " + literal;
+    }
+
+    /**
+     * Text of the mark as stored on the run.
+     */
+    public String stored() {
+        return value instanceof BigDecimal ? ((BigDecimal) value).toPlainString() : value.toString();
+    }
+
+    private static Comparable<?> comparable(String column, Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Number) {
+            BigDecimal decimal = ScaledDecimal.toBigDecimal(value);
+            if (decimal != null) {
+                return decimal;
+            }
+        } else if (value instanceof Timestamp) {
+            return (Timestamp) value;
+        } else if (value instanceof Date) {
+            return new Timestamp(((Date) value).getTime());
+        } else if (value instanceof LocalDateTime) {
+            return Timestamp.valueOf((LocalDateTime) value);
+        } else if (value instanceof LocalDate) {
+            return Timestamp.valueOf(((LocalDate) value).atStartOfDay());
+        }
+        throw new ReconciliationException("INVALID_CONFIG",
+                "Watermark column " + column + " must hold numbers or timestamps: " + value);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compare(Comparable value, Comparable other) {
+        if (value.getClass() != other.getClass()) {
+            throw new ReconciliationException("INVALID_CONFIG",
+                    "Watermark values of different types: " + value + ", " + other);
+        }
+        return value.compareTo(other);
+    }
+}
@@ -5,6 +5,7 @@ import com.reconciliation.enums.DiscrepancyType;
 import lombok.*;
 
 import javax.persistence.*;
+import java.math.BigDecimal;
 
 /**
  * Represents a discrepancy found during reconciliation.
@@ -51,17 +52,15 @@ public class Discrepancy extends BaseEntity {
     @Column(name = "actual_value", length = 4000)
     private String actualValue;
 
-    @Column(name = "difference_amount")
-    private Double differenceAmount;
+    @Column(name = "difference_amount", precision = 20, scale = 6)
+    private BigDecimal differenceAmount;
 
-    @Column(name = "difference_percentage")
-    private Double differencePercentage;
+    @Column(name = "difference_percentage", precision = 10, scale = 4)
+    private BigDecimal differencePercentage;
 
-    @Column(name = "source_record_json", columnDefinition = "CLOB")
-    private String sourceRecordJson;
-
-    @Column(name = "target_record_json", columnDefinition = "CLOB")
-    private String targetRecordJson;
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "record_snapshot_id")
+    private RecordSnapshot recordSnapshot;
 
     @Column(name = "description", length = 2000)
     private String description;
@@ -1,5 +1,7 @@
 package com.reconciliation.entity;
 
+import com.reconciliation.enums.ComparisonStrategy;
+import com.reconciliation.enums.ExtractionSliceMethod;
 import com.reconciliation.enums.ScheduleFrequency;
 import lombok.*;
 
@@ -89,6 +91,35 @@ public class ReconciliationConfig extends BaseEntity {
     @Column(name = "batch_size")
     private Integer batchSize = 1000;
 
+    @Enumerated(EnumType.STRING)
+    @Column(name = "comparison_strategy", length = 50)
+    private ComparisonStrategy comparisonStrategy = ComparisonStrategy.IN_MEMORY;
+
+    @Column(name = "incremental_mode")
+    private Boolean incrementalMode = false;
+
+    @Column(name = "summary_mode")
+    private Boolean summaryMode = false;
+
+    @Column(name = "summary_group_attributes", length = 500)
+    private String summaryGroupAttributes;
+
+    @Column(name = "sample_percentage")
+    private Double samplePercentage;
+
+    @Column(name = "extraction_slices")
+    private Integer extractionSlices;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "extraction_slice_method", length = 50)
+    private ExtractionSliceMethod extractionSliceMethod = ExtractionSliceMethod.HASH;
+
+    @Column(name = "source_watermark_column", length = 100)
+    private String sourceWatermarkColumn;
+
+    @Column(name = "target_watermark_column", length = 100)
+    private String targetWatermarkColumn;
+
     @Column(name = "notification_emails", length = 1000)
     private String notificationEmails;
 
@@ -64,6 +64,12 @@ public class ReconciliationRun extends BaseEntity {
     @Column(name = "attribute_mismatch_count")
     private Long attributeMismatchCount = 0L;
 
+    @Column(name = "duplicate_key_count")
+    private Long duplicateKeyCount = 0L;
+
+    @Column(name = "attribute_mismatch_counts", columnDefinition = "CLOB")
+    private String attributeMismatchCounts;
+
     @Column(name = "error_message", length = 4000)
     private String errorMessage;
 
@@ -82,6 +88,24 @@ public class ReconciliationRun extends BaseEntity {
     @Column(name = "comparison_time_ms")
     private Long comparisonTimeMs;
 
+    @Column(name = "sample_percentage")
+    private Double samplePercentage;
+
+    @Column(name = "estimated_mismatch_rate")
+    private Double estimatedMismatchRate;
+
+    @Column(name = "mismatch_rate_lower_bound")
+    private Double mismatchRateLowerBound;
+
+    @Column(name = "mismatch_rate_upper_bound")
+    private Double mismatchRateUpperBound;
+
+    @Column(name = "source_high_water_mark", length = 100)
+    private String sourceHighWaterMark;
+
+    @Column(name = "target_high_water_mark", length = 100)
+    private String targetHighWaterMark;
+
     @Column(name = "report_path", length = 1000)
     private String reportPath;
 
@@ -95,6 +119,10 @@ public class ReconciliationRun extends BaseEntity {
     @Builder.Default
     private List<Discrepancy> discrepancies = new ArrayList<>();
 
+    @OneToMany(mappedBy = "reconciliationRun", cascade = CascadeType.ALL, orphanRemoval = true)
+    @Builder.Default
+    private List<RecordSnapshot> recordSnapshots = new ArrayList<>();
+
     @OneToMany(mappedBy = "reconciliationRun", cascade = CascadeType.ALL, orphanRemoval = true)
     @Builder.Default
     private List<RunLog> runLogs = new ArrayList<>();
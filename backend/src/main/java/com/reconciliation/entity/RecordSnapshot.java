@@ -0,0 +1,32 @@
+package com.reconciliation.entity;
+
+import lombok.*;
+
+import javax.persistence.*;
+
+/**
+ * Source and target records of one record key in a run, serialized once and shared by all discrepancies
+ * of that key.
+ */
+@Entity
+@Table(name = "record_snapshots")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RecordSnapshot extends BaseEntity {
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "reconciliation_run_id", nullable = false)
+    private ReconciliationRun reconciliationRun;
+
+    @Column(name = "record_key", nullable = false, length = 500)
+    private String recordKey;
+
+    @Column(name = "source_record_json", columnDefinition = "CLOB")
+    private String sourceRecordJson;
+
+    @Column(name = "target_record_json", columnDefinition = "CLOB")
+    private String targetRecordJson;
+}
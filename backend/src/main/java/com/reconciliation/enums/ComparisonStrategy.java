@@ -0,0 +1,13 @@
+package com.reconciliation.enums;
+
+/**
+ * Execution strategies for pairing source and target records during comparison.
+ */
+public enum ComparisonStrategy {
+    IN_MEMORY,              // Index the whole target side in heap
+    GRACE_HASH_JOIN,        // Spill key-hash partitions to disk once the memory budget is exceeded
+    SORT_MERGE,             // Merge inputs already ordered by the primary key attributes in one pass
+    PARALLEL_HASH_JOIN,     // Compare key-hash partitions concurrently on the comparison pool
+    MERKLE_RANGE,           // Compare per-range row hash aggregates in the databases, extract only differing ranges
+    SQL_PUSHDOWN            // Full outer join in the shared database, extract only unmatched and mismatching pairs
+}
@@ -0,0 +1,9 @@
+package com.reconciliation.enums;
+
+/**
+ * How a database query is split into slices extracted concurrently.
+ */
+public enum ExtractionSliceMethod {
+    HASH,                   // MOD of ORA_HASH over the primary key attributes
+    KEY_RANGE               // Equal-width ranges between MIN and MAX of the first, numeric, primary key attribute
+}
@@ -39,6 +39,12 @@ public interface ReconciliationRunRepository extends JpaRepository<Reconciliatio
     @Query("SELECT r FROM ReconciliationRun r WHERE r.reconciliationConfig.id = :configId ORDER BY r.startedAt DESC")
     List<ReconciliationRun> findLatestByConfigId(@Param("configId") Long configId, Pageable pageable);
     
+    @Query("SELECT r FROM ReconciliationRun r WHERE r.reconciliationConfig.id = :configId AND r.status IN :statuses " +
+           "AND r.sourceHighWaterMark IS NOT NULL AND r.targetHighWaterMark IS NOT NULL ORDER BY r.startedAt DESC")
+    List<ReconciliationRun> findLatestWithHighWaterMarks(@Param("configId") Long configId,
+                                                         @Param("statuses") List<ReconciliationStatus> statuses,
+                                                         Pageable pageable);
+    
     @Query("SELECT COUNT(r) FROM ReconciliationRun r WHERE r.status = :status")
     Long countByStatus(@Param("status") ReconciliationStatus status);
     
@@ -0,0 +1,9 @@
+package com.reconciliation.repository;
+
+import com.reconciliation.entity.RecordSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface RecordSnapshotRepository extends JpaRepository<RecordSnapshot, Long> {
+}
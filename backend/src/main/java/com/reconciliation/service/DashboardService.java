@@ -1,6 +1,9 @@
 package com.reconciliation.service;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.reconciliation.dto.*;
+import com.reconciliation.entity.ReconciliationRun;
 import com.reconciliation.enums.DiscrepancySeverity;
 import com.reconciliation.enums.IncidentStatus;
 import com.reconciliation.enums.ReconciliationStatus;
@@ -30,6 +33,7 @@ public class DashboardService {
     private final ReconciliationRunRepository runRepository;
     private final IncidentRepository incidentRepository;
     private final DiscrepancyRepository discrepancyRepository;
+    private final ObjectMapper objectMapper;
     
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     
@@ -147,6 +151,17 @@ public class DashboardService {
                         arr -> (Long) arr[1]
                 ));
         
+        // Stored discrepancies stop at the configured maximum; the run keeps the full counts
+        ReconciliationRun run = runRepository.findById(runId).orElse(null);
+        if (run != null && run.getAttributeMismatchCounts() != null) {
+            typeMap.put("MISSING_IN_SOURCE", run.getMissingInSourceCount());
+            typeMap.put("MISSING_IN_TARGET", run.getMissingInTargetCount());
+            typeMap.put("ATTRIBUTE_MISMATCH", run.getAttributeMismatchCount());
+            typeMap.put("DUPLICATE_RECORD", run.getDuplicateKeyCount());
+            typeMap.values().removeIf(count -> count == null || count == 0);
+            attributeMap = topAttributeCounts(run.getAttributeMismatchCounts(), attributeMap);
+        }
+        
         return DiscrepancySummaryDTO.builder()
                 .totalDiscrepancies(discrepancyRepository.countByReconciliationRunId(runId))
                 .missingInSource(typeMap.getOrDefault("MISSING_IN_SOURCE", 0L))
@@ -158,6 +173,19 @@ public class DashboardService {
                 .build();
     }
     
+    private Map<String, Long> topAttributeCounts(String json, Map<String, Long> fallback) {
+        try {
+            Map<String, Long> counts = objectMapper.readValue(json, new TypeReference<Map<String, Long>>() {});
+            return counts.entrySet().stream()
+                    .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                    .limit(10)
+                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        } catch (Exception e) {
+            log.warn("Failed to read attribute mismatch counts", e);
+            return fallback;
+        }
+    }
+    
     // Helper methods
     
     private long countRunsSince(LocalDateTime since) {
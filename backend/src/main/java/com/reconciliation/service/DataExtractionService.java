@@ -1,5 +1,9 @@
 package com.reconciliation.service;
 
+import com.reconciliation.engine.ExtractionSlicing;
+import com.reconciliation.engine.Projection;
+import com.reconciliation.engine.RecordBatch;
+import com.reconciliation.engine.RecordCursor;
 import com.reconciliation.entity.SourceSystem;
 import com.reconciliation.enums.SystemType;
 import com.reconciliation.exception.ReconciliationException;
@@ -11,12 +15,23 @@ import org.apache.commons.csv.CSVRecord;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.support.JdbcUtils;
 import org.springframework.stereotype.Service;
 
 import java.io.*;
 import java.nio.file.*;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -29,16 +44,40 @@ import java.util.stream.Stream;
 public class DataExtractionService {
     
     /**
-     * Extract data from a source system.
+     * Rows read from a result set per chunk of a cursor.
+     */
+    static final int CURSOR_CHUNK_ROWS = 1024;
+    
+    private final DataSourceRegistry dataSourceRegistry;
+    private final ThreadPoolExecutor extractionExecutor;
+    
+    /**
+     * Extract data from a source system as map-based records.
      */
     public List<Map<String, Object>> extractData(SourceSystem system, String query, String filePattern) {
+        return extractBatch(system, query, filePattern).asRecords();
+    }
+    
+    /**
+     * Extract data from a source system into a columnar batch.
+     */
+    public RecordBatch extractBatch(SourceSystem system, String query, String filePattern) {
+        return extractBatch(system, query, filePattern, null, Projection.ALL);
+    }
+    
+    /**
+     * Extract data from a source system into a columnar batch, keeping only the records accepted by the
+     * row filter and the columns of the projection as they are read. A null filter keeps all records.
+     */
+    public RecordBatch extractBatch(SourceSystem system, String query, String filePattern,
+                                    Predicate<Map<String, Object>> rowFilter, Projection projection) {
         log.info("Extracting data from system: {} ({})", system.getSystemCode(), system.getSystemType());
         
         switch (system.getSystemType()) {
             case DATABASE:
-                return extractFromDatabase(system, query);
+                return extractFromDatabase(system, query, rowFilter, projection);
             case FILE_SYSTEM:
-                return extractFromFileSystem(system, filePattern);
+                return extractFromFileSystem(system, filePattern, rowFilter, projection);
             case API_ENDPOINT:
                 return extractFromApi(system);
             case SFTP:
@@ -48,23 +87,93 @@ public class DataExtractionService {
         }
     }
     
+    /**
+     * Open a cursor over the records of a source system, keeping only the records accepted by the row filter
+     * and the columns of the projection. A database query is read as the cursor is consumed, a chunk of rows
+     * at a time, on a connection held until the cursor is exhausted or closed; it is executed before this
+     * returns, so a rejected query fails here. Other systems are extracted in full first.
+     */
+    public RecordCursor openCursor(SourceSystem system, String query, String filePattern,
+                                   Predicate<Map<String, Object>> rowFilter, Projection projection) {
+        if (system.getSystemType() != SystemType.DATABASE) {
+            return RecordCursor.of(extractBatch(system, query, filePattern, rowFilter, projection));
+        }
+        if (query == null || query.isEmpty()) {
+            throw new ReconciliationException("Query is required for database extraction");
+        }
+        log.info("Streaming data from system: {} ({})", system.getSystemCode(), system.getSystemType());
+        try {
+            return new QueryCursor(system, query, rowFilter, projection);
+        } catch (Exception e) {
+            throw new ReconciliationException("Failed to extract data from database: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Rows of a query read through an open result set into chunks of {@link #CURSOR_CHUNK_ROWS} rows, each a
+     * batch of its own. Rows are read with the same column readers as whole extractions.
+     */
+    private final class QueryCursor extends RecordCursor {
+        private final SourceSystem system;
+        private final Predicate<Map<String, Object>> rowFilter;
+        private final Projection projection;
+        private final Stream<Boolean> stream;
+        private final Iterator<Boolean> rows;
+        private RecordBatch.Builder chunk;
+        private ResultColumns columns;
+        
+        QueryCursor(SourceSystem system, String sql, Predicate<Map<String, Object>> rowFilter, Projection projection) {
+            this.system = system;
+            this.rowFilter = rowFilter;
+            this.projection = projection;
+            this.stream = createJdbcTemplate(system).queryForStream(sql, this::readRow);
+            this.rows = stream.iterator();
+        }
+        
+        private Boolean readRow(ResultSet rs, int rowNum) throws SQLException {
+            if (columns == null) {
+                columns = new ResultColumns(rs.getMetaData(), chunk, projection);
+            }
+            columns.read(rs, chunk);
+            chunk.endRow();
+            return Boolean.TRUE;
+        }
+        
+        @Override
+        protected RecordBatch readChunk() {
+            // Column names are case-insensitive, as in the maps returned by queryForList
+            chunk = RecordBatch.builder(Collections.emptyList(), true).rowFilter(rowFilter);
+            columns = null;
+            int read = 0;
+            while (read < CURSOR_CHUNK_ROWS && rows.hasNext()) {
+                rows.next();
+                read++;
+            }
+            return read > 0 ? chunk.build() : null;
+        }
+        
+        @Override
+        protected void release() {
+            stream.close();
+            chunk = null;
+            log.info("Streamed {} records from database {}", count(), system.getSystemCode());
+        }
+    }
+    
     /**
      * Extract data from a database using JDBC.
      */
-    private List<Map<String, Object>> extractFromDatabase(SourceSystem system, String query) {
+    private RecordBatch extractFromDatabase(SourceSystem system, String query, Predicate<Map<String, Object>> rowFilter,
+                                            Projection projection) {
         if (query == null || query.isEmpty()) {
             throw new ReconciliationException("Query is required for database extraction");
         }
         
         try {
-            DriverManagerDataSource dataSource = new DriverManagerDataSource();
-            dataSource.setUrl(buildJdbcUrl(system));
-            dataSource.setUsername(system.getUsername());
-            dataSource.setPassword(system.getEncryptedPassword()); // Should decrypt in production
-            
-            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
-            
-            List<Map<String, Object>> results = jdbcTemplate.queryForList(query);
+            // Column names are case-insensitive, as in the maps returned by queryForList
+            RecordBatch.Builder builder = RecordBatch.builder(Collections.emptyList(), true).rowFilter(rowFilter);
+            readInto(system, query, builder, projection);
+            RecordBatch results = builder.build();
             log.info("Extracted {} records from database {}", results.size(), system.getSystemCode());
             
             return results;
@@ -74,24 +183,255 @@ public class DataExtractionService {
     }
     
     /**
-     * Build JDBC URL from system configuration.
+     * Extract the slices of a database query concurrently, at most as many at a time as the system's pool has
+     * connections, into one batch holding the rows of each slice in slice order. Every slice is read into its
+     * own batch, through a row filter of its own from the supplier, since filters need not be thread-safe.
+     * The calling thread reads slices too, so the slices are read even when no extraction thread is free, and
+     * the call never waits for queued extraction tasks.
+     */
+    public RecordBatch extractSlices(SourceSystem system, List<ExtractionSlicing.Slice> slices,
+                                     Supplier<Predicate<Map<String, Object>>> rowFilters, Projection projection) {
+        SliceMerge merge = new SliceMerge(slices.size());
+        Queue<Integer> pending = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < slices.size(); i++) {
+            pending.add(i);
+        }
+        Runnable readSlices = () -> {
+            Integer index;
+            while ((index = pending.poll()) != null) {
+                ExtractionSlicing.Slice slice = slices.get(index);
+                try {
+                    RecordBatch.Builder rows = RecordBatch.builder(Collections.emptyList(), true)
+                            .rowFilter(rowFilters.get());
+                    readInto(system, slice.sql(), rows, projection, slice.args());
+                    merge.complete(index, rows.build());
+                } catch (RuntimeException | Error e) {
+                    pending.clear();
+                    merge.fail(e);
+                    throw e;
+                }
+            }
+        };
+        int workers = Math.min(slices.size(), dataSourceRegistry.maximumPoolSize(system)) - 1;
+        List<Future<?>> helpers = new ArrayList<>(Math.max(workers, 0));
+        for (int i = 0; i < workers; i++) {
+            helpers.add(extractionExecutor.submit(readSlices));
+        }
+        try {
+            readSlices.run();
+            merge.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ReconciliationException("Interrupted while extracting data from database", e);
+        } catch (RuntimeException e) {
+            Throwable cause = merge.failure() != null ? merge.failure() : e;
+            throw new ReconciliationException("Failed to extract data from database: " + cause.getMessage(), cause);
+        } finally {
+            pending.clear();
+            helpers.forEach(helper -> helper.cancel(true));
+            // Helpers still queued are not left waiting for a thread
+            extractionExecutor.purge();
+        }
+        RecordBatch results = merge.build();
+        log.info("Extracted {} records from database {} in {} slices", results.size(), system.getSystemCode(), slices.size());
+        return results;
+    }
+    
+    /**
+     * Rows of completed slices, appended in slice order; a slice that completes before the slices preceding
+     * it is held until they are appended, and released once it is.
      */
-    private String buildJdbcUrl(SourceSystem system) {
-        if (system.getConnectionString() != null && !system.getConnectionString().isEmpty()) {
-            return system.getConnectionString();
+    private static final class SliceMerge {
+        private final RecordBatch.Builder merged = RecordBatch.builder(Collections.emptyList(), true);
+        private final RecordBatch[] completed;
+        private int next;
+        private Throwable failure;
+        
+        SliceMerge(int slices) {
+            this.completed = new RecordBatch[slices];
+        }
+        
+        synchronized void complete(int slice, RecordBatch rows) {
+            completed[slice] = rows;
+            while (next < completed.length && completed[next] != null) {
+                merged.append(completed[next]);
+                completed[next++] = null;
+            }
+            if (next == completed.length) {
+                notifyAll();
+            }
         }
         
-        // Build Oracle JDBC URL
-        return String.format("jdbc:oracle:thin:@//%s:%d/%s",
-                system.getHost(),
-                system.getPort() != null ? system.getPort() : 1521,
-                system.getDatabaseName());
+        synchronized void fail(Throwable e) {
+            if (failure == null) {
+                failure = e;
+            }
+            notifyAll();
+        }
+        
+        synchronized Throwable failure() {
+            return failure;
+        }
+        
+        /**
+         * Waits until every slice is appended, or rethrows the first failure of a slice.
+         */
+        synchronized void await() throws InterruptedException {
+            while (next < completed.length && failure == null) {
+                wait();
+            }
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+            if (failure != null) {
+                throw (RuntimeException) failure;
+            }
+        }
+        
+        synchronized RecordBatch build() {
+            return merged.build();
+        }
+    }
+    
+    /**
+     * Run a query against a database system and append its rows to the batch as they are fetched. Each
+     * column is read with the typed getter of its SQL type, chosen once from the result set metadata.
+     */
+    public void extractInto(SourceSystem system, String sql, RecordBatch.Builder rows, Object... args) {
+        readInto(system, sql, rows, Projection.ALL, args);
+    }
+    
+    private void readInto(SourceSystem system, String sql, RecordBatch.Builder rows, Projection projection,
+                          Object... args) {
+        createJdbcTemplate(system).query(sql, (ResultSetExtractor<Void>) rs -> {
+            ResultColumns columns = new ResultColumns(rs.getMetaData(), rows, projection);
+            while (rs.next()) {
+                columns.read(rs, rows);
+                rows.endRow();
+            }
+            return null;
+        }, args);
+    }
+    
+    /**
+     * The projected columns of a result set, with their batch columns and readers. Whole numbers of NUMERIC
+     * and DECIMAL columns without a scale are read with {@code getLong} and stored unboxed; other decimals
+     * are read as {@link java.math.BigDecimal} and stored as scaled longs where they fit.
+     */
+    private static final class ResultColumns {
+        // Digits of the NUMERIC columns read with getLong
+        private static final int MAX_LONG_PRECISION = 18;
+        
+        private final int[] indexes;
+        private final int[] columns;
+        private final ColumnReader[] readers;
+        private final boolean[] wholeNumbers;
+        
+        ResultColumns(ResultSetMetaData metaData, RecordBatch.Builder rows, Projection projection) throws SQLException {
+            List<Integer> selected = new ArrayList<>();
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                if (projection.includes(JdbcUtils.lookupColumnName(metaData, i), true)) {
+                    selected.add(i);
+                }
+            }
+            indexes = new int[selected.size()];
+            columns = new int[indexes.length];
+            readers = new ColumnReader[indexes.length];
+            wholeNumbers = new boolean[indexes.length];
+            for (int i = 0; i < indexes.length; i++) {
+                indexes[i] = selected.get(i);
+                columns[i] = rows.addColumn(JdbcUtils.lookupColumnName(metaData, indexes[i]));
+                int type = metaData.getColumnType(indexes[i]);
+                readers[i] = columnReader(type);
+                // Drivers report a precision of 0 for NUMBER columns declared without one
+                int precision = metaData.getPrecision(indexes[i]);
+                wholeNumbers[i] = (type == Types.NUMERIC || type == Types.DECIMAL) && metaData.getScale(indexes[i]) == 0
+                        && precision > 0 && precision <= MAX_LONG_PRECISION;
+            }
+        }
+        
+        /**
+         * Reads the current row of the result set into the pending row of the batch.
+         */
+        void read(ResultSet rs, RecordBatch.Builder rows) throws SQLException {
+            for (int i = 0; i < indexes.length; i++) {
+                if (wholeNumbers[i]) {
+                    long value = rs.getLong(indexes[i]);
+                    if (rs.wasNull()) {
+                        rows.set(columns[i], null);
+                    } else {
+                        rows.setDecimal(columns[i], value, 0);
+                    }
+                } else {
+                    rows.set(columns[i], readers[i].read(rs, indexes[i]));
+                }
+            }
+        }
+    }
+    
+    /**
+     * Reader of a column of the given SQL type, returning the same Java types as {@code getObject} would.
+     */
+    private static ColumnReader columnReader(int sqlType) {
+        switch (sqlType) {
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGNVARCHAR:
+                return ResultSet::getString;
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+                return ResultSet::getBigDecimal;
+            case Types.BIGINT:
+                return (rs, index) -> {
+                    long value = rs.getLong(index);
+                    return rs.wasNull() ? null : value;
+                };
+            case Types.INTEGER:
+                return (rs, index) -> {
+                    int value = rs.getInt(index);
+                    return rs.wasNull() ? null : value;
+                };
+            case Types.DOUBLE:
+                return (rs, index) -> {
+                    double value = rs.getDouble(index);
+                    return rs.wasNull() ? null : value;
+                };
+            default:
+                return JdbcUtils::getResultSetValue;
+        }
+    }
+    
+    @FunctionalInterface
+    private interface ColumnReader {
+        Object read(ResultSet rs, int index) throws SQLException;
+    }
+    
+    /**
+     * Run a query against a database system, handing each row to the callback.
+     */
+    public void queryDatabase(SourceSystem system, String sql, RowCallbackHandler handler) {
+        createJdbcTemplate(system).query(sql, handler);
+    }
+    
+    private JdbcTemplate createJdbcTemplate(SourceSystem system) {
+        return dataSourceRegistry.jdbcTemplate(system);
+    }
+    
+    /**
+     * Build JDBC URL from system configuration.
+     */
+    public String buildJdbcUrl(SourceSystem system) {
+        return dataSourceRegistry.jdbcUrl(system);
     }
     
     /**
      * Extract data from file system (CSV, Excel, JSON).
      */
-    private List<Map<String, Object>> extractFromFileSystem(SourceSystem system, String filePattern) {
+    private RecordBatch extractFromFileSystem(SourceSystem system, String filePattern,
+                                              Predicate<Map<String, Object>> rowFilter, Projection projection) {
         String basePath = system.getFilePath();
         if (basePath == null || basePath.isEmpty()) {
             throw new ReconciliationException("File path is required for file system extraction");
@@ -99,7 +439,7 @@ public class DataExtractionService {
         
         try {
             Path directory = Paths.get(basePath);
-            List<Map<String, Object>> allRecords = new ArrayList<>();
+            RecordBatch.Builder allRecords = RecordBatch.builder(Collections.emptyList(), false).rowFilter(rowFilter);
             
             // Find matching files
             String pattern = filePattern != null ? filePattern : "*.*";
@@ -114,17 +454,17 @@ public class DataExtractionService {
                 for (Path file : files) {
                     String fileName = file.getFileName().toString().toLowerCase();
                     if (fileName.endsWith(".csv")) {
-                        allRecords.addAll(readCsvFile(file));
+                        readCsvFile(file, allRecords, projection);
                     } else if (fileName.endsWith(".xlsx") || fileName.endsWith(".xls")) {
-                        allRecords.addAll(readExcelFile(file));
+                        readExcelFile(file, allRecords, projection);
                     } else if (fileName.endsWith(".json")) {
-                        allRecords.addAll(readJsonFile(file));
+                        readJsonFile(file, allRecords);
                     }
                 }
             }
             
             log.info("Extracted {} records from file system {}", allRecords.size(), system.getSystemCode());
-            return allRecords;
+            return allRecords.build();
             
         } catch (IOException e) {
             throw new ReconciliationException("Failed to extract data from file system: " + e.getMessage(), e);
@@ -132,32 +472,39 @@ public class DataExtractionService {
     }
     
     /**
-     * Read data from CSV file.
+     * Read the projected columns of a CSV file into the batch.
      */
-    private List<Map<String, Object>> readCsvFile(Path file) throws IOException {
-        List<Map<String, Object>> records = new ArrayList<>();
+    private void readCsvFile(Path file, RecordBatch.Builder records, Projection projection) throws IOException {
+        int before = records.size();
         
         try (Reader reader = Files.newBufferedReader(file);
              CSVParser csvParser = new CSVParser(reader, CSVFormat.DEFAULT.withFirstRecordAsHeader().withTrim())) {
             
+            List<String> headers = csvParser.getHeaderNames();
+            List<Integer> fields = new ArrayList<>();
+            List<Integer> columns = new ArrayList<>();
+            for (int i = 0; i < headers.size(); i++) {
+                if (projection.includes(headers.get(i), false)) {
+                    fields.add(i);
+                    columns.add(records.addColumn(headers.get(i)));
+                }
+            }
             for (CSVRecord csvRecord : csvParser) {
-                Map<String, Object> record = new LinkedHashMap<>();
-                for (String header : csvParser.getHeaderNames()) {
-                    record.put(header, csvRecord.get(header));
+                for (int i = 0; i < fields.size(); i++) {
+                    records.set(columns.get(i), csvRecord.get(fields.get(i)));
                 }
-                records.add(record);
+                records.endRow();
             }
         }
         
-        log.debug("Read {} records from CSV file: {}", records.size(), file.getFileName());
-        return records;
+        log.debug("Read {} records from CSV file: {}", records.size() - before, file.getFileName());
     }
     
     /**
-     * Read data from Excel file.
+     * Read the projected columns of an Excel file into the batch.
      */
-    private List<Map<String, Object>> readExcelFile(Path file) throws IOException {
-        List<Map<String, Object>> records = new ArrayList<>();
+    private void readExcelFile(Path file, RecordBatch.Builder records, Projection projection) throws IOException {
+        int before = records.size();
         
         try (InputStream is = Files.newInputStream(file);
              Workbook workbook = new XSSFWorkbook(is)) {
@@ -166,64 +513,68 @@ public class DataExtractionService {
             Row headerRow = sheet.getRow(0);
             
             if (headerRow == null) {
-                return records;
+                return;
             }
             
-            List<String> headers = new ArrayList<>();
+            List<Integer> cells = new ArrayList<>();
+            List<Integer> columns = new ArrayList<>();
+            int position = 0;
             for (Cell cell : headerRow) {
-                headers.add(getCellValueAsString(cell));
+                String header = getCellValueAsString(cell);
+                if (projection.includes(header, false)) {
+                    cells.add(position);
+                    columns.add(records.addColumn(header));
+                }
+                position++;
             }
             
             for (int i = 1; i <= sheet.getLastRowNum(); i++) {
                 Row row = sheet.getRow(i);
                 if (row == null) continue;
                 
-                Map<String, Object> record = new LinkedHashMap<>();
-                for (int j = 0; j < headers.size(); j++) {
-                    Cell cell = row.getCell(j);
-                    record.put(headers.get(j), cell != null ? getCellValue(cell) : null);
+                for (int j = 0; j < columns.size(); j++) {
+                    Cell cell = row.getCell(cells.get(j));
+                    records.set(columns.get(j), cell != null ? getCellValue(cell) : null);
                 }
-                records.add(record);
+                records.endRow();
             }
         }
         
-        log.debug("Read {} records from Excel file: {}", records.size(), file.getFileName());
-        return records;
+        log.debug("Read {} records from Excel file: {}", records.size() - before, file.getFileName());
     }
     
     /**
      * Read data from JSON file.
      */
-    private List<Map<String, Object>> readJsonFile(Path file) throws IOException {
+    private void readJsonFile(Path file, RecordBatch.Builder records) throws IOException {
         // Simplified JSON reading - in production, use Jackson
         String content = Files.readString(file);
-        // For now, return empty list - implement proper JSON parsing as needed
+        // For now, add no records - implement proper JSON parsing as needed
         log.warn("JSON file reading not fully implemented: {}", file.getFileName());
-        return new ArrayList<>();
     }
     
     /**
      * Extract data from REST API.
      */
-    private List<Map<String, Object>> extractFromApi(SourceSystem system) {
+    private RecordBatch extractFromApi(SourceSystem system) {
         // Simplified API extraction - implement proper REST client in production
         log.info("API extraction from: {}", system.getApiUrl());
         
         // In production, use RestTemplate or WebClient
-        // For now, return empty list
-        return new ArrayList<>();
+        // For now, return empty batch
+        return RecordBatch.empty();
     }
     
     /**
      * Extract data from SFTP.
      */
-    private List<Map<String, Object>> extractFromSftp(SourceSystem system, String filePattern) {
+    private RecordBatch extractFromSftp(SourceSystem system, String filePattern) {
         // Simplified SFTP extraction - implement proper SFTP client in production
         log.info("SFTP extraction from: {}:{}", system.getHost(), system.getPort());
         
         // In production, use JSch or Apache Commons VFS
-        // For now, return empty list
-        return new ArrayList<>();
+        // For now, return empty batch
+        return RecordBatch.empty();
     }
     
     private String getCellValueAsString(Cell cell) {
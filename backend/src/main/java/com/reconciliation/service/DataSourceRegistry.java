@@ -0,0 +1,252 @@
+package com.reconciliation.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reconciliation.config.ReconciliationProperties;
+import com.reconciliation.entity.SourceSystem;
+import com.reconciliation.exception.ReconciliationException;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pooled connections to database source systems, one HikariCP pool per system. Pools are created on first
+ * use and kept across runs. When the connection settings of a system change, the next use creates a new pool
+ * and retires the old one: its idle connections are closed, borrowed ones are closed when returned, and the
+ * pool itself is closed on a later use once no connection is borrowed and
+ * {@code app.reconciliation.connection-pool.retired-pool-grace-ms} have passed since it was retired, so running
+ * extractions finish on it and templates handed out just before the change can still borrow from it.
+ * Deactivating a system closes its pool at once. Pool sizes default to {@code app.reconciliation.connection-pool}
+ * and can be overridden per system with a {@code pool} object in its additional configuration, e.g.
+ * {@code {"pool": {"maximumPoolSize": 8, "minimumIdle": 2}}}. Pool metrics are published to the meter
+ * registry as {@code hikaricp.connections.*}, tagged with the pool name {@code source-<systemCode>}.
+ * Queries fetch {@code app.reconciliation.fetch-size} rows per round trip, or the system's
+ * {@code fetchSize} from its additional configuration.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DataSourceRegistry {
+
+    private final ReconciliationProperties reconciliationProperties;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final Map<Long, Pool> pools = new ConcurrentHashMap<>();
+    // Pools replaced after a settings change that may still lend connections, guarded by itself
+    private final List<RetiredPool> retired = new ArrayList<>();
+
+    /**
+     * Pooled data source of a database system, created or rebuilt as needed.
+     */
+    public DataSource dataSource(SourceSystem system) {
+        return pool(system).dataSource;
+    }
+
+    /**
+     * Template over the pooled data source of a database system, with the system's fetch size.
+     */
+    public JdbcTemplate jdbcTemplate(SourceSystem system) {
+        return pool(system).jdbcTemplate;
+    }
+
+    /**
+     * Most connections the pool of a database system opens at once.
+     */
+    public int maximumPoolSize(SourceSystem system) {
+        return pool(system).dataSource.getMaximumPoolSize();
+    }
+
+    private Pool pool(SourceSystem system) {
+        if (system.getId() == null) {
+            throw new ReconciliationException("INVALID_CONFIG", "Source system " + system.getSystemCode() + " is not saved");
+        }
+        String settings = settings(system);
+        Pool pool = pools.compute(system.getId(), (id, current) -> {
+            if (current != null && current.settings.equals(settings)) {
+                return current;
+            }
+            if (current != null) {
+                log.info("Connection settings of system {} changed, replacing its pool", system.getSystemCode());
+                retire(current.dataSource);
+            }
+            JsonNode additionalConfig = additionalConfig(system);
+            HikariDataSource dataSource = createDataSource(system, additionalConfig.path("pool"));
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+            jdbcTemplate.setFetchSize(additionalConfig.path("fetchSize").asInt(reconciliationProperties.getFetchSize()));
+            return new Pool(settings, dataSource, jdbcTemplate);
+        });
+        // Including a pool replaced just now, if nothing is borrowed from it and there is no grace period
+        closeDrainedPools();
+        return pool;
+    }
+
+    /**
+     * JDBC URL of a database system: its connection string, or else an Oracle URL built from host, port and
+     * database name.
+     */
+    public String jdbcUrl(SourceSystem system) {
+        if (system.getConnectionString() != null && !system.getConnectionString().isEmpty()) {
+            return system.getConnectionString();
+        }
+        return String.format("jdbc:oracle:thin:@//%s:%d/%s",
+                system.getHost(),
+                system.getPort() != null ? system.getPort() : 1521,
+                system.getDatabaseName());
+    }
+
+    /**
+     * Closes the pool of a system, including borrowed connections; the next use creates a new one from the
+     * system's current settings.
+     */
+    public void evict(Long systemId) {
+        Pool pool = pools.remove(systemId);
+        if (pool != null) {
+            pool.dataSource.close();
+            log.info("Closed connection pool {}", pool.dataSource.getPoolName());
+        }
+    }
+
+    @PreDestroy
+    public void closeAll() {
+        pools.keySet().forEach(this::evict);
+        synchronized (retired) {
+            retired.forEach(pool -> pool.dataSource.close());
+            retired.clear();
+        }
+    }
+
+    /**
+     * Stops a replaced pool from keeping connections: idle ones are closed now, borrowed ones when returned.
+     */
+    private void retire(HikariDataSource dataSource) {
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        if (pool != null) {
+            pool.softEvictConnections();
+        }
+        synchronized (retired) {
+            retired.add(new RetiredPool(dataSource, System.nanoTime()));
+        }
+    }
+
+    /**
+     * Closes retired pools past their grace period without borrowed connections, and publishes the metrics of
+     * their replacements. A pool is not told when a template handed out earlier is about to borrow from it, so
+     * it is only closed once it has been retired long enough for such a template to have borrowed.
+     */
+    private void closeDrainedPools() {
+        long graceNanos = TimeUnit.MILLISECONDS.toNanos(
+                reconciliationProperties.getConnectionPool().getRetiredPoolGraceMs());
+        long now = System.nanoTime();
+        synchronized (retired) {
+            for (Iterator<RetiredPool> iterator = retired.iterator(); iterator.hasNext(); ) {
+                RetiredPool retiredPool = iterator.next();
+                HikariDataSource dataSource = retiredPool.dataSource;
+                HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+                if (now - retiredPool.retiredAt < graceNanos || (pool != null && pool.getActiveConnections() > 0)) {
+                    continue;
+                }
+                dataSource.close();
+                iterator.remove();
+                log.info("Closed replaced connection pool {}", dataSource.getPoolName());
+                if (!isRetired(dataSource.getPoolName())) {
+                    for (Pool current : pools.values()) {
+                        if (current.dataSource.getPoolName().equals(dataSource.getPoolName())
+                                && current.dataSource.getMetricRegistry() == null) {
+                            current.dataSource.setMetricRegistry(meterRegistry);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean isRetired(String poolName) {
+        synchronized (retired) {
+            return retired.stream().anyMatch(pool -> pool.dataSource.getPoolName().equals(poolName));
+        }
+    }
+
+    private HikariDataSource createDataSource(SourceSystem system, JsonNode overrides) {
+        ReconciliationProperties.ConnectionPool defaults = reconciliationProperties.getConnectionPool();
+
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("source-" + system.getSystemCode());
+        config.setJdbcUrl(jdbcUrl(system));
+        config.setUsername(system.getUsername());
+        config.setPassword(system.getEncryptedPassword()); // Should decrypt in production
+        config.setMaximumPoolSize(overrides.path("maximumPoolSize").asInt(defaults.getMaximumPoolSize()));
+        config.setMinimumIdle(overrides.path("minimumIdle").asInt(defaults.getMinimumIdle()));
+        config.setConnectionTimeout(overrides.path("connectionTimeoutMs").asLong(defaults.getConnectionTimeoutMs()));
+        config.setIdleTimeout(overrides.path("idleTimeoutMs").asLong(defaults.getIdleTimeoutMs()));
+        config.setMaxLifetime(overrides.path("maxLifetimeMs").asLong(defaults.getMaxLifetimeMs()));
+        // Unreachable systems fail on first use rather than when the pool is created
+        config.setInitializationFailTimeout(-1);
+        // Meters are identified by pool name, so a replacement publishes them once the retired pool is closed
+        if (!isRetired(config.getPoolName())) {
+            config.setMetricRegistry(meterRegistry);
+        }
+
+        log.info("Creating connection pool {}", "source-" + system.getSystemCode());
+        return new HikariDataSource(config);
+    }
+
+    /**
+     * The system's additional configuration, or an empty node.
+     */
+    private JsonNode additionalConfig(SourceSystem system) {
+        String additionalConfig = system.getAdditionalConfig();
+        if (additionalConfig == null || additionalConfig.trim().isEmpty()) {
+            return objectMapper.createObjectNode();
+        }
+        try {
+            return objectMapper.readTree(additionalConfig);
+        } catch (Exception e) {
+            log.warn("Ignoring additional configuration of system {} that is not JSON: {}",
+                    system.getSystemCode(), e.getMessage());
+            return objectMapper.createObjectNode();
+        }
+    }
+
+    private String settings(SourceSystem system) {
+        return String.join("\0", jdbcUrl(system),
+                Objects.toString(system.getUsername()), Objects.toString(system.getEncryptedPassword()),
+                Objects.toString(system.getAdditionalConfig()), system.getSystemCode());
+    }
+
+    private static final class Pool {
+        final String settings;
+        final HikariDataSource dataSource;
+        final JdbcTemplate jdbcTemplate;
+
+        Pool(String settings, HikariDataSource dataSource, JdbcTemplate jdbcTemplate) {
+            this.settings = settings;
+            this.dataSource = dataSource;
+            this.jdbcTemplate = jdbcTemplate;
+        }
+    }
+
+    private static final class RetiredPool {
+        final HikariDataSource dataSource;
+        final long retiredAt;
+
+        RetiredPool(HikariDataSource dataSource, long retiredAt) {
+            this.dataSource = dataSource;
+            this.retiredAt = retiredAt;
+        }
+    }
+}
@@ -3,8 +3,10 @@ package com.reconciliation.service;
 import com.reconciliation.dto.AttributeMappingDTO;
 import com.reconciliation.dto.ReconciliationConfigDTO;
 import com.reconciliation.entity.*;
+import com.reconciliation.enums.ComparisonStrategy;
 import com.reconciliation.enums.ComparisonType;
 import com.reconciliation.enums.DiscrepancySeverity;
+import com.reconciliation.enums.ExtractionSliceMethod;
 import com.reconciliation.exception.DuplicateResourceException;
 import com.reconciliation.exception.ResourceNotFoundException;
 import com.reconciliation.repository.*;
@@ -190,6 +192,15 @@ public class ReconciliationConfigService {
                 .nullEqualsEmpty(entity.getNullEqualsEmpty())
                 .maxDiscrepancies(entity.getMaxDiscrepancies())
                 .batchSize(entity.getBatchSize())
+                .comparisonStrategy(entity.getComparisonStrategy())
+                .incrementalMode(entity.getIncrementalMode())
+                .summaryMode(entity.getSummaryMode())
+                .summaryGroupAttributes(entity.getSummaryGroupAttributes())
+                .samplePercentage(entity.getSamplePercentage())
+                .extractionSlices(entity.getExtractionSlices())
+                .extractionSliceMethod(entity.getExtractionSliceMethod())
+                .sourceWatermarkColumn(entity.getSourceWatermarkColumn())
+                .targetWatermarkColumn(entity.getTargetWatermarkColumn())
                 .notificationEmails(entity.getNotificationEmails())
                 .autoCreateIncidents(entity.getAutoCreateIncidents())
                 .ownerId(entity.getOwner() != null ? entity.getOwner().getId() : null)
@@ -221,6 +232,15 @@ public class ReconciliationConfigService {
                 .nullEqualsEmpty(dto.getNullEqualsEmpty() != null ? dto.getNullEqualsEmpty() : false)
                 .maxDiscrepancies(dto.getMaxDiscrepancies() != null ? dto.getMaxDiscrepancies() : 10000)
                 .batchSize(dto.getBatchSize() != null ? dto.getBatchSize() : 1000)
+                .comparisonStrategy(dto.getComparisonStrategy() != null ? dto.getComparisonStrategy() : ComparisonStrategy.IN_MEMORY)
+                .incrementalMode(dto.getIncrementalMode() != null ? dto.getIncrementalMode() : false)
+                .summaryMode(dto.getSummaryMode() != null ? dto.getSummaryMode() : false)
+                .summaryGroupAttributes(dto.getSummaryGroupAttributes())
+                .samplePercentage(dto.getSamplePercentage())
+                .extractionSlices(dto.getExtractionSlices())
+                .extractionSliceMethod(dto.getExtractionSliceMethod() != null ? dto.getExtractionSliceMethod() : ExtractionSliceMethod.HASH)
+                .sourceWatermarkColumn(dto.getSourceWatermarkColumn())
+                .targetWatermarkColumn(dto.getTargetWatermarkColumn())
                 .notificationEmails(dto.getNotificationEmails())
                 .autoCreateIncidents(dto.getAutoCreateIncidents() != null ? dto.getAutoCreateIncidents() : true)
                 .build();
@@ -245,6 +265,23 @@ public class ReconciliationConfigService {
         entity.setNullEqualsEmpty(dto.getNullEqualsEmpty());
         entity.setMaxDiscrepancies(dto.getMaxDiscrepancies());
         entity.setBatchSize(dto.getBatchSize());
+        if (dto.getComparisonStrategy() != null) {
+            entity.setComparisonStrategy(dto.getComparisonStrategy());
+        }
+        if (dto.getIncrementalMode() != null) {
+            entity.setIncrementalMode(dto.getIncrementalMode());
+        }
+        if (dto.getSummaryMode() != null) {
+            entity.setSummaryMode(dto.getSummaryMode());
+        }
+        entity.setSummaryGroupAttributes(dto.getSummaryGroupAttributes());
+        entity.setSamplePercentage(dto.getSamplePercentage());
+        entity.setExtractionSlices(dto.getExtractionSlices());
+        if (dto.getExtractionSliceMethod() != null) {
+            entity.setExtractionSliceMethod(dto.getExtractionSliceMethod());
+        }
+        entity.setSourceWatermarkColumn(dto.getSourceWatermarkColumn());
+        entity.setTargetWatermarkColumn(dto.getTargetWatermarkColumn());
         entity.setNotificationEmails(dto.getNotificationEmails());
         entity.setAutoCreateIncidents(dto.getAutoCreateIncidents());
     }
@@ -1,6 +1,9 @@
 package com.reconciliation.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reconciliation.config.FileStorageProperties;
+import com.reconciliation.config.ReconciliationProperties;
+import com.reconciliation.engine.*;
 import com.reconciliation.entity.*;
 import com.reconciliation.enums.*;
 import com.reconciliation.exception.ReconciliationException;
@@ -8,13 +11,31 @@ import com.reconciliation.exception.ResourceNotFoundException;
 import com.reconciliation.repository.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -28,12 +49,17 @@ public class ReconciliationEngineService {
     private final ReconciliationConfigRepository configRepository;
     private final ReconciliationRunRepository runRepository;
     private final DiscrepancyRepository discrepancyRepository;
+    private final RecordSnapshotRepository recordSnapshotRepository;
     private final RunLogRepository runLogRepository;
     private final AttributeMappingRepository attributeMappingRepository;
     private final DataExtractionService dataExtractionService;
     private final IncidentService incidentService;
     private final AuditService auditService;
     private final ObjectMapper objectMapper;
+    private final ReconciliationProperties reconciliationProperties;
+    private final FileStorageProperties fileStorageProperties;
+    private final ForkJoinPool comparisonPool;
+    private final ThreadPoolExecutor extractionExecutor;
     
     /**
      * Execute reconciliation for a given configuration.
@@ -55,33 +81,133 @@ public class ReconciliationEngineService {
             
             logStep(run, "INFO", "INITIALIZATION", "Reconciliation started", null);
             
-            // Step 1: Extract source data
-            run.setStatus(ReconciliationStatus.EXTRACTING_SOURCE);
-            runRepository.save(run);
-            long sourceStart = System.currentTimeMillis();
-            List<Map<String, Object>> sourceData = extractData(run, config, true);
-            run.setSourceExtractionTimeMs(System.currentTimeMillis() - sourceStart);
-            run.setSourceRecordCount((long) sourceData.size());
-            logStep(run, "INFO", "SOURCE_EXTRACTION", 
-                    String.format("Extracted %d records from source", sourceData.size()), null);
+            // Compile the attribute comparisons up front
+            List<AttributeMapping> mappings = attributeMappingRepository.findEnabledMappings(configId);
+            ComparisonPlan plan = ComparisonPlan.compile(mappings, config);
+            RowFingerprinter fingerprinter = new RowFingerprinter(plan);
             
-            // Step 2: Extract target data
-            run.setStatus(ReconciliationStatus.EXTRACTING_TARGET);
-            runRepository.save(run);
-            long targetStart = System.currentTimeMillis();
-            List<Map<String, Object>> targetData = extractData(run, config, false);
-            run.setTargetExtractionTimeMs(System.currentTimeMillis() - targetStart);
-            run.setTargetRecordCount((long) targetData.size());
-            logStep(run, "INFO", "TARGET_EXTRACTION", 
-                    String.format("Extracted %d records from target", targetData.size()), null);
+            // SORT_MERGE relies on the order of the configured queries, which queries wrapped around them lose
+            boolean ordered = config.getComparisonStrategy() == ComparisonStrategy.SORT_MERGE && !plan.normalizesKeys();
             
-            // Step 3: Compare data
-            run.setStatus(ReconciliationStatus.COMPARING);
-            runRepository.save(run);
-            long compareStart = System.currentTimeMillis();
-            List<AttributeMapping> mappings = attributeMappingRepository.findEnabledMappings(configId);
-            ComparisonResult result = compareData(run, config, sourceData, targetData, mappings);
+            // A sampled run compares only the sampled keys of both sides, with the plain extraction and join
+            KeySample sample = KeySample.of(config.getSamplePercentage());
+            // Normalized keys are only known to the engine, so the sample is then taken while reading records,
+            // as it is for ordered inputs
+            PushdownDialect sampleDialect = sample != null && !plan.normalizesKeys() && !ordered ?
+                    sharedDialect(config) : null;
+            if (sample != null) {
+                logStep(run, "INFO", "SAMPLING", String.format("Comparing a %s%% key sample, filtered %s",
+                        sample.percentage(), sampleDialect != null ? "in the databases" : "while reading records"), null);
+            }
+            
+            // In summary mode, or with a pushdown strategy, only the records the databases could not settle are extracted
+            SummaryReconciler summary = sample == null && Boolean.TRUE.equals(config.getSummaryMode()) ?
+                    createSummary(run, config, mappings) : null;
+            PushdownResult pushdown = sample != null ? null :
+                    summary != null ? summarizeInDatabase(run, config, summary) : pushDown(run, config, plan);
+            
+            // Slices are merged in slice order, not in the order of the configured query
+            ExtractionSlicing configuredSlicing = ExtractionSlicing.of(config.getExtractionSlices(), config.getExtractionSliceMethod());
+            ExtractionSlicing slicing = ordered ? null : configuredSlicing;
+            if (ordered && configuredSlicing != null) {
+                logStep(run, "INFO", "EXTRACTION",
+                        "SORT_MERGE reads each query on a single cursor to keep its order; extraction slices are not used", null);
+            }
+            
+            // Runs that extract all records keep high-water marks, and then only extract records changed since the last ones
+            String[] watermarkColumns = watermarkColumns(run, config, sample == null && summary == null && pushdown == null);
+            Watermark[] since = watermarkColumns != null && !plan.normalizesKeys() ?
+                    previousWatermarks(run, config, watermarkColumns) : null;
+            // Records read by queries wrapped around the configured ones, or looked up for changed keys, are
+            // not in the order of the configured queries
+            boolean queryOrder = pushdown == null && since == null;
+            
+            Projection sourceProjection = projection(config, plan, mappings, true);
+            Projection targetProjection = projection(config, plan, mappings, false);
+            ComparisonResult result;
+            long compareStart;
+            if (streams(run, config, ordered, slicing, summary, pushdown, since)) {
+                // Both sides are read as the join consumes them, so extraction and comparison are one step
+                run.setStatus(ReconciliationStatus.COMPARING);
+                runRepository.save(run);
+                long streamStart = System.currentTimeMillis();
+                result = compareStreams(run, config, plan, sample, sampleDialect, ordered,
+                        sourceProjection, targetProjection, watermarkColumns);
+                // Time spent reading records counts as extraction time
+                compareStart = streamStart + run.getSourceExtractionTimeMs() + run.getTargetExtractionTimeMs();
+            } else {
+                // Step 1: Extract source data, while the target is extracted on its own thread
+                run.setStatus(ReconciliationStatus.EXTRACTING_SOURCE);
+                runRepository.save(run);
+                Future<TimedBatch> targetExtraction = pushdown != null ? null : extractionExecutor.submit(
+                        () -> TimedBatch.of(() -> extractData(config, plan, false, sample, sampleDialect, slicing, ordered, targetProjection,
+                                since != null ? since[1] : null)));
+                long sourceStart = System.currentTimeMillis();
+                RecordBatch sourceData;
+                try {
+                    sourceData = pushdown != null ? pushdown.sourceRows() : extractData(config, plan, true, sample, sampleDialect, slicing, ordered, sourceProjection,
+                            since != null ? since[0] : null);
+                } catch (RuntimeException e) {
+                    if (targetExtraction != null) {
+                        targetExtraction.cancel(true);
+                    }
+                    throw e;
+                }
+                run.setSourceExtractionTimeMs(System.currentTimeMillis() - sourceStart);
+                run.setSourceRecordCount(pushdown != null ? pushdown.sourceRecordCount() : (long) sourceData.size());
+                logStep(run, "INFO", "SOURCE_EXTRACTION", 
+                        String.format("Extracted %d records from source", sourceData.size()), null);
+                
+                // Step 2: Extract target data
+                run.setStatus(ReconciliationStatus.EXTRACTING_TARGET);
+                runRepository.save(run);
+                TimedBatch target = pushdown != null ? new TimedBatch(pushdown.targetRows(), 0) : await(targetExtraction);
+                RecordBatch targetData = target.rows;
+                run.setTargetExtractionTimeMs(target.timeMs);
+                run.setTargetRecordCount(pushdown != null ? pushdown.targetRecordCount() : (long) targetData.size());
+                logStep(run, "INFO", "TARGET_EXTRACTION", 
+                        String.format("Extracted %d records from target", targetData.size()), null);
+                
+                if (watermarkColumns != null) {
+                    Watermark sourceMark = Watermark.highest(since != null ? since[0] : null, watermarkColumns[0], sourceData);
+                    Watermark targetMark = Watermark.highest(since != null ? since[1] : null, watermarkColumns[1], targetData);
+                    run.setSourceHighWaterMark(sourceMark != null ? sourceMark.stored() : null);
+                    run.setTargetHighWaterMark(targetMark != null ? targetMark.stored() : null);
+                }
+                if (since != null) {
+                    RecordBatch[] completed = addCounterparts(run, config, sourceProjection, targetProjection, sourceData, targetData);
+                    sourceData = completed[0];
+                    targetData = completed[1];
+                    run.setSourceRecordCount((long) sourceData.size());
+                    run.setTargetRecordCount((long) targetData.size());
+                }
+                
+                // Step 3: Compare data, in summary mode only the records of groups whose totals disagree
+                run.setStatus(ReconciliationStatus.COMPARING);
+                runRepository.save(run);
+                compareStart = System.currentTimeMillis();
+                if (summary != null && pushdown == null) {
+                    pushdown = summary.reconcile(sourceData, targetData);
+                    sourceData = pushdown.sourceRows();
+                    targetData = pushdown.targetRows();
+                    logStep(run, "INFO", "SUMMARY", String.format(
+                            "%d records in groups with agreeing totals; %d source and %d target records left for comparison",
+                            pushdown.matchedRecordCount(), sourceData.size(), targetData.size()), null);
+                }
+                ParsedColumns sourceParsed = ParsedColumns.source(plan, sourceData);
+                ParsedColumns targetParsed = ParsedColumns.target(plan, targetData);
+                long[] sourceFingerprints = fingerprinter.sourceFingerprints(sourceData, sourceParsed);
+                long[] targetFingerprints = fingerprinter.targetFingerprints(targetData, targetParsed);
+                result = compareData(run, config, plan, sourceData, sourceFingerprints, sourceParsed,
+                        targetData, targetFingerprints, targetParsed, since != null, queryOrder);
+                if (pushdown != null) {
+                    result.matchedCount += pushdown.matchedRecordCount();
+                }
+            }
             run.setComparisonTimeMs(System.currentTimeMillis() - compareStart);
+            if (sample != null) {
+                recordSampleEstimate(run, sample, result);
+            }
             
             // Update run statistics
             run.setMatchedRecordCount(result.matchedCount);
@@ -89,6 +215,8 @@ public class ReconciliationEngineService {
             run.setMissingInSourceCount(result.missingInSource);
             run.setMissingInTargetCount(result.missingInTarget);
             run.setAttributeMismatchCount(result.attributeMismatches);
+            run.setDuplicateKeyCount(result.duplicateKeys);
+            run.setAttributeMismatchCounts(attributeMismatchCounts(plan, result));
             
             logStep(run, "INFO", "COMPARISON", 
                     String.format("Comparison complete. Matched: %d, Discrepancies: %d", 
@@ -108,11 +236,14 @@ public class ReconciliationEngineService {
             run.setStatus(result.discrepancies.isEmpty() ? 
                     ReconciliationStatus.COMPLETED : ReconciliationStatus.COMPLETED_WITH_DISCREPANCIES);
             run.setCompletedAt(LocalDateTime.now());
-            run.setExecutionTimeMs(System.currentTimeMillis() - run.getStartedAt().getNano() / 1000000);
+            run.setExecutionTimeMs(Duration.between(run.getStartedAt(), run.getCompletedAt()).toMillis());
             run = runRepository.save(run);
             
             logStep(run, "INFO", "COMPLETION", "Reconciliation completed successfully", null);
             auditService.logAction("EXECUTE", "ReconciliationRun", run.getId(), null, run.getRunId());
+            if (result.snapshot != null) {
+                writeSnapshotAfterCommit(config, result.snapshot);
+            }
             
             log.info("Reconciliation run {} completed. Status: {}, Discrepancies: {}", 
                     run.getRunId(), run.getStatus(), run.getDiscrepancyCount());
@@ -152,251 +283,638 @@ public class ReconciliationEngineService {
                 .missingInSourceCount(0L)
                 .missingInTargetCount(0L)
                 .attributeMismatchCount(0L)
+                .duplicateKeyCount(0L)
                 .build());
     }
     
-    private List<Map<String, Object>> extractData(ReconciliationRun run, ReconciliationConfig config, boolean isSource) {
+    /**
+     * Extracts one side; a key sample is pushed into the query when both sides hash in the same database
+     * dialect, and otherwise applied to the records as they are read. With a high-water mark only the records
+     * at or above it are extracted. A database query is split into concurrently extracted slices when
+     * slicing is given. The query of an ordered input is not reduced to the projected columns.
+     */
+    private RecordBatch extractData(ReconciliationConfig config, ComparisonPlan plan, boolean isSource,
+                                    KeySample sample, PushdownDialect sampleDialect, ExtractionSlicing slicing,
+                                    boolean ordered, Projection projection, Watermark since) {
         try {
             SourceSystem system = isSource ? config.getSourceSystem() : config.getTargetSystem();
             String query = isSource ? config.getSourceQuery() : config.getTargetQuery();
-            String filePattern = isSource ? config.getSourceFilePattern() : config.getTargetFilePattern();
-            
-            return dataExtractionService.extractData(system, query, filePattern);
+            return projected(system, query, projection, ordered,
+                    selected -> extractData(config, plan, isSource, sample, sampleDialect, slicing, selected, projection, since));
         } catch (Exception e) {
             throw new ReconciliationException("Failed to extract " + (isSource ? "source" : "target") + " data", e);
         }
     }
     
-    private ComparisonResult compareData(ReconciliationRun run, ReconciliationConfig config,
-                                         List<Map<String, Object>> sourceData, 
-                                         List<Map<String, Object>> targetData,
-                                         List<AttributeMapping> mappings) {
-        ComparisonResult result = new ComparisonResult();
-        List<String> keyAttributes = parseKeyAttributes(config.getPrimaryKeyAttributes());
+    /**
+     * Extracts one side with the given query.
+     */
+    private RecordBatch extractData(ReconciliationConfig config, ComparisonPlan plan, boolean isSource,
+                                    KeySample sample, PushdownDialect sampleDialect, ExtractionSlicing slicing,
+                                    String query, Projection projection, Watermark since) {
+        SourceSystem system = isSource ? config.getSourceSystem() : config.getTargetSystem();
+        String filePattern = isSource ? config.getSourceFilePattern() : config.getTargetFilePattern();
         
-        // Index target data by key
-        Map<String, Map<String, Object>> targetIndex = new HashMap<>();
-        for (Map<String, Object> targetRecord : targetData) {
-            String key = buildRecordKey(targetRecord, keyAttributes, mappings, false);
-            targetIndex.put(key, targetRecord);
+        if (since != null) {
+            query = since.restrict(query);
         }
-        
-        Set<String> processedKeys = new HashSet<>();
-        int discrepancyCounter = 0;
-        
-        // Compare source records against target
-        for (Map<String, Object> sourceRecord : sourceData) {
-            String key = buildRecordKey(sourceRecord, keyAttributes, mappings, true);
-            processedKeys.add(key);
-            
-            Map<String, Object> targetRecord = targetIndex.get(key);
-            
-            if (targetRecord == null) {
-                // Missing in target
-                if (discrepancyCounter < config.getMaxDiscrepancies()) {
-                    result.discrepancies.add(createDiscrepancy(
-                            run, key, DiscrepancyType.MISSING_IN_TARGET, null,
-                            null, null, sourceRecord, null,
-                            DiscrepancySeverity.HIGH, discrepancyCounter++));
-                }
-                result.missingInTarget++;
+        // Sample filters are not thread-safe, so every slice gets its own
+        Supplier<Predicate<Map<String, Object>>> rowFilters = () -> null;
+        if (sample != null) {
+            List<String> keyAttributes = parseKeyAttributes(config.getPrimaryKeyAttributes());
+            if (sampleDialect != null) {
+                query = sample.restrict(query, sampleDialect, keyAttributes);
             } else {
-                // Compare attributes
-                List<Discrepancy> mismatches = compareAttributes(run, key, sourceRecord, targetRecord, 
-                        mappings, config, discrepancyCounter);
-                if (mismatches.isEmpty()) {
-                    result.matchedCount++;
-                } else {
-                    result.attributeMismatches += mismatches.size();
-                    for (Discrepancy d : mismatches) {
-                        if (discrepancyCounter < config.getMaxDiscrepancies()) {
-                            result.discrepancies.add(d);
-                            discrepancyCounter++;
-                        }
+                KeyEncoder encoder = plan.keyEncoder(keyAttributes, isSource);
+                rowFilters = () -> sample.filter(encoder);
+            }
+        }
+        if (slicing != null && system.getSystemType() == SystemType.DATABASE && query != null && !query.isEmpty()) {
+            List<ExtractionSlicing.Slice> slices = slice(system, query, slicing,
+                    parseKeyAttributes(config.getPrimaryKeyAttributes()));
+            if (slices != null) {
+                return dataExtractionService.extractSlices(system, slices, rowFilters, projection);
+            }
+        }
+        return dataExtractionService.extractBatch(system, query, filePattern, rowFilters.get(), projection);
+    }
+    
+    /**
+     * Whether both sides are streamed into the join instead of being extracted first: for SORT_MERGE and
+     * GRACE_HASH_JOIN runs that read the configured queries whole, without summary, pushdown, watermark
+     * restriction or snapshot. Extraction slices are read concurrently into memory, so GRACE_HASH_JOIN runs
+     * with slices are not streamed.
+     */
+    private boolean streams(ReconciliationRun run, ReconciliationConfig config, boolean ordered, ExtractionSlicing slicing,
+                            SummaryReconciler summary, PushdownResult pushdown, Watermark[] since) {
+        if (summary != null || pushdown != null || since != null || Boolean.TRUE.equals(config.getIncrementalMode())) {
+            return false;
+        }
+        if (config.getComparisonStrategy() != ComparisonStrategy.GRACE_HASH_JOIN) {
+            return ordered;
+        }
+        if (slicing != null) {
+            logStep(run, "INFO", "EXTRACTION",
+                    "GRACE_HASH_JOIN extracts the slices of each query into memory; without extraction slices both sides are streamed", null);
+            return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Compares both sides as they are read, each on a cursor of its own, and records their counts, read times
+     * and high-water marks on the run.
+     */
+    private ComparisonResult compareStreams(ReconciliationRun run, ReconciliationConfig config, ComparisonPlan plan,
+                                            KeySample sample, PushdownDialect sampleDialect, boolean ordered,
+                                            Projection sourceProjection, Projection targetProjection,
+                                            String[] watermarkColumns) {
+        logStep(run, "INFO", "EXTRACTION", "Streaming source and target records into the comparison as they are read", null);
+        Watermark[] marks = new Watermark[2];
+        try (RecordCursor source = openCursor(config, plan, true, sample, sampleDialect, ordered, sourceProjection);
+             RecordCursor target = openCursor(config, plan, false, sample, sampleDialect, ordered, targetProjection)) {
+            if (watermarkColumns != null) {
+                source.observeChunks(chunk -> marks[0] = Watermark.highest(marks[0], watermarkColumns[0], chunk));
+                target.observeChunks(chunk -> marks[1] = Watermark.highest(marks[1], watermarkColumns[1], chunk));
+            }
+            List<String> keyAttributes = parseKeyAttributes(config.getPrimaryKeyAttributes());
+            RecordComparison comparison = new RecordComparison(run, config, plan, null, null,
+                    ParsedColumns.sourceRecord(plan), ParsedColumns.targetRecord(plan), null, null);
+            createJoin(run, config, plan, keyAttributes, true).join(source, target,
+                    plan.keyEncoder(keyAttributes, true), plan.keyEncoder(keyAttributes, false), comparison);
+            
+            run.setSourceExtractionTimeMs(source.readTimeMs());
+            run.setSourceRecordCount(source.count());
+            run.setTargetExtractionTimeMs(target.readTimeMs());
+            run.setTargetRecordCount(target.count());
+            logStep(run, "INFO", "SOURCE_EXTRACTION",
+                    String.format("Extracted %d records from source", source.count()), null);
+            logStep(run, "INFO", "TARGET_EXTRACTION",
+                    String.format("Extracted %d records from target", target.count()), null);
+            if (watermarkColumns != null) {
+                run.setSourceHighWaterMark(marks[0] != null ? marks[0].stored() : null);
+                run.setTargetHighWaterMark(marks[1] != null ? marks[1].stored() : null);
+            }
+            return comparison.finish();
+        }
+    }
+    
+    /**
+     * Opens a cursor over one side, with its key sample applied as in {@link #extractData}.
+     */
+    private RecordCursor openCursor(ReconciliationConfig config, ComparisonPlan plan, boolean isSource,
+                                    KeySample sample, PushdownDialect sampleDialect, boolean ordered,
+                                    Projection projection) {
+        try {
+            SourceSystem system = isSource ? config.getSourceSystem() : config.getTargetSystem();
+            String query = isSource ? config.getSourceQuery() : config.getTargetQuery();
+            String filePattern = isSource ? config.getSourceFilePattern() : config.getTargetFilePattern();
+            return projected(system, query, projection, ordered, selected -> {
+                String sql = selected;
+                Predicate<Map<String, Object>> rowFilter = null;
+                if (sample != null) {
+                    List<String> keyAttributes = parseKeyAttributes(config.getPrimaryKeyAttributes());
+                    if (sampleDialect != null) {
+                        sql = sample.restrict(sql, sampleDialect, keyAttributes);
+                    } else {
+                        rowFilter = sample.filter(plan.keyEncoder(keyAttributes, isSource));
                     }
                 }
+                return dataExtractionService.openCursor(system, sql, filePattern, rowFilter, projection);
+            });
+        } catch (Exception e) {
+            throw new ReconciliationException("Failed to extract " + (isSource ? "source" : "target") + " data", e);
+        }
+    }
+    
+    /**
+     * Watermark columns of the source and target, or null, after logging why, unless the config declares one
+     * and the run extracts all records of two databases.
+     */
+    private String[] watermarkColumns(ReconciliationRun run, ReconciliationConfig config, boolean extractsAll) {
+        String source = config.getSourceWatermarkColumn();
+        if (source == null || source.trim().isEmpty()) {
+            return null;
+        }
+        if (!extractsAll) {
+            logStep(run, "INFO", "INCREMENTAL", "Sampled, summary and pushdown runs do not use watermarks", null);
+            return null;
+        }
+        if (config.getSourceSystem().getSystemType() != SystemType.DATABASE
+                || config.getTargetSystem().getSystemType() != SystemType.DATABASE) {
+            logStep(run, "WARN", "INCREMENTAL", "Watermarks are only used between databases; extracting all records", null);
+            return null;
+        }
+        String target = config.getTargetWatermarkColumn();
+        return new String[]{source.trim(), target != null && !target.trim().isEmpty() ? target.trim() : source.trim()};
+    }
+    
+    /**
+     * High-water marks of the last completed run that has both, or null if there is none.
+     */
+    private Watermark[] previousWatermarks(ReconciliationRun run, ReconciliationConfig config, String[] watermarkColumns) {
+        List<ReconciliationRun> previous = runRepository.findLatestWithHighWaterMarks(config.getId(),
+                Arrays.asList(ReconciliationStatus.COMPLETED, ReconciliationStatus.COMPLETED_WITH_DISCREPANCIES),
+                PageRequest.of(0, 1));
+        if (previous.isEmpty()) {
+            logStep(run, "INFO", "INCREMENTAL", "No high-water marks of a previous run; extracting all records", null);
+            return null;
+        }
+        ReconciliationRun last = previous.get(0);
+        logStep(run, "INFO", "INCREMENTAL", String.format(
+                "Extracting records changed since run %s: source %s >= %s, target %s >= %s", last.getRunId(),
+                watermarkColumns[0], last.getSourceHighWaterMark(), watermarkColumns[1], last.getTargetHighWaterMark()), null);
+        return new Watermark[]{
+                Watermark.parse(watermarkColumns[0], last.getSourceHighWaterMark()),
+                Watermark.parse(watermarkColumns[1], last.getTargetHighWaterMark())};
+    }
+    
+    /**
+     * Both sides of a watermark run, each with the records of keys that changed on the other side only, so
+     * that every changed key is compared with both of its records.
+     */
+    private RecordBatch[] addCounterparts(ReconciliationRun run, ReconciliationConfig config, Projection sourceProjection,
+                                          Projection targetProjection, RecordBatch sourceData, RecordBatch targetData) {
+        KeyLookup lookup = new KeyLookup(parseKeyAttributes(config.getPrimaryKeyAttributes()));
+        RecordBatch sourceCounterparts = lookUp(config, true, sourceProjection, lookup,
+                lookup.missingKeys(targetData, sourceData), sourceData);
+        RecordBatch targetCounterparts = lookUp(config, false, targetProjection, lookup,
+                lookup.missingKeys(sourceData, targetData), targetData);
+        logStep(run, "INFO", "INCREMENTAL", String.format(
+                "%d source and %d target records changed; read %d source and %d target records of keys changed on the other side",
+                sourceData.size(), targetData.size(), sourceCounterparts.size(), targetCounterparts.size()), null);
+        return new RecordBatch[]{sourceData.concat(sourceCounterparts), targetData.concat(targetCounterparts)};
+    }
+    
+    private RecordBatch lookUp(ReconciliationConfig config, boolean isSource, Projection projection, KeyLookup lookup,
+                               List<Object[]> keys, RecordBatch present) {
+        if (keys.isEmpty()) {
+            return RecordBatch.empty();
+        }
+        try {
+            SourceSystem system = isSource ? config.getSourceSystem() : config.getTargetSystem();
+            String query = isSource ? config.getSourceQuery() : config.getTargetQuery();
+            Predicate<Map<String, Object>> excluding = lookup.excluding(present);
+            return projected(system, query, projection, false, selected -> dataExtractionService.extractSlices(
+                    system, lookup.queries(selected, keys), () -> excluding, projection));
+        } catch (Exception e) {
+            throw new ReconciliationException("Failed to read " + (isSource ? "source" : "target") + " records of changed keys", e);
+        }
+    }
+    
+    /**
+     * Columns of one side the comparison reads: key attributes, the attributes of the compared mappings, the
+     * watermark column and, in summary mode, the group attributes.
+     */
+    private Projection projection(ReconciliationConfig config, ComparisonPlan plan, List<AttributeMapping> mappings,
+                                  boolean isSource) {
+        Set<String> columns = new LinkedHashSet<>(parseKeyAttributes(config.getPrimaryKeyAttributes()));
+        for (ColumnComparator column : plan.columns()) {
+            columns.add(isSource ? column.sourceAttribute() : column.targetAttribute());
+        }
+        String watermarkColumn = isSource ? config.getSourceWatermarkColumn() : config.getTargetWatermarkColumn();
+        if (!isSource && (watermarkColumn == null || watermarkColumn.trim().isEmpty())) {
+            watermarkColumn = config.getSourceWatermarkColumn();
+        }
+        if (watermarkColumn != null && !watermarkColumn.trim().isEmpty()) {
+            columns.add(watermarkColumn.trim());
+        }
+        if (Boolean.TRUE.equals(config.getSummaryMode())) {
+            List<String> groupAttributes = parseGroupAttributes(config.getSummaryGroupAttributes());
+            columns.addAll(isSource ? groupAttributes : SummaryReconciler.targetGroupAttributes(groupAttributes, mappings));
+        }
+        return Projection.of(columns);
+    }
+    
+    /**
+     * Runs an extraction with the query reduced to the projected columns; if the database rejects the
+     * projected query, the extraction is run with the query itself. The query of an ordered input runs as
+     * configured, since the subselect need not keep its order; the other columns are then skipped while reading.
+     */
+    private <T> T projected(SourceSystem system, String query, Projection projection, boolean ordered,
+                            Function<String, T> extraction) {
+        String projected = system.getSystemType() == SystemType.DATABASE && query != null && !query.isEmpty()
+                && !ordered ? projection.select(query) : query;
+        try {
+            return extraction.apply(projected);
+        } catch (ReconciliationException e) {
+            if (projected == null || projected.equals(query) || !causedByDataAccess(e)) {
+                throw e;
             }
+            log.warn("Projected query of {} failed, running the configured query: {}", system.getSystemCode(), e.getMessage());
+            return extraction.apply(query);
         }
-        
-        // Find records missing in source
-        for (Map.Entry<String, Map<String, Object>> entry : targetIndex.entrySet()) {
-            if (!processedKeys.contains(entry.getKey())) {
-                if (discrepancyCounter < config.getMaxDiscrepancies()) {
-                    result.discrepancies.add(createDiscrepancy(
-                            run, entry.getKey(), DiscrepancyType.MISSING_IN_SOURCE, null,
-                            null, null, null, entry.getValue(),
-                            DiscrepancySeverity.HIGH, discrepancyCounter++));
-                }
-                result.missingInSource++;
+    }
+    
+    private static boolean causedByDataAccess(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DataAccessException) {
+                return true;
             }
         }
-        
-        return result;
+        return false;
     }
     
-    private List<Discrepancy> compareAttributes(ReconciliationRun run, String recordKey,
-                                                 Map<String, Object> sourceRecord,
-                                                 Map<String, Object> targetRecord,
-                                                 List<AttributeMapping> mappings,
-                                                 ReconciliationConfig config,
-                                                 int discrepancyCounter) {
-        List<Discrepancy> mismatches = new ArrayList<>();
-        
-        for (AttributeMapping mapping : mappings) {
-            if (!mapping.getIsEnabled() || mapping.getComparisonType() == ComparisonType.IGNORE) {
-                continue;
+    /**
+     * Slices of a database query, or null if it cannot be sliced in that database.
+     */
+    private List<ExtractionSlicing.Slice> slice(SourceSystem system, String query, ExtractionSlicing slicing,
+                                                List<String> keyAttributes) {
+        if (slicing.method() == ExtractionSliceMethod.KEY_RANGE) {
+            Object[] bounds = new Object[2];
+            dataExtractionService.queryDatabase(system, slicing.boundsQuery(query, keyAttributes.get(0)), rs -> {
+                bounds[0] = rs.getObject(1);
+                bounds[1] = rs.getObject(2);
+            });
+            return slicing.rangeSlices(query, keyAttributes.get(0), bounds[0], bounds[1]);
+        }
+        PushdownDialect dialect = PushdownDialect.forJdbcUrl(dataExtractionService.buildJdbcUrl(system));
+        if (dialect == null) {
+            log.warn("Hash slicing is not supported for system {}, extracting on a single cursor", system.getSystemCode());
+            return null;
+        }
+        return slicing.hashSlices(query, dialect, keyAttributes);
+    }
+    
+    /**
+     * Result of an extraction running on the extraction executor, with its failure rethrown as is.
+     */
+    private static TimedBatch await(Future<TimedBatch> extraction) {
+        try {
+            return extraction.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
             }
-            
-            Object sourceValue = sourceRecord.get(mapping.getSourceAttribute());
-            Object targetValue = targetRecord.get(mapping.getTargetAttribute());
-            
-            // Apply transformations if configured
-            sourceValue = applyTransformation(sourceValue, mapping.getSourceTransformation());
-            targetValue = applyTransformation(targetValue, mapping.getTargetTransformation());
-            
-            // Normalize values based on config
-            if (config.getTrimWhitespace() && sourceValue instanceof String) {
-                sourceValue = ((String) sourceValue).trim();
+            throw new ReconciliationException("Failed to extract target data", e.getCause());
+        } catch (InterruptedException e) {
+            extraction.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ReconciliationException("Interrupted while extracting target data", e);
+        }
+    }
+    
+    /**
+     * Estimated share of keys with a discrepancy, from the keys of a sampled run.
+     */
+    private void recordSampleEstimate(ReconciliationRun run, KeySample sample, ComparisonResult result) {
+        long sampledKeys = result.matchedCount + result.mismatchedRecords + result.missingInSource + result.missingInTarget;
+        long discrepantKeys = sampledKeys - result.matchedCount;
+        double[] interval = KeySample.confidenceInterval(discrepantKeys, sampledKeys);
+        run.setSamplePercentage(sample.percentage());
+        run.setEstimatedMismatchRate(sampledKeys > 0 ? (double) discrepantKeys / sampledKeys : 0.0);
+        run.setMismatchRateLowerBound(interval[0]);
+        run.setMismatchRateUpperBound(interval[1]);
+        logStep(run, "INFO", "SAMPLING", String.format(
+                "%d of %d sampled keys have discrepancies; estimated mismatch rate %.4f%% (95%% CI %.4f%% - %.4f%%)",
+                discrepantKeys, sampledKeys, run.getEstimatedMismatchRate() * 100,
+                interval[0] * 100, interval[1] * 100), null);
+    }
+    
+    /**
+     * Dialect both systems share, or null unless both are databases of the same supported dialect.
+     */
+    private PushdownDialect sharedDialect(ReconciliationConfig config) {
+        SourceSystem source = config.getSourceSystem();
+        SourceSystem target = config.getTargetSystem();
+        if (source.getSystemType() != SystemType.DATABASE || target.getSystemType() != SystemType.DATABASE) {
+            return null;
+        }
+        PushdownDialect dialect = PushdownDialect.forJdbcUrl(dataExtractionService.buildJdbcUrl(source));
+        return dialect == PushdownDialect.forJdbcUrl(dataExtractionService.buildJdbcUrl(target)) ? dialect : null;
+    }
+    
+    /**
+     * Summary reconciler of a configuration in summary mode, or null, after logging why, if it has no usable
+     * group attributes and all records are compared.
+     */
+    private SummaryReconciler createSummary(ReconciliationRun run, ReconciliationConfig config,
+                                            List<AttributeMapping> mappings) {
+        List<String> groupAttributes = parseGroupAttributes(config.getSummaryGroupAttributes());
+        try {
+            return new SummaryReconciler(groupAttributes, mappings);
+        } catch (ReconciliationException e) {
+            logStep(run, "WARN", "SUMMARY", e.getMessage() + "; comparing all records", null);
+            return null;
+        }
+    }
+    
+    /**
+     * Group totals computed with GROUP BY in both databases. Returns null when a side is not a database or the
+     * totals cannot be computed there; totals are then accumulated from the extracted records.
+     */
+    private PushdownResult summarizeInDatabase(ReconciliationRun run, ReconciliationConfig config,
+                                               SummaryReconciler summary) {
+        SourceSystem source = config.getSourceSystem();
+        SourceSystem target = config.getTargetSystem();
+        if (source.getSystemType() != SystemType.DATABASE || target.getSystemType() != SystemType.DATABASE) {
+            return null;
+        }
+        try {
+            PushdownResult result = summary.reconcile(
+                    config.getSourceQuery(), sqlSource(source), config.getTargetQuery(), sqlSource(target));
+            logStep(run, "INFO", "SUMMARY", String.format(
+                    "%d records in groups with agreeing totals; %d source and %d target records left for comparison",
+                    result.matchedRecordCount(), result.sourceRows().size(), result.targetRows().size()), null);
+            return result;
+        } catch (ReconciliationException | DataAccessException e) {
+            logStep(run, "WARN", "SUMMARY",
+                    "Group totals could not be computed in the database, extracting all records: " + e.getMessage(), null);
+            return null;
+        }
+    }
+    
+    /**
+     * Comparison work pushed down into the databases by {@link ComparisonStrategy#MERKLE_RANGE} and
+     * {@link ComparisonStrategy#SQL_PUSHDOWN}. Returns null, after logging why, when no such strategy is
+     * selected or it cannot be applied, and both sides are extracted in full instead.
+     */
+    private PushdownResult pushDown(ReconciliationRun run, ReconciliationConfig config, ComparisonPlan plan) {
+        ComparisonStrategy strategy = config.getComparisonStrategy();
+        if (strategy != ComparisonStrategy.MERKLE_RANGE && strategy != ComparisonStrategy.SQL_PUSHDOWN) {
+            return null;
+        }
+        if (plan.normalizesKeys()) {
+            logStep(run, "WARN", "PUSHDOWN", strategy
+                    + " cannot join keys normalized by key mapping transformations; extracting all records", null);
+            return null;
+        }
+        SourceSystem source = config.getSourceSystem();
+        SourceSystem target = config.getTargetSystem();
+        if (source.getSystemType() != SystemType.DATABASE || target.getSystemType() != SystemType.DATABASE) {
+            logStep(run, "WARN", "PUSHDOWN", strategy
+                    + " requires database systems on both sides; extracting all records", null);
+            return null;
+        }
+        String sourceUrl = dataExtractionService.buildJdbcUrl(source);
+        String targetUrl = dataExtractionService.buildJdbcUrl(target);
+        // Generated SQL is only available for these dialects, and row hashes only compare within one engine
+        PushdownDialect dialect = PushdownDialect.forJdbcUrl(sourceUrl);
+        if (dialect == null || dialect != PushdownDialect.forJdbcUrl(targetUrl)) {
+            logStep(run, "WARN", "PUSHDOWN", strategy
+                    + " requires both systems on Oracle or both on H2; extracting all records", null);
+            return null;
+        }
+        if (strategy == ComparisonStrategy.SQL_PUSHDOWN
+                && !(sourceUrl.equals(targetUrl) && Objects.equals(source.getUsername(), target.getUsername()))) {
+            logStep(run, "WARN", "PUSHDOWN",
+                    "SQL_PUSHDOWN requires source and target on the same database connection; extracting all records", null);
+            return null;
+        }
+        
+        try {
+            List<String> keyAttributes = parseKeyAttributes(config.getPrimaryKeyAttributes());
+            PushdownResult result;
+            if (strategy == ComparisonStrategy.SQL_PUSHDOWN) {
+                result = new SqlPushdownJoin(dialect, keyAttributes, plan)
+                        .reconcile(config.getSourceQuery(), config.getTargetQuery(), sqlSource(source));
+            } else {
+                ReconciliationProperties.HashRange settings = reconciliationProperties.getHashRange();
+                result = new HashRangeReconciler(dialect, keyAttributes, plan,
+                        settings.getFanout(), settings.getLeafRows(), settings.getMaxDepth())
+                        .reconcile(config.getSourceQuery(), sqlSource(source), config.getTargetQuery(), sqlSource(target));
             }
-            if (config.getTrimWhitespace() && targetValue instanceof String) {
-                targetValue = ((String) targetValue).trim();
+            logStep(run, "INFO", "PUSHDOWN", String.format(
+                    "%d record pairs matched in the database; %d source and %d target records left for comparison",
+                    result.matchedRecordCount(), result.sourceRows().size(), result.targetRows().size()), null);
+            return result;
+        } catch (ReconciliationException | DataAccessException e) {
+            logStep(run, "WARN", "PUSHDOWN",
+                    strategy + " not possible, extracting all records: " + e.getMessage(), null);
+            return null;
+        }
+    }
+    
+    private SqlSource sqlSource(SourceSystem system) {
+        return new SqlSource() {
+            @Override
+            public void query(String sql, RowCallbackHandler rows) {
+                dataExtractionService.queryDatabase(system, sql, rows);
             }
             
-            boolean matches = compareValues(sourceValue, targetValue, mapping, config);
-            
-            if (!matches) {
-                mismatches.add(createDiscrepancy(
-                        run, recordKey, DiscrepancyType.ATTRIBUTE_MISMATCH,
-                        mapping.getDisplayName() != null ? mapping.getDisplayName() : mapping.getSourceAttribute(),
-                        String.valueOf(sourceValue), String.valueOf(targetValue),
-                        sourceRecord, targetRecord,
-                        mapping.getMismatchSeverity(), discrepancyCounter));
+            @Override
+            public void extract(String sql, RecordBatch.Builder rows, Object... args) {
+                dataExtractionService.extractInto(system, sql, rows, args);
             }
+        };
+    }
+    
+    private ComparisonResult compareData(ReconciliationRun run, ReconciliationConfig config, ComparisonPlan plan,
+                                         RecordBatch sourceData, long[] sourceFingerprints, ParsedColumns sourceParsed,
+                                         RecordBatch targetData, long[] targetFingerprints, ParsedColumns targetParsed,
+                                         boolean changedRecordsOnly, boolean queryOrder) {
+        List<String> keyAttributes = parseKeyAttributes(config.getPrimaryKeyAttributes());
+        KeyEncoder sourceKey = plan.keyEncoder(keyAttributes, true);
+        KeyEncoder targetKey = plan.keyEncoder(keyAttributes, false);
+        RecordJoin join = createJoin(run, config, plan, keyAttributes, queryOrder);
+        
+        // Records extracted since a watermark are all compared; the snapshot only describes complete extractions
+        if (changedRecordsOnly || !Boolean.TRUE.equals(config.getIncrementalMode())) {
+            RecordComparison comparison = new RecordComparison(run, config, plan,
+                    sourceFingerprints, targetFingerprints, sourceParsed, targetParsed, null, null);
+            join.join(sourceData, null, targetData, null, sourceKey, targetKey, comparison);
+            return comparison.finish();
         }
         
-        return mismatches;
+        // Incremental: only rows whose key is not carried forward from the previous snapshot are compared
+        long[] sourceKeyHashes = IncrementalSnapshot.keyHashes(sourceData, sourceKey);
+        long[] targetKeyHashes = IncrementalSnapshot.keyHashes(targetData, targetKey);
+        long version = IncrementalSnapshot.definitionVersion(plan, sourceKey);
+        IncrementalSnapshot snapshot = IncrementalSnapshot.of(version,
+                sourceKeyHashes, IncrementalSnapshot.rowDigests(sourceData, plan, true),
+                targetKeyHashes, IncrementalSnapshot.rowDigests(targetData, plan, false));
+        Path snapshotFile = snapshotFile(config);
+        long carried = snapshot.carryForward(IncrementalSnapshot.read(snapshotFile, version));
+        int[] sourceRows = snapshot.rowsToCompare(sourceKeyHashes);
+        int[] targetRows = snapshot.rowsToCompare(targetKeyHashes);
+        logStep(run, "INFO", "INCREMENTAL", String.format(
+                "Carried forward %d unchanged matching records, comparing %d source and %d target records",
+                carried, sourceRows.length, targetRows.length), null);
+        
+        RecordComparison comparison = new RecordComparison(run, config, plan,
+                sourceFingerprints, targetFingerprints, sourceParsed, targetParsed, sourceRows, targetRows);
+        join.join(sourceData, sourceRows, targetData, targetRows, sourceKey, targetKey, comparison);
+        ComparisonResult result = comparison.finish();
+        result.matchedCount += carried;
+        
+        BitSet matched = result.matchedSourceRows;
+        for (int row = matched.nextSetBit(0); row >= 0; row = matched.nextSetBit(row + 1)) {
+            snapshot.markMatched(sourceKeyHashes[row]);
+        }
+        result.snapshot = snapshot;
+        return result;
+    }
+    
+    /**
+     * Writes the snapshot of a completed run once its transaction commits, so that a failed or rolled back run
+     * leaves the previous snapshot in place.
+     */
+    private void writeSnapshotAfterCommit(ReconciliationConfig config, IncrementalSnapshot snapshot) {
+        Path snapshotFile = snapshotFile(config);
+        Runnable write = () -> {
+            try {
+                snapshot.write(snapshotFile);
+            } catch (IOException e) {
+                // The next run falls back to a full comparison
+                log.warn("Failed to write incremental snapshot {}: {}", snapshotFile, e.getMessage());
+            }
+        };
+        afterCommit(write);
     }
     
-    private boolean compareValues(Object sourceValue, Object targetValue, 
-                                   AttributeMapping mapping, ReconciliationConfig config) {
-        // Handle nulls
-        if (sourceValue == null && targetValue == null) {
-            return true;
+    /**
+     * Runs the action once the current transaction commits, or right away outside of a transaction. The
+     * action is dropped if the transaction rolls back.
+     */
+    static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
         }
-        if (sourceValue == null || targetValue == null) {
-            if (config.getNullEqualsEmpty()) {
-                String s = sourceValue == null ? "" : String.valueOf(sourceValue);
-                String t = targetValue == null ? "" : String.valueOf(targetValue);
-                return s.isEmpty() && t.isEmpty();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
             }
-            return false;
+        });
+    }
+    
+    private Path snapshotFile(ReconciliationConfig config) {
+        return Paths.get(fileStorageProperties.getSnapshotDir(), "config-" + config.getId() + ".snapshot");
+    }
+    
+    /**
+     * Join of the configured strategy. Without query order, the records are not in the order of the
+     * configured queries, and SORT_MERGE joins them in memory instead.
+     */
+    private RecordJoin createJoin(ReconciliationRun run, ReconciliationConfig config, ComparisonPlan plan,
+                                  List<String> keyAttributes, boolean queryOrder) {
+        ComparisonStrategy strategy = config.getComparisonStrategy() != null ?
+                config.getComparisonStrategy() : ComparisonStrategy.IN_MEMORY;
+        if (strategy == ComparisonStrategy.SORT_MERGE && plan.normalizesKeys()) {
+            // Inputs are ordered by their raw keys, which need not be the order of the normalized keys
+            logStep(run, "WARN", "COMPARISON",
+                    "SORT_MERGE cannot merge keys normalized by key mapping transformations; joining in memory", null);
+            strategy = ComparisonStrategy.IN_MEMORY;
+        } else if (strategy == ComparisonStrategy.SORT_MERGE && !queryOrder) {
+            logStep(run, "INFO", "COMPARISON",
+                    "Records left by summary totals or read since high-water marks are not in query order; joining them in memory", null);
+            strategy = ComparisonStrategy.IN_MEMORY;
         }
-        
-        switch (mapping.getComparisonType()) {
-            case EXACT_MATCH:
-                return sourceValue.equals(targetValue);
-                
-            case CASE_INSENSITIVE:
-                return String.valueOf(sourceValue).equalsIgnoreCase(String.valueOf(targetValue));
-                
-            case NUMERIC_TOLERANCE:
-                try {
-                    double s = Double.parseDouble(String.valueOf(sourceValue));
-                    double t = Double.parseDouble(String.valueOf(targetValue));
-                    double tolerance = mapping.getToleranceValue() != null ? mapping.getToleranceValue() : 0.0;
-                    if ("PERCENTAGE".equals(mapping.getToleranceType())) {
-                        return Math.abs(s - t) <= Math.abs(s * tolerance / 100);
-                    }
-                    return Math.abs(s - t) <= tolerance;
-                } catch (NumberFormatException e) {
-                    return sourceValue.equals(targetValue);
-                }
-                
-            case DATE_TOLERANCE:
-                // Simplified date comparison
-                return sourceValue.equals(targetValue);
-                
-            case CONTAINS:
-                return String.valueOf(sourceValue).contains(String.valueOf(targetValue)) ||
-                       String.valueOf(targetValue).contains(String.valueOf(sourceValue));
-                
-            case REGEX_MATCH:
-                if (mapping.getFormatPattern() != null) {
-                    return String.valueOf(sourceValue).matches(mapping.getFormatPattern()) &&
-                           String.valueOf(targetValue).matches(mapping.getFormatPattern());
-                }
-                return sourceValue.equals(targetValue);
-                
+        switch (strategy) {
+            case GRACE_HASH_JOIN:
+                return new GraceHashJoin(
+                        Paths.get(fileStorageProperties.getSpillDir()),
+                        reconciliationProperties.getSpill().getMemoryBudgetRecords(),
+                        reconciliationProperties.getSpill().getPartitionCount());
+            case SORT_MERGE:
+                return new SortMergeJoin(new RecordKeyOrder(keyAttributes));
+            case PARALLEL_HASH_JOIN:
+                return new ParallelHashJoin(comparisonPool, reconciliationProperties.getParallel().getPartitionCount());
+            case IN_MEMORY:
             default:
-                return sourceValue.equals(targetValue);
+                return new InMemoryHashJoin();
         }
     }
     
     private Discrepancy createDiscrepancy(ReconciliationRun run, String recordKey, 
                                           DiscrepancyType type, String attributeName,
                                           String sourceValue, String targetValue,
-                                          Map<String, Object> sourceRecord, Map<String, Object> targetRecord,
-                                          DiscrepancySeverity severity, int counter) {
-        String code = String.format("DISC-%s-%05d", run.getRunId(), counter);
-        
-        Discrepancy discrepancy = Discrepancy.builder()
+                                          RecordSnapshot snapshot, DiscrepancySeverity severity) {
+        return Discrepancy.builder()
                 .reconciliationRun(run)
-                .discrepancyCode(code)
                 .discrepancyType(type)
                 .severity(severity)
                 .recordKey(recordKey)
                 .attributeName(attributeName)
                 .sourceValue(sourceValue)
                 .targetValue(targetValue)
-                .rowNumber((long) counter)
+                .recordSnapshot(snapshot)
                 .build();
-        
-        try {
-            if (sourceRecord != null) {
-                discrepancy.setSourceRecordJson(objectMapper.writeValueAsString(sourceRecord));
-            }
-            if (targetRecord != null) {
-                discrepancy.setTargetRecordJson(objectMapper.writeValueAsString(targetRecord));
-            }
-        } catch (Exception e) {
-            log.warn("Failed to serialize record JSON", e);
+    }
+    
+    /**
+     * Difference between the exact source and target values of a mismatch, if both are numbers.
+     */
+    private void setDifference(Discrepancy discrepancy, BigDecimal sourceValue, BigDecimal targetValue) {
+        if (sourceValue == null || targetValue == null) {
+            return;
         }
-        
-        // Calculate difference for numeric values
-        if (sourceValue != null && targetValue != null && type == DiscrepancyType.ATTRIBUTE_MISMATCH) {
-            try {
-                double s = Double.parseDouble(sourceValue);
-                double t = Double.parseDouble(targetValue);
-                discrepancy.setDifferenceAmount(Math.abs(s - t));
-                if (s != 0) {
-                    discrepancy.setDifferencePercentage(Math.abs((s - t) / s) * 100);
-                }
-            } catch (NumberFormatException ignored) {
-            }
+        BigDecimal difference = sourceValue.subtract(targetValue);
+        discrepancy.setDifferenceAmount(difference.abs());
+        if (sourceValue.signum() != 0) {
+            discrepancy.setDifferencePercentage(
+                    difference.divide(sourceValue, MathContext.DECIMAL64).abs().movePointRight(2));
         }
-        
-        return discrepancy;
     }
     
-    private String buildRecordKey(Map<String, Object> record, List<String> keyAttributes, 
-                                   List<AttributeMapping> mappings, boolean isSource) {
-        StringBuilder key = new StringBuilder();
-        for (String attr : keyAttributes) {
-            String actualAttr = attr;
-            for (AttributeMapping mapping : mappings) {
-                if (isSource && mapping.getSourceAttribute().equals(attr)) {
-                    actualAttr = mapping.getSourceAttribute();
-                    break;
-                } else if (!isSource && mapping.getTargetAttribute().equals(attr)) {
-                    actualAttr = mapping.getTargetAttribute();
-                    break;
-                }
+    /**
+     * Mismatch count per attribute as a JSON object, covering mismatches beyond the stored discrepancies.
+     */
+    private String attributeMismatchCounts(ComparisonPlan plan, ComparisonResult result) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        ColumnComparator[] columns = plan.columns();
+        for (int i = 0; i < columns.length; i++) {
+            if (result.mismatchesByColumn[i] > 0) {
+                counts.merge(columns[i].attributeName(), result.mismatchesByColumn[i], Long::sum);
             }
-            if (key.length() > 0) key.append("|");
-            Object value = record.get(actualAttr);
-            key.append(value != null ? value.toString() : "NULL");
         }
-        return key.toString();
+        try {
+            return objectMapper.writeValueAsString(counts);
+        } catch (Exception e) {
+            log.warn("Failed to serialize attribute mismatch counts", e);
+            return null;
+        }
+    }
+    
+    private List<String> parseGroupAttributes(String summaryGroupAttributes) {
+        if (summaryGroupAttributes == null) {
+            return Collections.emptyList();
+        }
+        return Arrays.stream(summaryGroupAttributes.split(","))
+                .map(String::trim)
+                .filter(attribute -> !attribute.isEmpty())
+                .collect(Collectors.toList());
     }
     
     private List<String> parseKeyAttributes(String primaryKeyAttributes) {
@@ -408,27 +926,17 @@ public class ReconciliationEngineService {
                 .collect(Collectors.toList());
     }
     
-    private Object applyTransformation(Object value, String transformation) {
-        if (transformation == null || transformation.isEmpty() || value == null) {
-            return value;
-        }
-        // Simplified transformation - in production, use SpEL or scripting engine
-        String strValue = String.valueOf(value);
-        switch (transformation.toUpperCase()) {
-            case "UPPERCASE":
-                return strValue.toUpperCase();
-            case "LOWERCASE":
-                return strValue.toLowerCase();
-            case "TRIM":
-                return strValue.trim();
-            default:
-                return value;
-        }
-    }
-    
     private void saveDiscrepancies(ReconciliationRun run, List<Discrepancy> discrepancies) {
         if (discrepancies.isEmpty()) return;
         
+        // Only the snapshots of retained discrepancies are stored, each once
+        Set<RecordSnapshot> snapshots = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Discrepancy discrepancy : discrepancies) {
+            if (discrepancy.getRecordSnapshot() != null) {
+                snapshots.add(discrepancy.getRecordSnapshot());
+            }
+        }
+        recordSnapshotRepository.saveAll(snapshots);
         discrepancyRepository.saveAll(discrepancies);
         log.info("Saved {} discrepancies for run {}", discrepancies.size(), run.getRunId());
     }
@@ -463,13 +971,332 @@ public class ReconciliationEngineService {
         return sb.toString();
     }
     
-    // Inner class for comparison results
+    /**
+     * Comparison state for one run: counts every outcome reported by the join and keeps the discrepancies
+     * that fit within the configured maximum, numbered in canonical order once the join completes.
+     * Partitions carry their own counters and collector and are merged before numbering, so the result
+     * does not depend on how the work was split.
+     * <p>
+     * Records held in batches stay available until the join completes, so their discrepancies are collected
+     * as pending descriptions and only the ones retained after merging are built, with their snapshots.
+     * Streamed records are gone once the join moves on, so their discrepancies are built as they are found.
+     */
+    private class RecordComparison implements PartitionableVisitor {
+        private final ReconciliationRun run;
+        private final ReconciliationConfig config;
+        private final ComparisonPlan plan;
+        private final long[] sourceFingerprints;
+        private final long[] targetFingerprints;
+        private final ParsedColumns sourceParsed;
+        private final ParsedColumns targetParsed;
+        private final int[] sourceRows;
+        private final int[] targetRows;
+        private final ComparisonResult result;
+        private final DiscrepancyCollector<PendingDiscrepancy> collector;
+        // Shared with the partitions, which only use it through pending discrepancies built after merging
+        private final RecordSnapshotCache snapshots;
+        
+        /**
+         * Row arrays map join ordinals to batch rows when only a subset of the rows is joined; null means
+         * that all rows are joined. Without fingerprints, the records are streamed rather than held in batches,
+         * and every matched pair is parsed into the single rows of the parsed columns as it is compared.
+         */
+        RecordComparison(ReconciliationRun run, ReconciliationConfig config, ComparisonPlan plan,
+                         long[] sourceFingerprints, long[] targetFingerprints,
+                         ParsedColumns sourceParsed, ParsedColumns targetParsed,
+                         int[] sourceRows, int[] targetRows) {
+            this(run, config, plan, sourceFingerprints, targetFingerprints, sourceParsed, targetParsed,
+                    sourceRows, targetRows, new RecordSnapshotCache(run, objectMapper));
+        }
+        
+        private RecordComparison(ReconciliationRun run, ReconciliationConfig config, ComparisonPlan plan,
+                                 long[] sourceFingerprints, long[] targetFingerprints,
+                                 ParsedColumns sourceParsed, ParsedColumns targetParsed,
+                                 int[] sourceRows, int[] targetRows, RecordSnapshotCache snapshots) {
+            this.run = run;
+            this.config = config;
+            this.plan = plan;
+            this.sourceFingerprints = sourceFingerprints;
+            this.targetFingerprints = targetFingerprints;
+            this.sourceParsed = sourceParsed;
+            this.targetParsed = targetParsed;
+            this.sourceRows = sourceRows;
+            this.targetRows = targetRows;
+            this.result = new ComparisonResult(plan.columns().length);
+            this.collector = new DiscrepancyCollector<>(config.getMaxDiscrepancies());
+            this.snapshots = snapshots;
+        }
+        
+        /**
+         * Collects a discrepancy; streamed records are built into it at once.
+         */
+        private void offer(long sequence, PendingDiscrepancy pending) {
+            if (sourceFingerprints == null) {
+                Discrepancy discrepancy = pending.build(snapshots);
+                collector.offer(sequence, retained -> discrepancy);
+            } else {
+                collector.offer(sequence, pending);
+            }
+        }
+        
+        @Override
+        public void onMatched(RecordKey key, long sourceOrdinal, long targetOrdinal,
+                              Map<String, Object> sourceRecord, Map<String, Object> targetRecord) {
+            int mismatches;
+            int sourceRow;
+            if (sourceFingerprints == null) {
+                sourceParsed.parse(sourceRecord);
+                targetParsed.parse(targetRecord);
+                sourceRow = 0;
+                mismatches = compareAttributes(key, sourceOrdinal, 0, 0, sourceRecord, targetRecord);
+            } else {
+                sourceRow = sourceRows != null ? sourceRows[(int) sourceOrdinal] : (int) sourceOrdinal;
+                int targetRow = targetRows != null ? targetRows[(int) targetOrdinal] : (int) targetOrdinal;
+                // Identical content: no attribute can mismatch
+                mismatches = RowFingerprinter.certainMatch(sourceFingerprints[sourceRow], targetFingerprints[targetRow]) ?
+                        0 : compareAttributes(key, sourceOrdinal, sourceRow, targetRow, sourceRecord, targetRecord);
+            }
+            if (mismatches == 0) {
+                result.matchedCount++;
+                if (sourceRows != null) {
+                    result.matchedSourceRows.set(sourceRow);
+                }
+            } else {
+                result.mismatchedRecords++;
+                result.attributeMismatches += mismatches;
+            }
+        }
+        
+        /**
+         * Number of attribute mismatches between a matched record pair. Discrepancies are only offered for
+         * mismatches the collector will retain, and all of them share one snapshot of the pair; once the
+         * collector cannot retain any discrepancy of the record, mismatches are only counted. Temporal
+         * attributes with parsed epochs on both sides are decided on those.
+         */
+        private int compareAttributes(RecordKey recordKey, long sourceOrdinal, int sourceRow, int targetRow,
+                                      Map<String, Object> sourceRecord,
+                                      Map<String, Object> targetRecord) {
+            ColumnComparator[] columns = plan.columns();
+            boolean retaining = collector.accepts(
+                    DiscrepancyCollector.sequence(DiscrepancyCollector.PHASE_SOURCE, sourceOrdinal, 0));
+            int mismatches = 0;
+            String key = null;
+            
+            for (int i = 0; i < columns.length; i++) {
+                ColumnComparator column = columns[i];
+                if (column.temporal()) {
+                    long sourceEpoch = sourceParsed.epoch(i, sourceRow);
+                    long targetEpoch = targetParsed.epoch(i, targetRow);
+                    if (sourceEpoch != ParsedColumns.NO_EPOCH && targetEpoch != ParsedColumns.NO_EPOCH
+                            && column.epochsMatch(sourceEpoch, targetEpoch)) {
+                        continue;
+                    }
+                }
+                boolean decimals = column.numeric()
+                        && sourceParsed.hasDecimal(i, sourceRow) && targetParsed.hasDecimal(i, targetRow);
+                Object sourceValue = null;
+                Object targetValue = null;
+                if (decimals) {
+                    if (column.decimalsMatch(sourceParsed.unscaled(i, sourceRow), sourceParsed.scale(i, sourceRow),
+                            targetParsed.unscaled(i, targetRow), targetParsed.scale(i, targetRow))) {
+                        continue;
+                    }
+                } else {
+                    sourceValue = plan.sourceValue(i, sourceRecord);
+                    targetValue = plan.targetValue(i, targetRecord);
+                    if (column.matches(sourceValue, targetValue)) {
+                        continue;
+                    }
+                }
+                mismatches++;
+                result.mismatchesByColumn[i]++;
+                if (!retaining) {
+                    continue;
+                }
+                long sequence = DiscrepancyCollector.sequence(DiscrepancyCollector.PHASE_SOURCE, sourceOrdinal, column.slot());
+                if (collector.accepts(sequence)) {
+                    if (key == null) {
+                        key = recordKey.toString();
+                    }
+                    if (decimals) {
+                        sourceValue = plan.sourceValue(i, sourceRecord);
+                        targetValue = plan.targetValue(i, targetRecord);
+                    }
+                    offer(sequence, mismatch(key, i, sourceRow, targetRow, sourceRecord, targetRecord,
+                            sourceValue, targetValue));
+                }
+            }
+            
+            return mismatches;
+        }
+        
+        private PendingDiscrepancy mismatch(String key, int column, int sourceRow, int targetRow,
+                                            Map<String, Object> sourceRecord, Map<String, Object> targetRecord,
+                                            Object sourceValue, Object targetValue) {
+            return snapshots -> {
+                ColumnComparator comparator = plan.columns()[column];
+                Discrepancy discrepancy = createDiscrepancy(
+                        run, key, DiscrepancyType.ATTRIBUTE_MISMATCH, comparator.attributeName(),
+                        String.valueOf(sourceValue), String.valueOf(targetValue),
+                        snapshots.get(key, sourceRecord, targetRecord), comparator.severity());
+                setDifference(discrepancy, sourceParsed.decimal(column, sourceRow, sourceValue),
+                        targetParsed.decimal(column, targetRow, targetValue));
+                return discrepancy;
+            };
+        }
+        
+        @Override
+        public void onMissingInTarget(RecordKey key, long sourceOrdinal, Map<String, Object> sourceRecord) {
+            long sequence = DiscrepancyCollector.sequence(DiscrepancyCollector.PHASE_SOURCE, sourceOrdinal, 0);
+            if (collector.accepts(sequence)) {
+                String recordKey = key.toString();
+                offer(sequence, snapshots -> createDiscrepancy(
+                        run, recordKey, DiscrepancyType.MISSING_IN_TARGET, null,
+                        null, null, snapshots.get(recordKey, sourceRecord, null),
+                        DiscrepancySeverity.HIGH));
+            }
+            result.missingInTarget++;
+        }
+        
+        @Override
+        public void onMissingInSource(RecordKey key, long targetOrdinal, Map<String, Object> targetRecord) {
+            long sequence = DiscrepancyCollector.sequence(DiscrepancyCollector.PHASE_TARGET, targetOrdinal, 0);
+            if (collector.accepts(sequence)) {
+                String recordKey = key.toString();
+                offer(sequence, snapshots -> createDiscrepancy(
+                        run, recordKey, DiscrepancyType.MISSING_IN_SOURCE, null,
+                        null, null, snapshots.get(recordKey, null, targetRecord),
+                        DiscrepancySeverity.HIGH));
+            }
+            result.missingInSource++;
+        }
+        
+        @Override
+        public void onDuplicateKey(RecordKey key, boolean source, long[] ordinals) {
+            long sequence = DiscrepancyCollector.sequence(
+                    source ? DiscrepancyCollector.PHASE_SOURCE : DiscrepancyCollector.PHASE_TARGET,
+                    ordinals[0], DiscrepancyCollector.SLOT_DUPLICATE);
+            if (collector.accepts(sequence)) {
+                String recordKey = key.toString();
+                offer(sequence, snapshots -> {
+                    String recordNumbers = recordNumbers(ordinals, source ? sourceRows : targetRows);
+                    Discrepancy discrepancy = createDiscrepancy(
+                            run, recordKey, DiscrepancyType.DUPLICATE_RECORD, null,
+                            source ? recordNumbers : null, source ? null : recordNumbers, null,
+                            DiscrepancySeverity.HIGH);
+                    discrepancy.setDescription(String.format("Key occurs in %d %s records", ordinals.length,
+                            source ? "source" : "target"));
+                    return discrepancy;
+                });
+            }
+            result.duplicateKeys++;
+        }
+        
+        /**
+         * One-based numbers of the records in their extracted batch, cut off to fit the value columns.
+         */
+        private String recordNumbers(long[] ordinals, int[] rows) {
+            StringBuilder numbers = new StringBuilder();
+            for (long ordinal : ordinals) {
+                if (numbers.length() > 3900) {
+                    numbers.append(", ...");
+                    break;
+                }
+                if (numbers.length() > 0) {
+                    numbers.append(", ");
+                }
+                numbers.append((rows != null ? rows[(int) ordinal] : ordinal) + 1);
+            }
+            return numbers.toString();
+        }
+        
+        @Override
+        public PartitionableVisitor createPartition() {
+            return new RecordComparison(run, config, plan, sourceFingerprints, targetFingerprints,
+                    sourceParsed, targetParsed, sourceRows, targetRows, snapshots);
+        }
+        
+        @Override
+        public void merge(PartitionableVisitor partition) {
+            RecordComparison other = (RecordComparison) partition;
+            result.merge(other.result);
+            collector.mergeFrom(other.collector);
+        }
+        
+        ComparisonResult finish() {
+            int counter = 0;
+            for (PendingDiscrepancy pending : collector.drainInOrder()) {
+                Discrepancy discrepancy = pending.build(snapshots);
+                discrepancy.setDiscrepancyCode(String.format("DISC-%s-%05d", run.getRunId(), counter));
+                discrepancy.setRowNumber((long) counter);
+                result.discrepancies.add(discrepancy);
+                counter++;
+            }
+            return result;
+        }
+    }
+    
+    /**
+     * Discrepancy of an outcome, built with the snapshots of the comparison once it is known to be retained.
+     */
+    @FunctionalInterface
+    private interface PendingDiscrepancy {
+        Discrepancy build(RecordSnapshotCache snapshots);
+    }
+    
+    /**
+     * Records of one side with the time it took to extract them.
+     */
+    private static class TimedBatch {
+        final RecordBatch rows;
+        final long timeMs;
+        
+        TimedBatch(RecordBatch rows, long timeMs) {
+            this.rows = rows;
+            this.timeMs = timeMs;
+        }
+        
+        static TimedBatch of(Supplier<RecordBatch> extraction) {
+            long start = System.currentTimeMillis();
+            RecordBatch rows = extraction.get();
+            return new TimedBatch(rows, System.currentTimeMillis() - start);
+        }
+    }
+    
     private static class ComparisonResult {
         long matchedCount = 0;
         long missingInSource = 0;
         long missingInTarget = 0;
         long attributeMismatches = 0;
+        // Matched pairs with at least one attribute mismatch
+        long mismatchedRecords = 0;
+        // Keys carried by more than one record, counted once per side
+        long duplicateKeys = 0;
+        // Attribute mismatches per compared column, counted past the discrepancy cap
+        final long[] mismatchesByColumn;
         List<Discrepancy> discrepancies = new ArrayList<>();
+        // Source batch rows of matching pairs, only tracked for incremental runs
+        final BitSet matchedSourceRows = new BitSet();
+        // Snapshot of an incremental run, written once the run is committed
+        IncrementalSnapshot snapshot;
+        
+        ComparisonResult(int columnCount) {
+            this.mismatchesByColumn = new long[columnCount];
+        }
+        
+        void merge(ComparisonResult other) {
+            matchedCount += other.matchedCount;
+            missingInSource += other.missingInSource;
+            missingInTarget += other.missingInTarget;
+            attributeMismatches += other.attributeMismatches;
+            mismatchedRecords += other.mismatchedRecords;
+            duplicateKeys += other.duplicateKeys;
+            for (int i = 0; i < mismatchesByColumn.length; i++) {
+                mismatchesByColumn[i] += other.mismatchesByColumn[i];
+            }
+            discrepancies.addAll(other.discrepancies);
+            matchedSourceRows.or(other.matchedSourceRows);
+        }
     }
 }
 
@@ -0,0 +1,47 @@
+package com.reconciliation.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reconciliation.entity.ReconciliationRun;
+import com.reconciliation.entity.RecordSnapshot;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Record snapshots of a comparison by record key. Each side of a key is serialized the first time a
+ * discrepancy of that key needs it, and every later discrepancy of the key shares the snapshot.
+ */
+@Slf4j
+final class RecordSnapshotCache {
+    
+    private final ReconciliationRun run;
+    private final ObjectMapper objectMapper;
+    private final Map<String, RecordSnapshot> byKey = new HashMap<>();
+    
+    RecordSnapshotCache(ReconciliationRun run, ObjectMapper objectMapper) {
+        this.run = run;
+        this.objectMapper = objectMapper;
+    }
+    
+    /**
+     * Snapshot of the key, with the given records serialized into the sides that do not have one yet.
+     */
+    RecordSnapshot get(String recordKey, Map<String, Object> sourceRecord, Map<String, Object> targetRecord) {
+        RecordSnapshot snapshot = byKey.computeIfAbsent(recordKey, key -> RecordSnapshot.builder()
+                .reconciliationRun(run)
+                .recordKey(key)
+                .build());
+        try {
+            if (sourceRecord != null && snapshot.getSourceRecordJson() == null) {
+                snapshot.setSourceRecordJson(objectMapper.writeValueAsString(sourceRecord));
+            }
+            if (targetRecord != null && snapshot.getTargetRecordJson() == null) {
+                snapshot.setTargetRecordJson(objectMapper.writeValueAsString(targetRecord));
+            }
+        } catch (Exception e) {
+            log.warn("Failed to serialize record JSON", e);
+        }
+        return snapshot;
+    }
+}
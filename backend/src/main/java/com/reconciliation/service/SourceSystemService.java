@@ -11,6 +11,9 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -20,8 +23,11 @@ import java.util.stream.Collectors;
 @Transactional
 public class SourceSystemService {
     
+    private static final int CONNECTION_TEST_TIMEOUT_SECONDS = 10;
+    
     private final SourceSystemRepository sourceSystemRepository;
     private final AuditService auditService;
+    private final DataSourceRegistry dataSourceRegistry;
     
     public List<SourceSystemDTO> getAllSystems() {
         return sourceSystemRepository.findByIsActiveTrue()
@@ -99,6 +105,7 @@ public class SourceSystemService {
         
         system.setIsActive(false);
         sourceSystemRepository.save(system);
+        dataSourceRegistry.evict(id);
         
         auditService.logAction("DELETE", "SourceSystem", id, toDTO(system).toString(), null);
         log.info("Deactivated source system: {}", system.getSystemCode());
@@ -124,11 +131,26 @@ public class SourceSystemService {
         }
     }
     
+    /**
+     * Borrows a connection from the system's pool and runs its test query, or else asks the driver whether
+     * the connection is valid.
+     */
     private boolean testDatabaseConnection(SourceSystem system) {
-        // Simplified - in production, use proper JDBC connection testing
-        log.info("Testing database connection to: {}:{}/{}", 
-                system.getHost(), system.getPort(), system.getDatabaseName());
-        return true;
+        log.info("Testing database connection to: {}", dataSourceRegistry.jdbcUrl(system));
+        try (Connection connection = dataSourceRegistry.dataSource(system).getConnection()) {
+            String query = system.getTestConnectionQuery();
+            if (query == null || query.trim().isEmpty()) {
+                return connection.isValid(CONNECTION_TEST_TIMEOUT_SECONDS);
+            }
+            try (Statement statement = connection.createStatement()) {
+                statement.setQueryTimeout(CONNECTION_TEST_TIMEOUT_SECONDS);
+                statement.execute(query);
+                return true;
+            }
+        } catch (SQLException | RuntimeException e) {
+            log.warn("Connection test failed for system {}: {}", system.getSystemCode(), e.getMessage());
+            return false;
+        }
     }
     
     private boolean testFileSystemConnection(SourceSystem system) {
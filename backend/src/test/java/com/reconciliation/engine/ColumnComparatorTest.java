@@ -0,0 +1,106 @@
+package com.reconciliation.engine;
+
+import com.reconciliation.entity.AttributeMapping;
+import com.reconciliation.entity.ReconciliationConfig;
+import com.reconciliation.enums.ComparisonType;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static com.reconciliation.engine.TestMappings.config;
+import static com.reconciliation.engine.TestMappings.mapping;
+import static com.reconciliation.engine.TestMappings.tolerance;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ColumnComparatorTest {
+
+    @Test
+    void whitespaceAndEmptyValuesFollowTheConfiguration() {
+        ReconciliationConfig config = config();
+        config.setTrimWhitespace(true);
+        config.setNullEqualsEmpty(true);
+        ColumnComparator lenient = ColumnComparator.compile(0, mapping("name", ComparisonType.EXACT_MATCH), config);
+        ReconciliationConfig strictConfig = config();
+        strictConfig.setTrimWhitespace(false);
+        strictConfig.setNullEqualsEmpty(false);
+        ColumnComparator strict = ColumnComparator.compile(0, mapping("name", ComparisonType.EXACT_MATCH), strictConfig);
+
+        assertTrue(lenient.matches(lenient.normalizeSource(" ada "), lenient.normalizeTarget("ada")));
+        assertTrue(lenient.matches(lenient.normalizeSource(""), null));
+        assertFalse(strict.matches(strict.normalizeSource(" ada "), strict.normalizeTarget("ada")));
+        assertFalse(strict.matches("", null));
+        assertTrue(strict.matches(null, null));
+    }
+
+    @Test
+    void textComparisonTypes() {
+        ColumnComparator caseInsensitive = ColumnComparator.compile(0, mapping("name", ComparisonType.CASE_INSENSITIVE), config());
+        ColumnComparator contains = ColumnComparator.compile(0, mapping("name", ComparisonType.CONTAINS), config());
+        AttributeMapping regex = mapping("code", ComparisonType.REGEX_MATCH);
+        regex.setFormatPattern("[A-Z]{2}\\d+");
+        ColumnComparator pattern = ColumnComparator.compile(0, regex, config());
+
+        assertTrue(caseInsensitive.matches("Ada Lovelace", "ADA LOVELACE"));
+        assertTrue(contains.matches("Ada", "Ada Lovelace"));
+        assertFalse(contains.matches("Ada", "Grace"));
+        assertTrue(pattern.matches("AB12", "CD3"));
+        assertFalse(pattern.matches("AB12", "cd3"));
+    }
+
+    @Test
+    void parsedDecimalsMatchLikeTheirValues() {
+        ColumnComparator absolute = ColumnComparator.compile(0, tolerance("amount", 0.01, "ABSOLUTE"), config());
+        ColumnComparator percentage = ColumnComparator.compile(0, tolerance("amount", 1.0, "PERCENTAGE"), config());
+        String[][] pairs = {
+                {"10.00", "10.01"}, {"10.00", "10.02"}, {"100", "100.9"}, {"100", "101.5"}, {"-5.5", "-5.495"},
+                {"0", "0.000"}, {"12345678901234.56", "12345678901234.57"}
+        };
+        long[] unscaled = new long[2];
+        for (String[] pair : pairs) {
+            int sourceScale = ScaledDecimal.parse(pair[0], unscaled, 0);
+            int targetScale = ScaledDecimal.parse(pair[1], unscaled, 1);
+            for (ColumnComparator column : new ColumnComparator[] {absolute, percentage}) {
+                assertEquals(column.matches(new BigDecimal(pair[0]), new BigDecimal(pair[1])),
+                        column.decimalsMatch(unscaled[0], sourceScale, unscaled[1], targetScale),
+                        pair[0] + " / " + pair[1]);
+            }
+        }
+        assertTrue(absolute.matches(new BigDecimal("10.00"), "10.01"));
+        assertFalse(absolute.matches("n/a", new BigDecimal("1")));
+        assertTrue(absolute.matches("n/a", "n/a"));
+    }
+
+    @Test
+    void parsedEpochsMatchLikeTheirValues() {
+        AttributeMapping booked = mapping("booked", ComparisonType.DATE_TOLERANCE);
+        booked.setToleranceValue(5.0);
+        ColumnComparator column = ColumnComparator.compile(0, booked, config());
+        LocalDateTime time = LocalDateTime.of(2024, 3, 1, 12, 0);
+
+        for (int minutes : new int[] {0, 5, -5, 6, -6}) {
+            Object target = time.plusMinutes(minutes).toString();
+            assertEquals(Math.abs(minutes) <= 5, column.matches(time, target), minutes + " minutes");
+            assertEquals(column.matches(time, target), column.epochsMatch(column.epoch(time), column.epoch(target)));
+        }
+        assertTrue(column.temporal());
+        assertFalse(column.numeric());
+    }
+
+    @Test
+    void rawEqualityOnlyHoldsForAlikeTransformations() {
+        AttributeMapping upper = mapping("name", ComparisonType.EXACT_MATCH);
+        upper.setSourceTransformation("UPPER");
+        AttributeMapping both = mapping("name", ComparisonType.EXACT_MATCH);
+        both.setSourceTransformation("UPPER");
+        both.setTargetTransformation("upper");
+        AttributeMapping negative = tolerance("amount", -1.0, "ABSOLUTE");
+
+        assertTrue(ColumnComparator.compile(0, mapping("name", ComparisonType.EXACT_MATCH), config()).rawEqualityMatches());
+        assertFalse(ColumnComparator.compile(0, upper, config()).rawEqualityMatches());
+        assertTrue(ColumnComparator.compile(0, both, config()).rawEqualityMatches());
+        assertFalse(ColumnComparator.compile(0, negative, config()).rawEqualityMatches());
+    }
+}
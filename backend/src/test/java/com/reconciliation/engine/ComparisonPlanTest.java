@@ -0,0 +1,118 @@
+package com.reconciliation.engine;
+
+import com.reconciliation.entity.AttributeMapping;
+import com.reconciliation.enums.ComparisonType;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.LinkedCaseInsensitiveMap;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.reconciliation.engine.TestMappings.config;
+import static com.reconciliation.engine.TestMappings.mapping;
+import static com.reconciliation.engine.TestMappings.tolerance;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ComparisonPlanTest {
+
+    @Test
+    void disabledAndIgnoredMappingsAreDroppedAndSlotsKept() {
+        AttributeMapping disabled = mapping("status", ComparisonType.EXACT_MATCH);
+        disabled.setIsEnabled(false);
+        ComparisonPlan plan = ComparisonPlan.compile(Arrays.asList(
+                mapping("id", ComparisonType.EXACT_MATCH), disabled, mapping("note", ComparisonType.IGNORE),
+                mapping("name", "full_name", ComparisonType.CASE_INSENSITIVE)), config());
+
+        assertEquals(2, plan.columns().length);
+        assertEquals(0, plan.columns()[0].slot());
+        assertEquals(3, plan.columns()[1].slot());
+        assertEquals("full_name", plan.columns()[1].targetAttribute());
+    }
+
+    @Test
+    void batchRowsAreReadByPositionAndMapsByName() {
+        ComparisonPlan plan = ComparisonPlan.compile(Arrays.asList(
+                mapping("amount", "AMT", ComparisonType.EXACT_MATCH), mapping("name", ComparisonType.EXACT_MATCH),
+                mapping("missing", ComparisonType.EXACT_MATCH)), config());
+        // Database columns come back upper case, and are looked up regardless of case
+        RecordBatch.Builder first = RecordBatch.builder(Arrays.asList("ID", "NAME", "AMOUNT"), true);
+        first.set(0, 1L).set(1, "one").set(2, 10L).endRow();
+        first.set(0, 2L).set(1, "two").set(2, 20L).endRow();
+        RecordBatch batch = first.build();
+        RecordBatch.Builder second = RecordBatch.builder(Arrays.asList("AMOUNT", "NAME"), true);
+        second.set(0, 30L).set(1, "three").endRow();
+        RecordBatch reordered = second.build();
+
+        assertArrayEquals(new int[] {2, 1, -1}, plan.columnIndexes(batch, true));
+        assertEquals(20L, plan.sourceValue(0, batch.row(1)));
+        assertEquals("two", plan.sourceValue(1, batch.row(1)));
+        assertNull(plan.sourceValue(2, batch.row(1)));
+        // Positions are resolved again for rows of another batch
+        assertEquals(30L, plan.sourceValue(0, reordered.row(0)));
+        assertEquals("three", plan.sourceValue(1, reordered.row(0)));
+        assertEquals("one", plan.sourceValue(1, batch.row(0)));
+
+        Map<String, Object> record = new LinkedCaseInsensitiveMap<>();
+        record.put("AMT", 40L);
+        record.put("NAME", "four");
+        assertEquals(40L, plan.targetValue(0, record));
+        assertEquals("four", plan.targetValue(1, record));
+        assertEquals(-1, plan.columnIndexes(batch, false)[0]);
+    }
+
+    @Test
+    void valuesAreNormalizedAfterTheyAreRead() {
+        AttributeMapping name = mapping("name", ComparisonType.EXACT_MATCH);
+        name.setSourceTransformation("UPPER");
+        ComparisonPlan plan = ComparisonPlan.compile(Collections.singletonList(name), config());
+        RecordBatch batch = RecordBatch.fromRecords(Collections.singletonList(record("name", "ada")));
+
+        assertEquals("ADA", plan.sourceValue(0, batch.row(0)));
+        assertEquals("ada", plan.targetValue(0, batch.row(0)));
+    }
+
+    @Test
+    void definitionHashFollowsTheComparedMappings() {
+        long base = ComparisonPlan.compile(Arrays.asList(mapping("id", ComparisonType.EXACT_MATCH),
+                tolerance("amount", 0.01, "ABSOLUTE")), config()).definitionHash();
+        long same = ComparisonPlan.compile(Arrays.asList(mapping("id", ComparisonType.EXACT_MATCH),
+                tolerance("amount", 0.01, "ABSOLUTE")), config()).definitionHash();
+        long edited = ComparisonPlan.compile(Arrays.asList(mapping("id", ComparisonType.EXACT_MATCH),
+                tolerance("amount", 0.02, "ABSOLUTE")), config()).definitionHash();
+
+        assertEquals(base, same);
+        assertNotEquals(base, edited);
+    }
+
+    @Test
+    void keyMappingsNormalizeTheKeysOfTheirSide() {
+        AttributeMapping key = mapping("code", ComparisonType.EXACT_MATCH);
+        key.setIsKeyAttribute(true);
+        key.setTargetTransformation("TRIM|UPPER");
+        ComparisonPlan plan = ComparisonPlan.compile(Collections.singletonList(key), config());
+        RecordKey source = new RecordKey();
+        RecordKey target = new RecordKey();
+
+        plan.keyEncoder(Collections.singletonList("code"), true).encode(record("code", "AB"), source);
+        plan.keyEncoder(Collections.singletonList("code"), false).encode(record("code", " ab "), target);
+
+        assertTrue(plan.normalizesKeys());
+        assertEquals(0, source.compareTo(target));
+        assertEquals(source.toString(), target.toString());
+        assertFalse(ComparisonPlan.compile(Collections.singletonList(mapping("code", ComparisonType.EXACT_MATCH)),
+                config()).normalizesKeys());
+    }
+
+    private static Map<String, Object> record(String attribute, Object value) {
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put(attribute, value);
+        return record;
+    }
+}
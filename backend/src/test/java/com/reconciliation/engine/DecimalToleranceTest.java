@@ -0,0 +1,98 @@
+package com.reconciliation.engine;
+
+import com.reconciliation.entity.AttributeMapping;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DecimalToleranceTest {
+
+    @Test
+    void absoluteToleranceBoundsTheDistanceAtEveryScale() {
+        DecimalTolerance cent = tolerance(0.01, "ABSOLUTE");
+
+        assertTrue(cent.matches(100, 2, 101, 2));
+        assertTrue(cent.matches(101, 2, 100, 2));
+        assertFalse(cent.matches(100, 2, 102, 2));
+        assertTrue(cent.matches(1, 0, 1010, 3));
+        assertFalse(cent.matches(1, 0, 1011, 3));
+        // 0.01 is exact, so a distance just above it is rejected
+        assertFalse(cent.matches(0, 0, 100_000_000_000_001L, 16));
+    }
+
+    @Test
+    void percentageToleranceIsRelativeToTheSourceValue() {
+        DecimalTolerance percent = tolerance(1.0, "PERCENTAGE");
+
+        assertTrue(percent.matches(20000, 2, 20200, 2));
+        assertFalse(percent.matches(20000, 2, 20201, 2));
+        assertTrue(percent.matches(-200, 0, -19800, 2));
+        // Relative to the source, not the target
+        assertFalse(percent.matches(198, 0, 200, 0));
+        assertFalse(percent.matches(0, 0, 1, 9));
+    }
+
+    @Test
+    void zeroToleranceAcceptsEqualValuesOfAnyScale() {
+        DecimalTolerance exact = tolerance(0.0, "ABSOLUTE");
+
+        assertTrue(exact.acceptsEqual());
+        assertTrue(exact.matches(10, 1, 100, 2));
+        assertTrue(exact.matches(5, -2, 500, 0));
+        assertFalse(exact.matches(100, 2, 101, 2));
+        assertTrue(tolerance(null, "ABSOLUTE").matches(7, 0, 7, 0));
+    }
+
+    @Test
+    void negativeAbsoluteToleranceAcceptsNothing() {
+        DecimalTolerance negative = tolerance(-0.5, "ABSOLUTE");
+
+        assertFalse(negative.acceptsEqual());
+        assertFalse(negative.matches(1, 0, 1, 0));
+        assertTrue(tolerance(-1.0, "PERCENTAGE").acceptsEqual());
+        assertTrue(tolerance(-1.0, "PERCENTAGE").matches(100, 0, 101, 0));
+    }
+
+    @Test
+    void valuesBeyondLongArithmeticAreComparedExactly() {
+        DecimalTolerance cent = tolerance(0.01, "ABSOLUTE");
+
+        // The difference overflows a long
+        assertFalse(cent.matches(Long.MAX_VALUE, 0, -1, 0));
+        assertTrue(cent.matches(Long.MAX_VALUE, 2, Long.MAX_VALUE - 1, 2));
+        // Scales without a power of ten in a long
+        assertTrue(cent.matches(1, 25, 2, 25));
+        assertTrue(tolerance(50.0, "PERCENTAGE").matches(Long.MAX_VALUE, 0, Long.MAX_VALUE / 2 + 1, 0));
+    }
+
+    @Test
+    void longArithmeticAgreesWithBigDecimalArithmetic() {
+        Random random = new Random(20);
+        DecimalTolerance[] tolerances = {
+                tolerance(0.01, "ABSOLUTE"), tolerance(2.5, "ABSOLUTE"), tolerance(0.5, "PERCENTAGE"),
+                tolerance(12.5, "PERCENTAGE")};
+        for (DecimalTolerance tolerance : tolerances) {
+            for (int i = 0; i < 10_000; i++) {
+                long source = random.nextInt(2_000_001) - 1_000_000;
+                long target = source + random.nextInt(2001) - 1000;
+                int sourceScale = random.nextInt(4);
+                int targetScale = random.nextInt(4);
+                assertEquals(
+                        tolerance.matches(ScaledDecimal.toBigDecimal(source, sourceScale),
+                                ScaledDecimal.toBigDecimal(target, targetScale)),
+                        tolerance.matches(source, sourceScale, target, targetScale),
+                        source + "E-" + sourceScale + " against " + target + "E-" + targetScale);
+            }
+        }
+    }
+
+    private static DecimalTolerance tolerance(Double value, String type) {
+        AttributeMapping mapping = TestMappings.tolerance("amount", 0, type);
+        mapping.setToleranceValue(value);
+        return DecimalTolerance.of(mapping);
+    }
+}
@@ -0,0 +1,85 @@
+package com.reconciliation.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DiscrepancyCollectorTest {
+
+    @Test
+    void firstDiscrepanciesInSequenceOrderAreRetained() {
+        DiscrepancyCollector<String> collector = new DiscrepancyCollector<>(3);
+        collector.offer(DiscrepancyCollector.sequence(DiscrepancyCollector.PHASE_TARGET, 0, 0), "missing in source 0");
+        collector.offer(DiscrepancyCollector.sequence(DiscrepancyCollector.PHASE_SOURCE, 7, 2), "mismatch 7/2");
+        collector.offer(DiscrepancyCollector.sequence(DiscrepancyCollector.PHASE_SOURCE, 7, 1), "mismatch 7/1");
+        collector.offer(DiscrepancyCollector.sequence(DiscrepancyCollector.PHASE_SOURCE, 9, 0), "missing in target 9");
+        collector.offer(DiscrepancyCollector.sequence(DiscrepancyCollector.PHASE_SOURCE, 7,
+                DiscrepancyCollector.SLOT_DUPLICATE), "duplicate 7");
+
+        assertEquals(Arrays.asList("mismatch 7/1", "mismatch 7/2", "duplicate 7"), collector.drainInOrder());
+        assertTrue(collector.drainInOrder().isEmpty());
+    }
+
+    @Test
+    void onceFullOnlyEarlierSequencesAreAccepted() {
+        DiscrepancyCollector<String> collector = new DiscrepancyCollector<>(2);
+        long first = DiscrepancyCollector.sequence(DiscrepancyCollector.PHASE_SOURCE, 10, 0);
+        long second = DiscrepancyCollector.sequence(DiscrepancyCollector.PHASE_SOURCE, 20, 0);
+        collector.offer(first, "10");
+        assertTrue(collector.accepts(second));
+        collector.offer(second, "20");
+
+        // Outcomes past the cap are only counted by the caller, so no discrepancy is built for them
+        assertFalse(collector.accepts(DiscrepancyCollector.sequence(DiscrepancyCollector.PHASE_SOURCE, 21, 0)));
+        assertFalse(collector.accepts(DiscrepancyCollector.sequence(DiscrepancyCollector.PHASE_TARGET, 0, 0)));
+        assertTrue(collector.accepts(DiscrepancyCollector.sequence(DiscrepancyCollector.PHASE_SOURCE, 15, 0)));
+        assertFalse(new DiscrepancyCollector<String>(0).accepts(first));
+    }
+
+    @Test
+    void mergedPartitionsRetainTheSameDiscrepanciesAsOneCollector() {
+        DiscrepancyCollector<Long> single = new DiscrepancyCollector<>(50);
+        List<DiscrepancyCollector<Long>> partitions = new ArrayList<>();
+        for (int p = 0; p < 8; p++) {
+            partitions.add(new DiscrepancyCollector<>(50));
+        }
+        List<Long> ordinals = new ArrayList<>();
+        for (long ordinal = 0; ordinal < 2000; ordinal += 3) {
+            ordinals.add(ordinal);
+        }
+        Collections.shuffle(ordinals, new Random(42));
+        for (long ordinal : ordinals) {
+            long sequence = DiscrepancyCollector.sequence(DiscrepancyCollector.PHASE_SOURCE, ordinal, 0);
+            single.offer(sequence, ordinal);
+            partitions.get((int) (ordinal % 8)).offer(sequence, ordinal);
+        }
+
+        DiscrepancyCollector<Long> merged = new DiscrepancyCollector<>(50);
+        for (DiscrepancyCollector<Long> partition : partitions) {
+            merged.mergeFrom(partition);
+        }
+
+        List<Long> retained = merged.drainInOrder();
+        assertEquals(single.drainInOrder(), retained);
+        assertEquals(50, retained.size());
+        assertEquals(0L, retained.get(0));
+        assertEquals(147L, retained.get(49));
+    }
+
+    @Test
+    void sequencesOutOfRangeAreRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> DiscrepancyCollector.sequence(DiscrepancyCollector.PHASE_SOURCE, 1L << 53, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> DiscrepancyCollector.sequence(DiscrepancyCollector.PHASE_SOURCE, 0, 1 << 10));
+    }
+}
@@ -0,0 +1,90 @@
+package com.reconciliation.engine;
+
+import com.reconciliation.entity.AttributeMapping;
+import com.reconciliation.entity.ReconciliationConfig;
+import com.reconciliation.enums.ComparisonType;
+import com.reconciliation.exception.ReconciliationException;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static com.reconciliation.engine.TestMappings.config;
+import static com.reconciliation.engine.TestMappings.mapping;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EpochParserTest {
+
+    private static final EpochParser ISO = EpochParser.forPattern("booked", null);
+    private static final LocalDateTime TIME = LocalDateTime.of(2024, 3, 1, 12, 30, 15);
+    private static final long EPOCH = TIME.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+    @Test
+    void databaseAndTextValuesOfTheSameInstantAgree() {
+        assertEquals(EPOCH, ISO.toEpochMillis(TIME));
+        assertEquals(EPOCH, ISO.toEpochMillis(Timestamp.valueOf(TIME)));
+        assertEquals(EPOCH, ISO.toEpochMillis("2024-03-01T12:30:15"));
+        assertEquals(EPOCH, ISO.toEpochMillis("2024-03-01 12:30:15"));
+        assertEquals(EPOCH, ISO.toEpochMillis(TIME.atZone(ZoneId.systemDefault())));
+        assertEquals(EPOCH, ISO.toEpochMillis(Instant.ofEpochMilli(EPOCH)));
+        assertEquals(EPOCH + 500, ISO.toEpochMillis("2024-03-01T12:30:15.5"));
+    }
+
+    @Test
+    void offsetsAndDatesAreHonoured() {
+        long utc = TIME.toInstant(ZoneOffset.UTC).toEpochMilli();
+        long midnight = LocalDate.of(2024, 3, 1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+        assertEquals(utc, ISO.toEpochMillis("2024-03-01T12:30:15Z"));
+        assertEquals(utc - 3_600_000, ISO.toEpochMillis("2024-03-01T12:30:15+01:00"));
+        assertEquals(utc, ISO.toEpochMillis(OffsetDateTime.of(TIME, ZoneOffset.UTC)));
+        assertEquals(midnight, ISO.toEpochMillis("2024-03-01"));
+        assertEquals(midnight, ISO.toEpochMillis(LocalDate.of(2024, 3, 1)));
+    }
+
+    @Test
+    void formatPatternsReplaceTheIsoFormat() {
+        EpochParser dayFirst = EpochParser.forPattern("booked", "dd/MM/yyyy HH:mm:ss");
+
+        assertEquals(EPOCH, dayFirst.toEpochMillis("01/03/2024 12:30:15"));
+        assertEquals(EpochParser.NO_EPOCH, dayFirst.toEpochMillis("2024-03-01T12:30:15"));
+        ReconciliationException e = assertThrows(ReconciliationException.class,
+                () -> EpochParser.forPattern("booked", "yyyy-MM-dd {"));
+        assertEquals("INVALID_MAPPING", e.getErrorCode());
+    }
+
+    @Test
+    void valuesThatAreNotDatesHaveNoEpoch() {
+        assertEquals(EpochParser.NO_EPOCH, ISO.toEpochMillis(null));
+        assertEquals(EpochParser.NO_EPOCH, ISO.toEpochMillis("never"));
+        assertEquals(EpochParser.NO_EPOCH, ISO.toEpochMillis("2024-13-01"));
+        assertEquals(EpochParser.NO_EPOCH, ISO.toEpochMillis(20240301L));
+    }
+
+    @Test
+    void dateToleranceComparesEpochsWithinTheTolerance() {
+        AttributeMapping mapped = mapping("booked", ComparisonType.DATE_TOLERANCE);
+        mapped.setToleranceValue(2.0);
+        ColumnComparator mappingTolerance = ColumnComparator.compile(0, mapped, config());
+        ReconciliationConfig tenMinutes = config();
+        tenMinutes.setDateToleranceMinutes(10);
+        ColumnComparator configTolerance = ColumnComparator.compile(0, mapping("booked", ComparisonType.DATE_TOLERANCE),
+                tenMinutes);
+
+        assertTrue(mappingTolerance.matches(TIME, "2024-03-01T12:32:15"));
+        assertFalse(mappingTolerance.matches(TIME, "2024-03-01T12:32:16"));
+        assertTrue(configTolerance.matches(Timestamp.valueOf(TIME), TIME.minusMinutes(10)));
+        assertFalse(configTolerance.matches(Timestamp.valueOf(TIME), TIME.minusMinutes(11)));
+        // Values without an epoch are compared by value
+        assertTrue(mappingTolerance.matches("pending", "pending"));
+        assertFalse(mappingTolerance.matches("pending", TIME));
+    }
+}
@@ -0,0 +1,92 @@
+package com.reconciliation.engine;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GraceHashJoinTest {
+
+    private static final KeyEncoder KEY = new KeyEncoder(Collections.singletonList("id"));
+
+    @TempDir
+    Path spillDirectory;
+
+    @Test
+    void repartitionedJoinReportsTheSameOutcomesAsTheInMemoryJoin() throws Exception {
+        RecordBatch source = JoinTestData.source(4000);
+        RecordBatch target = JoinTestData.target(4000);
+        RecordingVisitor inMemory = new RecordingVisitor();
+        new InMemoryHashJoin().join(source.rows(), target.rows(), KEY, KEY, inMemory);
+
+        // Two partitions of a budget of 16 records are still over budget after every pass, down to the last depth
+        RecordingVisitor spilled = new RecordingVisitor();
+        new GraceHashJoin(spillDirectory, 16, 2).join(source.rows(), target.rows(), KEY, KEY, spilled);
+
+        assertEquals(inMemory.sortedOutcomes(), spilled.sortedOutcomes());
+        assertTrue(spilled.count("MATCHED") > 0);
+        assertTrue(spilled.count("MISSING_IN_TARGET") > 0);
+        assertTrue(spilled.count("MISSING_IN_SOURCE") > 0);
+        assertTrue(spilled.count("DUPLICATE") > 0);
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void joinWithinTheBudgetDoesNotSpill() throws Exception {
+        RecordBatch source = JoinTestData.source(100);
+        RecordBatch target = JoinTestData.target(100);
+        RecordingVisitor inMemory = new RecordingVisitor();
+        new InMemoryHashJoin().join(source.rows(), target.rows(), KEY, KEY, inMemory);
+
+        RecordingVisitor grace = new RecordingVisitor();
+        new GraceHashJoin(spillDirectory.resolve("unused"), 1000, 2).join(source.rows(), target.rows(), KEY, KEY, grace);
+
+        assertEquals(inMemory.sortedOutcomes(), grace.sortedOutcomes());
+        assertTrue(Files.notExists(spillDirectory.resolve("unused")));
+    }
+
+    @Test
+    void repeatedKeysAreReportedWithTheOrdinalsOfAllTheirRecords() throws Exception {
+        RecordingVisitor inMemory = new RecordingVisitor();
+        new InMemoryHashJoin().join(JoinTestData.repeatedSource().rows(), JoinTestData.repeatedTarget().rows(),
+                KEY, KEY, inMemory);
+        RecordingVisitor spilled = new RecordingVisitor();
+        new GraceHashJoin(spillDirectory, 2, 2).join(JoinTestData.repeatedSource().rows(),
+                JoinTestData.repeatedTarget().rows(), KEY, KEY, spilled);
+
+        assertEquals(JoinTestData.REPEATED_DUPLICATES, inMemory.sortedOutcomes("DUPLICATE"));
+        assertEquals(JoinTestData.REPEATED_DUPLICATES, spilled.sortedOutcomes("DUPLICATE"));
+    }
+
+    @Test
+    void cursorsAreReadInOnePassTargetFirst() throws Exception {
+        RecordBatch source = JoinTestData.source(4000);
+        RecordBatch target = JoinTestData.target(4000);
+        RecordingVisitor inMemory = new RecordingVisitor();
+        new InMemoryHashJoin().join(source.rows(), target.rows(), KEY, KEY, inMemory);
+        List<String> chunksRead = new ArrayList<>();
+
+        RecordingVisitor spilled = new RecordingVisitor();
+        try (RecordCursor sourceCursor = JoinTestData.cursor(source, 100).observeChunks(chunk -> chunksRead.add("source"));
+             RecordCursor targetCursor = JoinTestData.cursor(target, 100).observeChunks(chunk -> chunksRead.add("target"))) {
+            new GraceHashJoin(spillDirectory, 500, 4).join(sourceCursor, targetCursor, KEY, KEY, spilled);
+            assertEquals(source.size(), sourceCursor.count());
+            assertEquals(target.size(), targetCursor.count());
+        }
+
+        assertEquals(inMemory.sortedOutcomes(), spilled.sortedOutcomes());
+        int targetChunks = (target.size() + 99) / 100;
+        assertEquals(Collections.nCopies(targetChunks, "target"), chunksRead.subList(0, targetChunks));
+        assertEquals(targetChunks + (source.size() + 99) / 100, chunksRead.size());
+    }
+}
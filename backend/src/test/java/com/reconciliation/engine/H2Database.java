@@ -0,0 +1,48 @@
+package com.reconciliation.engine;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.ResultSetMetaData;
+import java.util.Collections;
+
+/**
+ * In-memory H2 database that generated SQL runs against, read the way extraction reads query results.
+ */
+final class H2Database implements SqlSource {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    H2Database(String name) {
+        this.jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1"));
+    }
+
+    void execute(String... statements) {
+        for (String statement : statements) {
+            jdbcTemplate.execute(statement);
+        }
+    }
+
+    RecordBatch extract(String sql) {
+        RecordBatch.Builder rows = RecordBatch.builder(Collections.emptyList(), true);
+        extract(sql, rows);
+        return rows.build();
+    }
+
+    @Override
+    public void query(String sql, RowCallbackHandler rows) {
+        jdbcTemplate.query(sql, rows);
+    }
+
+    @Override
+    public void extract(String sql, RecordBatch.Builder rows, Object... args) {
+        jdbcTemplate.query(sql, rs -> {
+            ResultSetMetaData metaData = rs.getMetaData();
+            for (int column = 1; column <= metaData.getColumnCount(); column++) {
+                rows.set(rows.addColumn(metaData.getColumnLabel(column)), rs.getObject(column));
+            }
+            rows.endRow();
+        }, args);
+    }
+}
@@ -0,0 +1,115 @@
+package com.reconciliation.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HashJoinTableTest {
+
+    private static final KeyEncoder KEY = new KeyEncoder(Collections.singletonList("id"));
+
+    @Test
+    void sweepReportsEveryTargetRecordNoSourceProbed() {
+        HashJoinTable table = new HashJoinTable();
+        for (long id = 0; id < 3000; id++) {
+            table.add(key(id), id, record(id));
+        }
+        RecordingVisitor visitor = new RecordingVisitor();
+        List<String> expected = new ArrayList<>();
+        for (long id = 0; id < 3000; id++) {
+            // Every word of the bitmap holds both probed and unprobed entries, and the last word is partial
+            if (id % 3 == 0 || id % 64 == 63) {
+                table.probe(key(id), id, record(id), visitor);
+            } else {
+                expected.add("MISSING_IN_SOURCE " + id + " " + id + " {id=" + id + "}");
+            }
+        }
+        // Source keys without a target record are not swept
+        table.probe(key(5000), 3000, record(5000), visitor);
+
+        RecordingVisitor sweep = new RecordingVisitor();
+        table.sweepUnmatched(sweep);
+
+        Collections.sort(expected);
+        assertEquals(expected, sweep.sortedOutcomes());
+        assertEquals(1, visitor.count("MISSING_IN_TARGET"));
+    }
+
+    @Test
+    void clearedTableSweepsOnlyItsNewEntries() {
+        HashJoinTable table = new HashJoinTable();
+        for (long id = 0; id < 100; id++) {
+            table.add(key(id), id, record(id));
+            table.probe(key(id), id, record(id), new RecordingVisitor());
+        }
+        table.clear();
+        table.add(key(7), 0, record(7));
+
+        RecordingVisitor sweep = new RecordingVisitor();
+        table.sweepUnmatched(sweep);
+
+        assertEquals(Collections.singletonList("MISSING_IN_SOURCE 7 0 {id=7}"), sweep.sortedOutcomes());
+    }
+
+    @Test
+    void duplicatesAreReportedWithTheOrdinalsOfAllTheirRecords() {
+        HashJoinTable table = new HashJoinTable();
+        table.add(key(1), 0, record(1));
+        table.add(key(2), 1, record(2));
+        table.add(key(1), 2, record(1));
+        table.add(key(1), 3, record(1));
+        RecordingVisitor visitor = new RecordingVisitor();
+        table.probe(key(2), 0, record(2), visitor);
+        table.probe(key(9), 1, record(9), visitor);
+        table.probe(key(2), 2, record(2), visitor);
+        table.probe(key(9), 3, record(9), visitor);
+        table.probe(key(2), 4, record(2), visitor);
+        table.probe(key(9), 5, record(9), visitor);
+        table.probe(key(8), 6, record(8), visitor);
+
+        RecordingVisitor duplicates = new RecordingVisitor();
+        table.reportDuplicates(duplicates);
+
+        assertEquals(Arrays.asList(
+                "DUPLICATE 1 target [0, 2, 3]",
+                "DUPLICATE 2 source [0, 2, 4]",
+                "DUPLICATE 9 source [1, 3, 5]"), duplicates.sortedOutcomes());
+        // Every occurrence of a repeated source key is still paired with the target record
+        assertEquals(3, visitor.count("MATCHED 2"));
+    }
+
+    @Test
+    void firstOccurrencesAreRecoveredBeyondTheIntRange() {
+        HashJoinTable table = new HashJoinTable();
+        long first = 5_000_000_000L;
+        table.add(key(1), 0, record(1));
+        RecordingVisitor visitor = new RecordingVisitor();
+        table.probe(key(1), first, record(1), visitor);
+        table.probe(key(2), first + 1, record(2), visitor);
+        table.probe(key(1), first + 70_000, record(1), visitor);
+        table.probe(key(2), first + 80_000, record(2), visitor);
+
+        RecordingVisitor duplicates = new RecordingVisitor();
+        table.reportDuplicates(duplicates);
+
+        assertEquals(Arrays.asList(
+                "DUPLICATE 1 source [" + first + ", " + (first + 70_000) + "]",
+                "DUPLICATE 2 source [" + (first + 1) + ", " + (first + 80_000) + "]"), duplicates.sortedOutcomes());
+    }
+
+    private static RecordKey key(long id) {
+        RecordKey key = new RecordKey();
+        KEY.encode(record(id), key);
+        return key;
+    }
+
+    private static Map<String, Object> record(long id) {
+        return Collections.singletonMap("id", id);
+    }
+}
@@ -0,0 +1,84 @@
+package com.reconciliation.engine;
+
+import com.reconciliation.entity.AttributeMapping;
+import com.reconciliation.enums.ComparisonType;
+import com.reconciliation.exception.ReconciliationException;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.reconciliation.engine.TestMappings.config;
+import static com.reconciliation.engine.TestMappings.mapping;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HashRangeReconcilerTest {
+
+    private static final List<String> KEY_ATTRIBUTES = Collections.singletonList("id");
+    private static final String SOURCE_QUERY = "SELECT id, name, amount FROM source_accounts";
+    private static final String TARGET_QUERY = "SELECT id, name, amount FROM target_accounts";
+
+    private static final ComparisonPlan PLAN = ComparisonPlan.compile(Arrays.asList(
+            mapping("name", ComparisonType.EXACT_MATCH), mapping("amount", ComparisonType.NUMERIC_TOLERANCE)), config());
+
+    private static H2Database database;
+
+    @BeforeAll
+    static void createTables() {
+        database = new H2Database("hash_range");
+        database.execute(
+                "CREATE TABLE source_accounts (id INT PRIMARY KEY, name VARCHAR(50), amount DECIMAL(12, 2))",
+                "CREATE TABLE target_accounts (id INT PRIMARY KEY, name VARCHAR(50), amount DECIMAL(12, 2))",
+                "INSERT INTO source_accounts SELECT X, 'account ' || X, X * 1.5 FROM SYSTEM_RANGE(1, 5000)",
+                "INSERT INTO target_accounts SELECT X, 'account ' || X, X * 1.5 FROM SYSTEM_RANGE(1, 5000)",
+                "UPDATE target_accounts SET amount = amount + 1 WHERE MOD(id, 97) = 0",
+                "UPDATE target_accounts SET name = NULL WHERE MOD(id, 331) = 0",
+                "DELETE FROM target_accounts WHERE MOD(id, 211) = 0",
+                "DELETE FROM source_accounts WHERE id IN (17, 4099)",
+                "INSERT INTO target_accounts SELECT X, 'account ' || X, X * 1.5 FROM SYSTEM_RANGE(9001, 9010)");
+    }
+
+    @Test
+    void differingRangesHoldEveryDiscrepancyOfAFullComparison() {
+        KeyOutcomes full = KeyOutcomes.compare(PLAN, KEY_ATTRIBUTES,
+                database.extract(SOURCE_QUERY), database.extract(TARGET_QUERY));
+
+        PushdownResult result = new HashRangeReconciler(PushdownDialect.H2, KEY_ATTRIBUTES, PLAN, 4, 8, 8)
+                .reconcile(SOURCE_QUERY, database, TARGET_QUERY, database);
+        KeyOutcomes remaining = KeyOutcomes.compare(PLAN, KEY_ATTRIBUTES, result.sourceRows(), result.targetRows());
+
+        assertFalse(full.discrepancies().isEmpty());
+        assertEquals(full.discrepancies(), remaining.discrepancies());
+        assertEquals(full.matched(), result.matchedRecordCount() + remaining.matched());
+        assertEquals(4998, result.sourceRecordCount());
+        assertEquals(5000 - 23 + 10, result.targetRecordCount());
+        // Only the rows of differing ranges leave the database
+        assertTrue(result.sourceRows().size() < 1000, result.sourceRows().size() + " source rows extracted");
+    }
+
+    @Test
+    void identicalQueriesLeaveNothingToCompare() {
+        PushdownResult result = new HashRangeReconciler(PushdownDialect.H2, KEY_ATTRIBUTES, PLAN, 16, 64, 4)
+                .reconcile(SOURCE_QUERY, database, SOURCE_QUERY, database);
+
+        assertEquals(4998, result.matchedRecordCount());
+        assertEquals(0, result.sourceRows().size());
+        assertEquals(0, result.targetRows().size());
+    }
+
+    @Test
+    void comparisonsThatEqualRawValuesMayFailAreRejected() {
+        AttributeMapping pattern = mapping("name", ComparisonType.REGEX_MATCH);
+        pattern.setFormatPattern("account [0-9]+");
+        ComparisonPlan plan = ComparisonPlan.compile(Collections.singletonList(pattern), config());
+
+        ReconciliationException e = assertThrows(ReconciliationException.class,
+                () -> new HashRangeReconciler(PushdownDialect.H2, KEY_ATTRIBUTES, plan, 4, 8, 8));
+        assertEquals("HASH_RANGE_UNSUPPORTED", e.getErrorCode());
+    }
+}
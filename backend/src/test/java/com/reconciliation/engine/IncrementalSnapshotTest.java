@@ -0,0 +1,91 @@
+package com.reconciliation.engine;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class IncrementalSnapshotTest {
+
+    private static final long VERSION = 42;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void writtenSnapshotCarriesUnchangedMatchesForward() throws Exception {
+        IncrementalSnapshot previous = IncrementalSnapshot.of(VERSION,
+                new long[]{1, 2, 3, 4}, new long[]{10, 20, 30, 40},
+                new long[]{1, 2, 3, 4}, new long[]{10, 20, 30, 40});
+        for (long key : new long[]{1, 2, 3}) {
+            previous.markMatched(key);
+        }
+        Path file = directory.resolve("config-1.snapshot");
+        previous.write(file);
+
+        IncrementalSnapshot read = IncrementalSnapshot.read(file, VERSION);
+        assertNotNull(read);
+        assertEquals(4, read.size());
+
+        // Key 2 changed on the source, key 4 did not match before and key 5 is new
+        long[] keys = {1, 2, 3, 4, 5};
+        IncrementalSnapshot current = IncrementalSnapshot.of(VERSION,
+                keys, new long[]{10, 21, 30, 40, 50},
+                keys, new long[]{10, 20, 30, 40, 50});
+        assertEquals(2, current.carryForward(read));
+        assertArrayEquals(new int[]{1, 3, 4}, current.rowsToCompare(keys));
+    }
+
+    @Test
+    void duplicatedKeysAreNeverCarriedForward() throws Exception {
+        long[] sourceKeys = {1, 1, 2};
+        long[] targetKeys = {1, 2};
+        IncrementalSnapshot previous = IncrementalSnapshot.of(VERSION,
+                sourceKeys, new long[]{10, 10, 20}, targetKeys, new long[]{10, 20});
+        previous.markMatched(1);
+        previous.markMatched(2);
+        Path file = directory.resolve("config-1.snapshot");
+        previous.write(file);
+
+        IncrementalSnapshot current = IncrementalSnapshot.of(VERSION,
+                sourceKeys, new long[]{10, 10, 20}, targetKeys, new long[]{10, 20});
+        assertEquals(1, current.carryForward(IncrementalSnapshot.read(file, VERSION)));
+        assertArrayEquals(new int[]{0, 1}, current.rowsToCompare(sourceKeys));
+    }
+
+    @Test
+    void snapshotOfAnotherDefinitionIsIgnored() throws Exception {
+        Path file = directory.resolve("config-1.snapshot");
+        IncrementalSnapshot.of(VERSION, new long[]{1}, new long[]{10}, new long[]{1}, new long[]{10}).write(file);
+
+        assertNull(IncrementalSnapshot.read(file, VERSION + 1));
+        assertNull(IncrementalSnapshot.read(directory.resolve("missing.snapshot"), VERSION));
+    }
+
+    @Test
+    void unreadableSnapshotIsIgnored() throws Exception {
+        Path file = directory.resolve("config-1.snapshot");
+        Files.write(file, new byte[]{0x52, 0x43, 0x4E, 0x53, 0, 0, 0, 1, 0});
+
+        assertNull(IncrementalSnapshot.read(file, VERSION));
+    }
+
+    @Test
+    void writeReplacesThePreviousSnapshotWithoutLeavingTemporaryFiles() throws Exception {
+        Path file = directory.resolve("config-1.snapshot");
+        IncrementalSnapshot.of(VERSION, new long[]{1}, new long[]{10}, new long[]{1}, new long[]{10}).write(file);
+        IncrementalSnapshot.of(VERSION, new long[]{1, 2}, new long[]{10, 20}, new long[]{1}, new long[]{10}).write(file);
+
+        assertEquals(2, IncrementalSnapshot.read(file, VERSION).size());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.count());
+        }
+    }
+}
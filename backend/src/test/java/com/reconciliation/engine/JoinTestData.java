@@ -0,0 +1,109 @@
+package com.reconciliation.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Source and target records with every kind of join outcome: matching and mismatching amounts, keys missing
+ * on either side and keys repeated on either side.
+ */
+final class JoinTestData {
+
+    /**
+     * Duplicate key outcomes of {@link #repeatedSource} and {@link #repeatedTarget}: every repeated key once,
+     * with the ordinals of all its records.
+     */
+    static final List<String> REPEATED_DUPLICATES = Arrays.asList(
+            "DUPLICATE 1 source [0, 1]",
+            "DUPLICATE 2 source [2, 3, 4]",
+            "DUPLICATE 2 target [1, 2]",
+            "DUPLICATE 3 target [3, 4, 5]",
+            "DUPLICATE 4 source [6, 7, 8, 9]");
+
+    private JoinTestData() {
+    }
+
+    static RecordBatch source(int keys) {
+        List<Map<String, Object>> records = new ArrayList<>();
+        for (long id = 0; id < keys; id++) {
+            if (id % 10 == 3) {
+                continue;
+            }
+            records.add(record(id, id));
+            if (id % 500 == 0) {
+                records.add(record(id, id + 100));
+            }
+        }
+        return RecordBatch.fromRecords(records);
+    }
+
+    static RecordBatch target(int keys) {
+        List<Map<String, Object>> records = new ArrayList<>();
+        for (long id = keys - 1; id >= 0; id--) {
+            if (id % 10 == 7) {
+                continue;
+            }
+            records.add(record(id, id % 10 == 5 ? id + 1 : id));
+            if (id % 250 == 1) {
+                records.add(record(id, id));
+            }
+        }
+        return RecordBatch.fromRecords(records);
+    }
+
+    /**
+     * Ordered source records whose keys 1, 2 and 4 occur two, three and four times.
+     */
+    static RecordBatch repeatedSource() {
+        return ids(1, 1, 2, 2, 2, 3, 4, 4, 4, 4);
+    }
+
+    /**
+     * Ordered target records whose keys 2 and 3 occur two and three times.
+     */
+    static RecordBatch repeatedTarget() {
+        return ids(1, 2, 2, 3, 3, 3, 5);
+    }
+
+    private static RecordBatch ids(long... ids) {
+        List<Map<String, Object>> records = new ArrayList<>();
+        for (long id : ids) {
+            records.add(record(id, id));
+        }
+        return RecordBatch.fromRecords(records);
+    }
+
+    private static Map<String, Object> record(long id, long amount) {
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("id", id);
+        record.put("amount", amount);
+        return record;
+    }
+
+    /**
+     * Cursor reading the rows of a batch in chunks of the given size.
+     */
+    static RecordCursor cursor(RecordBatch batch, int chunkRows) {
+        return new RecordCursor() {
+            private int next;
+
+            @Override
+            protected RecordBatch readChunk() {
+                if (next == batch.size()) {
+                    return null;
+                }
+                int[] rows = IntStream.range(next, Math.min(next + chunkRows, batch.size())).toArray();
+                next += rows.length;
+                return batch.select(rows);
+            }
+
+            @Override
+            protected void release() {
+            }
+        };
+    }
+}
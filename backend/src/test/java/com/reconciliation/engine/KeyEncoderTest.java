@@ -0,0 +1,115 @@
+package com.reconciliation.engine;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.util.LinkedCaseInsensitiveMap;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeyEncoderTest {
+
+    private static final KeyEncoder ENCODER = new KeyEncoder(Arrays.asList("region", "id"));
+
+    @Test
+    void batchRowsAreEncodedLikeTheirRecords() {
+        List<Map<String, Object>> records = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            records.add(record(i % 5 == 0 ? null : "region " + i % 7, i % 11 == 0 ? null : (long) i - 1500));
+        }
+        records.add(record("ünïcødé 😀", Long.MIN_VALUE));
+        records.add(record("x", new BigDecimal("12.50")));
+        RecordBatch batch = RecordBatch.fromRecords(records);
+
+        for (int row = 0; row < batch.size(); row++) {
+            assertEquals(encode(ENCODER, records.get(row)), encode(ENCODER, batch.row(row)), "row " + row);
+        }
+        assertEquals("NULL|NULL", encode(ENCODER, batch.row(0)));
+        assertEquals("region 1|-1499", encode(ENCODER, batch.row(1)));
+        assertEquals("ünïcødé 😀|" + Long.MIN_VALUE, encode(ENCODER, batch.row(3000)));
+        assertEquals("x|12.50", encode(ENCODER, batch.row(3001)));
+    }
+
+    @Test
+    void keysAreEqualExactlyWhenTheirAttributeTextsAre() {
+        assertEquals(0, key(record("a", 5L)).compareTo(key(record("a", 5))));
+        assertEquals(0, key(record("a", 5L)).compareTo(key(record("a", "5"))));
+        assertNotEquals(0, key(record("a|b", "c")).compareTo(key(record("a", "b|c"))));
+        assertNotEquals(0, key(record(null, "c")).compareTo(key(record("NULL", "c"))));
+        assertNotEquals(0, key(record("", "c")).compareTo(key(record(null, "c"))));
+        // Null fields order after every value
+        assertTrue(key(record(null, "c")).compareTo(key(record("zzz", "c"))) > 0);
+        assertTrue(key(record("a", 10L)).compareTo(key(record("a", 9L))) < 0);
+    }
+
+    @Test
+    void longFieldsKeepTheirTextAndOrder() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            text.append((char) ('a' + i % 26));
+        }
+        RecordKey longer = key(record(text + "b", 1L));
+        RecordKey shorter = key(record(text.substring(0, 100), 1L));
+
+        assertEquals(text + "b|1", longer.toString());
+        assertTrue(longer.compareTo(key(record(text + "a", 1L))) > 0);
+        assertTrue(shorter.compareTo(longer) < 0);
+        assertEquals(longer.hash(), key(record(text + "b", 1L)).hash());
+    }
+
+    @Test
+    void attributesAreLookedUpLikeTheRecordDoes() {
+        Map<String, Object> record = new LinkedCaseInsensitiveMap<>();
+        record.put("REGION", "north");
+        record.put("ID", 7L);
+        RecordBatch batch = RecordBatch.fromRecords(Collections.singletonList(record));
+
+        assertEquals("north|7", encode(ENCODER, record));
+        assertEquals("north|7", encode(ENCODER, batch.row(0)));
+    }
+
+    @Test
+    void transformationsNormalizeKeyValues() {
+        KeyEncoder trimmed = new KeyEncoder(Arrays.asList("region", "id"), Arrays.asList(
+                TransformationPipeline.compile("region", "TRIM|UPPER"), TransformationPipeline.IDENTITY));
+        RecordBatch batch = RecordBatch.fromRecords(Collections.singletonList(record(" north ", 7L)));
+
+        assertEquals("NORTH|7", encode(trimmed, record(" north ", 7L)));
+        assertEquals("NORTH|7", encode(trimmed, batch.row(0)));
+    }
+
+    @Test
+    void encodersNeedOneTransformationPerAttribute() {
+        assertThrows(IllegalArgumentException.class, () -> new KeyEncoder(Collections.emptyList()));
+        assertThrows(IllegalArgumentException.class, () -> new KeyEncoder(Arrays.asList("region", "id"),
+                Collections.singletonList(TransformationPipeline.IDENTITY)));
+    }
+
+    private static RecordKey key(Map<String, Object> record) {
+        RecordKey key = new RecordKey();
+        ENCODER.encode(record, key);
+        return key;
+    }
+
+    private static String encode(KeyEncoder encoder, Map<String, Object> record) {
+        RecordKey key = new RecordKey();
+        encoder.encode(record, key);
+        return key.toString();
+    }
+
+    private static Map<String, Object> record(String region, Object id) {
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("region", region);
+        record.put("id", id);
+        return record;
+    }
+}
@@ -0,0 +1,69 @@
+package com.reconciliation.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class KeyIndexTest {
+
+    private static final KeyEncoder KEY = new KeyEncoder(Collections.singletonList("id"));
+
+    @Test
+    void entriesAreNumberedInInsertionOrderAcrossResizes() {
+        KeyIndex index = new KeyIndex();
+        for (int id = 0; id < 50_000; id++) {
+            assertEquals(id, index.add(key("key " + id * 7)));
+        }
+
+        assertEquals(50_000, index.size());
+        for (int id = 0; id < 50_000; id += 13) {
+            assertEquals(id, index.find(key("key " + id * 7)));
+            // Keys already indexed are reported with their entry id
+            assertEquals(-(id + 1), index.add(key("key " + id * 7)));
+        }
+        assertEquals(-1, index.find(key("key 1")));
+        assertEquals(50_000, index.size());
+    }
+
+    @Test
+    void indexedKeysAreLoadedBack() {
+        KeyIndex index = new KeyIndex();
+        StringBuilder longKey = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            longKey.append(i % 10);
+        }
+        index.add(key("short"));
+        index.add(key(longKey.toString()));
+
+        RecordKey loaded = new RecordKey();
+        index.loadKey(1, loaded);
+        assertEquals(longKey.toString(), loaded.toString());
+        assertEquals(key(longKey.toString()).hash(), loaded.hash());
+        assertEquals(loaded.hash(), index.hash(1));
+        index.loadKey(0, loaded);
+        assertEquals("short", loaded.toString());
+        assertEquals(0, index.find(loaded));
+    }
+
+    @Test
+    void clearedIndexStartsNumberingAgain() {
+        KeyIndex index = new KeyIndex();
+        for (int id = 0; id < 3000; id++) {
+            index.add(key("key " + id));
+        }
+        index.clear();
+
+        assertEquals(0, index.size());
+        assertEquals(-1, index.find(key("key 5")));
+        assertEquals(0, index.add(key("key 5")));
+        assertEquals(0, index.find(key("key 5")));
+    }
+
+    private static RecordKey key(String id) {
+        RecordKey key = new RecordKey();
+        KEY.encode(Collections.singletonMap("id", id), key);
+        return key;
+    }
+}
@@ -0,0 +1,113 @@
+package com.reconciliation.engine;
+
+import com.reconciliation.exception.ReconciliationException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeyLookupTest {
+
+    private static final KeyLookup LOOKUP = new KeyLookup(Arrays.asList("branch", "id"));
+
+    @Test
+    void missingKeysAreTheChangedKeysWithoutARecordOnTheOtherSide() {
+        RecordBatch changed = records(
+                new Object[]{"A", 1}, new Object[]{"A", 2}, new Object[]{"A", 2},
+                new Object[]{"B", new BigDecimal("3.50")}, new Object[]{null, 4}, new Object[]{"B", 5});
+        RecordBatch present = records(new Object[]{"A", 1L}, new Object[]{"B", new BigDecimal("3.5")});
+
+        List<Object[]> missing = LOOKUP.missingKeys(changed, present);
+
+        // Keys compare by the text of their values; duplicates and null key values are not looked up
+        assertEquals(2, missing.size());
+        assertArrayEquals(new Object[]{"A", 2}, missing.get(0));
+        assertArrayEquals(new Object[]{"B", 5}, missing.get(1));
+    }
+
+    @Test
+    void queriesReadTheKeysInChunksOfInLists() {
+        List<Object[]> keys = new ArrayList<>();
+        for (int id = 0; id < 1500; id++) {
+            keys.add(new Object[]{"A", id});
+        }
+
+        List<ExtractionSlicing.Slice> queries = LOOKUP.queries("SELECT * FROM accounts", keys);
+
+        assertEquals(2, queries.size());
+        assertTrue(queries.get(0).sql().startsWith(
+                "SELECT q.* FROM (SELECT * FROM accounts) q WHERE (q.branch, q.id) IN ((?, ?), (?, ?), "));
+        assertEquals(2000, queries.get(0).args().length);
+        assertEquals(1000, queries.get(1).args().length);
+        assertEquals("A", queries.get(1).args()[0]);
+        assertEquals(1000, queries.get(1).args()[1]);
+        assertEquals("SELECT q.* FROM (SELECT * FROM accounts) q WHERE q.id IN (?, ?)",
+                new KeyLookup(Collections.singletonList("id"))
+                        .queries("SELECT * FROM accounts", Arrays.asList(new Object[]{1}, new Object[]{2})).get(0).sql());
+    }
+
+    @Test
+    void lookedUpRecordsExcludeKeysAlreadyExtracted() {
+        Predicate<Map<String, Object>> excluding = LOOKUP.excluding(records(new Object[]{"A", 1}));
+        Map<String, Object> record = new HashMap<>();
+
+        record.put("branch", "A");
+        record.put("id", 1L);
+        assertFalse(excluding.test(record));
+        record.put("id", 2L);
+        assertTrue(excluding.test(record));
+        record.put("branch", null);
+        assertTrue(excluding.test(record));
+    }
+
+    @Test
+    void queriesReadTheRecordsOfTheKeys() {
+        H2Database database = new H2Database("key_lookup");
+        database.execute(
+                "CREATE TABLE accounts (branch VARCHAR(5), id INT, name VARCHAR(50), PRIMARY KEY (branch, id))",
+                "INSERT INTO accounts SELECT CASEWHEN(MOD(X, 2) = 0, 'A', 'B'), X, 'account ' || X"
+                        + " FROM SYSTEM_RANGE(1, 3000)");
+        List<Object[]> keys = new ArrayList<>();
+        for (int id = 1; id <= 3000; id += 2) {
+            keys.add(new Object[]{id % 4 == 1 ? "B" : "A", id});
+        }
+
+        int found = 0;
+        for (ExtractionSlicing.Slice query : LOOKUP.queries("SELECT branch, id, name FROM accounts", keys)) {
+            RecordBatch.Builder rows = RecordBatch.builder(Collections.emptyList(), true);
+            database.extract(query.sql(), rows, query.args());
+            found += rows.size();
+        }
+        // Odd ids are in branch B, so only the keys with branch B exist
+        assertEquals(750, found);
+    }
+
+    @Test
+    void keyAttributesMustBeIdentifiers() {
+        assertThrows(ReconciliationException.class, () -> new KeyLookup(Collections.singletonList("id; DROP")));
+    }
+
+    private static RecordBatch records(Object[]... keys) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (Object[] key : keys) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("branch", key[0]);
+            row.put("id", key[1]);
+            rows.add(row);
+        }
+        return RecordBatch.fromRecords(rows);
+    }
+}
@@ -0,0 +1,63 @@
+package com.reconciliation.engine;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Outcome of comparing all records of both sides in memory: the number of matching pairs and the key of
+ * every discrepancy, by kind.
+ */
+final class KeyOutcomes implements RecordPairVisitor {
+
+    private final ComparisonPlan plan;
+    private final Set<String> discrepancies = new TreeSet<>();
+    private long matched;
+
+    private KeyOutcomes(ComparisonPlan plan) {
+        this.plan = plan;
+    }
+
+    static KeyOutcomes compare(ComparisonPlan plan, List<String> keyAttributes, RecordBatch source, RecordBatch target) {
+        KeyOutcomes outcomes = new KeyOutcomes(plan);
+        new InMemoryHashJoin().join(source.rows(), target.rows(),
+                plan.keyEncoder(keyAttributes, true), plan.keyEncoder(keyAttributes, false), outcomes);
+        return outcomes;
+    }
+
+    long matched() {
+        return matched;
+    }
+
+    Set<String> discrepancies() {
+        return discrepancies;
+    }
+
+    @Override
+    public void onMatched(RecordKey key, long sourceOrdinal, long targetOrdinal,
+                          Map<String, Object> sourceRecord, Map<String, Object> targetRecord) {
+        for (ColumnComparator column : plan.columns()) {
+            if (!column.matches(column.sourceValue(sourceRecord), column.targetValue(targetRecord))) {
+                discrepancies.add("MISMATCH " + key);
+                return;
+            }
+        }
+        matched++;
+    }
+
+    @Override
+    public void onMissingInTarget(RecordKey key, long sourceOrdinal, Map<String, Object> sourceRecord) {
+        discrepancies.add("MISSING_IN_TARGET " + key);
+    }
+
+    @Override
+    public void onMissingInSource(RecordKey key, long targetOrdinal, Map<String, Object> targetRecord) {
+        discrepancies.add("MISSING_IN_SOURCE " + key);
+    }
+
+    @Override
+    public void onDuplicateKey(RecordKey key, boolean source, long[] ordinals) {
+        discrepancies.add("DUPLICATE " + key);
+    }
+}
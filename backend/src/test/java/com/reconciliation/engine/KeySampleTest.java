@@ -0,0 +1,71 @@
+package com.reconciliation.engine;
+
+import com.reconciliation.exception.ReconciliationException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeySampleTest {
+
+    private static final double PRECISION = 1e-4;
+
+    @Test
+    void intervalMatchesTheWilsonScoreInterval() {
+        assertArrayEquals(new double[]{0.2366, 0.7634}, KeySample.confidenceInterval(5, 10), PRECISION);
+        assertArrayEquals(new double[]{0.01038, 0.01675}, KeySample.confidenceInterval(66, 5000), PRECISION);
+    }
+
+    @Test
+    void intervalOfNoOrEveryObservationTouchesTheBound() {
+        // z^2 / (n + z^2) with z = 1.959964
+        assertArrayEquals(new double[]{0, 0.2775}, KeySample.confidenceInterval(0, 10), PRECISION);
+        assertArrayEquals(new double[]{0.7225, 1}, KeySample.confidenceInterval(10, 10), PRECISION);
+        assertArrayEquals(new double[]{0, 1}, KeySample.confidenceInterval(0, 0), 0);
+    }
+
+    @Test
+    void intervalNarrowsAsTheSampleGrows() {
+        double[] small = KeySample.confidenceInterval(10, 100);
+        double[] large = KeySample.confidenceInterval(1000, 10_000);
+
+        assertTrue(small[0] < large[0] && large[1] < small[1]);
+        assertTrue(large[0] < 0.1 && 0.1 < large[1]);
+    }
+
+    @Test
+    void filterSelectsTheSameKeysAboutThePercentage() {
+        KeySample sample = KeySample.of(10.0);
+        KeyEncoder encoder = new KeyEncoder(Collections.singletonList("id"));
+        Predicate<Map<String, Object>> first = sample.filter(encoder);
+        Predicate<Map<String, Object>> second = sample.filter(encoder);
+        Map<String, Object> record = new HashMap<>();
+
+        int sampled = 0;
+        for (int id = 0; id < 100_000; id++) {
+            record.put("id", id);
+            boolean included = first.test(record);
+            assertEquals(included, second.test(record));
+            sampled += included ? 1 : 0;
+        }
+        assertTrue(sampled > 9_000 && sampled < 11_000, sampled + " keys sampled");
+    }
+
+    @Test
+    void percentagesOutsideTheSampledRangeAreRejectedOrOff() {
+        assertNull(KeySample.of(null));
+        assertNull(KeySample.of(100.0));
+        assertEquals(0.01, KeySample.of(0.01).percentage());
+
+        ReconciliationException e = assertThrows(ReconciliationException.class, () -> KeySample.of(0.001));
+        assertEquals("INVALID_CONFIG", e.getErrorCode());
+    }
+}
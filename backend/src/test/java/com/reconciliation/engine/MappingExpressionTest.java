@@ -0,0 +1,92 @@
+package com.reconciliation.engine;
+
+import com.reconciliation.exception.ReconciliationException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappingExpressionTest {
+
+    @Test
+    void rulesCompareOperandsAsNumbersAndText() {
+        MappingExpression within = MappingExpression.parse("amount", "abs(src - tgt) <= 0.5");
+        MappingExpression sameCode = MappingExpression.parse("code", "srcText.trim().equalsIgnoreCase(tgtText)");
+
+        assertTrue(within.test(new BigDecimal("10.25"), "10.5"));
+        assertFalse(within.test(10, 11));
+        // Missing or non-numeric operands are NaN, which compares as false
+        assertFalse(within.test(null, 10));
+        assertFalse(within.test("ten", 10));
+        assertTrue(sameCode.test(" abc ", "ABC"));
+        assertFalse(sameCode.test("abc", "abd"));
+    }
+
+    @Test
+    void rulesKeepWorkingOnceCompiledAndWhenOperandTypesChange() {
+        MappingExpression rule = MappingExpression.parse("amount", "src * 2 == tgt");
+
+        for (int i = 0; i < 500; i++) {
+            assertTrue(rule.test(i, 2 * i));
+            assertFalse(rule.test(i, 2 * i + 1));
+        }
+        assertTrue(rule.test("1.5", new BigDecimal("3.0")));
+        assertTrue(rule.test(2L, 4.0));
+    }
+
+    @Test
+    void rulesThatFailOrYieldNoBooleanDoNotHold() {
+        assertFalse(MappingExpression.parse("code", "srcText.length() > 2").test(null, "x"));
+        assertFalse(MappingExpression.parse("code", "srcText.substring(5) == tgtText").test("abc", "x"));
+        assertFalse(MappingExpression.parse("code", "srcText").test("abc", null));
+        assertFalse(MappingExpression.parse("code", "missing == 1").test(1, 1));
+    }
+
+    @Test
+    void transformationsDeriveAValueFromTheSource() {
+        assertEquals("ABC", MappingExpression.parse("code", "srcText.toUpperCase()").apply("abc"));
+        assertEquals(25.0, MappingExpression.parse("amount", "src * 100").apply("0.25"));
+        assertNull(MappingExpression.parse("code", "tgtText").apply("abc"));
+
+        ReconciliationException e = assertThrows(ReconciliationException.class,
+                () -> MappingExpression.parse("code", "srcText.substring(5)").apply("abc"));
+        assertEquals("TRANSFORMATION_FAILED", e.getErrorCode());
+    }
+
+    @Test
+    void expressionsCannotReachTypesConstructorsOrBeans() {
+        String[] escapes = {
+                "T(java.lang.Runtime).getRuntime().exec('true') != null",
+                "T(java.lang.System).getProperty('user.home') != null",
+                "new java.io.File('/tmp/escaped').createNewFile()",
+                "@dataSource != null",
+                "srcText.getClass().forName('java.lang.Runtime') != null",
+        };
+        for (String escape : escapes) {
+            MappingExpression expression = MappingExpression.parse("code", escape);
+            assertFalse(expression.test("a", "a"), escape);
+            assertThrows(ReconciliationException.class, () -> expression.apply("a"), escape);
+        }
+    }
+
+    @Test
+    void operandsAreReadOnly() {
+        MappingExpression assignment = MappingExpression.parse("amount", "(src = tgt) == tgt");
+
+        assertFalse(assignment.test(1, 2));
+    }
+
+    @Test
+    void invalidExpressionsAreRejectedWhenParsed() {
+        ReconciliationException e = assertThrows(ReconciliationException.class,
+                () -> MappingExpression.parse("amount", "src >"));
+
+        assertEquals("INVALID_MAPPING", e.getErrorCode());
+        assertTrue(e.getMessage().contains("amount"), e.getMessage());
+    }
+}
@@ -0,0 +1,107 @@
+package com.reconciliation.engine;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ParallelHashJoinTest {
+
+    private static final KeyEncoder KEY = new KeyEncoder(Collections.singletonList("id"));
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterEach
+    void shutDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    void partitionedJoinReportsTheSameOutcomesAsTheInMemoryJoin() {
+        RecordBatch source = JoinTestData.source(20000);
+        RecordBatch target = JoinTestData.target(20000);
+        RecordingVisitor inMemory = new RecordingVisitor();
+        new InMemoryHashJoin().join(source.rows(), target.rows(), KEY, KEY, inMemory);
+
+        for (int partitions : new int[]{1, 7, 64}) {
+            RecordingVisitor parallel = new RecordingVisitor();
+            new ParallelHashJoin(pool, partitions).join(source.rows(), target.rows(), KEY, KEY, parallel);
+            assertEquals(inMemory.sortedOutcomes(), parallel.sortedOutcomes(), partitions + " partitions");
+        }
+    }
+
+    @Test
+    void repeatedKeysAreReportedWithTheOrdinalsOfAllTheirRecords() {
+        for (int partitions : new int[]{1, 3}) {
+            RecordingVisitor parallel = new RecordingVisitor();
+            new ParallelHashJoin(pool, partitions).join(JoinTestData.repeatedSource(), null,
+                    JoinTestData.repeatedTarget(), null, KEY, KEY, parallel);
+            assertEquals(JoinTestData.REPEATED_DUPLICATES, parallel.sortedOutcomes("DUPLICATE"), partitions + " partitions");
+        }
+    }
+
+    @Test
+    void selectedBatchRowsAreJoinedInPlaceByOrdinal() {
+        RecordBatch source = JoinTestData.source(5000);
+        RecordBatch target = JoinTestData.target(5000);
+        int[] sourceRows = IntStream.range(0, source.size()).filter(row -> row % 3 != 1).toArray();
+        int[] targetRows = IntStream.range(0, target.size()).filter(row -> row % 4 != 2).toArray();
+        RecordingVisitor inMemory = new RecordingVisitor();
+        new InMemoryHashJoin().join(source.rows(sourceRows), target.rows(targetRows), KEY, KEY, inMemory);
+
+        RecordingVisitor parallel = new RecordingVisitor();
+        new ParallelHashJoin(pool, 16).join(source, sourceRows, target, targetRows, KEY, KEY, parallel);
+        RecordingVisitor allRows = new RecordingVisitor();
+        new ParallelHashJoin(pool, 16).join(source, null, target, null, KEY, KEY, allRows);
+        RecordingVisitor allRowsInMemory = new RecordingVisitor();
+        new InMemoryHashJoin().join(source.rows(), target.rows(), KEY, KEY, allRowsInMemory);
+
+        // Ordinals are positions in the row arrays, as for the selected rows of an iterator
+        assertEquals(inMemory.sortedOutcomes(), parallel.sortedOutcomes());
+        assertEquals(allRowsInMemory.sortedOutcomes(), allRows.sortedOutcomes());
+    }
+
+    @Test
+    void emptySidesLeaveOnlyMissingRecords() {
+        RecordBatch source = JoinTestData.source(100);
+        RecordingVisitor inMemory = new RecordingVisitor();
+        new InMemoryHashJoin().join(source.rows(), RecordBatch.empty().rows(), KEY, KEY, inMemory);
+
+        RecordingVisitor parallel = new RecordingVisitor();
+        new ParallelHashJoin(pool, 8).join(source.rows(), RecordBatch.empty().rows(), KEY, KEY, parallel);
+
+        assertEquals(inMemory.sortedOutcomes(), parallel.sortedOutcomes());
+        assertEquals(0, parallel.count("MATCHED"));
+    }
+
+    @Test
+    void visitorMustBePartitionable() {
+        RecordPairVisitor notPartitionable = new RecordPairVisitor() {
+            @Override
+            public void onMatched(RecordKey key, long sourceOrdinal, long targetOrdinal,
+                                  Map<String, Object> sourceRecord, Map<String, Object> targetRecord) {
+            }
+
+            @Override
+            public void onMissingInTarget(RecordKey key, long sourceOrdinal, Map<String, Object> sourceRecord) {
+            }
+
+            @Override
+            public void onMissingInSource(RecordKey key, long targetOrdinal, Map<String, Object> targetRecord) {
+            }
+
+            @Override
+            public void onDuplicateKey(RecordKey key, boolean source, long[] ordinals) {
+            }
+        };
+
+        assertThrows(IllegalArgumentException.class, () -> new ParallelHashJoin(pool, 4)
+                .join(RecordBatch.empty().rows(), RecordBatch.empty().rows(), KEY, KEY, notPartitionable));
+    }
+}
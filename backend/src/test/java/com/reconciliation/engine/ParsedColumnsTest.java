@@ -0,0 +1,93 @@
+package com.reconciliation.engine;
+
+import com.reconciliation.entity.AttributeMapping;
+import com.reconciliation.enums.ComparisonType;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.reconciliation.engine.TestMappings.config;
+import static com.reconciliation.engine.TestMappings.mapping;
+import static com.reconciliation.engine.TestMappings.tolerance;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ParsedColumnsTest {
+
+    @Test
+    void recordsAreParsedLikeTheRowsOfABatch() {
+        AttributeMapping date = mapping("booked", ComparisonType.DATE_TOLERANCE);
+        date.setToleranceValue(1.0);
+        ComparisonPlan plan = ComparisonPlan.compile(Arrays.asList(
+                mapping("name", ComparisonType.EXACT_MATCH), tolerance("amount", 0.01, "ABSOLUTE"), date), config());
+        List<Map<String, Object>> records = new ArrayList<>();
+        records.add(record("a", new BigDecimal("10.50"), LocalDate.of(2024, 1, 31)));
+        records.add(record("b", "12.345", "2024-02-01"));
+        records.add(record("c", "n/a", "never"));
+        records.add(record("d", null, null));
+        records.add(record("e", new BigDecimal("1E+40"), "2024-02-01T10:15:30"));
+        RecordBatch batch = RecordBatch.fromRecords(records);
+        ParsedColumns rows = ParsedColumns.source(plan, batch);
+
+        ParsedColumns single = ParsedColumns.sourceRecord(plan);
+        for (int row = 0; row < batch.size(); row++) {
+            single.parse(batch.row(row));
+            for (int column = 0; column < plan.columns().length; column++) {
+                String at = "row " + row + ", column " + column;
+                assertEquals(rows.epoch(column, row), single.epoch(column, 0), at);
+                assertEquals(rows.hasDecimal(column, row), single.hasDecimal(column, 0), at);
+                if (rows.hasDecimal(column, row)) {
+                    assertEquals(rows.unscaled(column, row), single.unscaled(column, 0), at);
+                    assertEquals(rows.scale(column, row), single.scale(column, 0), at);
+                }
+                Object value = plan.sourceValue(column, batch.row(row));
+                assertEquals(rows.decimal(column, row, value), single.decimal(column, 0, value), at);
+            }
+        }
+    }
+
+    @Test
+    void untransformedDecimalColumnsAreReadFromTheBatch() {
+        AttributeMapping trimmed = tolerance("fee", 0.5, "ABSOLUTE");
+        trimmed.setSourceTransformation("TRIM");
+        ComparisonPlan plan = ComparisonPlan.compile(Arrays.asList(tolerance("amount", 0.01, "ABSOLUTE"), trimmed),
+                config());
+        RecordBatch.Builder builder = RecordBatch.builder(Arrays.asList("amount", "fee"), false);
+        builder.setDecimal(0, 1050, 2).setDecimal(1, 25, 1).endRow();
+        builder.set(0, null).set(1, null).endRow();
+        builder.setDecimal(0, -7, 0).setDecimal(1, 3, -2).endRow();
+        RecordBatch batch = builder.build();
+        ParsedColumns rows = ParsedColumns.source(plan, batch);
+
+        ParsedColumns single = ParsedColumns.sourceRecord(plan);
+        for (int row = 0; row < batch.size(); row++) {
+            single.parse(batch.row(row));
+            for (int column = 0; column < plan.columns().length; column++) {
+                String at = "row " + row + ", column " + column;
+                assertEquals(single.hasDecimal(column, 0), rows.hasDecimal(column, row), at);
+                if (single.hasDecimal(column, 0)) {
+                    assertEquals(single.unscaled(column, 0), rows.unscaled(column, row), at);
+                    assertEquals(single.scale(column, 0), rows.scale(column, row), at);
+                }
+                Object value = plan.sourceValue(column, batch.row(row));
+                assertEquals(single.decimal(column, 0, value), rows.decimal(column, row, value), at);
+            }
+        }
+        assertEquals(new BigDecimal("10.50"), rows.decimal(0, 0, null));
+        // The transformed column is parsed from its transformed text
+        assertEquals(new BigDecimal("3E+2"), rows.decimal(1, 2, "3E+2"));
+    }
+
+    private static Map<String, Object> record(String name, Object amount, Object booked) {
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("name", name);
+        record.put("amount", amount);
+        record.put("booked", booked);
+        return record;
+    }
+}
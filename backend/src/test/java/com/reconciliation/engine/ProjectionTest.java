@@ -0,0 +1,40 @@
+package com.reconciliation.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProjectionTest {
+
+    private static final String QUERY = "SELECT * FROM accounts ORDER BY id";
+
+    @Test
+    void queryIsWrappedInASubselectOfTheColumns() {
+        Projection projection = Projection.of(Arrays.asList("id", "amount", "ID"));
+
+        assertEquals("SELECT q.id, q.amount FROM (" + QUERY + ") q", projection.select(QUERY));
+    }
+
+    @Test
+    void queryIsKeptWhenAColumnCannotBeReferenced() {
+        assertEquals(QUERY, Projection.of(Arrays.asList("id", "\"Amount\"")).select(QUERY));
+        assertEquals(QUERY, Projection.of(Collections.emptyList()).select(QUERY));
+        assertEquals(QUERY, Projection.ALL.select(QUERY));
+    }
+
+    @Test
+    void databaseColumnsAreMatchedCaseInsensitively() {
+        Projection projection = Projection.of(Arrays.asList("id", "Amount"));
+
+        assertTrue(projection.includes("AMOUNT", true));
+        assertFalse(projection.includes("AMOUNT", false));
+        assertTrue(projection.includes("Amount", false));
+        assertFalse(projection.includes("name", true));
+        assertTrue(Projection.ALL.includes("name", false));
+    }
+}
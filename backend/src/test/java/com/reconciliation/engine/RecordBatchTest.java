@@ -0,0 +1,115 @@
+package com.reconciliation.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RecordBatchTest {
+
+    @Test
+    void decimalsAreHeldAsScaledLongsAndReadBackUnchanged() {
+        List<BigDecimal> values = Arrays.asList(new BigDecimal("10.50"), null, new BigDecimal("-0.001"),
+                new BigDecimal("12"), new BigDecimal("1E+3"));
+        RecordBatch batch = RecordBatch.fromRecords(records("amount", values));
+
+        ColumnVector.DecimalVector vector = assertInstanceOf(ColumnVector.DecimalVector.class, batch.column(0));
+        assertEquals(1050L, vector.getUnscaled(0));
+        assertEquals(2, vector.getScale(0));
+        assertEquals(-3, vector.getScale(4));
+        // Scales are kept, so values compare equal to what was extracted
+        assertEquals(values, column(batch, "amount"));
+    }
+
+    @Test
+    void decimalsThatDoNotFitALongWidenTheColumn() {
+        List<BigDecimal> values = Arrays.asList(new BigDecimal("1.5"), new BigDecimal("123456789012345678901234.5"),
+                new BigDecimal("2.25"));
+        RecordBatch batch = RecordBatch.fromRecords(records("amount", values));
+
+        assertInstanceOf(ColumnVector.ObjectVector.class, batch.column(0));
+        assertEquals(values, column(batch, "amount"));
+    }
+
+    @Test
+    void unboxedDecimalsReadAsBigDecimalsAndPassTheRowFilter() {
+        RecordBatch.Builder builder = RecordBatch.builder(Collections.singletonList("amount"), true)
+                .rowFilter(row -> ((BigDecimal) row.get("AMOUNT")).signum() > 0);
+        builder.setDecimal(0, 1999, 2).endRow();
+        builder.setDecimal(0, -5, 0).endRow();
+        builder.setDecimal(0, 7, 0).endRow();
+        RecordBatch batch = builder.build();
+
+        assertInstanceOf(ColumnVector.DecimalVector.class, batch.column(0));
+        assertEquals(Arrays.asList(new BigDecimal("19.99"), new BigDecimal("7")), column(batch, "amount"));
+        RecordBatch copy = batch.select(new int[] {1, 0});
+        assertInstanceOf(ColumnVector.DecimalVector.class, copy.column(0));
+        assertEquals(Arrays.asList(new BigDecimal("7"), new BigDecimal("19.99")), column(copy, "amount"));
+    }
+
+    @Test
+    void decimalsMixedWithOtherNumbersAreHeldAsObjects() {
+        RecordBatch.Builder builder = RecordBatch.builder(Collections.singletonList("amount"), false);
+        builder.set(0, 3L).endRow();
+        builder.setDecimal(0, 25, 1).endRow();
+        builder.set(0, null).endRow();
+        RecordBatch batch = builder.build();
+
+        assertInstanceOf(ColumnVector.ObjectVector.class, batch.column(0));
+        assertEquals(Arrays.asList(3L, new BigDecimal("2.5"), null), column(batch, "amount"));
+    }
+
+    @Test
+    void repeatedStringsAreDictionaryEncoded() {
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            values.add(i % 7 == 0 ? null : "status " + i % 40);
+        }
+        RecordBatch batch = RecordBatch.fromRecords(records("status", values));
+
+        ColumnVector.DictionaryVector vector = assertInstanceOf(ColumnVector.DictionaryVector.class, batch.column(0));
+        assertEquals(40, vector.dictionarySize());
+        assertEquals(values, column(batch, "status"));
+    }
+
+    @Test
+    void mostlyDistinctStringsFallBackToPlainValues() {
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            // Repeated values at first, so that the fallback happens part-way through the column
+            values.add(i < 300 ? "account " + i % 3 : i % 11 == 0 ? null : "account " + i);
+        }
+        RecordBatch batch = RecordBatch.fromRecords(records("name", values));
+
+        assertInstanceOf(ColumnVector.ObjectVector.class, batch.column(0));
+        assertEquals(values, column(batch, "name"));
+        assertNull(batch.row(11 * 30).get("name"));
+    }
+
+    private static List<Map<String, Object>> records(String column, List<?> values) {
+        List<Map<String, Object>> records = new ArrayList<>();
+        for (Object value : values) {
+            Map<String, Object> record = new LinkedHashMap<>();
+            record.put(column, value);
+            records.add(record);
+        }
+        return records;
+    }
+
+    private static List<Object> column(RecordBatch batch, String column) {
+        List<Object> values = new ArrayList<>(batch.size());
+        for (int row = 0; row < batch.size(); row++) {
+            values.add(batch.row(row).get(column));
+        }
+        return values;
+    }
+}
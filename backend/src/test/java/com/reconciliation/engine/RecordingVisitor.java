@@ -0,0 +1,72 @@
+package com.reconciliation.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Visitor recording every join outcome as text, so that the outcomes of different join strategies can be
+ * compared regardless of the order in which they are visited.
+ */
+class RecordingVisitor implements PartitionableVisitor {
+
+    private final List<String> outcomes = new ArrayList<>();
+
+    @Override
+    public void onMatched(RecordKey key, long sourceOrdinal, long targetOrdinal,
+                          Map<String, Object> sourceRecord, Map<String, Object> targetRecord) {
+        outcomes.add("MATCHED " + key + " " + sourceOrdinal + " " + targetOrdinal + " "
+                + new TreeMap<>(sourceRecord) + " " + new TreeMap<>(targetRecord));
+    }
+
+    @Override
+    public void onMissingInTarget(RecordKey key, long sourceOrdinal, Map<String, Object> sourceRecord) {
+        outcomes.add("MISSING_IN_TARGET " + key + " " + sourceOrdinal + " " + new TreeMap<>(sourceRecord));
+    }
+
+    @Override
+    public void onMissingInSource(RecordKey key, long targetOrdinal, Map<String, Object> targetRecord) {
+        outcomes.add("MISSING_IN_SOURCE " + key + " " + targetOrdinal + " " + new TreeMap<>(targetRecord));
+    }
+
+    @Override
+    public void onDuplicateKey(RecordKey key, boolean source, long[] ordinals) {
+        outcomes.add("DUPLICATE " + key + " " + (source ? "source" : "target") + " " + Arrays.toString(ordinals));
+    }
+
+    @Override
+    public PartitionableVisitor createPartition() {
+        return new RecordingVisitor();
+    }
+
+    @Override
+    public void merge(PartitionableVisitor partition) {
+        outcomes.addAll(((RecordingVisitor) partition).outcomes);
+    }
+
+    List<String> sortedOutcomes() {
+        List<String> sorted = new ArrayList<>(outcomes);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * Sorted outcomes of one kind.
+     */
+    List<String> sortedOutcomes(String outcome) {
+        List<String> sorted = new ArrayList<>();
+        for (String text : sortedOutcomes()) {
+            if (text.startsWith(outcome + " ")) {
+                sorted.add(text);
+            }
+        }
+        return sorted;
+    }
+
+    long count(String outcome) {
+        return outcomes.stream().filter(text -> text.startsWith(outcome + " ")).count();
+    }
+}
@@ -0,0 +1,129 @@
+package com.reconciliation.engine;
+
+import com.reconciliation.entity.AttributeMapping;
+import com.reconciliation.enums.ComparisonType;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.reconciliation.engine.TestMappings.config;
+import static com.reconciliation.engine.TestMappings.mapping;
+import static com.reconciliation.engine.TestMappings.tolerance;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RowFingerprinterTest {
+
+    private static final List<Object> NAMES = Arrays.asList("Alice", "ALICE ", "alice", "Bob", "", null);
+    private static final List<Object> AMOUNTS = Arrays.asList(
+            new BigDecimal("10.50"), 10.5, new BigDecimal("10"), 10L, 11, "10.5", "n/a", Double.NaN, null);
+
+    @Test
+    void rowsAreOnlySkippedWhenEveryAttributeMatches() {
+        ComparisonPlan plan = plan(mapping("name", ComparisonType.CASE_INSENSITIVE),
+                tolerance("amount", 0.0, "ABSOLUTE"));
+        RecordBatch rows = allCombinations();
+
+        int skipped = 0;
+        long[] source = new RowFingerprinter(plan).sourceFingerprints(rows, ParsedColumns.source(plan, rows));
+        long[] target = new RowFingerprinter(plan).targetFingerprints(rows, ParsedColumns.target(plan, rows));
+        for (int s = 0; s < rows.size(); s++) {
+            for (int t = 0; t < rows.size(); t++) {
+                if (RowFingerprinter.certainMatch(source[s], target[t])) {
+                    assertTrue(matches(plan, rows.row(s), rows.row(t)), rows.row(s) + " skipped against " + rows.row(t));
+                    skipped++;
+                }
+            }
+        }
+        // Besides identical rows, names differing in case and amounts differing in scale or type are skipped
+        assertTrue(skipped > rows.size(), skipped + " skipped pairs");
+        assertTrue(RowFingerprinter.certainMatch(source[row(rows, "Alice", new BigDecimal("10.50"))],
+                target[row(rows, "alice", 10.5)]));
+        assertTrue(RowFingerprinter.certainMatch(source[row(rows, "ALICE ", new BigDecimal("10"))],
+                target[row(rows, "Alice", 10L)]));
+        assertFalse(RowFingerprinter.certainMatch(source[row(rows, "Alice", new BigDecimal("10.50"))],
+                target[row(rows, "Bob", new BigDecimal("10.50"))]));
+    }
+
+    @Test
+    void valuesThatCannotBeHashedAreAlwaysCompared() {
+        AttributeMapping rule = mapping("amount", ComparisonType.CUSTOM_EXPRESSION);
+        rule.setCustomValidationRule("abs(src - tgt) < 1");
+        ComparisonPlan plan = plan(mapping("name", ComparisonType.EXACT_MATCH), rule);
+        RecordBatch rows = allCombinations();
+
+        long[] fingerprints = new RowFingerprinter(plan).sourceFingerprints(rows, ParsedColumns.source(plan, rows));
+        // Null values always match each other, any other value has to be tested against the rule
+        for (int row = 0; row < rows.size(); row++) {
+            if (rows.row(row).get("amount") != null) {
+                assertEquals(RowFingerprinter.NO_FINGERPRINT, fingerprints[row]);
+                assertFalse(RowFingerprinter.certainMatch(fingerprints[row], fingerprints[row]));
+            }
+        }
+    }
+
+    @Test
+    void equalValuesWithinAToleranceAreSkipped() {
+        ComparisonPlan plan = plan(tolerance("amount", 5.0, "PERCENTAGE"));
+        RecordBatch rows = batch(Arrays.asList(null, null, null), Arrays.asList(new BigDecimal("100.0"), 100L, 104L));
+
+        long[] source = new RowFingerprinter(plan).sourceFingerprints(rows, ParsedColumns.source(plan, rows));
+        long[] target = new RowFingerprinter(plan).targetFingerprints(rows, ParsedColumns.target(plan, rows));
+
+        assertTrue(RowFingerprinter.certainMatch(source[0], target[1]));
+        // Within the tolerance, but only an attribute comparison can tell
+        assertFalse(RowFingerprinter.certainMatch(source[0], target[2]));
+        assertTrue(matches(plan, rows.row(0), rows.row(2)));
+    }
+
+    private static ComparisonPlan plan(AttributeMapping... mappings) {
+        return ComparisonPlan.compile(Arrays.asList(mappings), config());
+    }
+
+    private static boolean matches(ComparisonPlan plan, Map<String, Object> source, Map<String, Object> target) {
+        for (ColumnComparator column : plan.columns()) {
+            if (!column.matches(column.sourceValue(source), column.targetValue(target))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static RecordBatch allCombinations() {
+        List<Object> names = new ArrayList<>();
+        List<Object> amounts = new ArrayList<>();
+        for (Object name : NAMES) {
+            for (Object amount : AMOUNTS) {
+                names.add(name);
+                amounts.add(amount);
+            }
+        }
+        return batch(names, amounts);
+    }
+
+    private static int row(RecordBatch rows, Object name, Object amount) {
+        for (int row = 0; row < rows.size(); row++) {
+            if (Arrays.asList(name, amount).equals(Arrays.asList(rows.row(row).get("name"), rows.row(row).get("amount")))) {
+                return row;
+            }
+        }
+        throw new IllegalArgumentException(name + ", " + amount);
+    }
+
+    private static RecordBatch batch(List<Object> names, List<Object> amounts) {
+        List<Map<String, Object>> records = new ArrayList<>();
+        for (int i = 0; i < amounts.size(); i++) {
+            Map<String, Object> record = new LinkedHashMap<>();
+            record.put("name", names.get(i));
+            record.put("amount", amounts.get(i));
+            records.add(record);
+        }
+        return RecordBatch.fromRecords(records);
+    }
+}
@@ -0,0 +1,137 @@
+package com.reconciliation.engine;
+
+import com.reconciliation.exception.ReconciliationException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SortMergeJoinTest {
+
+    private static final List<String> KEY_ATTRIBUTES = Collections.singletonList("id");
+    private static final KeyEncoder KEY = new KeyEncoder(KEY_ATTRIBUTES);
+    private static final SortMergeJoin JOIN = new SortMergeJoin(new RecordKeyOrder(KEY_ATTRIBUTES));
+
+    @Test
+    void orderedInputsHaveTheSameOutcomesAsTheInMemoryJoin() {
+        RecordBatch source = ordered(JoinTestData.source(3000));
+        RecordBatch target = ordered(JoinTestData.target(3000));
+
+        assertEquals(outcomes(new InMemoryHashJoin(), source, target), outcomes(JOIN, source, target));
+    }
+
+    @Test
+    void numbersOfDifferentScaleAreDifferentKeysAsInTheHashJoins() {
+        RecordBatch source = batch(new BigDecimal("1.0"), new BigDecimal("2"));
+        RecordBatch target = batch(new BigDecimal("1.00"), new BigDecimal("2"));
+
+        List<String> merged = outcomes(JOIN, source, target);
+        assertEquals(outcomes(new InMemoryHashJoin(), source, target), merged);
+        assertEquals(Arrays.asList(
+                "MATCHED 2 1 1 {id=2} {id=2}",
+                "MISSING_IN_SOURCE 1.00 0 {id=1.00}",
+                "MISSING_IN_TARGET 1.0 0 {id=1.0}"), merged);
+    }
+
+    @Test
+    void repeatedKeysAreReportedWithTheOrdinalsOfAllTheirRecords() {
+        RecordingVisitor merged = new RecordingVisitor();
+        JOIN.join(JoinTestData.repeatedSource().rows(), JoinTestData.repeatedTarget().rows(), KEY, KEY, merged);
+
+        assertEquals(JoinTestData.REPEATED_DUPLICATES, merged.sortedOutcomes("DUPLICATE"));
+    }
+
+    @Test
+    void textIsOrderedByCodePoint() {
+        RecordBatch source = batch("Zeta", "alpha", "ﬁ", "😀");
+        RecordBatch target = batch("Zeta", "alpha", "ﬁ", "😀");
+
+        assertEquals(outcomes(new InMemoryHashJoin(), source, target), outcomes(JOIN, source, target));
+    }
+
+    @Test
+    void caseInsensitiveOrderIsRejected() {
+        RecordBatch source = batch("alpha", "Beta");
+        RecordBatch target = batch("alpha", "Beta");
+
+        ReconciliationException e = assertThrows(ReconciliationException.class,
+                () -> JOIN.join(source.rows(), target.rows(), KEY, KEY, new RecordingVisitor()));
+        assertEquals("INPUT_NOT_SORTED", e.getErrorCode());
+    }
+
+    @Test
+    void equalNumbersMustFollowTheOrderOfTheirText() {
+        RecordBatch source = batch(new BigDecimal("1.00"), new BigDecimal("1.0"));
+        RecordBatch target = batch(new BigDecimal("1.0"));
+
+        ReconciliationException e = assertThrows(ReconciliationException.class,
+                () -> JOIN.join(source.rows(), target.rows(), KEY, KEY, new RecordingVisitor()));
+        assertEquals("INPUT_NOT_SORTED", e.getErrorCode());
+    }
+
+    @Test
+    void cursorsAreMergedAsTheirChunksAreRead() {
+        RecordBatch source = ordered(JoinTestData.source(3000));
+        RecordBatch target = ordered(JoinTestData.target(3000));
+        List<String> chunksRead = new ArrayList<>();
+        RecordingVisitor visitor = new RecordingVisitor() {
+            @Override
+            public void onMatched(RecordKey key, long sourceOrdinal, long targetOrdinal,
+                                  Map<String, Object> sourceRecord, Map<String, Object> targetRecord) {
+                if (chunksRead.size() == 2) {
+                    chunksRead.add("first match");
+                }
+                super.onMatched(key, sourceOrdinal, targetOrdinal, sourceRecord, targetRecord);
+            }
+        };
+
+        try (RecordCursor sourceCursor = JoinTestData.cursor(source, 250).observeChunks(chunk -> chunksRead.add("source"));
+             RecordCursor targetCursor = JoinTestData.cursor(target, 250).observeChunks(chunk -> chunksRead.add("target"))) {
+            JOIN.join(sourceCursor, targetCursor, KEY, KEY, visitor);
+            assertEquals(source.size(), sourceCursor.count());
+            assertEquals(target.size(), targetCursor.count());
+        }
+
+        assertEquals(outcomes(new InMemoryHashJoin(), source, target), visitor.sortedOutcomes());
+        // The merge starts on the first chunk of each side, before the rest of either side is read
+        assertEquals("first match", chunksRead.get(2));
+    }
+
+    private static List<String> outcomes(RecordJoin join, RecordBatch source, RecordBatch target) {
+        RecordingVisitor visitor = new RecordingVisitor();
+        join.join(source.rows(), target.rows(), KEY, KEY, visitor);
+        return visitor.sortedOutcomes();
+    }
+
+    /**
+     * The rows of a batch ordered by id; rows of the same id keep their order.
+     */
+    private static RecordBatch ordered(RecordBatch batch) {
+        int id = batch.columnIndex("id");
+        int[] rows = IntStream.range(0, batch.size()).boxed()
+                .sorted(Comparator.comparingLong(row -> (Long) batch.get(row, id)))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        return batch.select(rows);
+    }
+
+    private static RecordBatch batch(Object... ids) {
+        List<Map<String, Object>> records = new ArrayList<>();
+        for (Object id : ids) {
+            Map<String, Object> record = new LinkedHashMap<>();
+            record.put("id", id);
+            records.add(record);
+        }
+        return RecordBatch.fromRecords(records);
+    }
+}
@@ -0,0 +1,96 @@
+package com.reconciliation.engine;
+
+import com.reconciliation.entity.AttributeMapping;
+import com.reconciliation.enums.ComparisonType;
+import com.reconciliation.exception.ReconciliationException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.reconciliation.engine.TestMappings.config;
+import static com.reconciliation.engine.TestMappings.mapping;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SqlPushdownJoinTest {
+
+    private static final List<String> KEY_ATTRIBUTES = Collections.singletonList("id");
+    private static final ComparisonPlan NAME_PLAN = ComparisonPlan.compile(Collections.singletonList(
+            mapping("name", "full_name", ComparisonType.EXACT_MATCH)), config());
+
+    private static final String SELECT = "SELECT s.RECON_PRESENT AS S_PRESENT, t.RECON_PRESENT AS T_PRESENT,"
+            + " s.id AS S0, s.name AS S1, t.id AS T0, t.full_name AS T1";
+    private static final String UNSETTLED = "s.RECON_PRESENT IS NULL OR t.RECON_PRESENT IS NULL"
+            + " OR CASE WHEN ((s.name IS NULL AND t.full_name IS NULL) OR (s.name = t.full_name)) THEN 0 ELSE 1 END = 1";
+
+    @Test
+    void oracleKeepsUnsettledPairsOfAFullOuterJoin() {
+        assertEquals(SELECT + " FROM src s FULL OUTER JOIN tgt t ON s.id = t.id WHERE " + UNSETTLED,
+                new SqlPushdownJoin(PushdownDialect.ORACLE, KEY_ATTRIBUTES, NAME_PLAN).unsettledQuery("src s", "tgt t"));
+    }
+
+    @Test
+    void withoutFullOuterJoinTargetOnlyKeysAreAntiJoined() {
+        assertEquals(SELECT + " FROM src s LEFT JOIN tgt t ON s.id = t.id WHERE " + UNSETTLED
+                        + " UNION ALL "
+                        + SELECT + " FROM tgt t LEFT JOIN src s ON s.id = t.id WHERE s.RECON_PRESENT IS NULL",
+                new SqlPushdownJoin(PushdownDialect.H2, KEY_ATTRIBUTES, NAME_PLAN).unsettledQuery("src s", "tgt t"));
+    }
+
+    @Test
+    void compositeKeysJoinOnEveryAttribute() {
+        String sql = new SqlPushdownJoin(PushdownDialect.ORACLE, Arrays.asList("branch", "id"), NAME_PLAN)
+                .unsettledQuery("src s", "tgt t");
+
+        assertEquals(SELECT.replace("s.id AS S0, s.name AS S1, t.id AS T0, t.full_name AS T1",
+                        "s.branch AS S0, s.id AS S1, s.name AS S2, t.branch AS T0, t.id AS T1, t.full_name AS T2")
+                        + " FROM src s FULL OUTER JOIN tgt t ON s.branch = t.branch AND s.id = t.id WHERE " + UNSETTLED,
+                sql);
+    }
+
+    @Test
+    void unsettledRecordsHoldEveryDiscrepancyOfAFullComparison() {
+        H2Database database = new H2Database("sql_pushdown");
+        database.execute(
+                "CREATE TABLE source_accounts (id INT PRIMARY KEY, name VARCHAR(50), amount DECIMAL(12, 2))",
+                "CREATE TABLE target_accounts (id INT PRIMARY KEY, name VARCHAR(50), amount DECIMAL(12, 2))",
+                "INSERT INTO source_accounts SELECT X, 'account ' || X, X * 1.5 FROM SYSTEM_RANGE(1, 2000)",
+                "INSERT INTO target_accounts SELECT X, 'Account ' || X, X * 1.5 FROM SYSTEM_RANGE(1, 2000)",
+                "UPDATE target_accounts SET amount = amount + 0.5 WHERE MOD(id, 89) = 0",
+                "UPDATE target_accounts SET name = 'renamed' WHERE MOD(id, 301) = 0",
+                "UPDATE source_accounts SET amount = NULL WHERE MOD(id, 409) = 0",
+                "DELETE FROM target_accounts WHERE MOD(id, 173) = 0",
+                "INSERT INTO target_accounts SELECT X, 'Account ' || X, X * 1.5 FROM SYSTEM_RANGE(3001, 3005)");
+        AttributeMapping amount = TestMappings.tolerance("amount", 0.25, "ABSOLUTE");
+        ComparisonPlan plan = ComparisonPlan.compile(Arrays.asList(
+                mapping("name", ComparisonType.CASE_INSENSITIVE), amount), config());
+        String sourceQuery = "SELECT id, name, amount FROM source_accounts";
+        String targetQuery = "SELECT id, name, amount FROM target_accounts";
+
+        KeyOutcomes full = KeyOutcomes.compare(plan, KEY_ATTRIBUTES,
+                database.extract(sourceQuery), database.extract(targetQuery));
+        PushdownResult result = new SqlPushdownJoin(PushdownDialect.H2, KEY_ATTRIBUTES, plan)
+                .reconcile(sourceQuery, targetQuery, database);
+        KeyOutcomes unsettled = KeyOutcomes.compare(plan, KEY_ATTRIBUTES, result.sourceRows(), result.targetRows());
+
+        assertFalse(full.discrepancies().isEmpty());
+        assertEquals(full.discrepancies(), unsettled.discrepancies());
+        assertEquals(full.matched(), result.matchedRecordCount() + unsettled.matched());
+        assertEquals(2000, result.sourceRecordCount());
+        assertEquals(2000 - 11 + 5, result.targetRecordCount());
+    }
+
+    @Test
+    void comparisonsWithoutSqlEquivalentAreRejected() {
+        AttributeMapping rule = mapping("amount", ComparisonType.CUSTOM_EXPRESSION);
+        rule.setCustomValidationRule("abs(src - tgt) < 1");
+        ComparisonPlan plan = ComparisonPlan.compile(Collections.singletonList(rule), config());
+
+        ReconciliationException e = assertThrows(ReconciliationException.class,
+                () -> new SqlPushdownJoin(PushdownDialect.H2, KEY_ATTRIBUTES, plan));
+        assertEquals("PUSHDOWN_UNSUPPORTED", e.getErrorCode());
+    }
+}
@@ -0,0 +1,121 @@
+package com.reconciliation.engine;
+
+import com.reconciliation.entity.AttributeMapping;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SummaryReconcilerTest {
+
+    private static final List<String> GROUP = Collections.singletonList("branch");
+
+    @Test
+    void totalsAreComparedExactly() {
+        // 0.1 + 0.2 is not 0.3 in double, and a cent is below the double precision of these totals
+        PushdownResult result = reconcile(TestMappings.tolerance("amount", 0, "ABSOLUTE"),
+                records("A:0.1", "A:0.2", "B:100000000000000000.00", "C:100000000000000000.00"),
+                records("A:0.3", "A:0", "B:100000000000000000.00", "C:100000000000000000.01"));
+
+        assertEquals(3, result.matchedRecordCount());
+        assertEquals(Collections.singleton("C"), branches(result.sourceRows()));
+        assertEquals(Collections.singleton("C"), branches(result.targetRows()));
+    }
+
+    @Test
+    void absoluteToleranceAppliesOncePerRecord() {
+        PushdownResult result = reconcile(TestMappings.tolerance("amount", 0.01, "ABSOLUTE"),
+                records("A:1.00", "A:2.00", "B:1.00", "B:2.00"),
+                records("A:1.01", "A:2.01", "B:1.01", "B:2.02"));
+
+        assertEquals(2, result.matchedRecordCount());
+        assertEquals(Collections.singleton("B"), branches(result.sourceRows()));
+    }
+
+    @Test
+    void percentageToleranceIsRelativeToTheSourceTotal() {
+        PushdownResult result = reconcile(TestMappings.tolerance("amount", 1, "PERCENTAGE"),
+                records("A:200.00", "B:200.00"),
+                records("A:202.00", "B:202.01"));
+        assertEquals(1, result.matchedRecordCount());
+        assertEquals(Collections.singleton("B"), branches(result.sourceRows()));
+    }
+
+    @Test
+    void groupsWithValuesThatAreNotNumbersAreComparedRowByRow() {
+        PushdownResult result = reconcile(TestMappings.tolerance("amount", 0, "ABSOLUTE"),
+                records("A:1", "B:n/a"),
+                records("A:1", "B:n/a"));
+
+        assertEquals(1, result.matchedRecordCount());
+        assertEquals(Collections.singleton("B"), branches(result.targetRows()));
+    }
+
+    @Test
+    void databaseTotalsAgreeWithTotalsOfExtractedRecords() {
+        H2Database database = new H2Database("summary_totals");
+        database.execute(
+                "CREATE TABLE source_ledger (id INT PRIMARY KEY, branch VARCHAR(10), amount DECIMAL(30, 2))",
+                "CREATE TABLE target_ledger (id INT PRIMARY KEY, branch VARCHAR(10), amount DECIMAL(30, 2))",
+                "INSERT INTO source_ledger SELECT X, 'B' || MOD(X, 20), 100000000000000000.00 + X / 100.0"
+                        + " FROM SYSTEM_RANGE(1, 2000)",
+                "INSERT INTO target_ledger SELECT * FROM source_ledger",
+                "UPDATE target_ledger SET amount = amount + 0.01 WHERE id = 7",
+                "UPDATE target_ledger SET amount = NULL WHERE id = 12");
+        SummaryReconciler summary = new SummaryReconciler(GROUP,
+                Collections.singletonList(TestMappings.tolerance("amount", 0, "ABSOLUTE")));
+        String sourceQuery = "SELECT id, branch, amount FROM source_ledger";
+        String targetQuery = "SELECT id, branch, amount FROM target_ledger";
+
+        PushdownResult inDatabase = summary.reconcile(sourceQuery, database, targetQuery, database);
+        PushdownResult inMemory = summary.reconcile(database.extract(sourceQuery), database.extract(targetQuery));
+
+        assertEquals(setOf("B7", "B12"), branches(inDatabase.sourceRows()));
+        assertEquals(setOf("B7", "B12"), branches(inDatabase.targetRows()));
+        assertEquals(200, inDatabase.sourceRows().size());
+        assertEquals(1800, inDatabase.matchedRecordCount());
+        assertEquals(2000, inDatabase.targetRecordCount());
+        assertEquals(branches(inMemory.sourceRows()), branches(inDatabase.sourceRows()));
+        assertEquals(inMemory.matchedRecordCount(), inDatabase.matchedRecordCount());
+    }
+
+    private static PushdownResult reconcile(AttributeMapping measure, RecordBatch source, RecordBatch target) {
+        return new SummaryReconciler(GROUP, Collections.singletonList(measure)).reconcile(source, target);
+    }
+
+    /**
+     * Records given as {@code branch:amount}.
+     */
+    private static RecordBatch records(String... records) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (String record : records) {
+            String[] fields = record.split(":");
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("branch", fields[0]);
+            row.put("amount", fields[1]);
+            rows.add(row);
+        }
+        return RecordBatch.fromRecords(rows);
+    }
+
+    private static Set<Object> branches(RecordBatch rows) {
+        Set<Object> branches = new HashSet<>();
+        for (int row = 0; row < rows.size(); row++) {
+            branches.add(rows.row(row).get("branch"));
+        }
+        return branches;
+    }
+
+    private static Set<Object> setOf(Object... values) {
+        Set<Object> set = new HashSet<>();
+        Collections.addAll(set, values);
+        return set;
+    }
+}
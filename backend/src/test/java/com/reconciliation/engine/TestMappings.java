@@ -0,0 +1,37 @@
+package com.reconciliation.engine;
+
+import com.reconciliation.entity.AttributeMapping;
+import com.reconciliation.entity.ReconciliationConfig;
+import com.reconciliation.enums.ComparisonType;
+
+/**
+ * Attribute mappings and configurations with the defaults of new entities.
+ */
+final class TestMappings {
+
+    private TestMappings() {
+    }
+
+    static ReconciliationConfig config() {
+        return new ReconciliationConfig();
+    }
+
+    static AttributeMapping mapping(String attribute, ComparisonType comparisonType) {
+        return mapping(attribute, attribute, comparisonType);
+    }
+
+    static AttributeMapping mapping(String sourceAttribute, String targetAttribute, ComparisonType comparisonType) {
+        AttributeMapping mapping = new AttributeMapping();
+        mapping.setSourceAttribute(sourceAttribute);
+        mapping.setTargetAttribute(targetAttribute);
+        mapping.setComparisonType(comparisonType);
+        return mapping;
+    }
+
+    static AttributeMapping tolerance(String attribute, double toleranceValue, String toleranceType) {
+        AttributeMapping mapping = mapping(attribute, ComparisonType.NUMERIC_TOLERANCE);
+        mapping.setToleranceValue(toleranceValue);
+        mapping.setToleranceType(toleranceType);
+        return mapping;
+    }
+}
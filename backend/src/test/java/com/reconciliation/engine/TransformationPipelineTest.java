@@ -0,0 +1,117 @@
+package com.reconciliation.engine;
+
+import com.reconciliation.exception.ReconciliationException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransformationPipelineTest {
+
+    @Test
+    void stepsAreAppliedInOrder() {
+        assertEquals("ABC", apply("trim|Uppercase", "  abc "));
+        assertEquals("abc ", apply("LTRIM|LOWER", "  ABC "));
+        assertEquals("  abc", apply("RTRIM", "  abc \t"));
+        assertEquals("00042", apply("LPAD(5,'0')", 42));
+        assertEquals("ab-.-", apply("RPAD(5, '-.')", "ab"));
+        assertEquals("abc  ", apply("RPAD(5)", "abc"));
+        assertEquals("123456", apply("LPAD(3,'0')", "123456"));
+        assertEquals("cd", apply("SUBSTR(2,2)", "abcdef"));
+        assertEquals("cdef", apply("SUBSTR(2)", "abcdef"));
+        assertEquals("", apply("SUBSTR(9,2)", "abcdef"));
+        assertEquals("O'B", apply("TRIM|RPAD(3,'''')|UPPER", " o'b "));
+        assertEquals("ab'", apply("RPAD(3,'''')", "ab"));
+    }
+
+    @Test
+    void valuesAreTransformedAsText() {
+        TransformationPipeline pipeline = TransformationPipeline.compile("amount", "TRIM");
+
+        assertEquals("10.50", pipeline.apply(new BigDecimal("10.50")));
+        assertNull(pipeline.apply(null));
+    }
+
+    @Test
+    void normalizedValuesPassThroughUnchanged() {
+        String value = "ABC";
+        TransformationPipeline pipeline = TransformationPipeline.compile("code", "TRIM|LTRIM|RTRIM|UPPER|LPAD(2,'0')|SUBSTR(0)");
+
+        assertSame(value, pipeline.apply(value));
+    }
+
+    @Test
+    void blankSpecificationsAreTheIdentity() {
+        Object value = 42;
+
+        assertSame(TransformationPipeline.IDENTITY, TransformationPipeline.compile("code", null));
+        assertSame(TransformationPipeline.IDENTITY, TransformationPipeline.compile("code", "  "));
+        assertTrue(TransformationPipeline.IDENTITY.isIdentity());
+        assertSame(value, TransformationPipeline.IDENTITY.apply(value));
+        assertEquals("", TransformationPipeline.IDENTITY.key());
+    }
+
+    @Test
+    void equivalentSpecificationsShareACanonicalKey() {
+        String key = TransformationPipeline.compile("code", "TRIM|UPPER|LPAD(10,'0')|SUBSTR(0,8)").key();
+
+        assertEquals("TRIM|UPPER|LPAD(10,'0')|SUBSTR(0,8)", key);
+        assertEquals(key, TransformationPipeline.compile("code", " trim | uppercase | lpad( 10 , '0' ) | substr(0, 8)").key());
+        assertEquals("RPAD(4,' ')|SUBSTR(1)", TransformationPipeline.compile("code", "rpad(4)|substr(1)").key());
+        assertEquals("LPAD(3,'a|b')", TransformationPipeline.compile("code", "LPAD(3,'a|b')").key());
+    }
+
+    @Test
+    void invalidSpecificationsAreRejected() {
+        List<String> invalid = Arrays.asList("TRIM|REVERSE", "UPPER(1)", "LPAD", "LPAD(0)", "LPAD(3,'')",
+                "LPAD(3,0)", "SUBSTR(-1)", "SUBSTR(1,2,3)", "SUBSTR(x)", "TRIM(", "LPAD(3,'0)", "TRIM||UPPER");
+        for (String specification : invalid) {
+            ReconciliationException e = assertThrows(ReconciliationException.class,
+                    () -> TransformationPipeline.compile("code", specification), specification);
+            assertEquals("INVALID_MAPPING", e.getErrorCode(), specification);
+            assertTrue(e.getMessage().contains("code"), e.getMessage());
+        }
+    }
+
+    @Test
+    void sqlTransformsValuesLikeTheEngine() {
+        H2Database database = new H2Database("transformation_pipeline");
+        database.execute("CREATE TABLE codes (id INT PRIMARY KEY, code VARCHAR(20))",
+                "INSERT INTO codes VALUES (1, '  ab  '), (2, 'ABCDEFGHIJKL'), (3, NULL), (4, '7'), (5, '')");
+        List<String> specifications = Arrays.asList("TRIM|UPPER", "LTRIM|LOWER", "RTRIM", "LPAD(6,'0')",
+                "TRIM|RPAD(5,'-.')", "LPAD(6,'a''b')", "SUBSTR(2,3)", "SUBSTR(4)", "TRIM|LPAD(4,'x')|SUBSTR(1,2)");
+
+        for (String specification : specifications) {
+            TransformationPipeline pipeline = TransformationPipeline.compile("code", specification);
+            RecordBatch codes = database.extract("SELECT code, " + pipeline.sql(PushdownDialect.H2, "code")
+                    + " AS transformed FROM codes ORDER BY id");
+            List<Object> expected = new ArrayList<>();
+            List<Object> transformed = new ArrayList<>();
+            for (int row = 0; row < codes.size(); row++) {
+                expected.add(pipeline.apply(codes.row(row).get("code")));
+                transformed.add(codes.row(row).get("transformed"));
+            }
+            assertEquals(expected, transformed, specification);
+        }
+        assertEquals("code", TransformationPipeline.IDENTITY.sql(PushdownDialect.H2, "code"));
+    }
+
+    @Test
+    void oracleLeavesLongerValuesUnpadded() {
+        assertEquals("CASE WHEN LENGTH(UPPER(TO_CHAR(code))) >= 4 THEN UPPER(TO_CHAR(code))"
+                        + " ELSE LPAD(UPPER(TO_CHAR(code)), 4, '-.') END",
+                TransformationPipeline.compile("code", "UPPER|LPAD(4,'-.')").sql(PushdownDialect.ORACLE, "code"));
+    }
+
+    private static Object apply(String specification, Object value) {
+        return TransformationPipeline.compile("code", specification).apply(value);
+    }
+}
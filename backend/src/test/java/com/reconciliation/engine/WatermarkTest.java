@@ -0,0 +1,88 @@
+package com.reconciliation.engine;
+
+import com.reconciliation.exception.ReconciliationException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class WatermarkTest {
+
+    @Test
+    void storedMarksAreReadBack() {
+        assertEquals("1234.50", Watermark.parse("version", "1234.50").stored());
+        assertEquals("2024-03-01 12:30:00.0", Watermark.parse("updated_at", "2024-03-01 12:30:00").stored());
+        assertNull(Watermark.parse("version", null));
+        assertNull(Watermark.parse("version", ""));
+
+        ReconciliationException e = assertThrows(ReconciliationException.class,
+                () -> Watermark.parse("version", "yesterday"));
+        assertEquals("INVALID_CONFIG", e.getErrorCode());
+    }
+
+    @Test
+    void highestMarkIsTheLargestOfThePreviousMarkAndTheBatch() {
+        RecordBatch batch = batch("version", 7L, null, new BigDecimal("12.5"), 3);
+
+        assertEquals("12.5", Watermark.highest(null, "version", batch).stored());
+        assertEquals("40", Watermark.highest(Watermark.parse("version", "40"), "version", batch).stored());
+        assertEquals("40", Watermark.highest(Watermark.parse("version", "40"), "version", RecordBatch.empty()).stored());
+        assertNull(Watermark.highest(null, "version", batch("version", (Object) null)));
+    }
+
+    @Test
+    void datesAndTimesCompareAsTimestamps() {
+        RecordBatch batch = batch("updated_at", Timestamp.valueOf("2024-03-01 08:00:00"),
+                LocalDateTime.of(2024, 3, 1, 9, 15), LocalDate.of(2024, 2, 28));
+
+        assertEquals("2024-03-01 09:15:00.0", Watermark.highest(null, "updated_at", batch).stored());
+    }
+
+    @Test
+    void valuesThatAreNotNumbersOrTimestampsAreRejected() {
+        assertThrows(ReconciliationException.class,
+                () -> Watermark.highest(null, "version", batch("version", "7")));
+        assertThrows(ReconciliationException.class,
+                () -> Watermark.highest(Watermark.parse("version", "2024-03-01 00:00:00"), "version", batch("version", 7)));
+    }
+
+    @Test
+    void restrictedQueryReadsTheRowsAtOrAboveTheMark() {
+        H2Database database = new H2Database("watermark");
+        database.execute(
+                "CREATE TABLE changes (id INT PRIMARY KEY, version DECIMAL(10, 2), updated_at TIMESTAMP)",
+                "INSERT INTO changes SELECT X, X / 2.0, DATEADD('HOUR', X, TIMESTAMP '2024-03-01 00:00:00')"
+                        + " FROM SYSTEM_RANGE(1, 100)");
+        String query = "SELECT id, version, updated_at FROM changes";
+
+        Watermark version = Watermark.parse("version", "45.5");
+        assertEquals("SELECT q.* FROM (" + query + ") q WHERE q.version >= 45.5", version.restrict(query));
+        assertEquals(10, database.extract(version.restrict(query)).size());
+        Watermark updated = Watermark.parse("updated_at", "2024-03-04 23:00:00");
+        assertEquals(6, database.extract(updated.restrict(query)).size());
+    }
+
+    @Test
+    void restrictRejectsColumnsThatAreNotIdentifiers() {
+        assertThrows(ReconciliationException.class,
+                () -> Watermark.parse("\"Version\"", "1").restrict("SELECT 1 FROM dual"));
+    }
+
+    private static RecordBatch batch(String column, Object... values) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (Object value : values) {
+            rows.add(Collections.singletonMap(column, value));
+        }
+        return RecordBatch.fromRecords(rows);
+    }
+}
@@ -0,0 +1,187 @@
+package com.reconciliation.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reconciliation.config.ReconciliationProperties;
+import com.reconciliation.engine.ColumnVector;
+import com.reconciliation.engine.ExtractionSlicing;
+import com.reconciliation.engine.KeyEncoder;
+import com.reconciliation.engine.KeySample;
+import com.reconciliation.engine.Projection;
+import com.reconciliation.engine.RecordBatch;
+import com.reconciliation.engine.RecordCursor;
+import com.reconciliation.entity.SourceSystem;
+import com.reconciliation.enums.ExtractionSliceMethod;
+import com.reconciliation.enums.SystemType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DataExtractionServiceTest {
+
+    private static final String QUERY = "SELECT id, name FROM accounts";
+
+    private static DataSourceRegistry registry;
+    private static ThreadPoolExecutor executor;
+    private static DataExtractionService service;
+    private static SourceSystem system;
+
+    @BeforeAll
+    static void createTable() {
+        registry = new DataSourceRegistry(new ReconciliationProperties(), new ObjectMapper(), new SimpleMeterRegistry());
+        executor = new ThreadPoolExecutor(8, 8, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        service = new DataExtractionService(registry, executor);
+        system = new SourceSystem();
+        system.setId(1L);
+        system.setSystemCode("ACCOUNTS");
+        system.setSystemType(SystemType.DATABASE);
+        system.setConnectionString("jdbc:h2:mem:data_extraction;DB_CLOSE_DELAY=-1");
+        system.setUsername("sa");
+        registry.jdbcTemplate(system).execute("CREATE TABLE accounts (id INT PRIMARY KEY, name VARCHAR(50))");
+        registry.jdbcTemplate(system).execute(
+                "INSERT INTO accounts SELECT X, 'account ' || X FROM SYSTEM_RANGE(1, 20000)");
+    }
+
+    @AfterAll
+    static void closePool() {
+        executor.shutdownNow();
+        registry.closeAll();
+    }
+
+    @Test
+    void slicesAreMergedInSliceOrder() {
+        List<ExtractionSlicing.Slice> slices = ExtractionSlicing.of(16, ExtractionSliceMethod.KEY_RANGE)
+                .rangeSlices(QUERY, "id", 1, 20000);
+        List<Object> expected = new ArrayList<>();
+        for (ExtractionSlicing.Slice slice : slices) {
+            RecordBatch.Builder rows = RecordBatch.builder(Collections.emptyList(), true);
+            service.extractInto(system, slice.sql(), rows, slice.args());
+            expected.addAll(ids(rows.build()));
+        }
+
+        for (int run = 0; run < 3; run++) {
+            assertEquals(expected, ids(service.extractSlices(system, slices, () -> null, Projection.ALL)));
+        }
+    }
+
+    @Test
+    void everySliceIsFilteredByItsOwnRowFilter() {
+        List<ExtractionSlicing.Slice> slices = ExtractionSlicing.of(8, ExtractionSliceMethod.KEY_RANGE)
+                .rangeSlices(QUERY, "id", 1, 20000);
+        KeySample sample = KeySample.of(25.0);
+        KeyEncoder encoder = new KeyEncoder(Collections.singletonList("id"));
+
+        RecordBatch sampled = service.extractSlices(system, slices, () -> sample.filter(encoder), Projection.ALL);
+        RecordBatch filtered = service.extractBatch(system, QUERY + " ORDER BY id", null,
+                sample.filter(encoder), Projection.ALL);
+
+        assertTrue(sampled.size() > 4000 && sampled.size() < 6000, sampled.size() + " records sampled");
+        assertEquals(ids(filtered), ids(sampled));
+    }
+
+    @Test
+    void slicesAreReadByTheCallerWhenNoExtractionThreadIsFree() throws Exception {
+        ThreadPoolExecutor busy = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        CountDownLatch release = new CountDownLatch(1);
+        busy.submit(() -> {
+            release.await();
+            return null;
+        });
+        try {
+            List<ExtractionSlicing.Slice> slices = ExtractionSlicing.of(4, ExtractionSliceMethod.KEY_RANGE)
+                    .rangeSlices(QUERY, "id", 1, 20000);
+
+            RecordBatch rows = new DataExtractionService(registry, busy).extractSlices(system, slices, () -> null, Projection.ALL);
+
+            assertEquals(20000, rows.size());
+            // Helpers that never got a thread are dropped once the caller has read every slice
+            assertEquals(0, busy.getQueue().size());
+        } finally {
+            release.countDown();
+            busy.shutdownNow();
+        }
+    }
+
+    @Test
+    void cursorReadsTheQueryInChunksAsItIsConsumed() {
+        String query = QUERY + " ORDER BY id";
+        List<Integer> chunks = new ArrayList<>();
+        List<Object> streamed = new ArrayList<>();
+        try (RecordCursor cursor = service.openCursor(system, query, null, row -> (Integer) row.get("id") % 3 != 0,
+                Projection.of(Collections.singleton("ID")))) {
+            cursor.observeChunks(chunk -> chunks.add(chunk.size()));
+            assertTrue(cursor.hasNext());
+            // Only the first chunk is read before its records are consumed
+            assertEquals(1, chunks.size());
+            while (cursor.hasNext()) {
+                Map<String, Object> record = cursor.next();
+                assertEquals(Collections.singletonList("ID"), new ArrayList<>(record.keySet()));
+                streamed.add(record.get("id"));
+            }
+            assertEquals(streamed.size(), cursor.count());
+            assertFalse(cursor.hasNext());
+        }
+
+        RecordBatch extracted = service.extractBatch(system, query, null, row -> (Integer) row.get("id") % 3 != 0,
+                Projection.ALL);
+        assertEquals(ids(extracted), streamed);
+        assertEquals((20000 + DataExtractionService.CURSOR_CHUNK_ROWS - 1) / DataExtractionService.CURSOR_CHUNK_ROWS,
+                chunks.size());
+    }
+
+    @Test
+    void closedCursorReleasesItsConnection() {
+        for (int cursors = 0; cursors < 3 * registry.maximumPoolSize(system); cursors++) {
+            try (RecordCursor cursor = service.openCursor(system, QUERY, null, null, Projection.ALL)) {
+                assertTrue(cursor.hasNext());
+            }
+        }
+    }
+
+    @Test
+    void numericColumnsAreReadIntoScaledLongs() {
+        registry.jdbcTemplate(system).execute("CREATE TABLE payments (id NUMERIC(12, 0), amount DECIMAL(12, 2), "
+                + "total NUMERIC(30, 0))");
+        registry.jdbcTemplate(system).execute("INSERT INTO payments VALUES (1, 10.5, 123456789012345678901234), "
+                + "(2, NULL, 7), (3, -0.25, NULL)");
+
+        RecordBatch payments = service.extractBatch(system, "SELECT * FROM payments ORDER BY id", null, null,
+                Projection.ALL);
+
+        assertInstanceOf(ColumnVector.DecimalVector.class, payments.column(payments.columnIndex("id")));
+        assertInstanceOf(ColumnVector.DecimalVector.class, payments.column(payments.columnIndex("amount")));
+        assertInstanceOf(ColumnVector.ObjectVector.class, payments.column(payments.columnIndex("total")));
+        assertEquals(Arrays.asList(new BigDecimal("1"), new BigDecimal("2"), new BigDecimal("3")), values(payments, "id"));
+        assertEquals(Arrays.asList(new BigDecimal("10.50"), null, new BigDecimal("-0.25")), values(payments, "amount"));
+        assertEquals(Arrays.asList(new BigDecimal("123456789012345678901234"), new BigDecimal("7"), null),
+                values(payments, "total"));
+    }
+
+    private static List<Object> ids(RecordBatch batch) {
+        return values(batch, "id");
+    }
+
+    private static List<Object> values(RecordBatch batch, String column) {
+        List<Object> values = new ArrayList<>(batch.size());
+        for (int row = 0; row < batch.size(); row++) {
+            values.add(batch.row(row).get(column));
+        }
+        return values;
+    }
+}
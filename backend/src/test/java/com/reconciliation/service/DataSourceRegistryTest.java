@@ -0,0 +1,139 @@
+package com.reconciliation.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reconciliation.config.ReconciliationProperties;
+import com.reconciliation.entity.SourceSystem;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DataSourceRegistryTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final DataSourceRegistry registry = registry(0);
+
+    private DataSourceRegistry graceRegistry;
+
+    @AfterEach
+    void closePools() {
+        registry.closeAll();
+        if (graceRegistry != null) {
+            graceRegistry.closeAll();
+        }
+    }
+
+    @Test
+    void poolIsKeptWhileSettingsAreUnchanged() {
+        SourceSystem system = system();
+
+        assertSame(registry.dataSource(system), registry.dataSource(system));
+    }
+
+    @Test
+    void replacedPoolLendsBorrowedConnectionsUntilTheyAreReturned() throws Exception {
+        SourceSystem system = system();
+        HikariDataSource original = (HikariDataSource) registry.dataSource(system);
+
+        try (Connection borrowed = original.getConnection()) {
+            system.setAdditionalConfig("{\"fetchSize\": 100}");
+            HikariDataSource replacement = (HikariDataSource) registry.dataSource(system);
+
+            assertNotSame(original, replacement);
+            assertFalse(original.isClosed());
+            assertEquals(1, queryOne(borrowed));
+            assertEquals(1, original.getHikariPoolMXBean().getActiveConnections());
+            // The meters of the retired pool are still registered under the pool name
+            assertEquals(1, meterRegistry.find("hikaricp.connections.active").gauges().size());
+        }
+
+        HikariDataSource replacement = (HikariDataSource) registry.dataSource(system);
+        assertTrue(original.isClosed());
+        assertFalse(replacement.isClosed());
+        assertNotNull(replacement.getMetricRegistry());
+        try (Connection connection = replacement.getConnection()) {
+            assertEquals(1, queryOne(connection));
+            assertEquals(1, meterRegistry.get("hikaricp.connections.active").gauge().value());
+        }
+    }
+
+    @Test
+    void replacedPoolWithoutBorrowedConnectionsIsClosedAtOnceWithoutGracePeriod() {
+        SourceSystem system = system();
+        HikariDataSource original = (HikariDataSource) registry.dataSource(system);
+
+        system.setAdditionalConfig("{\"pool\": {\"maximumPoolSize\": 2}}");
+        HikariDataSource replacement = (HikariDataSource) registry.dataSource(system);
+
+        assertTrue(original.isClosed());
+        assertEquals(2, replacement.getMaximumPoolSize());
+        assertNotNull(replacement.getMetricRegistry());
+    }
+
+    @Test
+    void replacedPoolStaysOpenForTemplatesHandedOutBeforeTheChange() throws Exception {
+        graceRegistry = registry(300);
+        SourceSystem system = system();
+        JdbcTemplate handedOut = graceRegistry.jdbcTemplate(system);
+        HikariDataSource original = (HikariDataSource) handedOut.getDataSource();
+
+        system.setAdditionalConfig("{\"fetchSize\": 100}");
+        HikariDataSource replacement = (HikariDataSource) graceRegistry.dataSource(system);
+        graceRegistry.dataSource(system);
+
+        assertNotSame(original, replacement);
+        assertFalse(original.isClosed());
+        assertEquals(1, handedOut.queryForObject("SELECT 1", Integer.class));
+
+        Thread.sleep(400);
+        graceRegistry.dataSource(system);
+        assertTrue(original.isClosed());
+        assertNotNull(replacement.getMetricRegistry());
+    }
+
+    @Test
+    void evictClosesThePool() {
+        SourceSystem system = system();
+        HikariDataSource original = (HikariDataSource) registry.dataSource(system);
+
+        registry.evict(system.getId());
+
+        assertTrue(original.isClosed());
+        assertNotSame(original, registry.dataSource(system));
+    }
+
+    private DataSourceRegistry registry(long retiredPoolGraceMs) {
+        ReconciliationProperties properties = new ReconciliationProperties();
+        properties.getConnectionPool().setRetiredPoolGraceMs(retiredPoolGraceMs);
+        return new DataSourceRegistry(properties, new ObjectMapper(), meterRegistry);
+    }
+
+    private static SourceSystem system() {
+        SourceSystem system = new SourceSystem();
+        system.setId(1L);
+        system.setSystemCode("LEDGER");
+        system.setConnectionString("jdbc:h2:mem:data_source_registry;DB_CLOSE_DELAY=-1");
+        system.setUsername("sa");
+        return system;
+    }
+
+    private static int queryOne(Connection connection) throws Exception {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT 1")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.reconciliation.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reconciliation.engine.RecordBatch;
+import com.reconciliation.entity.ReconciliationRun;
+import com.reconciliation.entity.RecordSnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class RecordSnapshotCacheTest {
+
+    private final ReconciliationRun run = new ReconciliationRun();
+    private final RecordSnapshotCache snapshots = new RecordSnapshotCache(run, new ObjectMapper());
+
+    @Test
+    void discrepanciesOfAKeyShareOneSnapshot() {
+        Map<String, Object> source = record(1L, "10.50");
+        Map<String, Object> target = record(1L, "10.60");
+
+        RecordSnapshot first = snapshots.get("1", source, target);
+        RecordSnapshot second = snapshots.get("1", source, target);
+
+        assertSame(first, second);
+        assertSame(run, first.getReconciliationRun());
+        assertEquals("1", first.getRecordKey());
+        assertEquals("{\"id\":1,\"amount\":\"10.50\"}", first.getSourceRecordJson());
+        assertEquals("{\"id\":1,\"amount\":\"10.60\"}", first.getTargetRecordJson());
+        assertNotSame(first, snapshots.get("2", record(2L, "1"), null));
+    }
+
+    @Test
+    void eachSideIsSerializedOnceWhenFirstNeeded() {
+        Map<String, Object> source = record(1L, "10.50");
+
+        RecordSnapshot snapshot = snapshots.get("1", source, null);
+        assertNull(snapshot.getTargetRecordJson());
+        source.put("amount", "changed");
+        snapshots.get("1", source, record(1L, "11"));
+
+        assertEquals("{\"id\":1,\"amount\":\"10.50\"}", snapshot.getSourceRecordJson());
+        assertEquals("{\"id\":1,\"amount\":\"11\"}", snapshot.getTargetRecordJson());
+    }
+
+    @Test
+    void batchRowsAreSerializedAsTheirValues() {
+        RecordBatch batch = RecordBatch.fromRecords(Collections.singletonList(record(7L, "3")));
+
+        RecordSnapshot snapshot = snapshots.get("7", null, batch.row(0));
+
+        assertNull(snapshot.getSourceRecordJson());
+        assertEquals("{\"id\":7,\"amount\":\"3\"}", snapshot.getTargetRecordJson());
+    }
+
+    @Test
+    void unserializableRecordsLeaveTheirSideEmpty() {
+        Map<String, Object> record = new HashMap<>();
+        record.put("self", new Object());
+
+        RecordSnapshot snapshot = snapshots.get("x", record, null);
+
+        assertNull(snapshot.getSourceRecordJson());
+        assertEquals("x", snapshot.getRecordKey());
+    }
+
+    private static Map<String, Object> record(long id, String amount) {
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("id", id);
+        record.put("amount", amount);
+        return record;
+    }
+}
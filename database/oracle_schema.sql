@@ -10,6 +10,7 @@ CREATE SEQUENCE seq_reconciliation_configs START WITH 1 INCREMENT BY 1;
 CREATE SEQUENCE seq_attribute_mappings START WITH 1 INCREMENT BY 1;
 CREATE SEQUENCE seq_reconciliation_runs START WITH 1 INCREMENT BY 1;
 CREATE SEQUENCE seq_discrepancies START WITH 1 INCREMENT BY 1;
+CREATE SEQUENCE seq_record_snapshots START WITH 1 INCREMENT BY 1;
 CREATE SEQUENCE seq_incidents START WITH 1 INCREMENT BY 1;
 CREATE SEQUENCE seq_incident_comments START WITH 1 INCREMENT BY 1;
 CREATE SEQUENCE seq_incident_history START WITH 1 INCREMENT BY 1;
@@ -103,6 +104,15 @@ CREATE TABLE reconciliation_configs (
     null_equals_empty NUMBER(1) DEFAULT 0,
     max_discrepancies NUMBER DEFAULT 10000,
     batch_size NUMBER DEFAULT 1000,
+    comparison_strategy VARCHAR2(50) DEFAULT 'IN_MEMORY',
+    incremental_mode NUMBER(1) DEFAULT 0,
+    summary_mode NUMBER(1) DEFAULT 0,
+    summary_group_attributes VARCHAR2(500),
+    sample_percentage NUMBER,
+    extraction_slices NUMBER,
+    extraction_slice_method VARCHAR2(50) DEFAULT 'HASH',
+    source_watermark_column VARCHAR2(100),
+    target_watermark_column VARCHAR2(100),
     notification_emails VARCHAR2(1000),
     auto_create_incidents NUMBER(1) DEFAULT 1,
     owner_id NUMBER,
@@ -169,12 +179,20 @@ CREATE TABLE reconciliation_runs (
     missing_in_source_count NUMBER DEFAULT 0,
     missing_in_target_count NUMBER DEFAULT 0,
     attribute_mismatch_count NUMBER DEFAULT 0,
+    duplicate_key_count NUMBER DEFAULT 0,
+    attribute_mismatch_counts CLOB,
     error_message VARCHAR2(4000),
     error_stack_trace CLOB,
     execution_time_ms NUMBER,
     source_extraction_time_ms NUMBER,
     target_extraction_time_ms NUMBER,
     comparison_time_ms NUMBER,
+    sample_percentage NUMBER,
+    estimated_mismatch_rate NUMBER,
+    mismatch_rate_lower_bound NUMBER,
+    mismatch_rate_upper_bound NUMBER,
+    source_high_water_mark VARCHAR2(100),
+    target_high_water_mark VARCHAR2(100),
     report_path VARCHAR2(1000),
     source_file_path VARCHAR2(1000),
     target_file_path VARCHAR2(1000),
@@ -233,6 +251,24 @@ CREATE TABLE incidents (
     CONSTRAINT fk_incident_checker FOREIGN KEY (checker_id) REFERENCES users(id)
 );
 
+-- =====================================================
+-- Record Snapshots Table
+-- =====================================================
+CREATE TABLE record_snapshots (
+    id NUMBER PRIMARY KEY,
+    reconciliation_run_id NUMBER NOT NULL,
+    record_key VARCHAR2(500) NOT NULL,
+    source_record_json CLOB,
+    target_record_json CLOB,
+    is_active NUMBER(1) DEFAULT 1,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP,
+    created_by VARCHAR2(100),
+    updated_by VARCHAR2(100),
+    version NUMBER DEFAULT 0,
+    CONSTRAINT fk_snapshot_run FOREIGN KEY (reconciliation_run_id) REFERENCES reconciliation_runs(id)
+);
+
 -- =====================================================
 -- Discrepancies Table
 -- =====================================================
@@ -250,8 +286,7 @@ CREATE TABLE discrepancies (
     actual_value VARCHAR2(4000),
     difference_amount NUMBER(20,6),
     difference_percentage NUMBER(10,4),
-    source_record_json CLOB,
-    target_record_json CLOB,
+    record_snapshot_id NUMBER,
     description VARCHAR2(2000),
     business_impact VARCHAR2(1000),
     is_acknowledged NUMBER(1) DEFAULT 0,
@@ -268,7 +303,8 @@ CREATE TABLE discrepancies (
     updated_by VARCHAR2(100),
     version NUMBER DEFAULT 0,
     CONSTRAINT fk_discrepancy_run FOREIGN KEY (reconciliation_run_id) REFERENCES reconciliation_runs(id),
-    CONSTRAINT fk_discrepancy_incident FOREIGN KEY (incident_id) REFERENCES incidents(id)
+    CONSTRAINT fk_discrepancy_incident FOREIGN KEY (incident_id) REFERENCES incidents(id),
+    CONSTRAINT fk_discrepancy_snapshot FOREIGN KEY (record_snapshot_id) REFERENCES record_snapshots(id)
 );
 
 -- =====================================================
@@ -388,6 +424,7 @@ CREATE INDEX idx_discrepancies_run ON discrepancies(reconciliation_run_id);
 CREATE INDEX idx_discrepancies_type ON discrepancies(discrepancy_type);
 CREATE INDEX idx_discrepancies_severity ON discrepancies(severity);
 CREATE INDEX idx_discrepancies_key ON discrepancies(record_key);
+CREATE INDEX idx_record_snapshots_run ON record_snapshots(reconciliation_run_id);
 CREATE INDEX idx_incidents_number ON incidents(incident_number);
 CREATE INDEX idx_incidents_status ON incidents(status);
 CREATE INDEX idx_incidents_severity ON incidents(severity);